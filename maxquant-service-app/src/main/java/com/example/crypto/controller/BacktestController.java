@@ -1,8 +1,16 @@
 package com.example.crypto.controller;
 
 import com.example.crypto.dto.BacktestRunRequest;
+import com.example.crypto.enums.BacktestPriority;
+import com.example.crypto.exception.BacktestQueueFullException;
 import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.BacktestService;
+import com.example.crypto.service.backtest.BacktestQueueMetrics;
+import com.example.crypto.service.backtest.BacktestScheduler;
+import com.example.crypto.service.backtest.BacktestDatasetCache;
+import com.example.crypto.service.backtest.DatasetCacheMetrics;
+import com.example.crypto.service.backtest.PythonWorkerPool;
+import com.example.crypto.service.backtest.PythonWorkerPoolMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -16,13 +24,21 @@ public class BacktestController {
 
     private static final Logger logger = LoggerFactory.getLogger(BacktestController.class);
     private final BacktestService backtestService;
+    private final PythonWorkerPool workerPool;
+    private final BacktestScheduler backtestScheduler;
+    private final BacktestDatasetCache datasetCache;
 
-    public BacktestController(BacktestService backtestService) {
+    public BacktestController(BacktestService backtestService, PythonWorkerPool workerPool, BacktestScheduler backtestScheduler,
+                              BacktestDatasetCache datasetCache) {
         this.backtestService = backtestService;
+        this.workerPool = workerPool;
+        this.backtestScheduler = backtestScheduler;
+        this.datasetCache = datasetCache;
     }
 
     @PostMapping("/run")
-    public ApiResponse<Map<String, String>> runBacktest(@RequestBody BacktestRunRequest request, @RequestHeader("Authorization") String authorizationHeader) {
+    public ApiResponse<Map<String, String>> runBacktest(@RequestBody BacktestRunRequest request, @RequestHeader("Authorization") String authorizationHeader,
+                                                        @RequestParam(defaultValue = "NORMAL") BacktestPriority priority) {
         try {
             String backtestId = UUID.randomUUID().toString();
             logger.info("Received backtest request, assigning ID: {}", backtestId);
@@ -31,11 +47,40 @@ public class BacktestController {
             // The header includes "Bearer ", remove it to get the raw token.
             String token = authorizationHeader.replace("Bearer ", "");
 
-            backtestService.runBacktest(backtestId, request, token);
+            backtestService.runBacktest(backtestId, request, token, priority);
             return ApiResponse.ok(Map.of("backtestId", backtestId));
+        } catch (BacktestQueueFullException e) {
+            logger.warn("Backtest rejected: {}", e.getMessage());
+            return ApiResponse.fail(429, e.getMessage());
         } catch (Exception e) {
             logger.error("Error initiating backtest", e);
             return ApiResponse.fail(400, "Error initiating backtest: " + e.getMessage());
         }
     }
+
+    /**
+     * 待機中または実行中のバックテストを取消（実行中の場合は Python プロセスを終了）
+     */
+    @PostMapping("/{backtestId}/cancel")
+    public ApiResponse<Void> cancelBacktest(@PathVariable String backtestId) {
+        if (!backtestService.cancelBacktest(backtestId)) {
+            return ApiResponse.fail(404, "No queued or running backtest: " + backtestId);
+        }
+        return ApiResponse.ok();
+    }
+
+    @GetMapping("/queue/metrics")
+    public ApiResponse<BacktestQueueMetrics> getQueueMetrics() {
+        return ApiResponse.ok(backtestScheduler.metrics());
+    }
+
+    @GetMapping("/workers/metrics")
+    public ApiResponse<PythonWorkerPoolMetrics> getWorkerMetrics() {
+        return ApiResponse.ok(workerPool.metrics());
+    }
+
+    @GetMapping("/datasets/metrics")
+    public ApiResponse<DatasetCacheMetrics> getDatasetMetrics() {
+        return ApiResponse.ok(datasetCache.metrics());
+    }
 } 
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.example.crypto.controller;
 import com.example.crypto.dto.BacktestInstanceDto;
 import com.example.crypto.dto.CreateBacktestInstanceRequest;
 import com.example.crypto.dto.UpdateBacktestInstanceRequest;
+import com.example.crypto.enums.BacktestPriority;
 import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.BacktestInstanceService;
 import jakarta.validation.Valid;
@@ -55,8 +56,17 @@ public class BacktestInstanceController {
     }
 
     @PostMapping("/{id}/run")
-    public ApiResponse<BacktestInstanceDto> runInstance(@PathVariable Long id, @RequestHeader("Authorization") String authorizationHeader) {
-        BacktestInstanceDto runningInstance = backtestInstanceService.runInstance(id, authorizationHeader);
+    public ApiResponse<BacktestInstanceDto> runInstance(@PathVariable Long id, @RequestHeader("Authorization") String authorizationHeader,
+                                                        @RequestParam(defaultValue = "NORMAL") BacktestPriority priority) {
+        BacktestInstanceDto runningInstance = backtestInstanceService.runInstance(id, authorizationHeader, priority);
         return ApiResponse.ok(runningInstance);
     }
+
+    @PostMapping("/{id}/cancel")
+    public ApiResponse<Void> cancelInstance(@PathVariable Long id) {
+        if (!backtestInstanceService.cancelInstance(id)) {
+            return ApiResponse.fail(404, "No queued or running backtest for instance " + id);
+        }
+        return ApiResponse.ok();
+    }
 } 
\ No newline at end of file
@@ -1,17 +1,32 @@
 package com.example.crypto.controller;
 
+import com.example.crypto.dto.BacktestLogChunk;
+import com.example.crypto.dto.BacktestLogPage;
 import com.example.crypto.dto.BacktestReportDto;
+import com.example.crypto.dto.BacktestReportSummary;
+import com.example.crypto.dto.ReportTablePage;
+import com.example.crypto.enums.BacktestReportTable;
 import com.example.crypto.exception.ResourceNotFoundException;
 import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.BacktestReportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/backtest-reports")
@@ -45,6 +60,51 @@ public class BacktestReportController {
         }
     }
 
+    /**
+     * 集計指標・期間別指標と各明細テーブルの列定義（明細は /tables/{table} でページ取得）
+     */
+    @GetMapping("/{strategyName}/{timestamp}/summary")
+    public ApiResponse<BacktestReportSummary> getReportSummary(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp) {
+        try {
+            return ApiResponse.ok(backtestReportService.getReportSummary(strategyName, timestamp));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Failed to get backtest report summary.");
+        }
+    }
+
+    /**
+     * 明細テーブルのページ取得（columns で列を絞り込み、sort / order で並び替え）
+     */
+    @GetMapping("/{strategyName}/{timestamp}/tables/{table}")
+    public ApiResponse<ReportTablePage> getReportTable(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @PathVariable String table,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) List<String> columns,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "asc") String order) {
+        BacktestReportTable reportTable = BacktestReportTable.fromPath(table);
+        if (reportTable == null) {
+            return ApiResponse.fail(404, "Unknown report table: " + table);
+        }
+        try {
+            return ApiResponse.ok(backtestReportService.getReportTable(strategyName, timestamp, reportTable, offset, limit,
+                    columns, sort, "desc".equalsIgnoreCase(order)));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.fail(400, e.getMessage());
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Failed to get backtest report table.");
+        }
+    }
+
     @GetMapping(value = "/{strategyName}/{timestamp}/log", produces = "text/plain;charset=UTF-8")
     public ApiResponse<String> getBacktestLog(
             @PathVariable String strategyName,
@@ -57,6 +117,128 @@ public class BacktestReportController {
         }
     }
 
+    /**
+     * 行番号（0 始まり）で from 行目から limit 行を取得
+     */
+    @GetMapping("/{strategyName}/{timestamp}/log/lines")
+    public ApiResponse<BacktestLogPage> getBacktestLogLines(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @RequestParam(defaultValue = "0") long from,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            return ApiResponse.ok(backtestReportService.getBacktestLogLines(strategyName, timestamp, from, limit));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Error reading log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 末尾 lines 行（ファイル末尾から逆方向に走査）
+     */
+    @GetMapping("/{strategyName}/{timestamp}/log/tail")
+    public ApiResponse<BacktestLogPage> tailBacktestLog(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @RequestParam(defaultValue = "200") int lines) {
+        try {
+            return ApiResponse.ok(backtestReportService.tailBacktestLog(strategyName, timestamp, lines));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Error reading log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * pattern を含む行をサーバー側で検索（regex=true で正規表現）、続きは nextLine から
+     */
+    @GetMapping("/{strategyName}/{timestamp}/log/grep")
+    public ApiResponse<BacktestLogPage> grepBacktestLog(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @RequestParam String pattern,
+            @RequestParam(defaultValue = "false") boolean regex,
+            @RequestParam(defaultValue = "false") boolean ignoreCase,
+            @RequestParam(defaultValue = "0") long from,
+            @RequestParam(defaultValue = "500") int limit) {
+        try {
+            return ApiResponse.ok(backtestReportService.grepBacktestLog(strategyName, timestamp, pattern, regex, ignoreCase,
+                    from, limit));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.fail(400, e.getMessage());
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Error reading log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * バイト範囲 [offset, offset + length) を取得、続きは nextOffset から
+     */
+    @GetMapping("/{strategyName}/{timestamp}/log/bytes")
+    public ApiResponse<BacktestLogChunk> getBacktestLogBytes(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "65536") int length) {
+        try {
+            return ApiResponse.ok(backtestReportService.getBacktestLogBytes(strategyName, timestamp, offset, length));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.fail(500, "Error reading log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ログ全体（pattern 指定時は一致行のみ）をストリーミングで返す
+     * クライアントが gzip を受け付ける場合は圧縮して送る
+     */
+    @GetMapping("/{strategyName}/{timestamp}/log/download")
+    public ResponseEntity<StreamingResponseBody> downloadBacktestLog(
+            @PathVariable String strategyName,
+            @PathVariable String timestamp,
+            @RequestParam(required = false) String pattern,
+            @RequestParam(defaultValue = "false") boolean regex,
+            @RequestParam(defaultValue = "false") boolean ignoreCase,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        try {
+            backtestReportService.getBacktestLogSize(strategyName, timestamp);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+        if (regex && pattern != null && !pattern.isEmpty()) {
+            try {
+                Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                backtestReportService.streamBacktestLog(strategyName, timestamp, pattern, regex, ignoreCase, compressed);
+                compressed.finish();
+            } else {
+                backtestReportService.streamBacktestLog(strategyName, timestamp, pattern, regex, ignoreCase, out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType("text", "plain", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + strategyName + "_" + timestamp + ".log\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @DeleteMapping("/{strategyName}/{timestamp}")
     public ApiResponse<String> deleteBacktestReport(
             @PathVariable String strategyName,
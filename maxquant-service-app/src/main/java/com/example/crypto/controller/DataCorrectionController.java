@@ -1,9 +1,12 @@
 package com.example.crypto.controller;
 
 import com.example.crypto.models.ApiResponse;
+import com.example.crypto.service.ClickHouseService;
 import com.example.crypto.service.DataCorrectionService;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -11,9 +14,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class DataCorrectionController {
 
     private final DataCorrectionService dataCorrectionService;
+    private final ClickHouseService clickHouseService;
 
-    public DataCorrectionController(DataCorrectionService dataCorrectionService) {
+    public DataCorrectionController(DataCorrectionService dataCorrectionService, ClickHouseService clickHouseService) {
         this.dataCorrectionService = dataCorrectionService;
+        this.clickHouseService = clickHouseService;
     }
 
     @GetMapping("/kline/fix-close-prices")
@@ -26,4 +31,20 @@ public class DataCorrectionController {
             return ApiResponse.fail(500, "Failed to start K-line close price correction: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 旧 depth_data（JSON 字符串）中指定时间范围的快照转换写入结构化表 depth_book
+     * 按天或按月分段调用，避免单次 INSERT SELECT 过大
+     */
+    @PostMapping("/depth/migrate")
+    public ApiResponse<Long> migrateDepthData(@RequestParam long startTime, @RequestParam long endTime) {
+        if (endTime <= startTime) {
+            return ApiResponse.fail(400, "endTime must be greater than startTime");
+        }
+        try {
+            return ApiResponse.ok(clickHouseService.migrateLegacyDepthData(startTime, endTime));
+        } catch (Exception e) {
+            return ApiResponse.fail(500, "Failed to migrate depth data: " + e.getMessage());
+        }
+    }
+}
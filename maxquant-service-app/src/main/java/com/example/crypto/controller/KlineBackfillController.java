@@ -0,0 +1,77 @@
+package com.example.crypto.controller;
+
+import com.example.crypto.entity.KlineBackfillCheckpoint;
+import com.example.crypto.exception.ResourceNotFoundException;
+import com.example.crypto.models.ApiResponse;
+import com.example.crypto.service.KlineBackfillService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * K線ヒストリ回補コントローラ
+ * 進捗は /topic/backfill/{id} で配信
+ */
+@RestController
+@RequestMapping("/api/v1/market/backfill")
+public class KlineBackfillController {
+    private static final Logger logger = LoggerFactory.getLogger(KlineBackfillController.class);
+    private final KlineBackfillService klineBackfillService;
+
+    public KlineBackfillController(KlineBackfillService klineBackfillService) {
+        this.klineBackfillService = klineBackfillService;
+    }
+
+    @PostMapping
+    public ApiResponse<KlineBackfillCheckpoint> startBackfill(
+            @RequestParam String exchange,
+            @RequestParam String symbol,
+            @RequestParam String timeframe,
+            @RequestParam Long startTime
+    ) {
+        logger.info("回補リクエスト: exchange={}, symbol={}, timeframe={}, startTime={}", exchange, symbol, timeframe, startTime);
+        if (symbol == null || symbol.trim().isEmpty()) {
+            return ApiResponse.fail(400, "契約が必要です");
+        }
+        if (timeframe == null || timeframe.trim().isEmpty()) {
+            return ApiResponse.fail(400, "時間枠が必要です");
+        }
+        if (startTime == null || startTime >= System.currentTimeMillis()) {
+            return ApiResponse.fail(400, "開始時間無効");
+        }
+        try {
+            return ApiResponse.ok(klineBackfillService.startBackfill(exchange, symbol, timeframe, startTime));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.fail(400, e.getMessage());
+        } catch (Exception e) {
+            logger.error("回補タスクの開始に失敗: exchange={}, symbol={}, timeframe={}, error={}", exchange, symbol, timeframe, e.getMessage(), e);
+            return ApiResponse.fail(500, "回補タスクの開始に失敗: " + e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ApiResponse<List<KlineBackfillCheckpoint>> getBackfills() {
+        return ApiResponse.ok(klineBackfillService.getBackfills());
+    }
+
+    @GetMapping("/{id}")
+    public ApiResponse<KlineBackfillCheckpoint> getBackfill(@PathVariable Long id) {
+        try {
+            return ApiResponse.ok(klineBackfillService.getBackfill(id));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        }
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ApiResponse<String> cancelBackfill(@PathVariable Long id) {
+        try {
+            klineBackfillService.cancelBackfill(id);
+            return ApiResponse.ok("回補タスクを取消しました");
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        }
+    }
+}
@@ -8,6 +8,16 @@ import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.BinanceService;
 import com.example.crypto.service.MarketService;
 import com.example.crypto.service.OkxService;
+import com.example.crypto.service.book.OrderBookEngine;
+import com.example.crypto.service.book.OrderBookMetrics;
+import com.example.crypto.service.book.OrderBookView;
+import com.example.crypto.service.clickhouse.ClickHouseSink;
+import com.example.crypto.service.clickhouse.ClickHouseSinkMetrics;
+import com.example.crypto.service.depth.DepthCaptureMetrics;
+import com.example.crypto.service.depth.DepthCaptureWriter;
+import com.example.crypto.service.ingest.IngestQueueMetrics;
+import com.example.crypto.websocket.BroadcastMetrics;
+import com.example.crypto.websocket.ConflatingBroadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -26,11 +36,21 @@ public class MarketController {
     private final MarketService marketService;
     private final BinanceService binanceService;
     private final OkxService okxService;
+    private final DepthCaptureWriter depthCaptureWriter;
+    private final ClickHouseSink clickHouseSink;
+    private final OrderBookEngine orderBookEngine;
+    private final ConflatingBroadcaster broadcaster;
 
-    public MarketController(MarketService marketService, BinanceService binanceService, OkxService okxService) {
+    public MarketController(MarketService marketService, BinanceService binanceService, OkxService okxService,
+                            DepthCaptureWriter depthCaptureWriter, ClickHouseSink clickHouseSink,
+                            OrderBookEngine orderBookEngine, ConflatingBroadcaster broadcaster) {
         this.marketService = marketService;
         this.binanceService = binanceService;
         this.okxService = okxService;
+        this.depthCaptureWriter = depthCaptureWriter;
+        this.clickHouseSink = clickHouseSink;
+        this.orderBookEngine = orderBookEngine;
+        this.broadcaster = broadcaster;
     }
 
     @GetMapping("/kline")
@@ -68,7 +88,7 @@ public class MarketController {
             @RequestParam String symbol,
             @RequestParam String exchange
     ) {
-        logger.info("リアルタイムデータリクエスト: symbol={}, exchange={}", symbol, exchange);
+        logger.debug("リアルタイムデータリクエスト: symbol={}, exchange={}", symbol, exchange);
         if (symbol == null || symbol.trim().isEmpty()) {
             return ApiResponse.fail(400, "契約が必要です");
         }
@@ -84,6 +104,22 @@ public class MarketController {
         }
     }
 
+    @GetMapping("/realtime/batch")
+    public ApiResponse<List<RealtimeData>> getRealtimeDataBatch(
+            @RequestParam List<String> symbols,
+            @RequestParam String exchange
+    ) {
+        if (symbols.isEmpty()) {
+            return ApiResponse.fail(400, "契約が必要です");
+        }
+        try {
+            return ApiResponse.ok(marketService.getRealtimeData(symbols, exchange));
+        } catch (Exception e) {
+            logger.error("リアルタイムデータ一括リクエスト処理に失敗: symbols={}, exchange={}, error={}", symbols, exchange, e.getMessage(), e);
+            return ApiResponse.fail(500, "リアルタイムデータ取得に失敗: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/depth")
     public ApiResponse<Map<String, Object>> getDepthDataPage(
             @RequestParam String symbol,
@@ -137,6 +173,46 @@ public class MarketController {
         }
     }
 
+    @GetMapping("/ingest-metrics")
+    public ApiResponse<IngestQueueMetrics> getIngestMetrics() {
+        return ApiResponse.ok(okxService.getIngestMetrics());
+    }
+
+    @GetMapping("/depth/capture-metrics")
+    public ApiResponse<DepthCaptureMetrics> getDepthCaptureMetrics() {
+        return ApiResponse.ok(depthCaptureWriter.metrics());
+    }
+
+    /**
+     * 増分フィードから再構築した板情報（上位 levels 段、mid / microprice / imbalance 付き）
+     */
+    @GetMapping("/orderbook")
+    public ApiResponse<OrderBookView> getOrderBook(
+            @RequestParam String exchange,
+            @RequestParam String symbol,
+            @RequestParam(defaultValue = "20") int levels) {
+        OrderBookView view = orderBookEngine.view(exchange, symbol, levels);
+        if (view == null) {
+            return ApiResponse.fail(404, "Order book not available: " + exchange + " " + symbol);
+        }
+        return ApiResponse.ok(view);
+    }
+
+    @GetMapping("/orderbook/metrics")
+    public ApiResponse<OrderBookMetrics> getOrderBookMetrics() {
+        return ApiResponse.ok(orderBookEngine.metrics());
+    }
+
+    @GetMapping("/clickhouse/sink-metrics")
+    public ApiResponse<ClickHouseSinkMetrics> getClickHouseSinkMetrics() {
+        return ApiResponse.ok(clickHouseSink.metrics());
+    }
+
+    @GetMapping("/websocket/broadcast-metrics")
+    public ApiResponse<BroadcastMetrics> getBroadcastMetrics() {
+        return ApiResponse.ok(broadcaster.metrics());
+    }
+
     @GetMapping("/sync-binance-instruments")
     public ApiResponse<String> syncBinanceInstruments() {
         logger.info("手动触发币安合约同步");
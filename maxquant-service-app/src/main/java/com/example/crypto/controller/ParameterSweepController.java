@@ -0,0 +1,72 @@
+package com.example.crypto.controller;
+
+import com.example.crypto.dto.ParameterSweepDto;
+import com.example.crypto.dto.ParameterSweepRequest;
+import com.example.crypto.enums.BacktestPriority;
+import com.example.crypto.models.ApiResponse;
+import com.example.crypto.service.backtest.ParameterSweepService;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 戦略パラメータのスイープ（グリッド / ランダム / ベイズ最適化）
+ * 各パラメータ組み合わせはバックテストキューに低優先度で投入され、結果は目的指標順のテーブルで返す
+ */
+@RestController
+@RequestMapping("/api/backtest-sweeps")
+public class ParameterSweepController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParameterSweepController.class);
+    private final ParameterSweepService parameterSweepService;
+
+    public ParameterSweepController(ParameterSweepService parameterSweepService) {
+        this.parameterSweepService = parameterSweepService;
+    }
+
+    @PostMapping
+    public ApiResponse<ParameterSweepDto> startSweep(@RequestBody ParameterSweepRequest request,
+                                                     @RequestHeader("Authorization") String authorizationHeader,
+                                                     @RequestParam(defaultValue = "LOW") BacktestPriority priority) {
+        try {
+            return ApiResponse.ok(parameterSweepService.startSweep(request, authorizationHeader, priority));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Parameter sweep rejected: {}", e.getMessage());
+            return ApiResponse.fail(400, e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ApiResponse<List<ParameterSweepDto>> getSweeps() {
+        return ApiResponse.ok(parameterSweepService.getSweeps());
+    }
+
+    /**
+     * スイープの状態と結果テーブル（上位 limit 行）
+     */
+    @GetMapping("/{sweepId}")
+    public ApiResponse<ParameterSweepDto> getSweep(@PathVariable String sweepId,
+                                                   @RequestParam(defaultValue = "100") int limit) {
+        ParameterSweepDto sweep = parameterSweepService.getSweep(sweepId, Math.max(0, limit));
+        if (sweep == null) {
+            return ApiResponse.fail(404, "Parameter sweep not found: " + sweepId);
+        }
+        return ApiResponse.ok(sweep);
+    }
+
+    /**
+     * 未実行の組み合わせを打ち切り、待機中・実行中のバックテストを取消
+     */
+    @PostMapping("/{sweepId}/cancel")
+    public ApiResponse<Void> cancelSweep(@PathVariable String sweepId) {
+        if (!parameterSweepService.cancelSweep(sweepId)) {
+            return ApiResponse.fail(404, "No running parameter sweep: " + sweepId);
+        }
+        return ApiResponse.ok();
+    }
+}
@@ -1,11 +1,21 @@
 package com.example.crypto.controller;
 
+import com.example.crypto.dto.PairScreenResultDto;
+import com.example.crypto.exception.ResourceNotFoundException;
+import com.example.crypto.exception.StatisticsPendingException;
 import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.StatisticalArbitrageService;
+import com.example.crypto.service.statarb.HurstMethod;
+import com.example.crypto.service.statarb.PairScreenCriteria;
+import com.example.crypto.service.statarb.RecalculationJob;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -24,11 +34,14 @@ public class StatisticalArbitrageController {
     }
 
     @GetMapping("/adf-test")
-    public ApiResponse<List<Map<String, Object>>> getAdfTestResults(@RequestParam String timeframe, @RequestParam String exchange) {
+    public ApiResponse<List<Map<String, Object>>> getAdfTestResults(@RequestParam String timeframe, @RequestParam String exchange,
+                                                                    HttpServletResponse response) {
         logger.info("请求ADF检验结果: timeframe={}, exchange={}", timeframe, exchange);
         try {
             List<Map<String, Object>> results = statisticalArbitrageService.performAdfTest(timeframe, exchange);
             return ApiResponse.ok(results);
+        } catch (StatisticsPendingException e) {
+            return pending(e, response);
         } catch (Exception e) {
             logger.error("获取ADF检验结果失败: error={}", e.getMessage(), e);
             return ApiResponse.fail(500, "获取ADF检验结果失败: " + e.getMessage());
@@ -36,11 +49,14 @@ public class StatisticalArbitrageController {
     }
 
     @GetMapping("/kpss-test")
-    public ApiResponse<List<Map<String, Object>>> getKpssTestResults(@RequestParam String timeframe, @RequestParam String exchange) {
+    public ApiResponse<List<Map<String, Object>>> getKpssTestResults(@RequestParam String timeframe, @RequestParam String exchange,
+                                                                     HttpServletResponse response) {
         logger.info("请求KPSS检验结果: timeframe={}, exchange={}", timeframe, exchange);
         try {
             List<Map<String, Object>> results = statisticalArbitrageService.performKpssTest(timeframe, exchange);
             return ApiResponse.ok(results);
+        } catch (StatisticsPendingException e) {
+            return pending(e, response);
         } catch (Exception e) {
             logger.error("获取KPSS检验结果失败: error={}", e.getMessage(), e);
             return ApiResponse.fail(500, "获取KPSS检验结果失败: " + e.getMessage());
@@ -48,26 +64,86 @@ public class StatisticalArbitrageController {
     }
 
     @GetMapping("/hurst-exponent")
-    public ApiResponse<List<Map<String, Object>>> getHurstExponentResults(@RequestParam String timeframe, @RequestParam String exchange) {
-        logger.info("请求Hurst指数结果: timeframe={}, exchange={}", timeframe, exchange);
+    public ApiResponse<List<Map<String, Object>>> getHurstExponentResults(@RequestParam String timeframe, @RequestParam String exchange,
+                                                                          @RequestParam(required = false) String method,
+                                                                          HttpServletResponse response) {
+        logger.info("请求Hurst指数结果: timeframe={}, exchange={}, method={}", timeframe, exchange, method);
+        HurstMethod hurstMethod = null;
+        if (method != null && !method.trim().isEmpty()) {
+            try {
+                hurstMethod = HurstMethod.valueOf(method.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.fail(400, "不支持的Hurst估计方法: " + method + "，可选值: " + Arrays.toString(HurstMethod.values()));
+            }
+        }
         try {
-            List<Map<String, Object>> results = statisticalArbitrageService.performHurstExponentCalculation(timeframe, exchange);
+            List<Map<String, Object>> results = statisticalArbitrageService.performHurstExponentCalculation(timeframe, exchange, hurstMethod);
             return ApiResponse.ok(results);
+        } catch (StatisticsPendingException e) {
+            return pending(e, response);
         } catch (Exception e) {
             logger.error("获取Hurst指数结果失败: error={}", e.getMessage(), e);
             return ApiResponse.fail(500, "获取Hurst指数结果失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 合约对筛选：一次计算全部统计量，按范围过滤、排序、分页
+     * 例: /screen?timeframe=1h&exchange=okx&stats=adf,hurst&adfMax=-3.34&hurstMin=0.3&hurstMax=0.5&sort=adf,asc&page=0&size=50
+     */
+    @GetMapping("/screen")
+    public ApiResponse<Page<PairScreenResultDto>> screen(@RequestParam String timeframe, @RequestParam String exchange,
+                                                         @RequestParam(required = false) List<String> stats,
+                                                         @RequestParam(required = false) Double adfMin,
+                                                         @RequestParam(required = false) Double adfMax,
+                                                         @RequestParam(required = false) Double kpssMin,
+                                                         @RequestParam(required = false) Double kpssMax,
+                                                         @RequestParam(required = false) Double hurstMin,
+                                                         @RequestParam(required = false) Double hurstMax,
+                                                         Pageable pageable, HttpServletResponse response) {
+        logger.info("请求合约对筛选: timeframe={}, exchange={}, stats={}", timeframe, exchange, stats);
+        try {
+            PairScreenCriteria criteria = PairScreenCriteria.of(stats, adfMin, adfMax, kpssMin, kpssMax, hurstMin, hurstMax);
+            return ApiResponse.ok(statisticalArbitrageService.screen(timeframe, exchange, criteria, pageable));
+        } catch (StatisticsPendingException e) {
+            return pending(e, response);
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.fail(400, "筛选参数无效: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("合约对筛选失败: error={}", e.getMessage(), e);
+            return ApiResponse.fail(500, "合约对筛选失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 提交重新计算任务，立即返回任务信息；进度推送到 /topic/statarb/recalculate/{id}
+     */
     @PostMapping("/recalculate")
-    public ApiResponse<String> recalculateIndices(@RequestParam String timeframe, @RequestParam String exchange) {
+    public ApiResponse<RecalculationJob> recalculateIndices(@RequestParam String timeframe, @RequestParam String exchange) {
         logger.info("请求重新计算统计套利指标: timeframe={}, exchange={}", timeframe, exchange);
         try {
-            statisticalArbitrageService.recalculateIndices(timeframe, exchange);
-            return ApiResponse.ok("统计套利指标重新计算成功");
+            return ApiResponse.ok(statisticalArbitrageService.submitRecalculation(timeframe, exchange));
         } catch (Exception e) {
-            logger.error("重新计算统计套利指标失败: error={}", e.getMessage(), e);
-            return ApiResponse.fail(500, "重新计算统计套利指标失败: " + e.getMessage());
+            logger.error("提交重新计算任务失败: error={}", e.getMessage(), e);
+            return ApiResponse.fail(500, "提交重新计算任务失败: " + e.getMessage());
         }
     }
+
+    @GetMapping("/recalculate/{id}")
+    public ApiResponse<RecalculationJob> getRecalculationJob(@PathVariable String id) {
+        try {
+            return ApiResponse.ok(statisticalArbitrageService.getRecalculationJob(id));
+        } catch (ResourceNotFoundException e) {
+            return ApiResponse.fail(404, e.getMessage());
+        }
+    }
+
+    /**
+     * 还没有计算结果时返回 202，Location 指向计算任务，客户端查询任务进度后重试
+     */
+    private <T> ApiResponse<T> pending(StatisticsPendingException e, HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setHeader("Location", "/api/v1/statistical-arbitrage/recalculate/" + e.getJobId());
+        return ApiResponse.fail(202, e.getMessage());
+    }
 } 
\ No newline at end of file
@@ -2,9 +2,12 @@ package com.example.crypto.controller;
 
 import com.example.crypto.entity.Subscription;
 import com.example.crypto.enums.AssetType;
+import com.example.crypto.enums.DepthCaptureMode;
 import com.example.crypto.models.ApiResponse;
 import com.example.crypto.service.OkxService;
 import com.example.crypto.service.SubscriptionService;
+import com.example.crypto.service.sync.KlineSyncEngine;
+import com.example.crypto.service.sync.KlineSyncRunMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -21,10 +24,12 @@ public class SubscriptionController {
     private static final Logger logger = LoggerFactory.getLogger(SubscriptionController.class);
     private final SubscriptionService subscriptionService;
     private final OkxService okxService;
+    private final KlineSyncEngine klineSyncEngine;
 
-    public SubscriptionController(SubscriptionService subscriptionService, OkxService okxService) {
+    public SubscriptionController(SubscriptionService subscriptionService, OkxService okxService, KlineSyncEngine klineSyncEngine) {
         this.subscriptionService = subscriptionService;
         this.okxService = okxService;
+        this.klineSyncEngine = klineSyncEngine;
     }
 
     @PostMapping("/subscribe")
@@ -35,7 +40,8 @@ public class SubscriptionController {
             @RequestParam String instType,
             @RequestParam(required = false) String timeframe,
             @RequestParam(required = false) String exchange,
-            @RequestParam AssetType assetType
+            @RequestParam AssetType assetType,
+            @RequestParam(required = false) DepthCaptureMode depthCaptureMode
     ) {
         logger.info("訂閱リクエスト: username={}, symbol={}, dataType={}, instType={}, timeframe={}, exchange={}, assetType={}", username, symbol, dataType, instType, timeframe, exchange, assetType);
         if (username == null || username.trim().isEmpty()) {
@@ -58,7 +64,7 @@ public class SubscriptionController {
         }
 
         try {
-            Subscription subscription = subscriptionService.subscribe(username, symbol, dataType, instType, timeframe, exchange, assetType);
+            Subscription subscription = subscriptionService.subscribe(username, symbol, dataType, instType, timeframe, exchange, assetType, depthCaptureMode);
             if ("depth".equals(dataType)) {
                 okxService.updateDepthSubscriptions();
             }
@@ -122,4 +128,13 @@ public class SubscriptionController {
     ) {
         return ApiResponse.ok(subscriptionService.getSubscriptionsByDataTypeAndExchange(dataType, exchange));
     }
+
+    @GetMapping("/sync-metrics")
+    public ApiResponse<KlineSyncRunMetrics> getSyncMetrics() {
+        KlineSyncRunMetrics metrics = klineSyncEngine.getLastRunMetrics();
+        if (metrics == null) {
+            return ApiResponse.fail(404, "OHLC同期はまだ実行されていません");
+        }
+        return ApiResponse.ok(metrics);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.crypto.startup;
+
+import com.example.crypto.service.KlineBackfillService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+@Component
+@Profile("!test") // Do not run this initializer during tests
+@RequiredArgsConstructor
+@Slf4j
+public class KlineBackfillInitializer implements CommandLineRunner {
+
+    private final KlineBackfillService klineBackfillService;
+
+    @Override
+    public void run(String... args) {
+        log.info("Resuming unfinished kline backfill jobs from their checkpoints...");
+        klineBackfillService.resumeUnfinishedBackfills();
+    }
+}
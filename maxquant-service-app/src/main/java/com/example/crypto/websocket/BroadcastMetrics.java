@@ -0,0 +1,22 @@
+package com.example.crypto.websocket;
+
+/**
+ * STOMP配信の統計（件数は起動以降の累計）
+ * published は購読者のいる宛先に届いたデータ数、conflated は配信前に新しいデータで上書きされた数、
+ * skippedNoSubscribers は購読者がいないため破棄した数、pendingDestinations は次回のフラッシュ待ちの宛先数
+ */
+public record BroadcastMetrics(
+        int sessions,
+        int subscribedDestinations,
+        int pendingDestinations,
+        double depthHz,
+        double realtimeHz,
+        long published,
+        long conflated,
+        long skippedNoSubscribers,
+        long sent,
+        long sentBytes,
+        long serializeFailures,
+        long sendFailures
+) {
+}
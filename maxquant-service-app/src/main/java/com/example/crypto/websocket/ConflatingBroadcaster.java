@@ -0,0 +1,198 @@
+package com.example.crypto.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 宛先ごとに最新データだけを保持し、トピック種別ごとの周期（depth-hz / realtime-hz）でまとめて配信するブロードキャスタ
+ * 取引所メッセージごとに配信せず、周期の間に届いたデータは最新のもので上書きする（間引かれた件数は conflated）。
+ * 購読者のいない宛先は保持も配信もしない。
+ * 配信時にペイロードを1回だけバイト列に変換し、そのバイト列をメッセージとしてブローカーに渡すため、
+ * 全セッションへの配信で同じバイト列が共有される（Jackson による再シリアライズは発生しない）。
+ * 周期に 0 以下を指定したトピックは間引かずに即時配信する。
+ */
+@Component
+public class ConflatingBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(ConflatingBroadcaster.class);
+    public static final String DEPTH_PREFIX = "/topic/market/depth/";
+    public static final String REALTIME_PREFIX = "/topic/market/realtime/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final StompSubscriptionTracker subscriptionTracker;
+
+    @Value("${websocket.broadcast.depth-hz:4}")
+    private double depthHz;
+
+    @Value("${websocket.broadcast.realtime-hz:10}")
+    private double realtimeHz;
+
+    private final Topic depth = new Topic("depth");
+    private final Topic realtime = new Topic("realtime");
+    private final LongAdder published = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder skippedNoSubscribers = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder serializeFailures = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private ScheduledExecutorService flushScheduler;
+
+    public ConflatingBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+                                 StompSubscriptionTracker subscriptionTracker) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.subscriptionTracker = subscriptionTracker;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stomp-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        depth.start(depthHz);
+        realtime.start(realtimeHz);
+        logger.info("STOMP配信の間引きを開始: depthHz={}, realtimeHz={}", depthHz, realtimeHz);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            if (!flushScheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                flushScheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flushScheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void publishDepth(String symbol, Object payload) {
+        depth.publish(DEPTH_PREFIX + symbol, payload);
+    }
+
+    public void publishRealtime(String symbol, Object payload) {
+        realtime.publish(REALTIME_PREFIX + symbol, payload);
+    }
+
+    public BroadcastMetrics metrics() {
+        return new BroadcastMetrics(subscriptionTracker.sessionCount(), subscriptionTracker.subscribedDestinationCount(),
+                depth.latest.size() + realtime.latest.size(), depthHz, realtimeHz,
+                published.sum(), conflated.sum(), skippedNoSubscribers.sum(), sent.sum(), sentBytes.sum(),
+                serializeFailures.sum(), sendFailures.sum());
+    }
+
+    private void send(String destination, Object payload) {
+        byte[] bytes;
+        try {
+            bytes = toBytes(payload);
+        } catch (JsonProcessingException e) {
+            serializeFailures.increment();
+            logger.error("配信データのシリアライズに失敗: destination={}, error={}", destination, e.getMessage(), e);
+            return;
+        }
+        // 可変のヘッダで作成し、宛先は SimpMessagingTemplate に設定させる（ヘッダのコピーを避ける）
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        try {
+            messagingTemplate.send(destination, MessageBuilder.createMessage(bytes, accessor.getMessageHeaders()));
+            sent.increment();
+            sentBytes.add(bytes.length);
+            logger.trace("配信: destination={}, bytes={}", destination, bytes.length);
+        } catch (Exception e) {
+            sendFailures.increment();
+            logger.error("配信に失敗: destination={}, error={}", destination, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 取引所の生JSON（RawValue）はそのままバイト列にし、それ以外は Jackson でシリアライズする
+     */
+    private byte[] toBytes(Object payload) throws JsonProcessingException {
+        if (payload instanceof RawValue raw && raw.rawValue() instanceof String json) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    /**
+     * トピック種別ごとの最新データと配信周期
+     */
+    private final class Topic {
+        private final String name;
+        private final Map<String, Object> latest = new ConcurrentHashMap<>();
+        private volatile boolean conflating;
+
+        private Topic(String name) {
+            this.name = name;
+        }
+
+        private void start(double hz) {
+            if (hz <= 0) {
+                return;
+            }
+            long periodMicros = Math.max(1000L, Math.round(1_000_000 / hz));
+            conflating = true;
+            flushScheduler.scheduleAtFixedRate(this::flush, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        private void publish(String destination, Object payload) {
+            if (!subscriptionTracker.hasSubscribers(destination)) {
+                skippedNoSubscribers.increment();
+                return;
+            }
+            published.increment();
+            if (!conflating) {
+                send(destination, payload);
+                return;
+            }
+            if (latest.put(destination, payload) != null) {
+                conflated.increment();
+            }
+        }
+
+        private void flush() {
+            try {
+                for (String destination : latest.keySet()) {
+                    Object payload = latest.remove(destination);
+                    if (payload == null) {
+                        continue;
+                    }
+                    if (!subscriptionTracker.hasSubscribers(destination)) {
+                        // 保持している間に購読が解除された
+                        skippedNoSubscribers.increment();
+                        continue;
+                    }
+                    send(destination, payload);
+                }
+            } catch (Exception e) {
+                // 例外で定期実行が止まらないようにする
+                logger.error("STOMP配信のフラッシュに失敗: topic={}, error={}", name, e.getMessage(), e);
+            }
+        }
+    }
+}
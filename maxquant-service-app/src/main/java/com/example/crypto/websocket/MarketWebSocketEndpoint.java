@@ -4,42 +4,38 @@ import com.example.crypto.service.WebSocketMessageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 /**
  * WebSocketエンドポイント
- * クライアントとの接続管理とメッセージ送信を処理
+ * 取引所から届いたデータを宛先ごとの最新値として {@link ConflatingBroadcaster} に渡す。
+ * 実際の送信はトピックごとの周期でまとめて行われる。
  */
 @Service
 public class MarketWebSocketEndpoint implements WebSocketMessageService {
     private static final Logger logger = LoggerFactory.getLogger(MarketWebSocketEndpoint.class);
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConflatingBroadcaster broadcaster;
 
     @Autowired
-    public MarketWebSocketEndpoint(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    public MarketWebSocketEndpoint(ConflatingBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
     }
 
     @Override
     public void broadcastDepthUpdate(String symbol, Object data) {
-        String destination = "/topic/market/depth/" + symbol;
         try {
-            messagingTemplate.convertAndSend(destination, data);
-            logger.trace("深度データを送信: destination={}, data={}", destination, data);
+            broadcaster.publishDepth(symbol, data);
         } catch (Exception e) {
-            logger.error("深度データの送信に失敗: destination={}, error={}", destination, e.getMessage(), e);
+            logger.error("深度データの送信に失敗: symbol={}, error={}", symbol, e.getMessage(), e);
         }
     }
 
     @Override
     public void broadcastRealtimeUpdate(String symbol, Object data) {
-        String destination = "/topic/market/realtime/" + symbol;
         try {
-            messagingTemplate.convertAndSend(destination, data);
-            logger.trace("リアルタイムデータを送信: destination={}, data={}", destination, data);
+            broadcaster.publishRealtime(symbol, data);
         } catch (Exception e) {
-            logger.error("リアルタイムデータの送信に失敗: destination={}, error={}", destination, e.getMessage(), e);
+            logger.error("リアルタイムデータの送信に失敗: symbol={}, error={}", symbol, e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.example.crypto.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * STOMP購読状況の追跡
+ * SUBSCRIBE / UNSUBSCRIBE / DISCONNECT イベントから宛先ごとの購読数を数え、
+ * 購読者のいない宛先への配信をスキップできるようにする。
+ * 匿名セッションも数える必要があるため SimpUserRegistry は使わない。
+ * ワイルドカード（"/topic/market/depth/*" など）の購読はパターンとして別に保持し、宛先と照合する。
+ */
+@Component
+public class StompSubscriptionTracker {
+    private static final Logger logger = LoggerFactory.getLogger(StompSubscriptionTracker.class);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> destinations = new ConcurrentHashMap<>();
+    private final Map<String, Integer> patterns = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        counters(destination).merge(destination, 1, Integer::sum);
+        logger.debug("購読を登録: sessionId={}, subscriptionId={}, destination={}", sessionId, subscriptionId, destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+            logger.debug("セッションの購読を解除: sessionId={}, subscriptions={}", event.getSessionId(), subscriptions.size());
+        }
+    }
+
+    /**
+     * 宛先に購読者が1人以上いるか
+     */
+    public boolean hasSubscribers(String destination) {
+        if (destinations.containsKey(destination)) {
+            return true;
+        }
+        for (String pattern : patterns.keySet()) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public int subscribedDestinationCount() {
+        return destinations.size() + patterns.size();
+    }
+
+    private Map<String, Integer> counters(String destination) {
+        return pathMatcher.isPattern(destination) ? patterns : destinations;
+    }
+
+    private void decrement(String destination) {
+        counters(destination).computeIfPresent(destination, (k, count) -> count > 1 ? count - 1 : null);
+    }
+}
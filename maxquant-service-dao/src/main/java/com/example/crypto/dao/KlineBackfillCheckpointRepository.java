@@ -0,0 +1,18 @@
+package com.example.crypto.dao;
+
+import com.example.crypto.entity.KlineBackfillCheckpoint;
+import com.example.crypto.enums.BackfillStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * K線ヒストリ回補チェックポイントのリポジトリ
+ */
+public interface KlineBackfillCheckpointRepository extends JpaRepository<KlineBackfillCheckpoint, Long> {
+    Optional<KlineBackfillCheckpoint> findByExchangeAndSymbolAndTimeframe(String exchange, String symbol, String timeframe);
+
+    List<KlineBackfillCheckpoint> findByStatusIn(Collection<BackfillStatus> statuses);
+}
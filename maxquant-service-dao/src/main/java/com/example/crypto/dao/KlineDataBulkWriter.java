@@ -0,0 +1,111 @@
+package com.example.crypto.dao;
+
+import com.example.crypto.entity.KlineData;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * K線データの一括 upsert
+ * 持久化コンテキストを経由せず、複数行の INSERT ... ON CONFLICT DO UPDATE を直接発行する
+ */
+@Repository
+public class KlineDataBulkWriter {
+    // 1行あたり10パラメータ、PostgreSQL のパラメータ上限 (65535) を大きく下回るように分割
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO kline_data (symbol, timeframe, timestamp, exchange, open_price, high_price, low_price, close_price, volume, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT_SUFFIX =
+            " ON CONFLICT (symbol, timeframe, timestamp, exchange) DO UPDATE SET" +
+            " open_price = EXCLUDED.open_price, high_price = EXCLUDED.high_price, low_price = EXCLUDED.low_price," +
+            " close_price = EXCLUDED.close_price, volume = EXCLUDED.volume" +
+            " RETURNING id, timestamp, created_at, (xmax = 0) AS inserted";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public KlineDataBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record UpsertResult(int inserted, int updated) {
+        public static final UpsertResult EMPTY = new UpsertResult(0, 0);
+
+        public UpsertResult plus(UpsertResult other) {
+            return new UpsertResult(inserted + other.inserted, updated + other.updated);
+        }
+    }
+
+    /**
+     * 同一 (symbol, timeframe, exchange) の K線を一括で upsert する
+     * 実行後、渡されたエンティティに id と created_at（既存行は元の値）を書き戻す
+     */
+    public UpsertResult upsert(String symbol, String timeframe, String exchange, List<KlineData> klines) {
+        if (klines.isEmpty()) {
+            return UpsertResult.EMPTY;
+        }
+        // 同じ文の中で同一キーを二度更新すると PostgreSQL がエラーになるため、時間戳で重複を除く（後勝ち）
+        Map<Long, KlineData> byTimestamp = new LinkedHashMap<>();
+        for (KlineData kline : klines) {
+            byTimestamp.put(kline.getTimestamp(), kline);
+        }
+        List<KlineData> rows = new ArrayList<>(byTimestamp.values());
+        rows.sort(Comparator.comparingLong(KlineData::getTimestamp));
+
+        UpsertResult total = UpsertResult.EMPTY;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<KlineData> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            total = total.plus(upsertChunk(symbol, timeframe, exchange, chunk));
+        }
+        return total;
+    }
+
+    private UpsertResult upsertChunk(String symbol, String timeframe, String exchange, List<KlineData> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + chunk.size() * (ROW_PLACEHOLDER.length() + 2) + ON_CONFLICT_SUFFIX.length());
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[chunk.size() * 10];
+        Map<Long, KlineData> byTimestamp = new HashMap<>(chunk.size() * 2);
+        int p = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            KlineData kline = chunk.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+            LocalDateTime createdAt = kline.getCreatedAt() != null ? kline.getCreatedAt() : LocalDateTime.now();
+            args[p++] = symbol;
+            args[p++] = timeframe;
+            args[p++] = kline.getTimestamp();
+            args[p++] = exchange;
+            args[p++] = kline.getOpenPrice();
+            args[p++] = kline.getHighPrice();
+            args[p++] = kline.getLowPrice();
+            args[p++] = kline.getClosePrice();
+            args[p++] = kline.getVolume();
+            args[p++] = Timestamp.valueOf(createdAt);
+            byTimestamp.put(kline.getTimestamp(), kline);
+        }
+        sql.append(ON_CONFLICT_SUFFIX);
+
+        int[] counts = new int[2];
+        jdbcTemplate.query(sql.toString(), rs -> {
+            KlineData kline = byTimestamp.get(rs.getLong("timestamp"));
+            if (kline != null) {
+                kline.setId(rs.getLong("id"));
+                Timestamp created = rs.getTimestamp("created_at");
+                kline.setCreatedAt(created != null ? created.toLocalDateTime() : null);
+            }
+            counts[rs.getBoolean("inserted") ? 0 : 1]++;
+        }, args);
+        return new UpsertResult(counts[0], counts[1]);
+    }
+}
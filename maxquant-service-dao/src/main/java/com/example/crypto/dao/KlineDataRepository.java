@@ -23,4 +23,7 @@ public interface KlineDataRepository extends JpaRepository<KlineData, Long> { //
     List<KlineIdentifier> findDistinctIdentifiers();
 
     List<KlineData> findBySymbolAndTimeframeAndExchangeOrderByTimestampAsc(String symbol, String timeframe, String exchange);
+
+    @Query("SELECT MAX(k.timestamp) FROM KlineData k WHERE k.symbol = :symbol AND k.timeframe = :timeframe AND k.exchange = :exchange")
+    Long findMaxTimestamp(@Param("symbol") String symbol, @Param("timeframe") String timeframe, @Param("exchange") String exchange);
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.example.crypto.dao;
+
+import com.example.crypto.entity.StatisticalIndex;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 統計指標の一括書き込み
+ * 再計算の結果はまず別テーブル statistical_indices_staging にジョブ ID 付きでバッチ単位で書き込み、
+ * 全バッチの書き込み後に 1 トランザクションで同一 (timeframe, exchange, 計算日) の行を削除して INSERT ... SELECT で移す。
+ * statistical_indices の読み取り側（削除、DISTINCT exchange、レポート等）にはステージング中の行は一切見えず、
+ * 入れ替え前の完全なデータか入れ替え後の完全なデータのどちらかしか見えない。
+ */
+@Repository
+public class StatisticalIndexBulkWriter {
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TABLE IF NOT EXISTS statistical_indices_staging (" +
+            "    job_id VARCHAR(64) NOT NULL," +
+            "    symbol_pair VARCHAR(255) NOT NULL," +
+            "    timeframe VARCHAR(255) NOT NULL," +
+            "    exchange VARCHAR(255) NOT NULL," +
+            "    adf_value DOUBLE PRECISION," +
+            "    kpss_value DOUBLE PRECISION," +
+            "    hurst_value DOUBLE PRECISION," +
+            "    calculation_date DATE NOT NULL," +
+            "    created_at TIMESTAMP" +
+            ")";
+    private static final String CREATE_STAGING_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_statistical_indices_staging_job ON statistical_indices_staging (job_id)";
+    private static final String CLEAR_STAGED_SQL =
+            "DELETE FROM statistical_indices_staging WHERE timeframe = ? AND exchange = ? AND job_id <> ?";
+    private static final String DISCARD_STAGED_SQL =
+            "DELETE FROM statistical_indices_staging WHERE job_id = ?";
+    private static final String STAGE_SQL =
+            "INSERT INTO statistical_indices_staging (job_id, symbol_pair, timeframe, exchange, adf_value, kpss_value, hurst_value, calculation_date, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SQL =
+            "DELETE FROM statistical_indices WHERE timeframe = ? AND exchange = ? AND calculation_date = ?";
+    private static final String PUBLISH_SQL =
+            "INSERT INTO statistical_indices (symbol_pair, timeframe, exchange, adf_value, kpss_value, hurst_value, calculation_date, created_at, updated_at) " +
+            "SELECT symbol_pair, timeframe, exchange, adf_value, kpss_value, hurst_value, calculation_date, created_at, ? " +
+            "FROM statistical_indices_staging WHERE job_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StatisticalIndexBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.execute(CREATE_STAGING_SQL);
+        jdbcTemplate.execute(CREATE_STAGING_INDEX_SQL);
+    }
+
+    /**
+     * 同じ (timeframe, exchange) の以前のジョブが途中で終了した場合に残ったステージング行を削除する
+     */
+    @Transactional
+    public int clearStaged(String jobId, String timeframe, String exchange) {
+        return jdbcTemplate.update(CLEAR_STAGED_SQL, timeframe, exchange, jobId);
+    }
+
+    /**
+     * ジョブが失敗した場合にそのジョブのステージング行を削除する
+     */
+    @Transactional
+    public int discardStaged(String jobId) {
+        return jdbcTemplate.update(DISCARD_STAGED_SQL, jobId);
+    }
+
+    /**
+     * 一批合約ペアの結果をステージング行として書き込む
+     * バッチごとに短いトランザクションで確定し、{@link #publish} までは statistical_indices に現れない
+     */
+    @Transactional
+    public int stageBatch(String jobId, List<StatisticalIndex> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(STAGE_SQL, batch, batch.size(), (ps, index) -> {
+            ps.setString(1, jobId);
+            ps.setString(2, index.getSymbolPair());
+            ps.setString(3, index.getTimeframe());
+            ps.setString(4, index.getExchange());
+            ps.setObject(5, index.getAdfValue());
+            ps.setObject(6, index.getKpssValue());
+            ps.setObject(7, index.getHurstValue());
+            ps.setDate(8, Date.valueOf(index.getCalculationDate()));
+            ps.setTimestamp(9, now);
+        });
+        return batch.size();
+    }
+
+    /**
+     * 計算日の既存行を削除し、ジョブのステージング行を statistical_indices に移す（1 トランザクション）
+     * @return 移した行数
+     */
+    @Transactional
+    public int publish(String jobId, String timeframe, String exchange, LocalDate calculationDate) {
+        jdbcTemplate.update(DELETE_SQL, timeframe, exchange, Date.valueOf(calculationDate));
+        int published = jdbcTemplate.update(PUBLISH_SQL, Timestamp.valueOf(LocalDateTime.now()), jobId);
+        jdbcTemplate.update(DISCARD_STAGED_SQL, jobId);
+        return published;
+    }
+}
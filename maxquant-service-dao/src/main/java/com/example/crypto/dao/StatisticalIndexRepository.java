@@ -11,6 +11,9 @@ public interface StatisticalIndexRepository extends JpaRepository<StatisticalInd
 
     List<StatisticalIndex> findByTimeframeAndExchangeAndCalculationDate(String timeframe, String exchange, LocalDate calculationDate);
 
+    // 指定日以前で最新の計算日の 1 行（計算日の特定に使う）
+    StatisticalIndex findFirstByTimeframeAndExchangeAndCalculationDateLessThanEqualOrderByCalculationDateDesc(String timeframe, String exchange, LocalDate calculationDate);
+
     void deleteByCalculationDateBefore(LocalDate date);
 
     StatisticalIndex findBySymbolPairAndTimeframeAndExchangeAndCalculationDate(String symbolPair, String timeframe, String exchange, LocalDate calculationDate);
@@ -0,0 +1,14 @@
+package com.example.crypto.dto;
+
+/**
+ * 按字节范围读取的回测日志；范围两端落在多字节字符中间时向内收缩到字符边界，
+ * 继续读取时使用 nextOffset
+ */
+public record BacktestLogChunk(
+        long offset,
+        int length,
+        long fileSize,
+        long nextOffset,
+        String content
+) {
+}
@@ -0,0 +1,7 @@
+package com.example.crypto.dto;
+
+/**
+ * 回测日志的一行，number 为从 0 开始的行号
+ */
+public record BacktestLogLine(long number, String text) {
+}
@@ -0,0 +1,15 @@
+package com.example.crypto.dto;
+
+import java.util.List;
+
+/**
+ * 按行读取的回测日志
+ * nextLine 为继续读取（或继续检索）时的起始行号，已读到文件末尾时为 null
+ */
+public record BacktestLogPage(
+        long totalLines,
+        long fileSize,
+        List<BacktestLogLine> lines,
+        Long nextLine
+) {
+}
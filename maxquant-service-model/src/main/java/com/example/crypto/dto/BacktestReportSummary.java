@@ -0,0 +1,16 @@
+package com.example.crypto.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回测报告的汇总部分：汇总指标、分期指标，以及各明细表的行数和列定义（明细按页查询）
+ */
+public record BacktestReportSummary(
+        String strategyName,
+        String timestamp,
+        List<Map<String, Object>> performance,
+        List<Map<String, Object>> periodicPerformance,
+        List<ReportTableInfo> tables
+) {
+}
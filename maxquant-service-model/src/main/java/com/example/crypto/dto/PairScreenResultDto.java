@@ -0,0 +1,14 @@
+package com.example.crypto.dto;
+
+/**
+ * 合约对筛选结果，未请求的统计量为 null
+ */
+public record PairScreenResultDto(
+        String pair,
+        String symbol1,
+        String symbol2,
+        int length,
+        Double adf,
+        Double kpss,
+        Double hurst
+) {}
@@ -0,0 +1,31 @@
+package com.example.crypto.dto;
+
+import com.example.crypto.enums.BacktestStatus;
+import com.example.crypto.enums.SweepMethod;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 参数扫描的状态和按目标值排序的结果表
+ * plannedRuns 为计划尝试的参数组合数；executedRuns 为实际执行的回测次数，cachedRuns 为复用缓存结果的次数
+ */
+public record ParameterSweepDto(
+        String id,
+        Long strategyTemplateId,
+        SweepMethod method,
+        BacktestStatus status,
+        String objective,
+        boolean maximize,
+        int plannedRuns,
+        int completedRuns,
+        int prunedRuns,
+        int failedRuns,
+        int executedRuns,
+        int cachedRuns,
+        String error,
+        LocalDateTime createdAt,
+        LocalDateTime finishedAt,
+        List<SweepResultRow> results
+) {
+}
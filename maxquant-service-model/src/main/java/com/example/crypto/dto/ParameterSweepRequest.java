@@ -0,0 +1,34 @@
+package com.example.crypto.dto;
+
+import com.example.crypto.enums.SweepMethod;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 参数扫描请求
+ * config 与回测实例的 params 相同（Python runner 的配置），扫描的参数覆盖其中 PARAMS 的同名项；
+ * maxRuns 为最多尝试的参数组合数；rungs > 1 时先在回测区间的前 1/eta^(rungs-1) 上执行，
+ * 每一轮只保留前 1/eta 的参数组合进入更长的区间。
+ */
+public record ParameterSweepRequest(
+        Long strategyTemplateId,
+        Map<String, Object> config,
+        SweepMethod method,
+        List<ParameterRange> ranges,
+        Integer maxRuns,
+        Integer parallelism,
+        String objective,
+        Boolean maximize,
+        Long seed,
+        Integer rungs,
+        Integer eta
+) {
+    /**
+     * 参数的取值范围：values 为候选值列表，否则为 [min, max]（step 为步长，log 为按对数均匀采样）
+     * type 为 INT 或 DECIMAL，省略时按 min/max/step 是否为整数判断
+     */
+    public record ParameterRange(String name, String type, BigDecimal min, BigDecimal max, BigDecimal step,
+                                 List<Object> values, boolean log) {}
+}
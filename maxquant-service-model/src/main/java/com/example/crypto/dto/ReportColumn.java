@@ -0,0 +1,6 @@
+package com.example.crypto.dto;
+
+import com.example.crypto.enums.ReportColumnType;
+
+public record ReportColumn(String name, ReportColumnType type) {
+}
@@ -0,0 +1,9 @@
+package com.example.crypto.dto;
+
+import java.util.List;
+
+/**
+ * 回测报告中一张表的行数和列定义
+ */
+public record ReportTableInfo(String table, int rows, List<ReportColumn> columns) {
+}
@@ -0,0 +1,18 @@
+package com.example.crypto.dto;
+
+import java.util.List;
+
+/**
+ * 回测报告表的一页；rows 的每一行按 columns 的顺序排列
+ */
+public record ReportTablePage(
+        String table,
+        int totalRows,
+        int offset,
+        int limit,
+        String sort,
+        boolean descending,
+        List<ReportColumn> columns,
+        List<List<Object>> rows
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.crypto.dto;
+
+import com.example.crypto.enums.SweepRunStatus;
+
+import java.util.Map;
+
+/**
+ * 参数扫描结果表的一行；metrics 为该次回测 all_performance.csv 的汇总行，
+ * reportName/reportTimestamp 可用于查询完整回测报告
+ */
+public record SweepResultRow(
+        int rank,
+        Map<String, Object> params,
+        Double objective,
+        SweepRunStatus status,
+        boolean cached,
+        int rung,
+        String reportName,
+        String reportTimestamp,
+        Map<String, String> metrics
+) {
+}
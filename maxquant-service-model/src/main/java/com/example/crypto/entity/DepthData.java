@@ -6,6 +6,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.persistence.Column;
+import jakarta.persistence.Transient;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -27,6 +30,17 @@ public class DepthData {
     private LocalDateTime createdAt;
     private String exchange;
 
+    // ClickHouse depth_book から読んだ価格・数量（データベースのカラムではない）
+    // JSON 文字列が必要な場合のみ getBids / getAsks で組み立てる
+    @Transient
+    private double[] bidPrices;
+    @Transient
+    private double[] bidSizes;
+    @Transient
+    private double[] askPrices;
+    @Transient
+    private double[] askSizes;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -45,6 +59,9 @@ public class DepthData {
     }
 
     public String getBids() {
+        if (bids == null && bidPrices != null) {
+            bids = toLevelsJson(bidPrices, bidSizes);
+        }
         return bids;
     }
 
@@ -53,6 +70,9 @@ public class DepthData {
     }
 
     public String getAsks() {
+        if (asks == null && askPrices != null) {
+            asks = toLevelsJson(askPrices, askSizes);
+        }
         return asks;
     }
 
@@ -83,4 +103,52 @@ public class DepthData {
     public void setExchange(String exchange) {
         this.exchange = exchange;
     }
-}
\ No newline at end of file
+
+    @JsonIgnore
+    public double[] getBidPrices() {
+        return bidPrices;
+    }
+
+    @JsonIgnore
+    public double[] getBidSizes() {
+        return bidSizes;
+    }
+
+    @JsonIgnore
+    public double[] getAskPrices() {
+        return askPrices;
+    }
+
+    @JsonIgnore
+    public double[] getAskSizes() {
+        return askSizes;
+    }
+
+    public void setBidLevels(double[] prices, double[] sizes) {
+        this.bidPrices = prices;
+        this.bidSizes = sizes;
+    }
+
+    public void setAskLevels(double[] prices, double[] sizes) {
+        this.askPrices = prices;
+        this.askSizes = sizes;
+    }
+
+    /**
+     * 旧フォーマットと同じ [["価格","数量"], ...] 形式の JSON を組み立てる
+     */
+    private static String toLevelsJson(double[] prices, double[] sizes) {
+        StringBuilder sb = new StringBuilder(prices.length * 24 + 2).append('[');
+        for (int i = 0; i < prices.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("[\"").append(plain(prices[i])).append("\",\"").append(plain(sizes[i])).append("\"]");
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String plain(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.crypto.entity;
+
+import com.example.crypto.enums.BackfillStatus;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * K线历史回补检查点
+ * 每个 (exchange, symbol, timeframe) 一条，记录向过去翻页的进度，重启后从 cursor 继续
+ */
+@Entity
+@Table(name = "kline_backfill_checkpoints", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"exchange", "symbol", "timeframe"})
+})
+public class KlineBackfillCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String exchange;
+
+    @Column(nullable = false)
+    private String symbol;
+
+    @Column(nullable = false)
+    private String timeframe;
+
+    // 回补目标：早于该时间戳的K线不再拉取
+    @Column(name = "target_start_time", nullable = false)
+    private Long targetStartTime;
+
+    // 已写入的最早K线时间戳，下一页从这里继续向过去翻
+    @Column(name = "cursor_timestamp")
+    private Long cursorTimestamp;
+
+    // 第一页拿到的最新K线时间戳，用于计算进度
+    @Column(name = "newest_timestamp")
+    private Long newestTimestamp;
+
+    @Column(name = "bars_written", nullable = false)
+    private long barsWritten;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BackfillStatus status = BackfillStatus.PENDING;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getExchange() { return exchange; }
+    public void setExchange(String exchange) { this.exchange = exchange; }
+    public String getSymbol() { return symbol; }
+    public void setSymbol(String symbol) { this.symbol = symbol; }
+    public String getTimeframe() { return timeframe; }
+    public void setTimeframe(String timeframe) { this.timeframe = timeframe; }
+    public Long getTargetStartTime() { return targetStartTime; }
+    public void setTargetStartTime(Long targetStartTime) { this.targetStartTime = targetStartTime; }
+    public Long getCursorTimestamp() { return cursorTimestamp; }
+    public void setCursorTimestamp(Long cursorTimestamp) { this.cursorTimestamp = cursorTimestamp; }
+    public Long getNewestTimestamp() { return newestTimestamp; }
+    public void setNewestTimestamp(Long newestTimestamp) { this.newestTimestamp = newestTimestamp; }
+    public long getBarsWritten() { return barsWritten; }
+    public void setBarsWritten(long barsWritten) { this.barsWritten = barsWritten; }
+    public BackfillStatus getStatus() { return status; }
+    public void setStatus(BackfillStatus status) { this.status = status; }
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
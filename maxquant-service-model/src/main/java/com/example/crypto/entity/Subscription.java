@@ -1,6 +1,7 @@
 package com.example.crypto.entity;
 
 import com.example.crypto.enums.AssetType;
+import com.example.crypto.enums.DepthCaptureMode;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -40,6 +41,11 @@ public class Subscription {
     @Column(name = "asset_type", nullable = false)
     private AssetType assetType;
 
+    // depth 訂閱のみ使用、null は CONFLATED と同じ
+    @Enumerated(EnumType.STRING)
+    @Column(name = "depth_capture_mode")
+    private DepthCaptureMode depthCaptureMode;
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public String getUsername() { return username; }
@@ -58,4 +64,6 @@ public class Subscription {
     public void setExchange(String exchange) { this.exchange = exchange; }
     public AssetType getAssetType() { return assetType; }
     public void setAssetType(AssetType assetType) { this.assetType = assetType; }
+    public DepthCaptureMode getDepthCaptureMode() { return depthCaptureMode; }
+    public void setDepthCaptureMode(DepthCaptureMode depthCaptureMode) { this.depthCaptureMode = depthCaptureMode; }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.crypto.enums;
+
+public enum BackfillStatus {
+    PENDING,   // 等待执行
+    RUNNING,   // 执行中
+    COMPLETED, // 已回补到目标起始时间
+    CANCELLED, // 已取消
+    FAILED     // 执行失败
+}
@@ -0,0 +1,7 @@
+package com.example.crypto.enums;
+
+public enum BacktestPriority {
+    LOW,    // 低优先级（批量、参数扫描）
+    NORMAL, // 默认
+    HIGH    // 高优先级（交互式调试）
+}
@@ -0,0 +1,41 @@
+package com.example.crypto.enums;
+
+/**
+ * 回测报告中的表，path 为接口路径中的表名，fileName 为 runner 输出的 CSV 文件名
+ */
+public enum BacktestReportTable {
+    PERFORMANCE("performance", "all_performance.csv"),                         // 汇总指标
+    ORDERS("orders", "all_orders.csv"),                                        // 委托
+    TRADES("trades", "all_trade_record.csv"),                                  // 成交
+    PERIODIC_PERFORMANCE("periodic-performance", "all_periodic_performance.csv"), // 分期指标
+    DAILY_INDICATORS("daily-indicators", "all_process_daily_indicators.csv"),  // 每日指标
+    PORTFOLIO_DETAILS("portfolio-details", "all_backtest_detail.csv");         // 组合明细
+
+    private final String path;
+    private final String fileName;
+
+    BacktestReportTable(String path, String fileName) {
+        this.path = path;
+        this.fileName = fileName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return 没有对应的表时返回 null
+     */
+    public static BacktestReportTable fromPath(String path) {
+        for (BacktestReportTable table : values()) {
+            if (table.path.equals(path)) {
+                return table;
+            }
+        }
+        return null;
+    }
+}
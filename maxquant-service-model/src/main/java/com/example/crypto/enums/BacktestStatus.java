@@ -4,5 +4,6 @@ public enum BacktestStatus {
     NOT_RUN,  // 未执行
     RUNNING,  // 执行中
     COMPLETED, // 已完成
-    FAILED // 执行失败
+    FAILED, // 执行失败
+    CANCELLED // 已取消
 } 
\ No newline at end of file
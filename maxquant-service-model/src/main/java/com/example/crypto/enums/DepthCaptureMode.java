@@ -0,0 +1,6 @@
+package com.example.crypto.enums;
+
+public enum DepthCaptureMode {
+    CONFLATED, // 每个合约只保留最新快照，定时（2 秒）写入一次
+    LOSSLESS   // 每次深度推送都写入，用于按订单簿回测
+}
@@ -0,0 +1,7 @@
+package com.example.crypto.enums;
+
+public enum DepthStorageMode {
+    LEGACY,     // 只写 depth_data（bids / asks 为 JSON 字符串），读取也使用旧表
+    DUAL,       // 同时写入 depth_data 和 depth_book（切换期间保留回退到 LEGACY 的余地），读取方式与 STRUCTURED 相同
+    STRUCTURED  // 只写入 depth_book（价格、数量为 Array(Float64) 列）；读取 depth_book，早于其中第一条快照的部分（未迁移的历史）读取旧表
+}
@@ -0,0 +1,8 @@
+package com.example.crypto.enums;
+
+public enum RecalculationStatus {
+    PENDING,   // 等待执行
+    RUNNING,   // 计算或写入中
+    COMPLETED, // 已完成
+    FAILED     // 执行失败
+}
@@ -0,0 +1,7 @@
+package com.example.crypto.enums;
+
+public enum ReportColumnType {
+    INT64,   // 全部为整数
+    FLOAT64, // 全部为数值或空（空值以 NaN 存储，接口返回 null）
+    STRING   // 其他，按字典编码存储
+}
@@ -0,0 +1,7 @@
+package com.example.crypto.enums;
+
+public enum SweepMethod {
+    GRID,     // 网格：所有取值组合
+    RANDOM,   // 随机采样
+    BAYESIAN  // 贝叶斯优化（TPE），按已完成的结果选择下一批参数
+}
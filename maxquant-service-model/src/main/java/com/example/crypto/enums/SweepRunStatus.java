@@ -0,0 +1,10 @@
+package com.example.crypto.enums;
+
+public enum SweepRunStatus {
+    PENDING,   // 等待执行
+    RUNNING,   // 执行中
+    COMPLETED, // 已完成（完整回测区间）
+    PRUNED,    // 在较短区间上明显落后，提前淘汰
+    FAILED,    // 执行失败
+    CANCELLED  // 已取消
+}
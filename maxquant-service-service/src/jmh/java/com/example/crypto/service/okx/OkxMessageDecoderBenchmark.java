@@ -0,0 +1,113 @@
+package com.example.crypto.service.okx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OKX 推送消息解码的微基准：原先的 ObjectMapper.readTree 与 {@link OkxMessageDecoder} 对比
+ * 两种方式取出相同的字段（频道、合约、时间戳、最新价或每一档的价格和数量），
+ * 运行：mvn -Pjmh -pl maxquant-service-service -am verify，加 -prof gc 可查看每条消息的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OkxMessageDecoderBenchmark {
+
+    private static final String BOOKS5 = "{\"arg\":{\"channel\":\"books5\",\"instId\":\"BTC-USDT\"},\"data\":[{"
+            + "\"asks\":[[\"64012.3\",\"0.51\",\"0\",\"3\"],[\"64012.4\",\"0.02\",\"0\",\"1\"],[\"64013\",\"1.2\",\"0\",\"5\"],"
+            + "[\"64013.8\",\"0.35\",\"0\",\"2\"],[\"64014.1\",\"0.8\",\"0\",\"4\"]],"
+            + "\"bids\":[[\"64012.2\",\"0.73\",\"0\",\"6\"],[\"64011.9\",\"0.1\",\"0\",\"1\"],[\"64011.5\",\"2.04\",\"0\",\"7\"],"
+            + "[\"64010.7\",\"0.25\",\"0\",\"2\"],[\"64010\",\"1.5\",\"0\",\"3\"]],"
+            + "\"instId\":\"BTC-USDT\",\"ts\":\"1718000000123\",\"seqId\":8812345671}]}";
+
+    private static final String BOOKS_UPDATE = "{\"arg\":{\"channel\":\"books\",\"instId\":\"BTC-USDT\"},\"action\":\"update\",\"data\":[{"
+            + "\"asks\":[[\"64012.4\",\"0\",\"0\",\"0\"],[\"64015.2\",\"0.44\",\"0\",\"2\"]],"
+            + "\"bids\":[[\"64012.2\",\"0.91\",\"0\",\"7\"],[\"64009.6\",\"3.1\",\"0\",\"9\"],[\"64008\",\"0\",\"0\",\"0\"]],"
+            + "\"ts\":\"1718000000223\",\"checksum\":-1283745521,\"prevSeqId\":8812345671,\"seqId\":8812345690}]}";
+
+    private static final String TICKER = "{\"arg\":{\"channel\":\"tickers\",\"instId\":\"BTC-USDT\"},\"data\":[{"
+            + "\"instType\":\"SPOT\",\"instId\":\"BTC-USDT\",\"last\":\"64012.3\",\"lastSz\":\"0.0012\","
+            + "\"askPx\":\"64012.3\",\"askSz\":\"0.51\",\"bidPx\":\"64012.2\",\"bidSz\":\"0.73\","
+            + "\"open24h\":\"63120\",\"high24h\":\"64500\",\"low24h\":\"62880.1\",\"volCcy24h\":\"612345678.9\","
+            + "\"vol24h\":\"9612.55\",\"sodUtc0\":\"63500.1\",\"sodUtc8\":\"63250\",\"ts\":\"1718000000321\"}]}";
+
+    @Param({"books5", "books-update", "ticker"})
+    public String message;
+
+    private String text;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final OkxMessageDecoder decoder = new OkxMessageDecoder();
+
+    @Setup
+    public void setup() {
+        text = switch (message) {
+            case "books5" -> BOOKS5;
+            case "books-update" -> BOOKS_UPDATE;
+            case "ticker" -> TICKER;
+            default -> throw new IllegalArgumentException("Unknown message: " + message);
+        };
+    }
+
+    @Benchmark
+    public void readTree(Blackhole blackhole) throws IOException {
+        JsonNode root = mapper.readTree(text);
+        JsonNode arg = root.get("arg");
+        String channel = arg.get("channel").asText();
+        JsonNode data = root.get("data").get(0);
+        blackhole.consume(channel);
+        blackhole.consume(arg.get("instId").asText());
+        blackhole.consume(data.get("ts").asLong());
+        if ("tickers".equals(channel)) {
+            blackhole.consume(data.get("last").asDouble());
+        } else {
+            consumeLevels(data.get("bids"), blackhole);
+            consumeLevels(data.get("asks"), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void decoder(Blackhole blackhole) throws IOException {
+        OkxMessageDecoder.Kind kind = decoder.decode(text);
+        blackhole.consume(decoder.channel());
+        blackhole.consume(decoder.instId());
+        blackhole.consume(decoder.timestamp());
+        if (kind == OkxMessageDecoder.Kind.TICKER) {
+            blackhole.consume(decoder.lastPrice());
+        } else {
+            consumeLevels(decoder.bids(), blackhole);
+            consumeLevels(decoder.asks(), blackhole);
+        }
+    }
+
+    private static void consumeLevels(JsonNode levels, Blackhole blackhole) {
+        for (JsonNode level : levels) {
+            blackhole.consume(Double.parseDouble(level.get(0).asText()));
+            blackhole.consume(Double.parseDouble(level.get(1).asText()));
+        }
+    }
+
+    private static void consumeLevels(OkxMessageDecoder.Levels levels, Blackhole blackhole) {
+        for (int i = 0; i < levels.count(); i++) {
+            blackhole.consume(levels.price(i));
+            blackhole.consume(levels.size(i));
+        }
+    }
+}
@@ -25,6 +25,12 @@ public class DataSourceConfig {
         return primaryDataSourceProperties().initializeDataSourceBuilder().build();
     }
 
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(primaryDataSource());
+    }
+
     @Bean
     @ConfigurationProperties("clickhouse.datasource")
     public DataSourceProperties clickhouseDataSourceProperties() {
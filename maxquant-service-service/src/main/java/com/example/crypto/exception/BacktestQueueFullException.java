@@ -0,0 +1,11 @@
+package com.example.crypto.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class BacktestQueueFullException extends RuntimeException {
+    public BacktestQueueFullException(String message) {
+        super(message);
+    }
+}
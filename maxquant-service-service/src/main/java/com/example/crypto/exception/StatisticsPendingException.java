@@ -0,0 +1,21 @@
+package com.example.crypto.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 还没有可返回的统计结果，计算任务已提交；调用方按任务 ID 查询进度后重试
+ */
+@ResponseStatus(HttpStatus.ACCEPTED)
+public class StatisticsPendingException extends RuntimeException {
+    private final String jobId;
+
+    public StatisticsPendingException(String jobId, String message) {
+        super(message);
+        this.jobId = jobId;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+}
@@ -5,6 +5,7 @@ import com.example.crypto.dto.CreateBacktestInstanceRequest;
 import com.example.crypto.dto.UpdateBacktestInstanceRequest;
 import com.example.crypto.entity.BacktestInstance;
 import com.example.crypto.entity.StrategyTemplate;
+import com.example.crypto.enums.BacktestPriority;
 import com.example.crypto.enums.BacktestStatus;
 import com.example.crypto.events.BacktestCompletionEvent;
 import com.example.crypto.repository.BacktestInstanceRepository;
@@ -105,7 +106,7 @@ public class BacktestInstanceService {
     }
 
     @Transactional
-    public BacktestInstanceDto runInstance(Long id, String authorizationHeader) {
+    public BacktestInstanceDto runInstance(Long id, String authorizationHeader, BacktestPriority priority) {
         BacktestInstance instance = findInstanceById(id);
         checkAccess(instance);
         instance.setStatus(BacktestStatus.RUNNING);
@@ -124,11 +125,21 @@ public class BacktestInstanceService {
         // Fetch the strategy code from the template and inject it into the params
         String finalParamsJson = prepareParamsWithStrategyCode(instance);
         
-        backtestService.runBacktest(id.toString(), finalParamsJson, token);
+        backtestService.runBacktest(id.toString(), finalParamsJson, token, priority);
         
         BacktestInstance runningInstance = backtestInstanceRepository.save(instance);
         return toDto(runningInstance);
     }
+
+    /**
+     * 取消排队中或执行中的回测；状态由完成事件更新为 CANCELLED
+     * @return 该实例没有排队中或执行中的回测时返回 false
+     */
+    public boolean cancelInstance(Long id) {
+        BacktestInstance instance = findInstanceById(id);
+        checkAccess(instance);
+        return backtestService.cancelBacktest(id.toString());
+    }
     
     @EventListener
     @Transactional
@@ -1,16 +1,64 @@
 package com.example.crypto.service;
 
+import com.example.crypto.dto.BacktestLogChunk;
+import com.example.crypto.dto.BacktestLogPage;
 import com.example.crypto.dto.BacktestReportDto;
+import com.example.crypto.dto.BacktestReportSummary;
+import com.example.crypto.dto.ReportTablePage;
+import com.example.crypto.enums.BacktestReportTable;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
 
 public interface BacktestReportService {
 
     BacktestReportDto getBacktestReport(String strategyName, String timestamp) throws IOException;
 
+    /**
+     * 只读取 all_performance.csv（汇总指标），用于参数扫描等只需要汇总结果的场景
+     */
+    List<Map<String, String>> getPerformance(String strategyName, String timestamp) throws IOException;
+
+    /**
+     * 汇总指标、分期指标和各明细表的列定义（来自列式存储，带 LRU 缓存）
+     */
+    BacktestReportSummary getReportSummary(String strategyName, String timestamp) throws IOException;
+
+    /**
+     * 明细表的一页，可指定返回的列和排序列
+     */
+    ReportTablePage getReportTable(String strategyName, String timestamp, BacktestReportTable table, int offset, int limit,
+                                   List<String> columns, String sort, boolean descending) throws IOException;
+
+    /**
+     * 把报告 CSV 转换为列式存储并建立日志行索引，回测结束时调用
+     */
+    void indexReport(String strategyName, String timestamp) throws IOException;
+
+    /**
+     * 整个日志作为字符串返回，超过 backtest.log.max-inline-bytes 时报错（大日志使用下面的分段读取）
+     */
     String getBacktestLog(String strategyName, String timestamp) throws IOException;
 
+    long getBacktestLogSize(String strategyName, String timestamp) throws IOException;
+
+    BacktestLogPage getBacktestLogLines(String strategyName, String timestamp, long from, int limit) throws IOException;
+
+    BacktestLogPage tailBacktestLog(String strategyName, String timestamp, int lines) throws IOException;
+
+    BacktestLogPage grepBacktestLog(String strategyName, String timestamp, String pattern, boolean regex,
+                                    boolean ignoreCase, long from, int limit) throws IOException;
+
+    BacktestLogChunk getBacktestLogBytes(String strategyName, String timestamp, long offset, int length) throws IOException;
+
+    /**
+     * 把日志写到 out，pattern 不为空时只写匹配的行
+     */
+    void streamBacktestLog(String strategyName, String timestamp, String pattern, boolean regex, boolean ignoreCase,
+                           OutputStream out) throws IOException;
+
     List<String> getAvailableTimestamps(String strategyName) throws IOException;
     
     void deleteBacktestReport(String strategyName, String timestamp) throws IOException;
@@ -2,9 +2,11 @@ package com.example.crypto.service;
 
 import com.example.crypto.dto.BacktestRequest;
 import com.example.crypto.dto.BacktestRunRequest;
+import com.example.crypto.enums.BacktestPriority;
 
 public interface BacktestService {
-    void runBacktest(String backtestId, BacktestRequest request, String token);
-    void runBacktest(String backtestId, BacktestRunRequest request, String token);
-    void runBacktest(String backtestId, String paramsJson, String token);
+    void runBacktest(String backtestId, BacktestRequest request, String token, BacktestPriority priority);
+    void runBacktest(String backtestId, BacktestRunRequest request, String token, BacktestPriority priority);
+    void runBacktest(String backtestId, String paramsJson, String token, BacktestPriority priority);
+    boolean cancelBacktest(String backtestId);
 }
\ No newline at end of file
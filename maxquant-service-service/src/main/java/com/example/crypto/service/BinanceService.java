@@ -1,6 +1,7 @@
 package com.example.crypto.service;
 
 import com.example.crypto.entity.CryptoMetadata;
+import com.example.crypto.entity.KlineData;
 import java.util.List;
 
 /**
@@ -10,6 +11,8 @@ public interface BinanceService {
     void syncInstruments();
     void syncKlineData(String symbol, String timeframe, Long lastTimestamp);
     void syncKlineData(String symbol, String timeframe);
+    Long getLastSyncedTimestamp(String symbol, String timeframe);
+    List<KlineData> fetchHistoricalKlines(String symbol, String timeframe, Long before, int limit);
     void saveRealtimeData(String symbol, double price, long timestamp);
     void saveDepthData(String symbol, String bids, String asks, long timestamp);
     void startWebSocket();
@@ -1,8 +1,24 @@
 package com.example.crypto.service;
 
 import com.example.crypto.entity.DepthData;
+import com.example.crypto.entity.RealtimeData;
+import com.example.crypto.enums.DepthStorageMode;
 import java.util.List;
 
 public interface ClickHouseService {
+    /**
+     * 按 clickhouse.depth.storage-mode 写入 depth_data、depth_book 或两者
+     * 异步写入，失败时由 ClickHouseSink 重试并落盘
+     */
     void saveDepthData(List<DepthData> depthDataList);
+    DepthStorageMode getDepthStorageMode();
+    /**
+     * 把旧表 depth_data 中 [startTime, endTime) 的快照转换后写入 depth_book，返回迁移的行数
+     * depth_book 中已有的快照跳过，重复执行或与双写期间重叠都不会产生重复数据
+     */
+    long migrateLegacyDepthData(long startTime, long endTime);
+    /**
+     * 批量写入逐笔实时价格；异步写入，失败时由 ClickHouseSink 重试并落盘
+     */
+    void saveRealtimeData(List<RealtimeData> ticks);
 } 
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.crypto.service;
+
+import com.example.crypto.entity.KlineBackfillCheckpoint;
+
+import java.util.List;
+
+/**
+ * K线历史回补服务接口
+ */
+public interface KlineBackfillService {
+    /**
+     * 启动（或继续）回补，从已有检查点向过去翻页直到 targetStartTime
+     */
+    KlineBackfillCheckpoint startBackfill(String exchange, String symbol, String timeframe, long targetStartTime);
+    void cancelBackfill(Long id);
+    KlineBackfillCheckpoint getBackfill(Long id);
+    List<KlineBackfillCheckpoint> getBackfills();
+    /**
+     * 重启后继续未完成的回补任务
+     */
+    void resumeUnfinishedBackfills();
+}
@@ -16,6 +16,7 @@ import java.util.List;
 public interface MarketService {
     List<KlineDataDTO> getKlineData(String symbol, String timeframe, Long startTime, Long endTime, String exchange, AssetType assetType);
     RealtimeData getRealtimeData(String symbol, String exchange);
+    List<RealtimeData> getRealtimeData(List<String> symbols, String exchange); // 複数契約の最新価格、データの無い契約は結果に含まれない
     List<CryptoMetadata> getInstruments(String instType, String exchange);
     DepthData getDepthData(String symbol, String exchange);
     List<DepthData> getDepthData(String symbol, String exchange, Long startTime, Long endTime);
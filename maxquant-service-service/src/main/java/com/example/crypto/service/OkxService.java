@@ -1,5 +1,9 @@
 package com.example.crypto.service;
 
+import com.example.crypto.entity.KlineData;
+import com.example.crypto.service.ingest.IngestQueueMetrics;
+import java.util.List;
+
 /**
  * OKX APIサービスインターフェース
  */
@@ -8,8 +12,11 @@ public interface OkxService {
     void syncInstrumentByInstId(String instId); // 新增方法：按ID同步单个合约
     void syncKlineData(String symbol, String timeframe, Long lastTimestamp); // 添加 lastTimestamp 參數
     void syncKlineData(String symbol, String timeframe); // 添加重载方法，只接受两个参数
+    Long getLastSyncedTimestamp(String symbol, String timeframe); // 同步済み最新K線の時間戳、未同期なら null
+    List<KlineData> fetchHistoricalKlines(String symbol, String timeframe, Long before, int limit); // before より古いK線を1ページ取得（null なら最新から）
     void saveRealtimeData(String symbol, double price, long timestamp);
     void saveDepthData(String symbol, String bids, String asks, long timestamp);
     void startWebSocket();
     void updateDepthSubscriptions();
+    IngestQueueMetrics getIngestMetrics(); // WebSocket 接入队列の深さ・破棄件数などの統計
 }
\ No newline at end of file
@@ -1,5 +1,12 @@
 package com.example.crypto.service;
 
+import com.example.crypto.dto.PairScreenResultDto;
+import com.example.crypto.service.statarb.HurstMethod;
+import com.example.crypto.service.statarb.PairScreenCriteria;
+import com.example.crypto.service.statarb.RecalculationJob;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
 import java.util.List;
 import java.util.Map;
 
@@ -8,8 +15,30 @@ import java.util.Map;
  * 提供ADF检验、KPSS检验和Hurst指数计算功能
  */
 public interface StatisticalArbitrageService {
+    /**
+     * ADF / KPSS / Hurst / screen 在还没有任何计算结果时提交计算任务并抛出
+     * {@link com.example.crypto.exception.StatisticsPendingException}，不等待计算完成
+     */
     List<Map<String, Object>> performAdfTest(String timeframe, String exchange);
     List<Map<String, Object>> performKpssTest(String timeframe, String exchange);
     List<Map<String, Object>> performHurstExponentCalculation(String timeframe, String exchange);
+    /**
+     * 使用指定的估计方法计算 Hurst 指数；与默认方法不同时实时计算，不写入数据库
+     */
+    List<Map<String, Object>> performHurstExponentCalculation(String timeframe, String exchange, HurstMethod method);
+    /**
+     * 一次计算得到每个合约对所需的全部统计量，按条件过滤后排序分页
+     * 排序字段：pair、length、adf、kpss、hurst，NaN 始终排在最后
+     * @throws IllegalArgumentException 排序字段不支持时
+     */
+    Page<PairScreenResultDto> screen(String timeframe, String exchange, PairScreenCriteria criteria, Pageable pageable);
+    /**
+     * 同步重新计算（定时任务使用），与进行中的同参数任务共用一次计算
+     */
     void recalculateIndices(String timeframe, String exchange);
+    /**
+     * 提交重新计算任务并立即返回；相同 (timeframe, exchange) 的任务执行中时返回该任务
+     */
+    RecalculationJob submitRecalculation(String timeframe, String exchange);
+    RecalculationJob getRecalculationJob(String id);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.example.crypto.service;
 
 import com.example.crypto.entity.Subscription;
 import com.example.crypto.enums.AssetType;
+import com.example.crypto.enums.DepthCaptureMode;
 
 import java.util.List;
 
@@ -10,7 +11,7 @@ import java.util.List;
  * 訂閱情報の操作を定義
  */
 public interface SubscriptionService {
-    Subscription subscribe(String username, String symbol, String dataType, String instType, String timeframe, String exchange, AssetType assetType);
+    Subscription subscribe(String username, String symbol, String dataType, String instType, String timeframe, String exchange, AssetType assetType, DepthCaptureMode depthCaptureMode);
     void unsubscribe(String username, String symbol, String dataType, String exchange);
     List<Subscription> getSubscriptionsByUsername(String username);
     List<Subscription> getSubscriptionsByDataType(String dataType);
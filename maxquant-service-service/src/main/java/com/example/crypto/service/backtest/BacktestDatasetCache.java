@@ -0,0 +1,472 @@
+package com.example.crypto.service.backtest;
+
+import com.example.crypto.dao.KlineDataRepository;
+import com.example.crypto.entity.DepthData;
+import com.example.crypto.entity.KlineData;
+import com.example.crypto.service.MarketService;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.kline.KlineSlice;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * 回测行情数据集的共享文件缓存
+ * 回测开始前把配置中的 (symbols, K线周期, 区间, 深度) 数据一次性写成列式文件（格式见 {@link DatasetFileWriter}），
+ * 文件路径通过 DATASET_FILE 传给 runner，runner 以 mmap 只读打开，不再逐根通过 HTTP 拉取K线。
+ * 相同数据集的回测共用同一个文件，多个 Python 进程 mmap 同一文件时共享操作系统页缓存；
+ * 同一数据集的并发构建只执行一次，其余回测等待构建结果。
+ * 文件总大小超过上限时按 LRU 删除没有回测在使用的文件。
+ * 区间结束时间距构建时间不足 recent-ttl 的数据集（可能还有新K线写入）只在 recent-ttl 内复用。
+ * 构建失败时不传 DATASET_FILE，runner 按原方式通过 RATES_URL 取数。
+ */
+@Component
+public class BacktestDatasetCache {
+    private static final Logger logger = LoggerFactory.getLogger(BacktestDatasetCache.class);
+    private static final String FILE_SUFFIX = ".mqds";
+
+    private final KlineColumnCache klineColumnCache;
+    private final KlineDataRepository klineDataRepository;
+    private final MarketService marketService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${backtest.dataset.enabled:true}")
+    private boolean enabled;
+
+    // 为空时使用 java.io.tmpdir/maxquant-datasets
+    @Value("${backtest.dataset.cache-dir:}")
+    private String cacheDirPath;
+
+    @Value("${backtest.dataset.max-cache-mb:4096}")
+    private long maxCacheMb;
+
+    // 深度数据写入的档位数，不足的以 NaN 补齐
+    @Value("${backtest.dataset.depth-levels:20}")
+    private int depthLevels;
+
+    @Value("${backtest.dataset.depth-page-size:100000}")
+    private int depthPageSize;
+
+    // 配置中没有 EXCHANGE 时使用的交易所
+    @Value("${backtest.dataset.default-exchange:okx}")
+    private String defaultExchange;
+
+    @Value("${backtest.dataset.recent-ttl-seconds:300}")
+    private long recentTtlSeconds;
+
+    private final Object lock = new Object();
+    // key -> 当前可用的数据集文件（访问顺序，用于 LRU）
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 已被新版本替换、但仍有回测在使用的文件，使用结束后删除
+    private final List<Entry> retired = new ArrayList<>();
+    // key -> 构建中的数据集
+    private final Map<String, CompletableFuture<Entry>> building = new HashMap<>();
+    private Path cacheDir;
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long builds;
+    private long buildFailures;
+    private long evictions;
+    private long totalBuildMs;
+
+    public BacktestDatasetCache(KlineColumnCache klineColumnCache, KlineDataRepository klineDataRepository,
+                                MarketService marketService, ObjectMapper objectMapper) {
+        this.klineColumnCache = klineColumnCache;
+        this.klineDataRepository = klineDataRepository;
+        this.marketService = marketService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheDir = cacheDirPath.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "maxquant-datasets")
+                : Paths.get(cacheDirPath).toAbsolutePath();
+        try {
+            Files.createDirectories(cacheDir);
+            loadExisting();
+        } catch (IOException e) {
+            logger.error("回测数据集缓存目录初始化失败，禁用数据集缓存: dir={}, error={}", cacheDir, e.getMessage(), e);
+            enabled = false;
+        }
+    }
+
+    /**
+     * 取得配置对应的数据集文件（需要时构建），使用结束后关闭返回的租约
+     * @return 未启用、配置中没有可识别的数据集或构建失败时返回 null
+     * @throws InterruptedException 等待其他回测构建同一数据集时被中断
+     */
+    public DatasetLease acquire(Map<String, Object> config) throws InterruptedException {
+        if (!enabled) {
+            return null;
+        }
+        DatasetSpec spec = DatasetSpec.from(config, defaultExchange);
+        if (spec == null) {
+            return null;
+        }
+        String key = spec.key(depthLevels);
+        while (true) {
+            CompletableFuture<Entry> future;
+            boolean owner = false;
+            synchronized (lock) {
+                Entry entry = entries.get(key);
+                if (entry != null && isFresh(entry)) {
+                    entry.refs++;
+                    hits++;
+                    return new DatasetLease(entry);
+                }
+                future = building.get(key);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    building.put(key, future);
+                    misses++;
+                    owner = true;
+                }
+            }
+            if (owner) {
+                return build(key, spec, future);
+            }
+            try {
+                if (future.get() == null) {
+                    return null;
+                }
+            } catch (ExecutionException e) {
+                return null;
+            }
+            // 构建完成，回到循环开头取得引用（期间可能已被替换，循环会重新判断）
+        }
+    }
+
+    public DatasetCacheMetrics metrics() {
+        synchronized (lock) {
+            int leases = 0;
+            for (Entry entry : entries.values()) {
+                leases += entry.refs;
+            }
+            for (Entry entry : retired) {
+                leases += entry.refs;
+            }
+            return new DatasetCacheMetrics(enabled, cacheDir != null ? cacheDir.toString() : null,
+                    entries.size(), totalBytes, maxCacheMb * 1024 * 1024, leases, building.size(),
+                    hits, misses, builds, buildFailures, evictions, builds > 0 ? (double) totalBuildMs / builds : 0);
+        }
+    }
+
+    private DatasetLease build(String key, DatasetSpec spec, CompletableFuture<Entry> future) {
+        long startNanos = System.nanoTime();
+        long createdAt = System.currentTimeMillis();
+        Path target = cacheDir.resolve(key + "-" + createdAt + FILE_SUFFIX);
+        Path temp = cacheDir.resolve(target.getFileName() + ".tmp");
+        Entry entry;
+        try {
+            materialize(spec, temp, createdAt);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            entry = new Entry(key, target, Files.size(target), createdAt, spec.end());
+        } catch (IOException | RuntimeException e) {
+            logger.error("回测数据集构建失败: key={}, symbols={}, error={}", key, spec.symbols(), e.getMessage(), e);
+            deleteQuietly(temp);
+            synchronized (lock) {
+                building.remove(key);
+                buildFailures++;
+            }
+            future.complete(null);
+            return null;
+        }
+
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        synchronized (lock) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+                retire(previous);
+            }
+            totalBytes += entry.size;
+            entry.refs++;
+            building.remove(key);
+            builds++;
+            totalBuildMs += elapsedMs;
+            evict();
+        }
+        future.complete(entry);
+        logger.info("回测数据集已构建: file={}, symbols={}, timeframes={}, depth={}, bytes={}, elapsedMs={}",
+                target.getFileName(), spec.symbols(), spec.timeframes(), spec.depth(), entry.size, elapsedMs);
+        return new DatasetLease(entry);
+    }
+
+    private void materialize(DatasetSpec spec, Path temp, long createdAt) throws IOException {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("exchange", spec.exchange());
+        meta.put("start", spec.start());
+        meta.put("end", spec.end());
+        meta.put("created", createdAt);
+        try (DatasetFileWriter writer = new DatasetFileWriter(temp, meta, objectMapper)) {
+            for (String symbol : spec.symbols()) {
+                for (String timeframe : spec.timeframes()) {
+                    writeKlines(writer.klines(symbol, timeframe), spec, symbol, timeframe);
+                }
+                if (spec.depth()) {
+                    writeDepth(writer.depth(symbol, depthLevels), spec, symbol);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * 优先从列式K线缓存读取，未命中时查询数据库并写入缓存（与K线接口相同的路径）
+     */
+    private void writeKlines(DatasetFileWriter.SeriesWriter series, DatasetSpec spec, String symbol, String timeframe)
+            throws IOException {
+        KlineSlice slice = klineColumnCache.find(spec.exchange(), symbol, timeframe, spec.start(), spec.end());
+        if (slice == null) {
+            long version = klineColumnCache.beginLoad(spec.exchange(), symbol, timeframe);
+            List<KlineData> bars = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(
+                    symbol, timeframe, spec.start(), spec.end(), spec.exchange());
+            klineColumnCache.load(version, spec.exchange(), symbol, timeframe, spec.start(), spec.end(), bars);
+            slice = klineColumnCache.find(spec.exchange(), symbol, timeframe, spec.start(), spec.end());
+            if (slice == null) {
+                slice = KlineSlice.of(bars, symbol, timeframe);
+            }
+        }
+        for (int i = 0; i < slice.size(); i++) {
+            series.appendKline(slice.timestamp(i), slice.open(i), slice.high(i), slice.low(i), slice.close(i), slice.volume(i));
+        }
+    }
+
+    /**
+     * 按页读取深度快照；ClickHouse depth_book 的数据直接使用价格、数量数组，旧表的数据解析 JSON
+     */
+    private void writeDepth(DatasetFileWriter.SeriesWriter series, DatasetSpec spec, String symbol) throws IOException {
+        long cursor = spec.start();
+        while (cursor <= spec.end()) {
+            List<DepthData> page = marketService.getDepthDataPage(symbol, spec.exchange(), cursor, spec.end() + 1, depthPageSize);
+            for (DepthData snapshot : page) {
+                if (snapshot.getBidPrices() != null) {
+                    series.appendDepth(snapshot.getTimestamp(), snapshot.getBidPrices(), snapshot.getBidSizes(),
+                            snapshot.getAskPrices(), snapshot.getAskSizes());
+                } else {
+                    double[][] bids = parseLevels(snapshot.getBids());
+                    double[][] asks = parseLevels(snapshot.getAsks());
+                    series.appendDepth(snapshot.getTimestamp(), bids[0], bids[1], asks[0], asks[1]);
+                }
+            }
+            if (page.size() < depthPageSize) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getTimestamp() + 1;
+        }
+    }
+
+    /**
+     * [["价格","数量"], ...] 形式的 JSON 解析为 {价格数组, 数量数组}
+     */
+    private double[][] parseLevels(String json) throws IOException {
+        if (json == null || json.isBlank()) {
+            return new double[][]{new double[0], new double[0]};
+        }
+        JsonNode levels = objectMapper.readTree(json);
+        int n = Math.min(levels.size(), depthLevels);
+        double[] prices = new double[n];
+        double[] sizes = new double[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode level = levels.get(i);
+            prices[i] = level.path(0).asDouble(Double.NaN);
+            sizes[i] = level.path(1).asDouble(Double.NaN);
+        }
+        return new double[][]{prices, sizes};
+    }
+
+    private boolean isFresh(Entry entry) {
+        long ttlMs = recentTtlSeconds * 1000;
+        return entry.dataEnd <= entry.createdAt - ttlMs || System.currentTimeMillis() - entry.createdAt < ttlMs;
+    }
+
+    private void release(Entry entry) {
+        synchronized (lock) {
+            entry.refs--;
+            if (entry.refs == 0 && retired.remove(entry)) {
+                deleteQuietly(entry.path);
+            } else {
+                evict();
+            }
+        }
+    }
+
+    // 调用方持有 lock
+    private void retire(Entry entry) {
+        if (entry.refs > 0) {
+            retired.add(entry);
+        } else {
+            deleteQuietly(entry.path);
+        }
+    }
+
+    /**
+     * 超过容量时从最久未使用的开始删除没有被使用的文件；调用方持有 lock
+     */
+    private void evict() {
+        long maxBytes = maxCacheMb * 1024 * 1024;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refs > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.size;
+            evictions++;
+            deleteQuietly(entry.path);
+            logger.info("回测数据集已淘汰: file={}, bytes={}", entry.path.getFileName(), entry.size);
+        }
+    }
+
+    /**
+     * 启动时登记缓存目录中已有的数据集文件（同一 key 只保留最新的），删除未完成的临时文件
+     */
+    private void loadExisting() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(cacheDir)) {
+            files = stream.sorted(Comparator.comparing(Path::toString)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp") || name.startsWith(".spool-")) {
+                deleteRecursively(file);
+                continue;
+            }
+            if (!name.endsWith(FILE_SUFFIX)) {
+                continue;
+            }
+            String[] parts = name.substring(0, name.length() - FILE_SUFFIX.length()).split("-");
+            try {
+                Entry entry = new Entry(parts[0], file, Files.size(file), Long.parseLong(parts[1]), readDataEnd(file));
+                Entry previous = entries.get(entry.key);
+                if (previous != null && previous.createdAt >= entry.createdAt) {
+                    deleteQuietly(file);
+                    continue;
+                }
+                if (previous != null) {
+                    totalBytes -= previous.size;
+                    deleteQuietly(previous.path);
+                }
+                entries.put(entry.key, entry);
+                totalBytes += entry.size;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("无法识别的回测数据集文件，已删除: file={}, error={}", name, e.getMessage());
+                deleteQuietly(file);
+            }
+        }
+        evict();
+        logger.info("回测数据集缓存已加载: dir={}, files={}, bytes={}", cacheDir, entries.size(), totalBytes);
+    }
+
+    private long readDataEnd(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            while (preamble.hasRemaining() && channel.read(preamble) >= 0) {
+                // 读满 24 字节
+            }
+            byte[] magic = new byte[DatasetFileWriter.MAGIC.length];
+            preamble.flip().get(magic);
+            if (!Arrays.equals(magic, DatasetFileWriter.MAGIC)) {
+                throw new IOException("bad magic");
+            }
+            ByteBuffer header = ByteBuffer.allocate(Math.toIntExact(preamble.getLong()));
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // 读满头部
+            }
+            return objectMapper.readTree(header.array()).path("end").asLong();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.list(path)) {
+                for (Path child : stream.toList()) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("回测数据集文件删除失败: file={}, error={}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final Path path;
+        final long size;
+        final long createdAt;
+        final long dataEnd;
+        // 使用中的回测数，由 lock 保护
+        int refs;
+
+        Entry(String key, Path path, long size, long createdAt, long dataEnd) {
+            this.key = key;
+            this.path = path;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.dataEnd = dataEnd;
+        }
+    }
+
+    /**
+     * 一次回测对数据集文件的使用；关闭前文件不会被淘汰
+     */
+    public final class DatasetLease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private DatasetLease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Path path() {
+            return entry.path;
+        }
+
+        public String format() {
+            return DatasetFileWriter.FORMAT;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.crypto.service.backtest;
+
+/**
+ * 回测队列的运行统计（计数为自启动以来的累计值）
+ * maxConcurrent 与回测进程池大小一致；avgRunSeconds 为估算排队时间所用的平均执行时长
+ */
+public record BacktestQueueMetrics(
+        int maxConcurrent,
+        int running,
+        int queued,
+        int maxQueued,
+        int maxQueuedPerUser,
+        long submitted,
+        long rejected,
+        long cancelled,
+        long finished,
+        double avgRunSeconds
+) {
+}
@@ -0,0 +1,346 @@
+package com.example.crypto.service.backtest;
+
+import com.example.crypto.enums.BacktestPriority;
+import com.example.crypto.exception.BacktestQueueFullException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 回测调度队列
+ * 同时执行的回测数不超过回测进程池大小（按 CPU 核数、内存确定），超出的回测排队，队列长度有上限。
+ * 出队顺序：优先级高的先执行；同优先级时，正在执行（含排在前面）的回测较少的用户优先，实现按用户公平分配；
+ * 再按提交顺序。
+ * 队列变化时向每个排队中的回测的 /topic/backtest/{id} 推送 queued 消息（排队位置、预计开始时间），
+ * 预计开始时间按执行中回测的开始时间和平均执行时长推算。
+ * 排队中的回测取消后直接出队；执行中的回测取消时中断执行线程，由进程池结束对应的 Python 进程并释放位置。
+ */
+@Component
+public class BacktestScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(BacktestScheduler.class);
+    private static final String DESTINATION_PREFIX = "/topic/backtest/";
+    // 平均执行时长的指数平滑系数
+    private static final double RUN_TIME_ALPHA = 0.2;
+    private static final Comparator<Job> USER_QUEUE_ORDER = Comparator
+            .comparing((Job job) -> job.priority).reversed()
+            .thenComparingLong(job -> job.sequence);
+
+    private final PythonWorkerPool workerPool;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${backtest.scheduler.max-queued:200}")
+    private int maxQueued;
+
+    @Value("${backtest.scheduler.max-queued-per-user:20}")
+    private int maxQueuedPerUser;
+
+    // 还没有完成过回测时，估算排队时间使用的执行时长
+    @Value("${backtest.scheduler.default-run-seconds:120}")
+    private long defaultRunSeconds;
+
+    private final Object lock = new Object();
+    // user -> 该用户排队中的回测（按优先级、提交顺序）
+    private final Map<String, PriorityQueue<Job>> queues = new HashMap<>();
+    // backtestId -> 排队中或执行中的回测
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Map<String, Integer> runningByUser = new HashMap<>();
+    private int maxConcurrent;
+    private int running;
+    private int queued;
+    private long sequence;
+    private double avgRunMs;
+    private long submitted;
+    private long rejected;
+    private long cancelled;
+    private long finished;
+    private ExecutorService runners;
+
+    public BacktestScheduler(PythonWorkerPool workerPool, SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.workerPool = workerPool;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        maxConcurrent = workerPool.poolSize();
+        avgRunMs = defaultRunSeconds * 1000.0;
+        AtomicInteger threadIndex = new AtomicInteger();
+        runners = Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread thread = new Thread(r, "backtest-runner-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("回测调度队列已启动: maxConcurrent={}, maxQueued={}, maxQueuedPerUser={}", maxConcurrent, maxQueued, maxQueuedPerUser);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 中断执行中的回测，由各任务按取消处理
+        runners.shutdownNow();
+    }
+
+    /**
+     * 提交回测；有空闲位置时立即开始，否则排队
+     * @throws BacktestQueueFullException 队列已满或该用户排队数达到上限
+     * @throws IllegalStateException 同一 backtestId 已在排队或执行中
+     */
+    public void submit(String backtestId, String user, BacktestPriority priority, BacktestTask task) {
+        List<QueueNotification> notifications;
+        synchronized (lock) {
+            if (jobs.containsKey(backtestId)) {
+                throw new IllegalStateException("Backtest " + backtestId + " is already queued or running.");
+            }
+            PriorityQueue<Job> userQueue = queues.get(user);
+            if (queued >= maxQueued) {
+                rejected++;
+                throw new BacktestQueueFullException("Backtest queue is full (" + maxQueued + " backtests waiting).");
+            }
+            if (userQueue != null && userQueue.size() >= maxQueuedPerUser) {
+                rejected++;
+                throw new BacktestQueueFullException("Too many queued backtests for user " + user + " (limit " + maxQueuedPerUser + ").");
+            }
+            Job job = new Job(backtestId, user, priority, task, sequence++);
+            jobs.put(backtestId, job);
+            queues.computeIfAbsent(user, k -> new PriorityQueue<>(USER_QUEUE_ORDER)).add(job);
+            queued++;
+            submitted++;
+            dispatch();
+            notifications = positions();
+        }
+        logger.info("回测已提交: backtestId={}, user={}, priority={}", backtestId, user, priority);
+        publish(notifications);
+    }
+
+    /**
+     * 取消排队中或执行中的回测
+     * @return 回测不在队列中且未在执行时返回 false
+     */
+    public boolean cancel(String backtestId) {
+        Job job;
+        List<QueueNotification> notifications;
+        synchronized (lock) {
+            job = jobs.get(backtestId);
+            if (job == null) {
+                return false;
+            }
+            if (job.dispatched) {
+                job.cancelRequested = true;
+                if (job.thread != null) {
+                    job.thread.interrupt();
+                }
+                logger.info("取消执行中的回测: backtestId={}", backtestId);
+                return true;
+            }
+            PriorityQueue<Job> userQueue = queues.get(job.user);
+            userQueue.remove(job);
+            if (userQueue.isEmpty()) {
+                queues.remove(job.user);
+            }
+            queued--;
+            jobs.remove(backtestId);
+            cancelled++;
+            notifications = positions();
+        }
+        logger.info("取消排队中的回测: backtestId={}", backtestId);
+        try {
+            job.task.cancelled();
+        } catch (RuntimeException e) {
+            logger.error("回测取消处理失败: backtestId={}, error={}", backtestId, e.getMessage(), e);
+        }
+        publish(notifications);
+        return true;
+    }
+
+    public BacktestQueueMetrics metrics() {
+        synchronized (lock) {
+            return new BacktestQueueMetrics(maxConcurrent, running, queued, maxQueued, maxQueuedPerUser,
+                    submitted, rejected, cancelled, finished, avgRunMs / 1000);
+        }
+    }
+
+    /**
+     * 在有空闲位置时按出队顺序启动回测（调用方持有 lock）
+     */
+    private void dispatch() {
+        while (running < maxConcurrent && queued > 0) {
+            Job next = selectNext(queues, runningByUser);
+            PriorityQueue<Job> userQueue = queues.get(next.user);
+            userQueue.poll();
+            if (userQueue.isEmpty()) {
+                queues.remove(next.user);
+            }
+            queued--;
+            running++;
+            runningByUser.merge(next.user, 1, Integer::sum);
+            next.dispatched = true;
+            next.startedAt = System.currentTimeMillis();
+            runners.execute(() -> runJob(next));
+        }
+    }
+
+    private void runJob(Job job) {
+        boolean cancelledBeforeStart;
+        synchronized (lock) {
+            job.thread = Thread.currentThread();
+            cancelledBeforeStart = job.cancelRequested;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (cancelledBeforeStart) {
+                job.task.cancelled();
+            } else {
+                job.task.run();
+            }
+        } catch (RuntimeException e) {
+            logger.error("回测任务异常: backtestId={}, error={}", job.backtestId, e.getMessage(), e);
+        } finally {
+            List<QueueNotification> notifications;
+            synchronized (lock) {
+                job.thread = null;
+                // 清除回测结束后才到达的取消中断，线程会被复用
+                Thread.interrupted();
+                running--;
+                runningByUser.computeIfPresent(job.user, (k, count) -> count > 1 ? count - 1 : null);
+                jobs.remove(job.backtestId);
+                finished++;
+                if (job.cancelRequested) {
+                    cancelled++;
+                } else {
+                    avgRunMs += RUN_TIME_ALPHA * ((System.currentTimeMillis() - start) - avgRunMs);
+                }
+                dispatch();
+                notifications = positions();
+            }
+            publish(notifications);
+        }
+    }
+
+    /**
+     * 排队中回测的位置和预计开始时间（调用方持有 lock）
+     * 按出队规则模拟依次出队；各执行位置的空闲时间按 开始时间 + 平均执行时长 估算。
+     */
+    private List<QueueNotification> positions() {
+        if (queued == 0) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        long avg = Math.round(avgRunMs);
+        PriorityQueue<Long> slotFreeAt = new PriorityQueue<>();
+        for (Job job : jobs.values()) {
+            if (job.dispatched) {
+                slotFreeAt.add(Math.max(now, job.startedAt + avg));
+            }
+        }
+        while (slotFreeAt.size() < maxConcurrent) {
+            slotFreeAt.add(now);
+        }
+        Map<String, PriorityQueue<Job>> remaining = new HashMap<>();
+        queues.forEach((user, queue) -> remaining.put(user, new PriorityQueue<>(queue)));
+        Map<String, Integer> counts = new HashMap<>(runningByUser);
+        List<QueueNotification> notifications = new ArrayList<>(queued);
+        for (int position = 1; position <= queued; position++) {
+            Job next = selectNext(remaining, counts);
+            PriorityQueue<Job> userQueue = remaining.get(next.user);
+            userQueue.poll();
+            if (userQueue.isEmpty()) {
+                remaining.remove(next.user);
+            }
+            counts.merge(next.user, 1, Integer::sum);
+            long estimatedStart = slotFreeAt.poll();
+            slotFreeAt.add(estimatedStart + avg);
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("position", position);
+            data.put("queueLength", queued);
+            data.put("priority", next.priority);
+            data.put("estimatedStartTime", estimatedStart);
+            data.put("estimatedWaitSeconds", (estimatedStart - now) / 1000);
+            notifications.add(new QueueNotification(next.backtestId, data));
+        }
+        return notifications;
+    }
+
+    /**
+     * 各用户队首中最先出队的回测：优先级高的优先，其次正在执行数少的用户优先，最后按提交顺序
+     */
+    private static Job selectNext(Map<String, PriorityQueue<Job>> userQueues, Map<String, Integer> runningCounts) {
+        Job best = null;
+        for (PriorityQueue<Job> queue : userQueues.values()) {
+            Job head = queue.peek();
+            if (head == null) {
+                continue;
+            }
+            if (best == null || before(head, best, runningCounts)) {
+                best = head;
+            }
+        }
+        return best;
+    }
+
+    private static boolean before(Job a, Job b, Map<String, Integer> runningCounts) {
+        if (a.priority != b.priority) {
+            return a.priority.compareTo(b.priority) > 0;
+        }
+        int runningA = runningCounts.getOrDefault(a.user, 0);
+        int runningB = runningCounts.getOrDefault(b.user, 0);
+        if (runningA != runningB) {
+            return runningA < runningB;
+        }
+        return a.sequence < b.sequence;
+    }
+
+    private void publish(List<QueueNotification> notifications) {
+        for (QueueNotification notification : notifications) {
+            try {
+                String payload = objectMapper.writeValueAsString(Map.of("type", "queued", "data", notification.data()));
+                messagingTemplate.convertAndSend(DESTINATION_PREFIX + notification.backtestId(), payload);
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to serialize queue position for backtest {}", notification.backtestId(), e);
+            }
+        }
+    }
+
+    private record QueueNotification(String backtestId, Map<String, Object> data) {
+    }
+
+    private static final class Job {
+        final String backtestId;
+        final String user;
+        final BacktestPriority priority;
+        final BacktestTask task;
+        final long sequence;
+        // 以下字段在 lock 内读写
+        boolean dispatched;
+        boolean cancelRequested;
+        long startedAt;
+        Thread thread;
+
+        Job(String backtestId, String user, BacktestPriority priority, BacktestTask task, long sequence) {
+            this.backtestId = backtestId;
+            this.user = user;
+            this.priority = priority;
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+}
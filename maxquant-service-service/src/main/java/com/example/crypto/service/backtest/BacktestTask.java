@@ -0,0 +1,17 @@
+package com.example.crypto.service.backtest;
+
+/**
+ * 提交给 {@link BacktestScheduler} 的一次回测
+ */
+public interface BacktestTask {
+
+    /**
+     * 轮到该回测时在调度线程中执行；执行中被取消时线程会被中断
+     */
+    void run();
+
+    /**
+     * 排队期间被取消（run 不会再被调用）
+     */
+    void cancelled();
+}
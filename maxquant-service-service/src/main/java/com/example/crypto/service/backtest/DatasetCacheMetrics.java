@@ -0,0 +1,23 @@
+package com.example.crypto.service.backtest;
+
+/**
+ * 回测数据集文件缓存的运行统计（计数为自启动以来的累计值）
+ * activeLeases 为正在使用数据集文件的回测数，buildingDatasets 为构建中的数据集数，
+ * hits 为直接复用已有文件的次数，misses 为需要构建（或等待其他回测构建）的次数
+ */
+public record DatasetCacheMetrics(
+        boolean enabled,
+        String cacheDir,
+        int datasets,
+        long totalBytes,
+        long maxBytes,
+        int activeLeases,
+        int buildingDatasets,
+        long hits,
+        long misses,
+        long builds,
+        long buildFailures,
+        long evictions,
+        double avgBuildMs
+) {
+}
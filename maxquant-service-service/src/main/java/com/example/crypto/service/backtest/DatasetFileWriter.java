@@ -0,0 +1,273 @@
+package com.example.crypto.service.backtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 回测数据集文件（列式、可直接 mmap）的写入器
+ * 文件布局（小端）：
+ * <pre>
+ *   0  magic "MQDSET1\n"
+ *   8  int64 头部 JSON 长度
+ *   16 int64 数据区起始位置（64 字节对齐）
+ *   24 头部 JSON：各序列的 symbol/kind/timeframe/rows 以及每列的 dtype、shape、相对数据区的 offset
+ *   数据区：各列连续存放，每列 64 字节对齐；时间戳为 &lt;i8，价格、数量为 &lt;f8（缺失为 NaN）
+ * </pre>
+ * 深度序列的价格、数量列为 [rows, levels] 的二维列，档位不足时以 NaN 补齐。
+ * 写入过程中每列先顺序写到单独的临时文件，finish 时再拼接，内存占用与数据量无关。
+ */
+final class DatasetFileWriter implements Closeable {
+    static final byte[] MAGIC = "MQDSET1\n".getBytes(StandardCharsets.US_ASCII);
+    static final String FORMAT = "mqds-v1";
+    private static final int ALIGNMENT = 64;
+    private static final int PREAMBLE_BYTES = 24;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path target;
+    private final Path spoolDir;
+    private final Map<String, Object> meta;
+    private final ObjectMapper objectMapper;
+    private final List<SeriesWriter> series = new ArrayList<>();
+
+    /**
+     * @param meta 写入头部的数据集描述（交易所、区间等）
+     */
+    DatasetFileWriter(Path target, Map<String, Object> meta, ObjectMapper objectMapper) throws IOException {
+        this.target = target;
+        this.meta = meta;
+        this.objectMapper = objectMapper;
+        this.spoolDir = Files.createTempDirectory(target.getParent(), ".spool-");
+    }
+
+    SeriesWriter klines(String symbol, String timeframe) throws IOException {
+        SeriesWriter writer = new SeriesWriter(symbol, "kline", timeframe, 1,
+                List.of("timestamp", "open", "high", "low", "close", "volume"));
+        series.add(writer);
+        return writer;
+    }
+
+    SeriesWriter depth(String symbol, int levels) throws IOException {
+        SeriesWriter writer = new SeriesWriter(symbol, "depth", null, levels,
+                List.of("timestamp", "bid_price", "bid_size", "ask_price", "ask_size"));
+        series.add(writer);
+        return writer;
+    }
+
+    /**
+     * 拼接头部和各列，写入目标文件
+     */
+    void finish() throws IOException {
+        List<Map<String, Object>> seriesHeaders = new ArrayList<>();
+        long offset = 0;
+        for (SeriesWriter writer : series) {
+            Map<String, Object> columns = new LinkedHashMap<>();
+            for (Column column : writer.columns) {
+                column.flush();
+                offset = align(offset);
+                column.offset = offset;
+                offset += column.bytes;
+                Map<String, Object> columnHeader = new LinkedHashMap<>();
+                columnHeader.put("dtype", column.dtype);
+                columnHeader.put("shape", column.levels ? List.of(writer.rows, column.width) : List.of(writer.rows));
+                columnHeader.put("offset", column.offset);
+                columns.put(column.name, columnHeader);
+            }
+            Map<String, Object> seriesHeader = new LinkedHashMap<>();
+            seriesHeader.put("symbol", writer.symbol);
+            seriesHeader.put("kind", writer.kind);
+            if (writer.timeframe != null) {
+                seriesHeader.put("timeframe", writer.timeframe);
+            }
+            if ("depth".equals(writer.kind)) {
+                seriesHeader.put("levels", writer.width);
+            }
+            seriesHeader.put("rows", writer.rows);
+            seriesHeader.put("columns", columns);
+            seriesHeaders.add(seriesHeader);
+        }
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("format", FORMAT);
+        header.putAll(meta);
+        header.put("series", seriesHeaders);
+        byte[] headerBytes = objectMapper.writeValueAsBytes(header);
+        long dataOffset = align(PREAMBLE_BYTES + headerBytes.length);
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            preamble.put(MAGIC).putLong(headerBytes.length).putLong(dataOffset).flip();
+            writeFully(out, preamble, 0);
+            writeFully(out, ByteBuffer.wrap(headerBytes), PREAMBLE_BYTES);
+            for (SeriesWriter writer : series) {
+                for (Column column : writer.columns) {
+                    long position = dataOffset + column.offset;
+                    // transferFrom 不会写到文件末尾之后，先补齐对齐间隙
+                    pad(out, position);
+                    long copied = 0;
+                    column.channel.position(0);
+                    while (copied < column.bytes) {
+                        copied += out.transferFrom(column.channel, position + copied, column.bytes - copied);
+                    }
+                }
+            }
+            // 末尾补齐，保证最后一列之后也是对齐的
+            pad(out, align(dataOffset + offset));
+        }
+    }
+
+    private static void pad(FileChannel out, long end) throws IOException {
+        if (out.size() < end) {
+            writeFully(out, ByteBuffer.allocate((int) (end - out.size())), out.size());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (SeriesWriter writer : series) {
+            for (Column column : writer.columns) {
+                try {
+                    column.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(spoolDir);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 一个序列（某个 symbol 的一种K线周期或深度）
+     */
+    final class SeriesWriter {
+        final String symbol;
+        final String kind;
+        final String timeframe;
+        final int width;
+        final List<Column> columns = new ArrayList<>();
+        long rows;
+
+        private SeriesWriter(String symbol, String kind, String timeframe, int width, List<String> names) throws IOException {
+            this.symbol = symbol;
+            this.kind = kind;
+            this.timeframe = timeframe;
+            this.width = width;
+            int index = series.size();
+            for (String name : names) {
+                boolean timestamp = "timestamp".equals(name);
+                Path spool = spoolDir.resolve(index + "-" + name);
+                boolean levels = !timestamp && "depth".equals(kind);
+                columns.add(new Column(name, timestamp ? "<i8" : "<f8", levels ? width : 1, levels, FileChannel.open(spool,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)));
+            }
+        }
+
+        void appendKline(long timestamp, double open, double high, double low, double close, double volume) throws IOException {
+            columns.get(0).putLong(timestamp);
+            columns.get(1).putDouble(open);
+            columns.get(2).putDouble(high);
+            columns.get(3).putDouble(low);
+            columns.get(4).putDouble(close);
+            columns.get(5).putDouble(volume);
+            rows++;
+        }
+
+        void appendDepth(long timestamp, double[] bidPrices, double[] bidSizes, double[] askPrices, double[] askSizes) throws IOException {
+            columns.get(0).putLong(timestamp);
+            columns.get(1).putLevels(bidPrices);
+            columns.get(2).putLevels(bidSizes);
+            columns.get(3).putLevels(askPrices);
+            columns.get(4).putLevels(askSizes);
+            rows++;
+        }
+    }
+
+    private static final class Column {
+        final String name;
+        final String dtype;
+        final int width;
+        // 深度的档位列（二维）
+        final boolean levels;
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long bytes;
+        long offset;
+
+        Column(String name, String dtype, int width, boolean levels, FileChannel channel) {
+            this.name = name;
+            this.dtype = dtype;
+            this.width = width;
+            this.levels = levels;
+            this.channel = channel;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * 写入一行 width 档，多余的档位截断，不足的以 NaN 补齐
+         */
+        void putLevels(double[] values) throws IOException {
+            int n = values == null ? 0 : Math.min(values.length, width);
+            for (int i = 0; i < n; i++) {
+                putDouble(values[i]);
+            }
+            for (int i = n; i < width; i++) {
+                putDouble(Double.NaN);
+            }
+        }
+
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytes += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.crypto.service.backtest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 回测配置中描述的数据集：交易所、symbol、K线周期、是否使用深度、[start, end] 区间（毫秒）
+ */
+record DatasetSpec(String exchange, List<String> symbols, List<String> timeframes, boolean depth, long start, long end) {
+
+    /**
+     * 从 Python runner 的配置解析（SYMBOLS[].WITHOUT_TIME、DATA_TYPE、BACKTEST.START_TIME/END_TIME）
+     * @return 配置中没有 symbol、回测区间或任何数据类型时返回 null
+     */
+    static DatasetSpec from(Map<String, Object> config, String defaultExchange) {
+        if (!(config.get("BACKTEST") instanceof Map<?, ?> backtest)
+                || !(backtest.get("START_TIME") instanceof Number start)
+                || !(backtest.get("END_TIME") instanceof Number end)
+                || end.longValue() <= start.longValue()) {
+            return null;
+        }
+
+        TreeSet<String> symbols = new TreeSet<>();
+        if (config.get("SYMBOLS") instanceof List<?> groups) {
+            for (Object group : groups) {
+                if (group instanceof Map<?, ?> symbolGroup && symbolGroup.get("WITHOUT_TIME") instanceof List<?> names) {
+                    for (Object name : names) {
+                        if (name instanceof String symbol && !symbol.isBlank()) {
+                            symbols.add(symbol);
+                        }
+                    }
+                }
+            }
+        }
+
+        TreeSet<String> timeframes = new TreeSet<>();
+        boolean depth = false;
+        if (config.get("DATA_TYPE") instanceof Map<?, ?> dataType) {
+            depth = Boolean.TRUE.equals(dataType.get("USE_ORDER_BOOK"));
+            if (dataType.get("OHLC") instanceof List<?> ohlcList) {
+                for (Object ohlc : ohlcList) {
+                    if (ohlc instanceof Map<?, ?> conf && !Boolean.FALSE.equals(conf.get("USE"))
+                            && conf.get("TIME_TYPE") instanceof String timeType) {
+                        timeframes.add(toTimeframe(timeType));
+                    }
+                }
+            }
+        }
+        if (symbols.isEmpty() || (timeframes.isEmpty() && !depth)) {
+            return null;
+        }
+        String exchange = config.get("EXCHANGE") instanceof String name && !name.isBlank() ? name : defaultExchange;
+        return new DatasetSpec(exchange, new ArrayList<>(symbols), new ArrayList<>(timeframes), depth,
+                start.longValue(), end.longValue());
+    }
+
+    /**
+     * 内容相同的数据集得到相同的 key，用作缓存文件名
+     */
+    String key(int depthLevels) {
+        String canonical = exchange + "|" + String.join(",", symbols) + "|" + String.join(",", timeframes)
+                + "|" + (depth ? "depth" + depthLevels : "") + "|" + start + "|" + end;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to compute SHA-256", e);
+        }
+    }
+
+    /**
+     * runner 的 TIME_TYPE（ONE_MINUTE 等）换算成 kline_data 的 timeframe，已是 1m 等形式的原样使用
+     */
+    private static String toTimeframe(String timeType) {
+        return switch (timeType) {
+            case "ONE_MINUTE" -> "1m";
+            case "FIVE_MINUTE" -> "5m";
+            case "FIFTEEN_MINUTE" -> "15m";
+            case "THIRTY_MINUTE" -> "30m";
+            case "ONE_HOUR" -> "1h";
+            case "FOUR_HOUR" -> "4h";
+            case "ONE_DAY" -> "1d";
+            default -> timeType;
+        };
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.crypto.service.backtest;
+
+import com.example.crypto.dto.ParameterSweepRequest.ParameterRange;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 参数扫描的搜索空间
+ * 每个参数为一个维度：候选值列表（类别型）或 [min, max] 区间（数值型，可指定步长、对数尺度）。
+ * 贝叶斯优化采用 TPE（Tree-structured Parzen Estimator）：把已完成的结果按目标值分为较好的前 25% 和其余部分，
+ * 分别在 [0, 1] 归一化空间上做核密度估计 l(x)、g(x)，从 l(x) 采样若干候选，选 l(x)/g(x) 最大的一个。
+ */
+class ParameterSpace {
+    // 网格参数组合数的上限保护
+    private static final int MAX_GRID_VALUES = 100_000;
+    // 较好结果所占比例
+    private static final double GOOD_FRACTION = 0.25;
+    // 每次建议时从 l(x) 采样的候选数
+    private static final int TPE_CANDIDATES = 24;
+    private static final double MIN_BANDWIDTH = 0.05;
+
+    private final List<Dimension> dimensions;
+
+    private ParameterSpace(List<Dimension> dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * @throws IllegalArgumentException 参数范围不合法
+     */
+    static ParameterSpace of(List<ParameterRange> ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            throw new IllegalArgumentException("At least one parameter range is required.");
+        }
+        List<Dimension> dimensions = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (ParameterRange range : ranges) {
+            Dimension dimension = Dimension.of(range);
+            if (!names.add(dimension.name)) {
+                throw new IllegalArgumentException("Duplicate parameter range: " + dimension.name);
+            }
+            dimensions.add(dimension);
+        }
+        return new ParameterSpace(dimensions);
+    }
+
+    List<String> names() {
+        return dimensions.stream().map(d -> d.name).toList();
+    }
+
+    /**
+     * 网格上的所有参数组合
+     * @throws IllegalArgumentException 数值参数没有步长，或组合数超过 limit
+     */
+    List<Map<String, Object>> grid(int limit) {
+        List<List<Object>> axes = new ArrayList<>();
+        long total = 1;
+        for (Dimension dimension : dimensions) {
+            List<Object> values = dimension.gridValues();
+            axes.add(values);
+            total *= values.size();
+            if (total > limit) {
+                throw new IllegalArgumentException("Grid has more than " + limit
+                        + " parameter combinations; narrow the ranges or use a RANDOM/BAYESIAN sweep.");
+            }
+        }
+        List<Map<String, Object>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (int i = 0; i < dimensions.size(); i++) {
+            List<Map<String, Object>> next = new ArrayList<>();
+            for (Map<String, Object> prefix : combinations) {
+                for (Object value : axes.get(i)) {
+                    Map<String, Object> params = new LinkedHashMap<>(prefix);
+                    params.put(dimensions.get(i).name, value);
+                    next.add(params);
+                }
+            }
+            combinations = next;
+        }
+        return combinations;
+    }
+
+    Map<String, Object> sample(Random random) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (Dimension dimension : dimensions) {
+            params.put(dimension.name, dimension.isCategorical()
+                    ? dimension.values.get(random.nextInt(dimension.values.size()))
+                    : dimension.fromUnit(random.nextDouble()));
+        }
+        return params;
+    }
+
+    /**
+     * 按 TPE 建议下一组参数；结果少于 startup 个时随机采样
+     * @param pending 已提交但还没有结果的参数组合，按较差结果处理，避免同一批建议集中在同一点
+     * @param tried 已尝试过的参数组合，尽量不重复建议
+     */
+    Map<String, Object> suggest(List<Observation> observations, Collection<Map<String, Object>> pending,
+                                Set<Map<String, Object>> tried, boolean maximize, int startup, Random random) {
+        if (observations.size() < startup) {
+            return sampleUntried(tried, random);
+        }
+        Comparator<Observation> bestFirst = Comparator.comparingDouble(Observation::objective);
+        if (maximize) {
+            bestFirst = bestFirst.reversed();
+        }
+        List<Observation> sorted = new ArrayList<>(observations);
+        sorted.sort(bestFirst);
+        int goodCount = Math.max(1, (int) Math.ceil(GOOD_FRACTION * sorted.size()));
+        List<Map<String, Object>> good = new ArrayList<>();
+        List<Map<String, Object>> bad = new ArrayList<>(pending);
+        for (int i = 0; i < sorted.size(); i++) {
+            (i < goodCount ? good : bad).add(sorted.get(i).params());
+        }
+
+        Map<String, Object> best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < TPE_CANDIDATES; i++) {
+            Map<String, Object> candidate = new LinkedHashMap<>();
+            for (Dimension dimension : dimensions) {
+                candidate.put(dimension.name, dimension.sampleNear(good, random));
+            }
+            double score = 0;
+            for (Dimension dimension : dimensions) {
+                Object value = candidate.get(dimension.name);
+                score += Math.log(dimension.density(value, good)) - Math.log(dimension.density(value, bad));
+            }
+            if (tried.contains(candidate)) {
+                // 已尝试过的组合只在没有其他候选时使用（结果来自缓存）
+                score -= 1e6;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private Map<String, Object> sampleUntried(Set<Map<String, Object>> tried, Random random) {
+        Map<String, Object> params = sample(random);
+        for (int attempt = 0; attempt < TPE_CANDIDATES && tried.contains(params); attempt++) {
+            params = sample(random);
+        }
+        return params;
+    }
+
+    record Observation(Map<String, Object> params, double objective) {
+    }
+
+    private static final class Dimension {
+        final String name;
+        final List<Object> values;
+        final BigDecimal min;
+        final BigDecimal max;
+        final BigDecimal step;
+        final boolean log;
+        final boolean integer;
+
+        private Dimension(String name, List<Object> values, BigDecimal min, BigDecimal max, BigDecimal step,
+                          boolean log, boolean integer) {
+            this.name = name;
+            this.values = values;
+            this.min = min;
+            this.max = max;
+            this.step = step;
+            this.log = log;
+            this.integer = integer;
+        }
+
+        static Dimension of(ParameterRange range) {
+            String name = range.name();
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Parameter range name cannot be empty.");
+            }
+            if (range.values() != null && !range.values().isEmpty()) {
+                return new Dimension(name, List.copyOf(range.values()), null, null, null, false, false);
+            }
+            if (range.min() == null || range.max() == null) {
+                throw new IllegalArgumentException("Parameter " + name + " needs either values or min/max.");
+            }
+            if (range.min().compareTo(range.max()) > 0) {
+                throw new IllegalArgumentException("Parameter " + name + " has min greater than max.");
+            }
+            if (range.step() != null && range.step().signum() <= 0) {
+                throw new IllegalArgumentException("Parameter " + name + " step must be positive.");
+            }
+            if (range.log() && range.min().signum() <= 0) {
+                throw new IllegalArgumentException("Parameter " + name + " needs a positive min for a log scale.");
+            }
+            boolean integer;
+            if (range.type() == null) {
+                integer = isIntegral(range.min()) && isIntegral(range.max())
+                        && (range.step() == null || isIntegral(range.step()));
+            } else {
+                integer = switch (range.type().toUpperCase()) {
+                    case "INT" -> true;
+                    case "DECIMAL" -> false;
+                    default -> throw new IllegalArgumentException("Parameter " + name + " has unsupported type " + range.type());
+                };
+            }
+            return new Dimension(name, null, range.min(), range.max(), range.step(), range.log(), integer);
+        }
+
+        boolean isCategorical() {
+            return values != null;
+        }
+
+        List<Object> gridValues() {
+            if (isCategorical()) {
+                return values;
+            }
+            BigDecimal gridStep = step;
+            if (gridStep == null) {
+                if (!integer) {
+                    throw new IllegalArgumentException("Parameter " + name + " needs a step or values for a grid sweep.");
+                }
+                gridStep = BigDecimal.ONE;
+            }
+            List<Object> result = new ArrayList<>();
+            for (BigDecimal value = min; value.compareTo(max) <= 0; value = value.add(gridStep)) {
+                if (result.size() >= MAX_GRID_VALUES) {
+                    throw new IllegalArgumentException("Parameter " + name + " has too many grid values.");
+                }
+                result.add(toValue(value));
+            }
+            return result;
+        }
+
+        /**
+         * 把 [0, 1] 上的位置换算成参数值（按步长取整）
+         */
+        Object fromUnit(double u) {
+            double lo = min.doubleValue();
+            double hi = max.doubleValue();
+            double raw = log
+                    ? Math.exp(Math.log(lo) + u * (Math.log(hi) - Math.log(lo)))
+                    : lo + u * (hi - lo);
+            BigDecimal value;
+            if (step != null) {
+                long steps = Math.round((raw - lo) / step.doubleValue());
+                value = min.add(step.multiply(BigDecimal.valueOf(Math.max(0, steps))));
+                if (value.compareTo(max) > 0) {
+                    value = value.subtract(step);
+                }
+            } else {
+                value = BigDecimal.valueOf(raw);
+            }
+            if (integer) {
+                value = value.setScale(0, RoundingMode.HALF_UP);
+            }
+            return toValue(value.max(min).min(max));
+        }
+
+        double toUnit(Object value) {
+            double v = ((Number) value).doubleValue();
+            double lo = min.doubleValue();
+            double hi = max.doubleValue();
+            if (hi == lo) {
+                return 0.5;
+            }
+            return log
+                    ? (Math.log(v) - Math.log(lo)) / (Math.log(hi) - Math.log(lo))
+                    : (v - lo) / (hi - lo);
+        }
+
+        /**
+         * 从较好结果的核密度（混合均匀先验）中采样
+         */
+        Object sampleNear(List<Map<String, Object>> good, Random random) {
+            if (isCategorical()) {
+                double[] weights = new double[values.size()];
+                double total = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = 1 + count(good, values.get(i));
+                    total += weights[i];
+                }
+                double r = random.nextDouble() * total;
+                for (int i = 0; i < weights.length; i++) {
+                    r -= weights[i];
+                    if (r < 0) {
+                        return values.get(i);
+                    }
+                }
+                return values.get(values.size() - 1);
+            }
+            int pick = random.nextInt(good.size() + 1);
+            if (pick == good.size()) {
+                return fromUnit(random.nextDouble());
+            }
+            double center = toUnit(good.get(pick).get(name));
+            double u = center + random.nextGaussian() * bandwidth(good.size());
+            return fromUnit(Math.min(1, Math.max(0, u)));
+        }
+
+        double density(Object value, List<Map<String, Object>> points) {
+            if (isCategorical()) {
+                return (1 + count(points, value)) / (points.size() + values.size());
+            }
+            double x = toUnit(value);
+            double bw = bandwidth(points.size());
+            double sum = 1; // 均匀先验在 [0, 1] 上的密度
+            for (Map<String, Object> point : points) {
+                double z = (x - toUnit(point.get(name))) / bw;
+                sum += Math.exp(-0.5 * z * z) / (bw * Math.sqrt(2 * Math.PI));
+            }
+            return sum / (points.size() + 1);
+        }
+
+        private double count(List<Map<String, Object>> points, Object value) {
+            return points.stream().filter(p -> value.equals(p.get(name))).count();
+        }
+
+        private static double bandwidth(int n) {
+            return Math.max(MIN_BANDWIDTH, 0.5 * Math.pow(Math.max(1, n), -0.2));
+        }
+
+        private Object toValue(BigDecimal value) {
+            return integer ? (Object) value.longValue() : (Object) value.doubleValue();
+        }
+
+        private static boolean isIntegral(BigDecimal value) {
+            return value.stripTrailingZeros().scale() <= 0;
+        }
+    }
+}
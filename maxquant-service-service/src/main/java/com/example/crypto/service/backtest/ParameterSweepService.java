@@ -0,0 +1,902 @@
+package com.example.crypto.service.backtest;
+
+import com.example.crypto.dao.StrategyTemplateRepository;
+import com.example.crypto.dto.ParameterSweepDto;
+import com.example.crypto.dto.ParameterSweepRequest;
+import com.example.crypto.dto.SweepResultRow;
+import com.example.crypto.entity.StrategyParameter;
+import com.example.crypto.entity.StrategyTemplate;
+import com.example.crypto.enums.BacktestPriority;
+import com.example.crypto.enums.BacktestStatus;
+import com.example.crypto.enums.SweepMethod;
+import com.example.crypto.enums.SweepRunStatus;
+import com.example.crypto.exception.BacktestQueueFullException;
+import com.example.crypto.models.ParameterDirection;
+import com.example.crypto.service.BacktestReportService;
+import com.example.crypto.service.JwtService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 策略参数扫描
+ * 按策略模板和参数范围（网格 / 随机 / 贝叶斯）生成参数组合，每个组合作为一次回测提交到回测调度队列，
+ * 由常驻 Python 进程池并行执行，同一扫描同时提交的回测数不超过 parallelism；配置相同的回测复用缓存结果。
+ * 回测结束后读取 all_performance.csv 的汇总行，按目标列排序得到结果表。
+ * rungs > 1 时按 successive halving 提前淘汰：先在回测区间的前一小段上执行全部组合，
+ * 每一轮只有目标值排在前 1/eta 的组合进入更长的区间，其余标记为 PRUNED。
+ */
+@Service
+public class ParameterSweepService {
+    private static final Logger logger = LoggerFactory.getLogger(ParameterSweepService.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final String REPORT_NAME_PREFIX = "sweep_";
+    // 贝叶斯优化在使用模型前至少随机采样的组合数
+    private static final int BAYESIAN_MIN_STARTUP = 5;
+    // 随机采样去重时的尝试次数倍数
+    private static final int RANDOM_ATTEMPTS_PER_RUN = 20;
+    // 不参与缓存 key 的配置项（每次回测不同或与结果无关）
+    private static final Set<String> RUN_SPECIFIC_KEYS = Set.of("RESULT_ID", "USER_TOKEN", "STRATEGY_FILE", "STRATEGY_NAME");
+
+    private final BacktestScheduler backtestScheduler;
+    private final PythonWorkerPool workerPool;
+    private final BacktestReportService backtestReportService;
+    private final StrategyTemplateRepository strategyTemplateRepository;
+    private final JwtService jwtService;
+    private final ObjectMapper objectMapper;
+    private final BacktestDatasetCache datasetCache;
+    private final ObjectMapper canonicalMapper;
+
+    // 同时执行的扫描数，超出的扫描等待
+    @Value("${backtest.sweep.max-active:2}")
+    private int maxActiveSweeps;
+
+    @Value("${backtest.sweep.default-max-runs:50}")
+    private int defaultMaxRuns;
+
+    @Value("${backtest.sweep.max-runs:1000}")
+    private int maxRunsLimit;
+
+    // all_performance.csv 中作为目标值的列
+    @Value("${backtest.sweep.default-objective:sharpe_ratio}")
+    private String defaultObjective;
+
+    @Value("${backtest.sweep.cache-size:5000}")
+    private int cacheSize;
+
+    // 内存中保留的扫描数，超出时移除最早结束的扫描
+    @Value("${backtest.sweep.max-retained:50}")
+    private int maxRetained;
+
+    // 回测队列已满时重新提交的间隔
+    @Value("${backtest.sweep.queue-retry-ms:5000}")
+    private long queueRetryMs;
+
+    // sweepId -> 扫描（按创建顺序）
+    private final Map<String, Sweep> sweeps = new LinkedHashMap<>();
+    private SweepResultCache cache;
+    private ExecutorService drivers;
+
+    public ParameterSweepService(BacktestScheduler backtestScheduler, PythonWorkerPool workerPool,
+                                 BacktestReportService backtestReportService,
+                                 StrategyTemplateRepository strategyTemplateRepository,
+                                 JwtService jwtService, ObjectMapper objectMapper, BacktestDatasetCache datasetCache) {
+        this.backtestScheduler = backtestScheduler;
+        this.workerPool = workerPool;
+        this.backtestReportService = backtestReportService;
+        this.strategyTemplateRepository = strategyTemplateRepository;
+        this.jwtService = jwtService;
+        this.objectMapper = objectMapper;
+        this.datasetCache = datasetCache;
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = new SweepResultCache(cacheSize);
+        AtomicInteger threadIndex = new AtomicInteger();
+        drivers = Executors.newFixedThreadPool(maxActiveSweeps, r -> {
+            Thread thread = new Thread(r, "backtest-sweep-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 中断扫描线程，由其取消已提交的回测
+        drivers.shutdownNow();
+    }
+
+    /**
+     * 创建并开始参数扫描
+     * @throws IllegalArgumentException 请求不合法（参数范围、网格过大等）
+     * @throws EntityNotFoundException 策略模板不存在
+     */
+    public ParameterSweepDto startSweep(ParameterSweepRequest request, String authorizationHeader, BacktestPriority priority) {
+        if (request.strategyTemplateId() == null) {
+            throw new IllegalArgumentException("strategyTemplateId is required.");
+        }
+        if (request.config() == null) {
+            throw new IllegalArgumentException("config is required.");
+        }
+        if (authorizationHeader == null || authorizationHeader.isBlank()) {
+            throw new IllegalArgumentException("Authorization token is missing or empty.");
+        }
+        StrategyTemplate template = strategyTemplateRepository.findById(request.strategyTemplateId())
+                .orElseThrow(() -> new EntityNotFoundException("StrategyTemplate not found with id: " + request.strategyTemplateId()));
+        ParameterSpace space = ParameterSpace.of(request.ranges());
+        validateParameters(template, space);
+
+        SweepMethod method = request.method() != null ? request.method() : SweepMethod.GRID;
+        int maxRuns = request.maxRuns() != null ? request.maxRuns() : defaultMaxRuns;
+        if (maxRuns <= 0 || maxRuns > maxRunsLimit) {
+            throw new IllegalArgumentException("maxRuns must be between 1 and " + maxRunsLimit + ".");
+        }
+        int rungs = request.rungs() != null ? request.rungs() : 1;
+        int eta = request.eta() != null ? request.eta() : 3;
+        if (rungs < 1 || eta < 2) {
+            throw new IllegalArgumentException("rungs must be at least 1 and eta at least 2.");
+        }
+        if (rungs > 1) {
+            backtestWindow(request.config());
+        }
+        // 网格未指定 maxRuns 时只受上限约束
+        List<Map<String, Object>> grid = method == SweepMethod.GRID
+                ? space.grid(request.maxRuns() != null ? maxRuns : maxRunsLimit) : null;
+
+        String token = authorizationHeader;
+        if (token.toLowerCase().startsWith("bearer ")) {
+            token = token.substring(7);
+        }
+        String baseConfig;
+        try {
+            baseConfig = objectMapper.writeValueAsString(request.config());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("config is not valid JSON: " + e.getOriginalMessage());
+        }
+
+        Sweep sweep = new Sweep(UUID.randomUUID().toString(), template.getId(), sha256(template.getScript()),
+                template.getScript(), baseConfig, space, method, grid,
+                request.objective() != null && !request.objective().isBlank() ? request.objective() : defaultObjective,
+                request.maximize() == null || request.maximize(),
+                grid != null ? grid.size() : maxRuns, rungs, eta, resolveParallelism(request.parallelism()),
+                token, resolveUser(token), priority,
+                request.seed() != null ? new Random(request.seed()) : new Random());
+        register(sweep);
+        logger.info("参数扫描已创建: sweepId={}, templateId={}, method={}, plannedRuns={}, parallelism={}, rungs={}",
+                sweep.id, sweep.templateId, method, sweep.plannedRuns, sweep.parallelism, rungs);
+        drivers.execute(() -> drive(sweep));
+        return sweep.toDto(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param limit 结果表返回的行数
+     * @return 扫描不存在（或已从内存中移除）时返回 null
+     */
+    public ParameterSweepDto getSweep(String sweepId, int limit) {
+        Sweep sweep = findSweep(sweepId);
+        return sweep != null ? sweep.toDto(limit) : null;
+    }
+
+    /**
+     * 内存中保留的扫描（不含结果表），新创建的在前
+     */
+    public List<ParameterSweepDto> getSweeps() {
+        List<Sweep> snapshot;
+        synchronized (sweeps) {
+            snapshot = new ArrayList<>(sweeps.values());
+        }
+        List<ParameterSweepDto> result = new ArrayList<>();
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            result.add(snapshot.get(i).toDto(0));
+        }
+        return result;
+    }
+
+    /**
+     * 取消扫描：停止生成新的参数组合，并取消排队中和执行中的回测
+     * @return 扫描不存在或已结束时返回 false
+     */
+    public boolean cancelSweep(String sweepId) {
+        Sweep sweep = findSweep(sweepId);
+        if (sweep == null || !sweep.cancel()) {
+            return false;
+        }
+        cancelInFlight(sweep);
+        logger.info("参数扫描已取消: sweepId={}", sweepId);
+        return true;
+    }
+
+    private void drive(Sweep sweep) {
+        if (!sweep.start(Thread.currentThread())) {
+            return;
+        }
+        Path script = null;
+        try {
+            Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"), "strategies");
+            Files.createDirectories(tempDir);
+            script = Files.createTempFile(tempDir, "sweep-" + sweep.id, ".py");
+            Files.writeString(script, sweep.script);
+
+            switch (sweep.method) {
+                case GRID -> evaluate(sweep, script, sweep.addTrials(sweep.grid));
+                case RANDOM -> evaluate(sweep, script, sweep.addTrials(randomCandidates(sweep)));
+                case BAYESIAN -> runBayesian(sweep, script);
+            }
+            sweep.finish(BacktestStatus.COMPLETED, null);
+            logger.info("参数扫描已完成: sweepId={}", sweep.id);
+        } catch (InterruptedException e) {
+            sweep.finish(BacktestStatus.CANCELLED, null);
+        } catch (IOException | RuntimeException e) {
+            logger.error("参数扫描失败: sweepId={}, error={}", sweep.id, e.getMessage(), e);
+            sweep.finish(BacktestStatus.FAILED, e.getMessage());
+        } finally {
+            cancelInFlight(sweep);
+            if (script != null) {
+                try {
+                    Files.deleteIfExists(script);
+                } catch (IOException e) {
+                    logger.error("Failed to delete temporary script: {}", script.getFileName(), e);
+                }
+            }
+        }
+    }
+
+    private List<Map<String, Object>> randomCandidates(Sweep sweep) {
+        Set<Map<String, Object>> candidates = new LinkedHashSet<>();
+        for (int attempt = 0; attempt < sweep.plannedRuns * RANDOM_ATTEMPTS_PER_RUN && candidates.size() < sweep.plannedRuns; attempt++) {
+            candidates.add(sweep.space.sample(sweep.random));
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * 每批按 TPE 建议 parallelism 个组合（提前淘汰时至少 eta^(rungs-1) 个），执行完一批再根据结果建议下一批
+     */
+    private void runBayesian(Sweep sweep, Path script) throws InterruptedException {
+        int batchSize = Math.max(sweep.parallelism, (int) Math.pow(sweep.eta, sweep.rungs - 1));
+        int startup = Math.max(BAYESIAN_MIN_STARTUP, sweep.parallelism);
+        int proposed = 0;
+        while (proposed < sweep.plannedRuns) {
+            List<ParameterSpace.Observation> observations = sweep.observations();
+            Set<Map<String, Object>> tried = sweep.triedParams();
+            List<Map<String, Object>> batch = new ArrayList<>();
+            int size = Math.min(batchSize, sweep.plannedRuns - proposed);
+            for (int i = 0; i < size; i++) {
+                Map<String, Object> params = sweep.space.suggest(observations, batch, tried, sweep.maximize, startup, sweep.random);
+                batch.add(params);
+                tried.add(params);
+            }
+            proposed += size;
+            evaluate(sweep, script, sweep.addTrials(batch));
+        }
+    }
+
+    /**
+     * 执行一批参数组合；提前淘汰时逐轮延长回测区间，每轮只保留前 1/eta
+     */
+    private void evaluate(Sweep sweep, Path script, List<Trial> trials) throws InterruptedException {
+        List<Trial> alive = trials;
+        for (int rung = 0; rung < sweep.rungs && !alive.isEmpty(); rung++) {
+            boolean last = rung == sweep.rungs - 1;
+            double fraction = Math.pow(sweep.eta, -(sweep.rungs - 1 - rung));
+            runRung(sweep, script, alive, rung, fraction, last);
+            if (!last) {
+                alive = sweep.promote(alive);
+            }
+        }
+    }
+
+    private void runRung(Sweep sweep, Path script, List<Trial> trials, int rung, double fraction, boolean last)
+            throws InterruptedException {
+        List<CompletableFuture<SweepOutcome>> futures = new ArrayList<>();
+        for (Trial trial : trials) {
+            Map<String, Object> config = runConfig(sweep, script, trial.params, fraction);
+            String key = cacheKey(sweep, config);
+            SweepOutcome cached = cache.get(key);
+            if (cached != null) {
+                sweep.record(trial, cached, rung, last, true);
+                continue;
+            }
+
+            sweep.slots.acquire();
+            int runIndex = sweep.nextRun.incrementAndGet();
+            String runId = "sweep-" + sweep.id + "-" + runIndex;
+            String reportName = REPORT_NAME_PREFIX + sweep.id + "_" + runIndex;
+            config.put("RESULT_ID", runId);
+            config.put("STRATEGY_NAME", reportName);
+
+            CompletableFuture<SweepOutcome> future = new CompletableFuture<>();
+            future.whenComplete((outcome, error) -> {
+                sweep.inFlight.remove(runId);
+                sweep.slots.release();
+                if (outcome.succeeded()) {
+                    cache.put(key, outcome);
+                }
+                sweep.record(trial, outcome, rung, last, false);
+            });
+            sweep.inFlight.put(runId, future);
+            sweep.markRunning(trial, rung);
+            submitRun(sweep, runId, new BacktestTask() {
+                @Override
+                public void run() {
+                    future.complete(execute(runId, reportName, config, sweep.objective));
+                }
+
+                @Override
+                public void cancelled() {
+                    future.complete(SweepOutcome.cancelled());
+                }
+            });
+            futures.add(future);
+        }
+        for (CompletableFuture<SweepOutcome> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Failed to run sweep backtest", e.getCause());
+            }
+        }
+    }
+
+    private void submitRun(Sweep sweep, String runId, BacktestTask task) throws InterruptedException {
+        while (true) {
+            try {
+                backtestScheduler.submit(runId, sweep.user, sweep.priority, task);
+                return;
+            } catch (BacktestQueueFullException e) {
+                logger.debug("回测队列已满，稍后重新提交: runId={}, reason={}", runId, e.getMessage());
+                Thread.sleep(queueRetryMs);
+            }
+        }
+    }
+
+    /**
+     * 在回测调度线程中执行：交给 Python 进程池，结束后读取 all_performance.csv
+     */
+    private SweepOutcome execute(String runId, String reportName, Map<String, Object> config, String objective) {
+        try (BacktestDatasetCache.DatasetLease dataset = datasetCache.acquire(config)) {
+            if (dataset != null) {
+                config.put("DATASET_FILE", dataset.path().toString());
+                config.put("DATASET_FORMAT", dataset.format());
+            }
+            int exitCode = workerPool.run(runId, config, line -> logger.debug("[Sweep Output] {}: {}", runId, line));
+            if (exitCode != 0) {
+                return SweepOutcome.failed("Backtest script failed with exit code " + exitCode + ".");
+            }
+            return readOutcome(reportName, objective);
+        } catch (InterruptedException e) {
+            return SweepOutcome.cancelled();
+        } catch (TimeoutException e) {
+            return SweepOutcome.failed("Backtest process timed out.");
+        } catch (IOException | RuntimeException e) {
+            logger.error("参数扫描回测失败: runId={}, error={}", runId, e.getMessage(), e);
+            return SweepOutcome.failed(e.getMessage());
+        }
+    }
+
+    private SweepOutcome readOutcome(String reportName, String objective) throws IOException {
+        List<String> timestamps = backtestReportService.getAvailableTimestamps(reportName);
+        if (timestamps.isEmpty()) {
+            return SweepOutcome.failed("No backtest report was written.");
+        }
+        String timestamp = timestamps.get(0);
+        List<Map<String, String>> rows = backtestReportService.getPerformance(reportName, timestamp);
+        for (Map<String, String> row : rows) {
+            Double value = parseDouble(row.get(objective));
+            if (value != null) {
+                return new SweepOutcome(SweepRunStatus.COMPLETED, value, row, reportName, timestamp, null);
+            }
+        }
+        return SweepOutcome.failed("Objective column '" + objective + "' not found in all_performance.csv"
+                + (rows.isEmpty() ? "." : " (columns: " + rows.get(0).keySet() + ")."));
+    }
+
+    /**
+     * 由扫描的基础配置生成一次回测的配置：写入参数值，提前淘汰的轮次缩短回测区间
+     */
+    private Map<String, Object> runConfig(Sweep sweep, Path script, Map<String, Object> params, double fraction) {
+        Map<String, Object> config;
+        try {
+            config = objectMapper.readValue(sweep.baseConfig, MAP_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to copy sweep config", e);
+        }
+        config.remove("STRATEGY_CODE");
+        config.put("STRATEGY_FILE", script.toAbsolutePath().toString());
+        config.put("USER_TOKEN", sweep.token);
+        // 每次回测只对应一组参数，参数组合由本服务生成
+        config.put("IS_OPTIMIZE", false);
+
+        Map<String, Object> backtest = asMap(config.get("BACKTEST"));
+        if (backtest == null) {
+            backtest = new LinkedHashMap<>();
+            config.put("BACKTEST", backtest);
+        }
+        backtest.put("OUTPUT_REPORT", true);
+        if (fraction < 1) {
+            long[] window = backtestWindow(config);
+            backtest.put("END_TIME", window[0] + Math.round((window[1] - window[0]) * fraction));
+        }
+
+        applyParams(config, params);
+        return config;
+    }
+
+    /**
+     * 参数可能在顶层 PARAMS 或 SYMBOLS[].PARAMS 中（两种配置格式），同名项都覆盖；都没有时追加到顶层 PARAMS
+     */
+    private static void applyParams(Map<String, Object> config, Map<String, Object> params) {
+        Set<String> applied = new HashSet<>(overrideParams(config.get("PARAMS"), params));
+        if (config.get("SYMBOLS") instanceof List<?> groups) {
+            for (Object group : groups) {
+                Map<String, Object> symbolGroup = asMap(group);
+                if (symbolGroup != null) {
+                    applied.addAll(overrideParams(symbolGroup.get("PARAMS"), params));
+                }
+            }
+        }
+        List<Object> topLevel;
+        if (config.get("PARAMS") instanceof List<?>) {
+            @SuppressWarnings("unchecked")
+            List<Object> existing = (List<Object>) config.get("PARAMS");
+            topLevel = existing;
+        } else {
+            topLevel = new ArrayList<>();
+            config.put("PARAMS", topLevel);
+        }
+        params.forEach((name, value) -> {
+            if (!applied.contains(name)) {
+                Map<String, Object> param = new LinkedHashMap<>();
+                param.put("NAME", name);
+                param.put("VALUE", value);
+                param.put("TYPE", "IN");
+                param.put("VALUE_TYPE", getParamType(value));
+                topLevel.add(param);
+            }
+        });
+    }
+
+    private static Set<String> overrideParams(Object paramList, Map<String, Object> params) {
+        Set<String> applied = new HashSet<>();
+        if (!(paramList instanceof List<?> entries)) {
+            return applied;
+        }
+        for (Object item : entries) {
+            Map<String, Object> entry = asMap(item);
+            if (entry == null || !(entry.get("NAME") instanceof String name) || !params.containsKey(name)) {
+                continue;
+            }
+            Object value = params.get(name);
+            entry.put("VALUE", value);
+            if (entry.containsKey("VALUE_TYPE")) {
+                entry.put("VALUE_TYPE", getParamType(value));
+            } else if (entry.containsKey("TYPE") && !isDirection(entry.get("TYPE"))) {
+                // SYMBOLS[].PARAMS 格式中 TYPE 为值类型
+                entry.put("TYPE", getParamType(value));
+            }
+            applied.add(name);
+        }
+        return applied;
+    }
+
+    private static boolean isDirection(Object type) {
+        for (ParameterDirection direction : ParameterDirection.values()) {
+            if (direction.name().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 模板定义了参数时，只允许扫描输入参数
+     */
+    private static void validateParameters(StrategyTemplate template, ParameterSpace space) {
+        List<StrategyParameter> parameters = template.getParameters();
+        if (parameters == null || parameters.isEmpty()) {
+            return;
+        }
+        Set<String> inputs = new HashSet<>();
+        for (StrategyParameter parameter : parameters) {
+            if (parameter.getDirection() != ParameterDirection.OUT) {
+                inputs.add(parameter.getName());
+            }
+        }
+        for (String name : space.names()) {
+            if (!inputs.contains(name)) {
+                throw new IllegalArgumentException("Parameter " + name + " is not an input parameter of strategy template "
+                        + template.getName() + ".");
+            }
+        }
+    }
+
+    /**
+     * @return {START_TIME, END_TIME}
+     * @throws IllegalArgumentException 配置中没有数值型的回测区间
+     */
+    private static long[] backtestWindow(Map<String, Object> config) {
+        Map<String, Object> backtest = asMap(config.get("BACKTEST"));
+        if (backtest != null && backtest.get("START_TIME") instanceof Number start
+                && backtest.get("END_TIME") instanceof Number end && end.longValue() > start.longValue()) {
+            return new long[]{start.longValue(), end.longValue()};
+        }
+        throw new IllegalArgumentException("Early stopping (rungs > 1) needs numeric BACKTEST.START_TIME and END_TIME in config.");
+    }
+
+    /**
+     * 回测配置（去掉每次回测不同的项）加上策略模板和代码哈希的规范化 JSON 的哈希
+     */
+    private String cacheKey(Sweep sweep, Map<String, Object> config) {
+        Map<String, Object> keyed = new LinkedHashMap<>(config);
+        RUN_SPECIFIC_KEYS.forEach(keyed::remove);
+        keyed.put("@templateId", sweep.templateId);
+        keyed.put("@scriptHash", sweep.scriptHash);
+        try {
+            return sha256(canonicalMapper.writeValueAsString(keyed));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to build sweep cache key", e);
+        }
+    }
+
+    private int resolveParallelism(Integer requested) {
+        BacktestQueueMetrics queue = backtestScheduler.metrics();
+        int limit = Math.max(1, Math.min(queue.maxConcurrent(), queue.maxQueuedPerUser()));
+        if (requested == null) {
+            return limit;
+        }
+        if (requested <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        return Math.min(requested, limit);
+    }
+
+    private void register(Sweep sweep) {
+        synchronized (sweeps) {
+            sweeps.put(sweep.id, sweep);
+            Iterator<Sweep> iterator = sweeps.values().iterator();
+            while (sweeps.size() > maxRetained && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private Sweep findSweep(String sweepId) {
+        synchronized (sweeps) {
+            return sweeps.get(sweepId);
+        }
+    }
+
+    private void cancelInFlight(Sweep sweep) {
+        for (String runId : new ArrayList<>(sweep.inFlight.keySet())) {
+            backtestScheduler.cancel(runId);
+        }
+    }
+
+    /**
+     * 用于按用户公平排队；token 无法解析时归入 anonymous
+     */
+    private String resolveUser(String token) {
+        try {
+            String username = jwtService.getUsernameFromToken(token);
+            return username != null ? username : "anonymous";
+        } catch (RuntimeException e) {
+            return "anonymous";
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map<?, ?> ? (Map<String, Object>) value : null;
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            return Double.isFinite(parsed) ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getParamType(Object value) {
+        if (value instanceof Integer || value instanceof Long) return "INT";
+        if (value instanceof Double || value instanceof Float) return "DECIMAL";
+        if (value instanceof Boolean) return "BOOL";
+        return "STRING";
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to compute SHA-256", e);
+        }
+    }
+
+    /**
+     * 一个参数组合；rung 为已执行到的轮次，objective/metrics 为该轮的结果
+     */
+    private static final class Trial {
+        final int index;
+        final Map<String, Object> params;
+        SweepRunStatus status = SweepRunStatus.PENDING;
+        int rung;
+        boolean cached;
+        Double objective;
+        Map<String, String> metrics = Map.of();
+        String reportName;
+        String reportTimestamp;
+
+        Trial(int index, Map<String, Object> params) {
+            this.index = index;
+            this.params = params;
+        }
+    }
+
+    private static final class Sweep {
+        final String id;
+        final Long templateId;
+        final String scriptHash;
+        final String script;
+        final String baseConfig;
+        final ParameterSpace space;
+        final SweepMethod method;
+        final List<Map<String, Object>> grid;
+        final String objective;
+        final boolean maximize;
+        final int plannedRuns;
+        final int rungs;
+        final int eta;
+        final int parallelism;
+        final String token;
+        final String user;
+        final BacktestPriority priority;
+        final Random random;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final Semaphore slots;
+        final AtomicInteger nextRun = new AtomicInteger();
+        // runId -> 已提交、还没有结果的回测
+        final Map<String, CompletableFuture<SweepOutcome>> inFlight = new ConcurrentHashMap<>();
+
+        // 以下字段由 this 保护
+        final List<Trial> trials = new ArrayList<>();
+        BacktestStatus status = BacktestStatus.NOT_RUN;
+        Thread driver;
+        boolean cancelRequested;
+        int executedRuns;
+        int cachedRuns;
+        String error;
+        LocalDateTime finishedAt;
+
+        Sweep(String id, Long templateId, String scriptHash, String script, String baseConfig, ParameterSpace space,
+              SweepMethod method, List<Map<String, Object>> grid, String objective, boolean maximize, int plannedRuns,
+              int rungs, int eta, int parallelism, String token, String user, BacktestPriority priority, Random random) {
+            this.id = id;
+            this.templateId = templateId;
+            this.scriptHash = scriptHash;
+            this.script = script;
+            this.baseConfig = baseConfig;
+            this.space = space;
+            this.method = method;
+            this.grid = grid;
+            this.objective = objective;
+            this.maximize = maximize;
+            this.plannedRuns = plannedRuns;
+            this.rungs = rungs;
+            this.eta = eta;
+            this.parallelism = parallelism;
+            this.token = token;
+            this.user = user;
+            this.priority = priority;
+            this.random = random;
+            this.slots = new Semaphore(parallelism);
+        }
+
+        /**
+         * @return 开始前已被取消时返回 false
+         */
+        synchronized boolean start(Thread thread) {
+            if (cancelRequested) {
+                return false;
+            }
+            driver = thread;
+            status = BacktestStatus.RUNNING;
+            return true;
+        }
+
+        /**
+         * @return 已结束时返回 false
+         */
+        synchronized boolean cancel() {
+            if (isFinished() || cancelRequested) {
+                return false;
+            }
+            cancelRequested = true;
+            if (driver != null) {
+                driver.interrupt();
+            } else {
+                finish(BacktestStatus.CANCELLED, null);
+            }
+            return true;
+        }
+
+        synchronized void finish(BacktestStatus finalStatus, String message) {
+            status = cancelRequested ? BacktestStatus.CANCELLED : finalStatus;
+            error = message;
+            finishedAt = LocalDateTime.now();
+            driver = null;
+            for (Trial trial : trials) {
+                if (trial.status == SweepRunStatus.PENDING || trial.status == SweepRunStatus.RUNNING) {
+                    trial.status = SweepRunStatus.CANCELLED;
+                }
+            }
+        }
+
+        synchronized boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        synchronized List<Trial> addTrials(List<Map<String, Object>> candidates) {
+            List<Trial> added = new ArrayList<>();
+            for (Map<String, Object> params : candidates) {
+                Trial trial = new Trial(trials.size(), params);
+                trials.add(trial);
+                added.add(trial);
+            }
+            return added;
+        }
+
+        synchronized void markRunning(Trial trial, int rung) {
+            trial.status = SweepRunStatus.RUNNING;
+            trial.rung = rung;
+        }
+
+        synchronized void record(Trial trial, SweepOutcome outcome, int rung, boolean last, boolean fromCache) {
+            if (fromCache) {
+                cachedRuns++;
+            } else if (outcome.status() != SweepRunStatus.CANCELLED) {
+                executedRuns++;
+            }
+            trial.rung = rung;
+            trial.cached = fromCache;
+            if (outcome.succeeded()) {
+                trial.status = last ? SweepRunStatus.COMPLETED : SweepRunStatus.PENDING;
+                trial.objective = outcome.objective();
+                trial.metrics = outcome.metrics();
+                trial.reportName = outcome.reportName();
+                trial.reportTimestamp = outcome.reportTimestamp();
+            } else {
+                trial.status = outcome.status();
+                trial.objective = null;
+            }
+        }
+
+        /**
+         * 当前轮次成功的组合中保留目标值排在前 1/eta 的，其余标记为 PRUNED
+         */
+        synchronized List<Trial> promote(List<Trial> evaluated) {
+            List<Trial> succeeded = new ArrayList<>();
+            for (Trial trial : evaluated) {
+                if (trial.status == SweepRunStatus.PENDING && trial.objective != null) {
+                    succeeded.add(trial);
+                }
+            }
+            succeeded.sort(byObjective());
+            int keep = (int) Math.ceil(succeeded.size() / (double) eta);
+            for (Trial trial : succeeded.subList(keep, succeeded.size())) {
+                trial.status = SweepRunStatus.PRUNED;
+            }
+            return new ArrayList<>(succeeded.subList(0, keep));
+        }
+
+        /**
+         * 贝叶斯优化的观测值：完整区间上的结果；淘汰或失败的组合按最差值处理
+         */
+        synchronized List<ParameterSpace.Observation> observations() {
+            double worst = maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            List<ParameterSpace.Observation> observations = new ArrayList<>();
+            for (Trial trial : trials) {
+                if (trial.status == SweepRunStatus.COMPLETED) {
+                    observations.add(new ParameterSpace.Observation(trial.params, trial.objective));
+                } else if (trial.status == SweepRunStatus.PRUNED || trial.status == SweepRunStatus.FAILED) {
+                    observations.add(new ParameterSpace.Observation(trial.params, worst));
+                }
+            }
+            return observations;
+        }
+
+        synchronized Set<Map<String, Object>> triedParams() {
+            Set<Map<String, Object>> tried = new HashSet<>();
+            for (Trial trial : trials) {
+                tried.add(trial.params);
+            }
+            return tried;
+        }
+
+        synchronized ParameterSweepDto toDto(int limit) {
+            List<Trial> ranked = new ArrayList<>(trials);
+            ranked.sort(Comparator.comparingInt((Trial t) -> statusOrder(t.status))
+                    .thenComparing(Comparator.comparingInt((Trial t) -> t.rung).reversed())
+                    .thenComparing(byObjective())
+                    .thenComparingInt(t -> t.index));
+            List<SweepResultRow> rows = new ArrayList<>();
+            int completed = 0;
+            int pruned = 0;
+            int failed = 0;
+            for (int i = 0; i < ranked.size(); i++) {
+                Trial trial = ranked.get(i);
+                switch (trial.status) {
+                    case COMPLETED -> completed++;
+                    case PRUNED -> pruned++;
+                    case FAILED -> failed++;
+                    default -> { }
+                }
+                if (i < limit) {
+                    rows.add(new SweepResultRow(i + 1, trial.params, trial.objective, trial.status, trial.cached,
+                            trial.rung, trial.reportName, trial.reportTimestamp, trial.metrics));
+                }
+            }
+            return new ParameterSweepDto(id, templateId, method, status, objective, maximize, plannedRuns,
+                    completed, pruned, failed, executedRuns, cachedRuns, error, createdAt, finishedAt, rows);
+        }
+
+        private Comparator<Trial> byObjective() {
+            Comparator<Double> order = maximize ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            return Comparator.comparing((Trial t) -> t.objective, Comparator.nullsLast(order));
+        }
+
+        private static int statusOrder(SweepRunStatus status) {
+            return switch (status) {
+                case COMPLETED -> 0;
+                case PENDING, RUNNING -> 1;
+                case PRUNED -> 2;
+                default -> 3;
+            };
+        }
+    }
+}
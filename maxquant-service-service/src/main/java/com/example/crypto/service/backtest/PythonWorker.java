@@ -0,0 +1,195 @@
+package com.example.crypto.service.backtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 一个常驻的 Python 回测进程（backtest_worker.py）
+ * 通过 stdin 逐行发送 JSON 指令；stdout 由单独的读取线程按行放入队列，
+ * 以 CONTROL_PREFIX 开头的行是 worker 的控制消息，其余行是回测输出。
+ * 同一时间只由一个线程使用。
+ */
+final class PythonWorker {
+    private static final Logger logger = LoggerFactory.getLogger(PythonWorker.class);
+    private static final String CONTROL_PREFIX = "@@WORKER@@ ";
+    // 读取线程遇到 EOF 时放入队列的标记（按引用比较）
+    private static final String EOF = new String("EOF");
+
+    final int id;
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final BlockingQueue<String> output = new LinkedBlockingQueue<>();
+    private final ObjectMapper objectMapper;
+    private final long startedAt = System.currentTimeMillis();
+    private int jobs;
+    private long rssKb;
+
+    private PythonWorker(int id, Process process, ObjectMapper objectMapper) {
+        this.id = id;
+        this.process = process;
+        this.objectMapper = objectMapper;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        Thread reader = new Thread(this::readOutput, "backtest-worker-" + id + "-stdout");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * 启动进程并等待 ready 消息
+     */
+    static PythonWorker start(int id, List<String> command, ObjectMapper objectMapper, long startupTimeoutMs)
+            throws IOException, InterruptedException, TimeoutException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        PythonWorker worker = new PythonWorker(id, pb.start(), objectMapper);
+        try {
+            worker.awaitControl("ready", startupTimeoutMs, line -> logger.info("[Python Worker {}] {}", id, line));
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            worker.kill();
+            throw e;
+        }
+        return worker;
+    }
+
+    /**
+     * 执行一次回测，回测输出逐行交给 lineHandler
+     * @return runner 的退出码
+     * @throws TimeoutException 超时（调用方需结束该进程）
+     * @throws IOException worker 进程在回测过程中退出
+     */
+    int run(String jobId, Map<String, Object> config, long timeoutMs, Consumer<String> lineHandler)
+            throws IOException, InterruptedException, TimeoutException {
+        send(Map.of("op", "run", "id", jobId, "config", config));
+        JsonNode done = awaitControl("done", timeoutMs, lineHandler);
+        jobs++;
+        return done.path("exit_code").asInt(1);
+    }
+
+    boolean ping(long timeoutMs) {
+        try {
+            send(Map.of("op", "ping"));
+            awaitControl("pong", timeoutMs, line -> logger.info("[Python Worker {}] {}", id, line));
+            return true;
+        } catch (IOException | TimeoutException e) {
+            logger.warn("回测 worker 健康检查失败: worker={}, error={}", id, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    int jobs() {
+        return jobs;
+    }
+
+    long rssKb() {
+        return rssKb;
+    }
+
+    long pid() {
+        return process.pid();
+    }
+
+    long uptimeMs() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    /**
+     * 请求正常退出，超时后强制结束
+     */
+    void stop() {
+        try {
+            send(Map.of("op", "exit"));
+            if (process.waitFor(2, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (IOException e) {
+            // 进程已退出
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        kill();
+    }
+
+    void kill() {
+        process.destroyForcibly();
+    }
+
+    private void send(Map<String, Object> command) throws IOException {
+        stdin.write(objectMapper.writeValueAsString(command));
+        stdin.newLine();
+        stdin.flush();
+    }
+
+    /**
+     * 读取输出直到收到指定的控制消息；期间的普通输出行交给 lineHandler
+     */
+    private JsonNode awaitControl(String event, long timeoutMs, Consumer<String> lineHandler)
+            throws IOException, InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            String line = remaining > 0 ? output.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (line == null) {
+                throw new TimeoutException("Python worker " + id + " did not report '" + event + "' within " + timeoutMs + " ms");
+            }
+            if (line == EOF) {
+                // 保留标记，后续调用同样立即失败
+                output.offer(EOF);
+                throw new IOException("Python worker " + id + " exited" + exitCodeSuffix());
+            }
+            if (!line.startsWith(CONTROL_PREFIX)) {
+                lineHandler.accept(line);
+                continue;
+            }
+            JsonNode message = objectMapper.readTree(line.substring(CONTROL_PREFIX.length()));
+            rssKb = message.path("rss_kb").asLong(rssKb);
+            if (event.equals(message.path("event").asText())) {
+                return message;
+            }
+        }
+    }
+
+    private String exitCodeSuffix() {
+        try {
+            return process.waitFor(1, TimeUnit.SECONDS) ? " with code " + process.exitValue() : "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+    }
+
+    private void readOutput() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.offer(line);
+            }
+        } catch (IOException e) {
+            logger.debug("回测 worker 输出读取结束: worker={}, error={}", id, e.getMessage());
+        } finally {
+            output.offer(EOF);
+        }
+    }
+}
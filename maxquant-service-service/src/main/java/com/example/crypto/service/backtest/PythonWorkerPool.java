@@ -0,0 +1,372 @@
+package com.example.crypto.service.backtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 常驻 Python 回测进程池
+ * 启动时预热 pool-size 个 backtest_worker.py 进程，回测配置通过管道发给空闲进程执行，
+ * 避免每次回测启动解释器、导入回测库的开销。同时执行的回测数不超过 pool-size，其余调用方阻塞等待。
+ * pool-size 为 0 时按 CPU 核数和物理内存（每个进程 memory-per-worker-mb）自动确定。
+ * 进程执行满 max-jobs 次或常驻内存超过 max-rss-mb 后回收并补充新进程；
+ * 空闲进程定期 ping 做健康检查，无响应的进程结束后补充。
+ * 回测超时或执行中进程退出时结束该进程，不会把状态不明的进程放回池中。
+ */
+@Component
+public class PythonWorkerPool {
+    private static final Logger logger = LoggerFactory.getLogger(PythonWorkerPool.class);
+    private static final String WORKER_RESOURCE = "/python/backtest_worker.py";
+    private static final String DATASET_READER_RESOURCE = "/python/dataset_reader.py";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${backtest.python.executable:python3}")
+    private String pythonExecutable;
+
+    @Value("${backtest.python.runner-script-path:quantlib/backtest_runner.py}")
+    private String runnerScriptPath;
+
+    // 为空时使用 jar 内置的 backtest_worker.py（解压到临时目录）
+    @Value("${backtest.worker.script-path:}")
+    private String workerScriptPath;
+
+    // worker 启动时预先导入的模块，逗号分隔（如回测库的顶层包）
+    @Value("${backtest.worker.preload-modules:}")
+    private String preloadModules;
+
+    @Value("${backtest.worker.pool-size:0}")
+    private int poolSize;
+
+    @Value("${backtest.worker.memory-per-worker-mb:1024}")
+    private long memoryPerWorkerMb;
+
+    @Value("${backtest.worker.max-jobs:50}")
+    private int maxJobs;
+
+    @Value("${backtest.worker.max-rss-mb:2048}")
+    private long maxRssMb;
+
+    @Value("${backtest.worker.job-timeout-minutes:10}")
+    private long jobTimeoutMinutes;
+
+    @Value("${backtest.worker.startup-timeout-ms:60000}")
+    private long startupTimeoutMs;
+
+    @Value("${backtest.worker.health-check-interval-ms:30000}")
+    private long healthCheckIntervalMs;
+
+    @Value("${backtest.worker.health-check-timeout-ms:5000}")
+    private long healthCheckTimeoutMs;
+
+    private final LinkedBlockingDeque<PythonWorker> idle = new LinkedBlockingDeque<>();
+    // backtestId -> 正在执行该回测的进程
+    private final Map<String, PythonWorker> busy = new ConcurrentHashMap<>();
+    private final AtomicInteger nextWorkerId = new AtomicInteger();
+    private final LongAdder workerStarts = new LongAdder();
+    private final LongAdder workerStartFailures = new LongAdder();
+    private final LongAdder recycledWorkers = new LongAdder();
+    private final LongAdder healthCheckFailures = new LongAdder();
+    private final LongAdder coldStarts = new LongAdder();
+    private final LongAdder completedJobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder timedOutJobs = new LongAdder();
+    private final LongAdder crashedJobs = new LongAdder();
+    private final LongAdder totalJobMs = new LongAdder();
+    private Semaphore slots;
+    private ScheduledExecutorService maintenanceExecutor;
+    private volatile Path workerScript;
+    private volatile boolean shuttingDown;
+
+    public PythonWorkerPool(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (poolSize <= 0) {
+            poolSize = autoPoolSize();
+        }
+        slots = new Semaphore(poolSize, true);
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "backtest-worker-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceExecutor.execute(this::replenish);
+        maintenanceExecutor.scheduleWithFixedDelay(this::healthCheck, healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        maintenanceExecutor.shutdownNow();
+        PythonWorker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            worker.stop();
+        }
+        busy.values().forEach(PythonWorker::kill);
+    }
+
+    /**
+     * 在空闲进程中执行一次回测，回测输出（RESULT: 行和日志）逐行交给 lineHandler
+     * @return runner 的退出码
+     * @throws TimeoutException 超过 job-timeout-minutes 未结束（进程已结束）
+     * @throws IOException 无法启动 worker，或回测过程中进程退出
+     */
+    public int run(String backtestId, Map<String, Object> config, Consumer<String> lineHandler)
+            throws IOException, InterruptedException, TimeoutException {
+        slots.acquire();
+        PythonWorker worker = null;
+        try {
+            worker = borrow();
+            busy.put(backtestId, worker);
+            long start = System.currentTimeMillis();
+            int exitCode;
+            try {
+                exitCode = worker.run(backtestId, config, TimeUnit.MINUTES.toMillis(jobTimeoutMinutes), lineHandler);
+            } catch (TimeoutException e) {
+                timedOutJobs.increment();
+                throw e;
+            } catch (IOException e) {
+                crashedJobs.increment();
+                throw e;
+            }
+            totalJobMs.add(System.currentTimeMillis() - start);
+            if (exitCode == 0) {
+                completedJobs.increment();
+            } else {
+                failedJobs.increment();
+            }
+            busy.remove(backtestId);
+            giveBack(worker);
+            worker = null;
+            return exitCode;
+        } finally {
+            if (worker != null) {
+                // 超时、进程退出或被中断：进程状态不明，直接结束
+                busy.remove(backtestId);
+                worker.kill();
+                requestReplenish();
+            }
+            slots.release();
+        }
+    }
+
+    /**
+     * 池中进程数，即可同时执行的回测数
+     */
+    public int poolSize() {
+        return poolSize;
+    }
+
+    public PythonWorkerPoolMetrics metrics() {
+        long jobs = completedJobs.sum() + failedJobs.sum();
+        return new PythonWorkerPoolMetrics(poolSize, idle.size(), busy.size(), slots.getQueueLength(),
+                workerStarts.sum(), workerStartFailures.sum(), recycledWorkers.sum(), healthCheckFailures.sum(),
+                coldStarts.sum(), completedJobs.sum(), failedJobs.sum(), timedOutJobs.sum(), crashedJobs.sum(),
+                jobs > 0 ? (double) totalJobMs.sum() / jobs : 0);
+    }
+
+    private int autoPoolSize() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int size = cores;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            // 给 JVM 自身留出堆内存
+            long availableMb = (os.getTotalMemorySize() - Runtime.getRuntime().maxMemory()) / (1024 * 1024);
+            size = (int) Math.min(size, availableMb / Math.max(1, memoryPerWorkerMb));
+        }
+        size = Math.max(1, size);
+        logger.info("回测进程池大小按资源自动确定: cores={}, memoryPerWorkerMb={}, poolSize={}", cores, memoryPerWorkerMb, size);
+        return size;
+    }
+
+    private PythonWorker borrow() throws IOException, InterruptedException, TimeoutException {
+        PythonWorker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            logger.warn("回测 worker 已退出，丢弃: worker={}", worker.id);
+        }
+        // 没有预热好的进程（启动中或刚被回收），在当前线程启动
+        coldStarts.increment();
+        return startWorker();
+    }
+
+    private void giveBack(PythonWorker worker) {
+        if (shuttingDown) {
+            worker.stop();
+            return;
+        }
+        String reason = recycleReason(worker);
+        if (reason == null) {
+            idle.offerFirst(worker);
+            return;
+        }
+        recycledWorkers.increment();
+        logger.info("回收回测 worker: worker={}, pid={}, jobs={}, rssKb={}, reason={}",
+                worker.id, worker.pid(), worker.jobs(), worker.rssKb(), reason);
+        maintenanceExecutor.execute(() -> {
+            worker.stop();
+            replenish();
+        });
+    }
+
+    private String recycleReason(PythonWorker worker) {
+        if (!worker.isAlive()) {
+            return "exited";
+        }
+        if (idle.size() + busy.size() >= poolSize) {
+            // 回测线程现启动的进程与补充的进程重叠，多出的进程不放回
+            return "pool full";
+        }
+        if (worker.jobs() >= maxJobs) {
+            return "max jobs reached";
+        }
+        if (worker.rssKb() > maxRssMb * 1024) {
+            return "memory limit exceeded";
+        }
+        return null;
+    }
+
+    private void requestReplenish() {
+        if (!shuttingDown) {
+            maintenanceExecutor.execute(this::replenish);
+        }
+    }
+
+    /**
+     * 补足到 pool-size 个进程；启动失败时等下一次健康检查再试
+     */
+    private void replenish() {
+        while (!shuttingDown && idle.size() + busy.size() < poolSize) {
+            try {
+                idle.offerLast(startWorker());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("回测 worker 启动失败: error={}", e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    private void healthCheck() {
+        try {
+            for (int i = idle.size(); i > 0; i--) {
+                PythonWorker worker = idle.pollLast();
+                if (worker == null) {
+                    break;
+                }
+                if (!worker.isAlive() || !worker.ping(healthCheckTimeoutMs)) {
+                    healthCheckFailures.increment();
+                    worker.kill();
+                    continue;
+                }
+                if (worker.rssKb() > maxRssMb * 1024) {
+                    recycledWorkers.increment();
+                    logger.info("回收回测 worker: worker={}, rssKb={}, reason=memory limit exceeded", worker.id, worker.rssKb());
+                    worker.stop();
+                    continue;
+                }
+                idle.offerFirst(worker);
+            }
+            replenish();
+        } catch (Exception e) {
+            logger.error("回测 worker 健康检查异常: error={}", e.getMessage(), e);
+        }
+    }
+
+    private PythonWorker startWorker() throws IOException, InterruptedException, TimeoutException {
+        int id = nextWorkerId.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try {
+            PythonWorker worker = PythonWorker.start(id, command(), objectMapper, startupTimeoutMs);
+            workerStarts.increment();
+            logger.info("回测 worker 已启动: worker={}, pid={}, elapsedMs={}", id, worker.pid(), System.currentTimeMillis() - start);
+            return worker;
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            workerStartFailures.increment();
+            throw e;
+        }
+    }
+
+    private List<String> command() throws IOException {
+        File runnerFile = new File(runnerScriptPath);
+        if (!runnerFile.exists() || !runnerFile.isFile()) {
+            throw new IOException("Could not find backtest runner script at the configured path: " + runnerScriptPath);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(pythonExecutable);
+        command.add("-u");
+        command.add(workerScript().toString());
+        command.add("--runner");
+        command.add(runnerFile.getAbsolutePath());
+        if (!preloadModules.isBlank()) {
+            command.add("--preload");
+            command.add(preloadModules);
+        }
+        return command;
+    }
+
+    private Path workerScript() throws IOException {
+        Path script = workerScript;
+        if (script != null) {
+            return script;
+        }
+        synchronized (this) {
+            if (workerScript != null) {
+                return workerScript;
+            }
+            if (!workerScriptPath.isBlank()) {
+                script = Paths.get(workerScriptPath).toAbsolutePath();
+            } else {
+                Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "maxquant-backtest-worker");
+                Files.createDirectories(dir);
+                script = dir.resolve("backtest_worker.py");
+                extract(WORKER_RESOURCE, script);
+                // runner 通过 import dataset_reader 读取 DATASET_FILE，与 worker 放在同一目录（sys.path[0]）
+                extract(DATASET_READER_RESOURCE, dir.resolve("dataset_reader.py"));
+            }
+            workerScript = script;
+            return script;
+        }
+    }
+
+    private static void extract(String resource, Path target) throws IOException {
+        try (InputStream in = PythonWorkerPool.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Backtest worker script not found on classpath: " + resource);
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.crypto.service.backtest;
+
+/**
+ * 回测进程池的运行统计（计数为自启动以来的累计值）
+ * waitingJobs 为等待空闲进程的回测数，coldStarts 为没有预热进程、在回测线程中现启动进程的次数，
+ * failedJobs 为 runner 以非 0 退出码结束的回测数，crashedJobs 为执行中进程退出的回测数
+ */
+public record PythonWorkerPoolMetrics(
+        int poolSize,
+        int idleWorkers,
+        int busyWorkers,
+        int waitingJobs,
+        long workerStarts,
+        long workerStartFailures,
+        long recycledWorkers,
+        long healthCheckFailures,
+        long coldStarts,
+        long completedJobs,
+        long failedJobs,
+        long timedOutJobs,
+        long crashedJobs,
+        double avgJobMs
+) {
+}
@@ -0,0 +1,25 @@
+package com.example.crypto.service.backtest;
+
+import com.example.crypto.enums.SweepRunStatus;
+
+import java.util.Map;
+
+/**
+ * 参数扫描中一次回测的结果；status 为 COMPLETED、FAILED 或 CANCELLED
+ * metrics 为 all_performance.csv 的汇总行，objective 为其中目标列的值
+ */
+record SweepOutcome(SweepRunStatus status, Double objective, Map<String, String> metrics,
+                    String reportName, String reportTimestamp, String error) {
+
+    static SweepOutcome failed(String error) {
+        return new SweepOutcome(SweepRunStatus.FAILED, null, Map.of(), null, null, error);
+    }
+
+    static SweepOutcome cancelled() {
+        return new SweepOutcome(SweepRunStatus.CANCELLED, null, Map.of(), null, null, null);
+    }
+
+    boolean succeeded() {
+        return status == SweepRunStatus.COMPLETED;
+    }
+}
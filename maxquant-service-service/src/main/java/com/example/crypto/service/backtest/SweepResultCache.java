@@ -0,0 +1,34 @@
+package com.example.crypto.service.backtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 参数扫描结果的 LRU 缓存
+ * key 为回测配置（策略代码、参数、回测区间等）的规范化哈希，相同配置的回测直接复用汇总结果
+ */
+class SweepResultCache {
+
+    private final Map<String, SweepOutcome> entries;
+
+    SweepResultCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SweepOutcome> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized SweepOutcome get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, SweepOutcome outcome) {
+        entries.put(key, outcome);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.crypto.service.book;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+
+/**
+ * 独立持有数据的档位列表：Binance 推送 / REST 快照解析结果，以及需要暂存的增量（解码器的数组会被下一条消息覆盖）
+ */
+public final class BookLevels implements PriceLevels {
+    private double[] prices;
+    private double[] sizes;
+    private long[] rawPrices;
+    private long[] rawSizes;
+    private int count;
+
+    public BookLevels(int capacity) {
+        int n = Math.max(4, capacity);
+        prices = new double[n];
+        sizes = new double[n];
+        rawPrices = new long[n];
+        rawSizes = new long[n];
+    }
+
+    public static BookLevels copyOf(PriceLevels levels) {
+        BookLevels copy = new BookLevels(levels.count());
+        for (int i = 0; i < levels.count(); i++) {
+            copy.add(levels.price(i), levels.size(i), levels.rawPrice(i), levels.rawSize(i));
+        }
+        return copy;
+    }
+
+    /**
+     * [["价格","数量"], ...] 格式；只取每档的前两项
+     */
+    public static BookLevels fromJson(JsonNode levels) {
+        BookLevels result = new BookLevels(levels != null ? levels.size() : 0);
+        if (levels == null || !levels.isArray()) {
+            return result;
+        }
+        for (JsonNode level : levels) {
+            if (level.size() < 2) {
+                continue;
+            }
+            long rawPrice = PackedDecimal.parse(level.get(0).asText());
+            long rawSize = PackedDecimal.parse(level.get(1).asText());
+            double price = rawPrice != PackedDecimal.INVALID ? PackedDecimal.toDouble(rawPrice) : level.get(0).asDouble(Double.NaN);
+            double size = rawSize != PackedDecimal.INVALID ? PackedDecimal.toDouble(rawSize) : level.get(1).asDouble(Double.NaN);
+            result.add(price, size, rawPrice, rawSize);
+        }
+        return result;
+    }
+
+    public void add(double price, double size, long rawPrice, long rawSize) {
+        if (count == prices.length) {
+            int n = count * 2;
+            prices = Arrays.copyOf(prices, n);
+            sizes = Arrays.copyOf(sizes, n);
+            rawPrices = Arrays.copyOf(rawPrices, n);
+            rawSizes = Arrays.copyOf(rawSizes, n);
+        }
+        prices[count] = price;
+        sizes[count] = size;
+        rawPrices[count] = rawPrice;
+        rawSizes[count] = rawSize;
+        count++;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public double price(int i) {
+        return prices[i];
+    }
+
+    @Override
+    public double size(int i) {
+        return sizes[i];
+    }
+
+    @Override
+    public long rawPrice(int i) {
+        return rawPrices[i];
+    }
+
+    @Override
+    public long rawSize(int i) {
+        return rawSizes[i];
+    }
+}
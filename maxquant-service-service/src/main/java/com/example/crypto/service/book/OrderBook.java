@@ -0,0 +1,109 @@
+package com.example.crypto.service.book;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 单个合约的订单簿及其同步状态
+ * 写入（快照、增量、重新同步）在 {@link OrderBookEngine} 中对本对象加锁执行，
+ * 读取方只访问 volatile 的 {@link #snapshot}。
+ */
+final class OrderBook {
+    static final long NO_SEQUENCE = Long.MIN_VALUE;
+    private static final int CHECKSUM_LEVELS = 25;
+
+    final String exchange;
+    final String symbol;
+    final OrderBookSide bids;
+    final OrderBookSide asks;
+    long sequence = NO_SEQUENCE;
+    long timestamp;
+    // 已由快照建立且增量连续
+    boolean synced;
+    // 已请求重新同步（OKX 重新订阅 / Binance 拉取 REST 快照），避免重复请求
+    boolean syncRequested;
+    // 请求重新同步后忽略的增量条数
+    int unsyncedUpdates;
+    // OKX：先于前一条到达的增量，按 prevSeqId 暂存
+    final Map<Long, PendingUpdate> pending = new HashMap<>();
+    // Binance：等待 REST 快照期间收到的增量
+    final List<PendingUpdate> buffered = new ArrayList<>();
+    volatile OrderBookSnapshot snapshot;
+
+    OrderBook(String exchange, String symbol, int maxLevels) {
+        this.exchange = exchange;
+        this.symbol = symbol;
+        this.bids = new OrderBookSide(true, maxLevels);
+        this.asks = new OrderBookSide(false, maxLevels);
+    }
+
+    void load(PriceLevels bidLevels, PriceLevels askLevels) {
+        bids.load(bidLevels);
+        asks.load(askLevels);
+    }
+
+    void apply(PriceLevels bidLevels, PriceLevels askLevels) {
+        bids.apply(bidLevels);
+        asks.apply(askLevels);
+    }
+
+    /**
+     * 丢弃订单簿内容，读取方在重新同步完成前读到 null
+     */
+    void reset() {
+        synced = false;
+        sequence = NO_SEQUENCE;
+        bids.clear();
+        asks.clear();
+        pending.clear();
+        snapshot = null;
+    }
+
+    void publish(int levels) {
+        snapshot = new OrderBookSnapshot(exchange, symbol, timestamp, sequence, bids, asks, levels);
+    }
+
+    /**
+     * 按 OKX 规则计算当前订单簿的校验和：前 25 档按 买价:买量:卖价:卖量 交替拼接（一侧不足时只拼另一侧），
+     * 取 CRC32 的有符号 32 位值；有档位无法还原原始字符串时返回 null（不校验）
+     */
+    Integer checksum() {
+        StringBuilder sb = new StringBuilder(CHECKSUM_LEVELS * 64);
+        for (int i = 0; i < CHECKSUM_LEVELS; i++) {
+            if (i < bids.count() && !appendLevel(sb, bids.rawPrice(i), bids.rawSize(i))) {
+                return null;
+            }
+            if (i < asks.count() && !appendLevel(sb, asks.rawPrice(i), asks.rawSize(i))) {
+                return null;
+            }
+        }
+        if (sb.length() > 0) {
+            sb.setLength(sb.length() - 1);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return (int) crc.getValue();
+    }
+
+    private static boolean appendLevel(StringBuilder sb, long rawPrice, long rawSize) {
+        if (rawPrice == PackedDecimal.INVALID || rawSize == PackedDecimal.INVALID) {
+            return false;
+        }
+        PackedDecimal.appendTo(sb, rawPrice);
+        sb.append(':');
+        PackedDecimal.appendTo(sb, rawSize);
+        sb.append(':');
+        return true;
+    }
+
+    /**
+     * 暂存的增量；OKX 为 (prevSeqId, seqId)，Binance 为 (U, u)
+     */
+    record PendingUpdate(long firstId, long finalId, boolean hasChecksum, int checksum, long timestamp,
+                         BookLevels bids, BookLevels asks) {
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.crypto.service.book;
+
+import com.example.crypto.entity.DepthData;
+import com.example.crypto.service.okx.OkxMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 由交易所增量深度推送重建的 L2 订单簿，每个 (exchange, symbol) 一本
+ * OKX：books / books-l2-tbt 频道，snapshot 建立订单簿，update 按 prevSeqId == 上一条 seqId 衔接，每次更新后校验 checksum；
+ * 多个接入消费线程可能使相邻增量乱序到达，先到的增量暂存，等前一条到达后依次应用。
+ * Binance：diff 深度流（U / u）配合 REST 快照（lastUpdateId），等待快照期间的增量先缓存，快照到达后丢弃旧增量并顺序应用。
+ * 校验和不一致或序号断档时丢弃订单簿并返回 {@link Result#RESYNC}，由交易所服务重新订阅或重新拉取快照。
+ * 写入对单本订单簿加锁；每次更新后发布前 snapshot-levels 档的不可变副本，读取方不加锁。
+ */
+@Component
+public class OrderBookEngine {
+    private static final Logger logger = LoggerFactory.getLogger(OrderBookEngine.class);
+    private static final int MAX_PENDING_UPDATES = 32;
+    private static final int MAX_BUFFERED_UPDATES = 2000;
+    // 请求重新同步后仍未收到快照，再忽略这么多条增量后重新请求一次
+    private static final int RESYNC_RETRY_UPDATES = 500;
+
+    public enum Result {
+        APPLIED,  // 已应用并发布新的快照
+        BUFFERED, // 暂存，等待前序增量或快照
+        IGNORED,  // 过期或重复，或正在等待重新同步
+        RESYNC    // 需要重新同步（调用方重新订阅 / 拉取快照）
+    }
+
+    @Value("${orderbook.max-levels:2000}")
+    private int maxLevels;
+
+    @Value("${orderbook.snapshot-levels:50}")
+    private int snapshotLevels;
+
+    @Value("${orderbook.broadcast-levels:20}")
+    private int broadcastLevels;
+
+    @Value("${orderbook.persist-levels:20}")
+    private int persistLevels;
+
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder checksumFailures = new LongAdder();
+    private final LongAdder sequenceGaps = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    /**
+     * 最新发布的快照；尚未同步或正在重新同步时返回 null
+     */
+    public OrderBookSnapshot snapshot(String exchange, String symbol) {
+        OrderBook book = books.get(key(exchange, symbol));
+        return book != null ? book.snapshot : null;
+    }
+
+    public OrderBookView view(String exchange, String symbol, int levels) {
+        OrderBookSnapshot snapshot = snapshot(exchange, symbol);
+        return snapshot != null ? snapshot.toView(Math.max(1, Math.min(levels, snapshotLevels))) : null;
+    }
+
+    /**
+     * 推送给前端的前 broadcast-levels 档
+     */
+    public String broadcastPayload(OrderBookSnapshot snapshot) {
+        return snapshot.toJson(broadcastLevels);
+    }
+
+    /**
+     * 落库的前 persist-levels 档
+     */
+    public DepthData toDepthData(OrderBookSnapshot snapshot) {
+        return snapshot.toDepthData(persistLevels);
+    }
+
+    public void remove(String exchange, String symbol) {
+        books.remove(key(exchange, symbol));
+    }
+
+    /**
+     * 连接断开重连时丢弃该交易所的全部订单簿
+     */
+    public void clear(String exchange) {
+        String prefix = exchange + ":";
+        books.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    public OrderBookMetrics metrics() {
+        int synced = 0;
+        for (OrderBook book : books.values()) {
+            if (book.snapshot != null) {
+                synced++;
+            }
+        }
+        return new OrderBookMetrics(books.size(), synced, snapshots.sum(), updates.sum(),
+                checksumFailures.sum(), sequenceGaps.sum(), resyncs.sum());
+    }
+
+    /**
+     * 应用一条 OKX 深度推送（decoder 已解码为 BOOK）；没有 action 的频道（books5、bbo-tbt）每条都按快照处理
+     */
+    public Result applyOkx(OkxMessageDecoder decoder) {
+        OrderBook book = book("okx", decoder.instId());
+        synchronized (book) {
+            if (!"update".equals(decoder.action())) {
+                snapshots.increment();
+                book.load(decoder.bids(), decoder.asks());
+                book.pending.clear();
+                book.sequence = decoder.seqId();
+                book.timestamp = decoder.timestamp();
+                book.syncRequested = false;
+                book.unsyncedUpdates = 0;
+                if (!checksumMatches(book, decoder.hasChecksum(), decoder.checksum())) {
+                    return resync(book, "checksum mismatch on snapshot");
+                }
+                book.synced = true;
+                return drainOkxPending(book);
+            }
+            if (!book.synced) {
+                return awaitResync(book);
+            }
+            long prevSeqId = decoder.prevSeqId();
+            long seqId = decoder.seqId();
+            if (prevSeqId == OkxMessageDecoder.NO_SEQUENCE || prevSeqId == book.sequence) {
+                Result result = applyOkxUpdate(book, decoder.bids(), decoder.asks(), seqId,
+                        decoder.hasChecksum(), decoder.checksum(), decoder.timestamp());
+                return result == Result.APPLIED ? drainOkxPending(book) : result;
+            }
+            if (seqId <= book.sequence || prevSeqId == seqId) {
+                // 已应用过的增量，或乱序到达的无变化心跳
+                return Result.IGNORED;
+            }
+            book.pending.put(prevSeqId, new OrderBook.PendingUpdate(prevSeqId, seqId, decoder.hasChecksum(), decoder.checksum(),
+                    decoder.timestamp(), BookLevels.copyOf(decoder.bids()), BookLevels.copyOf(decoder.asks())));
+            if (book.pending.size() > MAX_PENDING_UPDATES) {
+                sequenceGaps.increment();
+                return resync(book, "sequence gap after seqId " + book.sequence);
+            }
+            return Result.BUFFERED;
+        }
+    }
+
+    /**
+     * 应用一条 Binance diff 深度推送；首次收到或断档时返回 RESYNC，调用方拉取 REST 快照后调用 {@link #applyBinanceSnapshot}
+     */
+    public Result applyBinanceDiff(String symbol, long firstUpdateId, long finalUpdateId,
+                                   BookLevels bids, BookLevels asks, long timestamp) {
+        OrderBook book = book("binance", symbol);
+        synchronized (book) {
+            OrderBook.PendingUpdate update = new OrderBook.PendingUpdate(firstUpdateId, finalUpdateId, false, 0, timestamp, bids, asks);
+            if (!book.synced) {
+                book.buffered.add(update);
+                if (book.buffered.size() > MAX_BUFFERED_UPDATES) {
+                    book.buffered.remove(0);
+                }
+                if (book.syncRequested) {
+                    return Result.BUFFERED;
+                }
+                book.syncRequested = true;
+                return Result.RESYNC;
+            }
+            if (finalUpdateId <= book.sequence) {
+                return Result.IGNORED;
+            }
+            if (firstUpdateId > book.sequence + 1) {
+                sequenceGaps.increment();
+                book.buffered.clear();
+                Result result = resync(book, "sequence gap after updateId " + book.sequence);
+                book.buffered.add(update);
+                return result;
+            }
+            book.apply(bids, asks);
+            book.sequence = finalUpdateId;
+            book.timestamp = timestamp;
+            updates.increment();
+            book.publish(snapshotLevels);
+            return Result.APPLIED;
+        }
+    }
+
+    /**
+     * 用 REST 快照建立 Binance 订单簿，并应用缓存中 lastUpdateId 之后的增量
+     * @return 快照与缓存的增量衔接不上（快照过旧或增量有缺失）时返回 false，调用方稍后重新拉取快照
+     */
+    public boolean applyBinanceSnapshot(String symbol, long lastUpdateId, BookLevels bids, BookLevels asks, long timestamp) {
+        OrderBook book = book("binance", symbol);
+        synchronized (book) {
+            snapshots.increment();
+            book.load(bids, asks);
+            book.sequence = lastUpdateId;
+            book.timestamp = timestamp;
+            for (OrderBook.PendingUpdate update : book.buffered) {
+                if (update.finalId() <= book.sequence) {
+                    continue;
+                }
+                if (update.firstId() > book.sequence + 1) {
+                    sequenceGaps.increment();
+                    book.reset();
+                    logger.warn("Binance 深度快照与增量无法衔接，重新拉取: symbol={}, lastUpdateId={}, nextFirstUpdateId={}",
+                            symbol, lastUpdateId, update.firstId());
+                    return false;
+                }
+                book.apply(update.bids(), update.asks());
+                book.sequence = update.finalId();
+                book.timestamp = update.timestamp();
+                updates.increment();
+            }
+            book.buffered.clear();
+            book.synced = true;
+            book.syncRequested = false;
+            book.publish(snapshotLevels);
+            logger.info("Binance 订单簿已同步: symbol={}, updateId={}, bids={}, asks={}",
+                    symbol, book.sequence, book.bids.count(), book.asks.count());
+            return true;
+        }
+    }
+
+    private Result applyOkxUpdate(OrderBook book, PriceLevels bids, PriceLevels asks, long seqId,
+                                  boolean hasChecksum, int checksum, long timestamp) {
+        book.apply(bids, asks);
+        if (seqId != OkxMessageDecoder.NO_SEQUENCE) {
+            book.sequence = seqId;
+        }
+        book.timestamp = timestamp;
+        updates.increment();
+        if (!checksumMatches(book, hasChecksum, checksum)) {
+            return resync(book, "checksum mismatch at seqId " + seqId);
+        }
+        return Result.APPLIED;
+    }
+
+    /**
+     * 依次应用已暂存且能衔接上的增量，然后发布快照
+     */
+    private Result drainOkxPending(OrderBook book) {
+        OrderBook.PendingUpdate next;
+        while (!book.pending.isEmpty() && (next = book.pending.remove(book.sequence)) != null) {
+            Result result = applyOkxUpdate(book, next.bids(), next.asks(), next.finalId(),
+                    next.hasChecksum(), next.checksum(), next.timestamp());
+            if (result != Result.APPLIED) {
+                return result;
+            }
+        }
+        book.publish(snapshotLevels);
+        return Result.APPLIED;
+    }
+
+    private boolean checksumMatches(OrderBook book, boolean hasChecksum, int expected) {
+        if (!hasChecksum) {
+            return true;
+        }
+        Integer actual = book.checksum();
+        if (actual == null || actual == expected) {
+            return true;
+        }
+        checksumFailures.increment();
+        return false;
+    }
+
+    private Result resync(OrderBook book, String reason) {
+        book.reset();
+        resyncs.increment();
+        if (book.syncRequested) {
+            return Result.IGNORED;
+        }
+        book.syncRequested = true;
+        book.unsyncedUpdates = 0;
+        logger.warn("订单簿需要重新同步: exchange={}, symbol={}, reason={}", book.exchange, book.symbol, reason);
+        return Result.RESYNC;
+    }
+
+    /**
+     * 等待快照期间收到的增量直接丢弃；长时间收不到快照（重新订阅请求丢失等）时再请求一次
+     */
+    private Result awaitResync(OrderBook book) {
+        if (++book.unsyncedUpdates < RESYNC_RETRY_UPDATES) {
+            return Result.IGNORED;
+        }
+        book.unsyncedUpdates = 0;
+        book.syncRequested = true;
+        return Result.RESYNC;
+    }
+
+    private OrderBook book(String exchange, String symbol) {
+        return books.computeIfAbsent(key(exchange, symbol), k -> new OrderBook(exchange, symbol, maxLevels));
+    }
+
+    private static String key(String exchange, String symbol) {
+        return exchange + ":" + symbol;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.crypto.service.book;
+
+/**
+ * 订单簿引擎的运行统计（自启动以来的累计值）
+ * checksumFailures 为 OKX 校验和不一致的次数，sequenceGaps 为增量序号不连续的次数，resyncs 为因此丢弃订单簿重新同步的次数
+ */
+public record OrderBookMetrics(
+        int books,
+        int syncedBooks,
+        long snapshots,
+        long updates,
+        long checksumFailures,
+        long sequenceGaps,
+        long resyncs
+) {
+}
@@ -0,0 +1,149 @@
+package com.example.crypto.service.book;
+
+import java.util.Arrays;
+
+/**
+ * 订单簿的一侧，按价格排好序的原始类型数组（买方降序、卖方升序），下标 0 为最优价
+ * 更新用二分查找定位，插入和删除移动数组元素；增量几乎都落在最优价附近，移动的元素很少。
+ * 非线程安全，由 {@link OrderBook} 的写入方加锁访问。
+ */
+final class OrderBookSide {
+    private static final int INITIAL_LEVELS = 64;
+
+    private final boolean bids;
+    private final int maxLevels;
+    private double[] prices = new double[INITIAL_LEVELS];
+    private double[] sizes = new double[INITIAL_LEVELS];
+    private long[] rawPrices = new long[INITIAL_LEVELS];
+    private long[] rawSizes = new long[INITIAL_LEVELS];
+    private int count;
+
+    OrderBookSide(boolean bids, int maxLevels) {
+        this.bids = bids;
+        this.maxLevels = maxLevels;
+    }
+
+    int count() {
+        return count;
+    }
+
+    double price(int i) {
+        return prices[i];
+    }
+
+    double size(int i) {
+        return sizes[i];
+    }
+
+    long rawPrice(int i) {
+        return rawPrices[i];
+    }
+
+    long rawSize(int i) {
+        return rawSizes[i];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void load(PriceLevels levels) {
+        clear();
+        apply(levels);
+    }
+
+    void apply(PriceLevels levels) {
+        for (int i = 0; i < levels.count(); i++) {
+            update(levels.price(i), levels.size(i), levels.rawPrice(i), levels.rawSize(i));
+        }
+    }
+
+    /**
+     * 数量为 0 表示删除该价位；超出 maxLevels 的远端价位不保留
+     */
+    void update(double price, double size, long rawPrice, long rawSize) {
+        if (Double.isNaN(price) || Double.isNaN(size)) {
+            return;
+        }
+        int i = search(price);
+        if (size == 0) {
+            if (i >= 0) {
+                int moved = count - i - 1;
+                System.arraycopy(prices, i + 1, prices, i, moved);
+                System.arraycopy(sizes, i + 1, sizes, i, moved);
+                System.arraycopy(rawPrices, i + 1, rawPrices, i, moved);
+                System.arraycopy(rawSizes, i + 1, rawSizes, i, moved);
+                count--;
+            }
+            return;
+        }
+        if (i >= 0) {
+            sizes[i] = size;
+            rawPrices[i] = rawPrice;
+            rawSizes[i] = rawSize;
+            return;
+        }
+        int at = -i - 1;
+        if (at >= maxLevels) {
+            return;
+        }
+        if (count == prices.length) {
+            grow();
+        }
+        int moved = Math.min(count, maxLevels - 1) - at;
+        System.arraycopy(prices, at, prices, at + 1, moved);
+        System.arraycopy(sizes, at, sizes, at + 1, moved);
+        System.arraycopy(rawPrices, at, rawPrices, at + 1, moved);
+        System.arraycopy(rawSizes, at, rawSizes, at + 1, moved);
+        prices[at] = price;
+        sizes[at] = size;
+        rawPrices[at] = rawPrice;
+        rawSizes[at] = rawSize;
+        count = Math.min(count + 1, maxLevels);
+    }
+
+    double[] copyPrices(int n) {
+        return Arrays.copyOf(prices, Math.min(n, count));
+    }
+
+    double[] copySizes(int n) {
+        return Arrays.copyOf(sizes, Math.min(n, count));
+    }
+
+    long[] copyRawPrices(int n) {
+        return Arrays.copyOf(rawPrices, Math.min(n, count));
+    }
+
+    long[] copyRawSizes(int n) {
+        return Arrays.copyOf(rawSizes, Math.min(n, count));
+    }
+
+    /**
+     * 找到返回下标，否则返回 -(插入位置) - 1
+     */
+    private int search(double price) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            double p = prices[mid];
+            if (p == price) {
+                return mid;
+            }
+            if (bids ? p > price : p < price) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private void grow() {
+        int n = Math.min(prices.length * 2, maxLevels + 1);
+        prices = Arrays.copyOf(prices, n);
+        sizes = Arrays.copyOf(sizes, n);
+        rawPrices = Arrays.copyOf(rawPrices, n);
+        rawSizes = Arrays.copyOf(rawSizes, n);
+    }
+}
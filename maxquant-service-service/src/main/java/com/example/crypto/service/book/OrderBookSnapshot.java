@@ -0,0 +1,203 @@
+package com.example.crypto.service.book;
+
+import com.example.crypto.entity.DepthData;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 订单簿前若干档的不可变副本
+ * 每次更新后由写入方生成并通过 volatile 引用发布，读取方（推送、落库、查询）直接读取，不加锁。
+ */
+public final class OrderBookSnapshot {
+    private final String exchange;
+    private final String symbol;
+    private final long timestamp;
+    private final long sequence;
+    private final double[] bidPrices;
+    private final double[] bidSizes;
+    private final double[] askPrices;
+    private final double[] askSizes;
+    private final long[] rawBidPrices;
+    private final long[] rawBidSizes;
+    private final long[] rawAskPrices;
+    private final long[] rawAskSizes;
+
+    OrderBookSnapshot(String exchange, String symbol, long timestamp, long sequence,
+                      OrderBookSide bids, OrderBookSide asks, int levels) {
+        this.exchange = exchange;
+        this.symbol = symbol;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.bidPrices = bids.copyPrices(levels);
+        this.bidSizes = bids.copySizes(levels);
+        this.askPrices = asks.copyPrices(levels);
+        this.askSizes = asks.copySizes(levels);
+        this.rawBidPrices = bids.copyRawPrices(levels);
+        this.rawBidSizes = bids.copyRawSizes(levels);
+        this.rawAskPrices = asks.copyRawPrices(levels);
+        this.rawAskSizes = asks.copyRawSizes(levels);
+    }
+
+    public String exchange() {
+        return exchange;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 最后应用的序号（OKX seqId / Binance updateId）
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public int bidCount() {
+        return bidPrices.length;
+    }
+
+    public int askCount() {
+        return askPrices.length;
+    }
+
+    public double bidPrice(int i) {
+        return bidPrices[i];
+    }
+
+    public double bidSize(int i) {
+        return bidSizes[i];
+    }
+
+    public double askPrice(int i) {
+        return askPrices[i];
+    }
+
+    public double askSize(int i) {
+        return askSizes[i];
+    }
+
+    public double bestBid() {
+        return bidPrices.length > 0 ? bidPrices[0] : Double.NaN;
+    }
+
+    public double bestAsk() {
+        return askPrices.length > 0 ? askPrices[0] : Double.NaN;
+    }
+
+    public double mid() {
+        return (bestBid() + bestAsk()) / 2;
+    }
+
+    public double spread() {
+        return bestAsk() - bestBid();
+    }
+
+    /**
+     * 按一档数量加权的中间价：买一量大时靠近卖一价
+     */
+    public double microprice() {
+        if (bidPrices.length == 0 || askPrices.length == 0) {
+            return Double.NaN;
+        }
+        double volume = bidSizes[0] + askSizes[0];
+        if (volume <= 0) {
+            return mid();
+        }
+        return (bidPrices[0] * askSizes[0] + askPrices[0] * bidSizes[0]) / volume;
+    }
+
+    /**
+     * 前 levels 档的挂单量失衡 (买量 - 卖量) / (买量 + 卖量)，取值 [-1, 1]；两侧都为空时为 NaN
+     */
+    public double imbalance(int levels) {
+        double bidVolume = 0;
+        double askVolume = 0;
+        for (int i = 0; i < Math.min(levels, bidSizes.length); i++) {
+            bidVolume += bidSizes[i];
+        }
+        for (int i = 0; i < Math.min(levels, askSizes.length); i++) {
+            askVolume += askSizes[i];
+        }
+        double total = bidVolume + askVolume;
+        return total > 0 ? (bidVolume - askVolume) / total : Double.NaN;
+    }
+
+    /**
+     * 前 levels 档转换为深度实体，供 ClickHouse 落库
+     */
+    public DepthData toDepthData(int levels) {
+        DepthData data = new DepthData();
+        data.setSymbol(symbol);
+        data.setExchange(exchange);
+        data.setTimestamp(timestamp);
+        data.setBidLevels(Arrays.copyOf(bidPrices, Math.min(levels, bidPrices.length)),
+                Arrays.copyOf(bidSizes, Math.min(levels, bidSizes.length)));
+        data.setAskLevels(Arrays.copyOf(askPrices, Math.min(levels, askPrices.length)),
+                Arrays.copyOf(askSizes, Math.min(levels, askSizes.length)));
+        return data;
+    }
+
+    /**
+     * 前 levels 档的查询结果；档位为 [[价格, 数量], ...]
+     */
+    public OrderBookView toView(int levels) {
+        return new OrderBookView(exchange, symbol, timestamp, sequence,
+                toPairs(bidPrices, bidSizes, levels), toPairs(askPrices, askSizes, levels),
+                bestBid(), bestAsk(), mid(), spread(), microprice(), imbalance(levels));
+    }
+
+    /**
+     * 推送给前端的 JSON：{"exchange","symbol","ts","seqId","bids":[["价格","数量"],...],"asks":[...]}
+     * 价格、数量使用交易所推送中的原始字符串
+     */
+    public String toJson(int levels) {
+        StringBuilder sb = new StringBuilder(128 + levels * 64);
+        sb.append("{\"exchange\":\"").append(exchange)
+                .append("\",\"symbol\":\"").append(symbol)
+                .append("\",\"ts\":").append(timestamp)
+                .append(",\"seqId\":").append(sequence)
+                .append(",\"bids\":");
+        appendLevels(sb, bidPrices, bidSizes, rawBidPrices, rawBidSizes, levels);
+        sb.append(",\"asks\":");
+        appendLevels(sb, askPrices, askSizes, rawAskPrices, rawAskSizes, levels);
+        return sb.append('}').toString();
+    }
+
+    private static void appendLevels(StringBuilder sb, double[] prices, double[] sizes, long[] rawPrices, long[] rawSizes, int levels) {
+        sb.append('[');
+        for (int i = 0; i < Math.min(levels, prices.length); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("[\"");
+            appendDecimal(sb, prices[i], rawPrices[i]);
+            sb.append("\",\"");
+            appendDecimal(sb, sizes[i], rawSizes[i]);
+            sb.append("\"]");
+        }
+        sb.append(']');
+    }
+
+    private static void appendDecimal(StringBuilder sb, double value, long raw) {
+        if (raw != PackedDecimal.INVALID) {
+            PackedDecimal.appendTo(sb, raw);
+        } else {
+            sb.append(BigDecimal.valueOf(value).stripTrailingZeros().toPlainString());
+        }
+    }
+
+    private static double[][] toPairs(double[] prices, double[] sizes, int levels) {
+        int n = Math.min(levels, prices.length);
+        double[][] pairs = new double[n][];
+        for (int i = 0; i < n; i++) {
+            pairs[i] = new double[]{prices[i], sizes[i]};
+        }
+        return pairs;
+    }
+}
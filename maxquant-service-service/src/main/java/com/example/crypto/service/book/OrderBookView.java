@@ -0,0 +1,21 @@
+package com.example.crypto.service.book;
+
+/**
+ * 订单簿查询结果
+ * bids / asks 为 [[价格, 数量], ...]，imbalance 按返回的档数计算；某一侧为空时相关指标为 NaN
+ */
+public record OrderBookView(
+        String exchange,
+        String symbol,
+        long timestamp,
+        long sequence,
+        double[][] bids,
+        double[][] asks,
+        double bestBid,
+        double bestAsk,
+        double mid,
+        double spread,
+        double microprice,
+        double imbalance
+) {
+}
@@ -0,0 +1,91 @@
+package com.example.crypto.service.book;
+
+/**
+ * 把交易所推送的十进制字符串（如 "8476.90"、"0.001"）无损地压缩进一个 long：高位为尾数，低 5 位为小数位数
+ * 可以原样还原出推送中的字符串（包括末尾的 0），OKX 校验和需要用原始字符串计算。
+ * 只支持非负、尾数小于 2^53、小数位不超过 22 的普通小数，其余情况返回 {@link #INVALID}。
+ */
+public final class PackedDecimal {
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int SCALE_BITS = 5;
+    private static final long SCALE_MASK = (1L << SCALE_BITS) - 1;
+    private static final long MAX_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private PackedDecimal() {
+    }
+
+    public static long parse(char[] chars, int offset, int length) {
+        long mantissa = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa >= MAX_MANTISSA) {
+                    return INVALID;
+                }
+                seenDigit = true;
+                if (seenDot) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return INVALID;
+            }
+        }
+        if (!seenDigit || scale >= POWERS_OF_TEN.length) {
+            return INVALID;
+        }
+        return (mantissa << SCALE_BITS) | scale;
+    }
+
+    public static long parse(String text) {
+        return text == null ? INVALID : parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * 尾数不超过 2^53 时一次除以精确的 10 的幂，结果与 Double.parseDouble 一致
+     */
+    public static double toDouble(long packed) {
+        int scale = (int) (packed & SCALE_MASK);
+        long mantissa = packed >>> SCALE_BITS;
+        return scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+    }
+
+    public static void appendTo(StringBuilder sb, long packed) {
+        int scale = (int) (packed & SCALE_MASK);
+        String digits = Long.toString(packed >>> SCALE_BITS);
+        if (scale == 0) {
+            sb.append(digits);
+            return;
+        }
+        int intDigits = digits.length() - scale;
+        if (intDigits > 0) {
+            sb.append(digits, 0, intDigits).append('.').append(digits, intDigits, digits.length());
+        } else {
+            sb.append("0.");
+            for (int i = intDigits; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+    }
+
+    public static String toString(long packed) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, packed);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.crypto.service.book;
+
+/**
+ * 一次推送中某一侧的档位（价格、数量及其原始十进制表示）
+ * 原始值为 {@link PackedDecimal} 编码，无法编码时为 {@link PackedDecimal#INVALID}
+ */
+public interface PriceLevels {
+    int count();
+
+    double price(int i);
+
+    double size(int i);
+
+    long rawPrice(int i);
+
+    long rawSize(int i);
+}
@@ -0,0 +1,409 @@
+package com.example.crypto.service.clickhouse;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClickHouse 异步写入
+ * 调用方把一批行编码成 RowBinary 后提交，由单独的线程通过 ClickHouse HTTP 接口（INSERT ... FORMAT RowBinary）整体写入，
+ * 不经过 JDBC 的逐参数绑定。提交队列有上限，队列满时批次直接写入磁盘，不阻塞调用线程。
+ * 写入失败按指数退避重试，重试用尽后写入 spool-dir 下的文件，定时按文件顺序补写，补写成功后删除文件；
+ * 无法解析的文件改名为 *.bad，不再补写，留给人工处理。
+ * 每个批次有固定的 id，每次重试和补写都作为 insert_deduplication_token 发送，
+ * 超时或响应丢失但实际已写入的批次再次发送时由 ClickHouse 丢弃（需要目标表设置 non_replicated_deduplication_window）。
+ */
+@Component
+public class ClickHouseSink {
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseSink.class);
+    private static final String SPOOL_PREFIX = "ch-spool-";
+    private static final String SPOOL_SUFFIX = ".rowbinary";
+    private static final String BAD_SUFFIX = ".bad";
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+    private static final int DEFAULT_HTTP_PORT = 8123;
+
+    private final DataSourceProperties dataSourceProperties;
+
+    // 为空时由 clickhouse.datasource.url 推导，例如 jdbc:clickhouse://host:8123/db -> http://host:8123
+    @Value("${clickhouse.http.url:}")
+    private String httpUrl;
+
+    @Value("${clickhouse.sink.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${clickhouse.sink.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${clickhouse.sink.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${clickhouse.sink.max-backoff-ms:10000}")
+    private long maxBackoffMs;
+
+    @Value("${clickhouse.sink.spool-dir:${java.io.tmpdir}/maxquant-clickhouse-spool}")
+    private String spoolDir;
+
+    private OkHttpClient client;
+    private String endpoint;
+    private String database;
+    private Path spoolPath;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+    private final AtomicLong submittedBatches = new AtomicLong();
+    private final AtomicLong insertedBatches = new AtomicLong();
+    private final AtomicLong insertedRows = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong spooledBatches = new AtomicLong();
+    private final AtomicLong replayedBatches = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+    private volatile double rowsPerSecond;
+    private long rateSampleRows;
+    private long rateSampleNanos = System.nanoTime();
+
+    public ClickHouseSink(@Qualifier("clickhouseDataSourceProperties") DataSourceProperties dataSourceProperties) {
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        resolveEndpoint();
+        spoolPath = Paths.get(spoolDir);
+        try {
+            Files.createDirectories(spoolPath);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create ClickHouse spool directory: " + spoolPath, e);
+        }
+        client = new OkHttpClient.Builder()
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+        // 单线程写入，保持批次顺序；队列满或关闭后提交的批次直接落盘
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "clickhouse-sink");
+            thread.setDaemon(true);
+            return thread;
+        }, (r, pool) -> {
+            if (r instanceof InsertTask task) {
+                logger.warn("ClickHouse 写入队列已满，批次写入磁盘: target={}, rows={}", task.batch.target(), task.batch.rows());
+                spool(task.batch);
+            } else {
+                throw new RejectedExecutionException("ClickHouse sink queue is full");
+            }
+        });
+        logger.info("ClickHouse 写入队列已启动: endpoint={}, database={}, queueCapacity={}, spoolDir={}",
+                endpoint, database, queueCapacity, spoolPath);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                // 未执行的批次落盘，下次启动后补写
+                for (Runnable r : executor.shutdownNow()) {
+                    if (r instanceof InsertTask task) {
+                        spool(task.batch);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 异步写入；target 为表名和列清单，例如 "realtime_data (symbol, exchange, timestamp, price)"，
+     * 列顺序须与 rows 的编码顺序一致
+     */
+    public void submit(String target, RowBinaryEncoder rows) {
+        if (rows.rows() == 0) {
+            return;
+        }
+        submittedBatches.incrementAndGet();
+        executor.execute(new InsertTask(Batch.of(target, rows)));
+    }
+
+    public ClickHouseSinkMetrics metrics() {
+        long batches = insertedBatches.get();
+        return new ClickHouseSinkMetrics(
+                executor.getQueue().size(),
+                queueCapacity,
+                submittedBatches.get(),
+                batches,
+                insertedRows.get(),
+                failedAttempts.get(),
+                spooledBatches.get(),
+                replayedBatches.get(),
+                listSpoolFiles().size(),
+                lastLatencyNanos / 1e6,
+                batches > 0 ? totalLatencyNanos.get() / 1e6 / batches : 0.0,
+                maxLatencyNanos.get() / 1e6,
+                rowsPerSecond);
+    }
+
+    @Scheduled(fixedRate = 10000)
+    public synchronized void sampleRate() {
+        long now = System.nanoTime();
+        long rows = insertedRows.get();
+        double seconds = (now - rateSampleNanos) / 1e9;
+        if (seconds > 0) {
+            rowsPerSecond = (rows - rateSampleRows) / seconds;
+        }
+        rateSampleRows = rows;
+        rateSampleNanos = now;
+    }
+
+    /**
+     * 有落盘文件时在写入线程上补写，与正常写入串行执行
+     */
+    @Scheduled(fixedDelayString = "${clickhouse.sink.replay-interval-ms:30000}")
+    public void scheduledReplay() {
+        if (listSpoolFiles().isEmpty() || !replaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::replaySpoolFiles);
+        } catch (RejectedExecutionException e) {
+            replaying.set(false);
+        }
+    }
+
+    private void replaySpoolFiles() {
+        try {
+            for (Path file : listSpoolFiles()) {
+                Batch batch;
+                try {
+                    batch = readSpoolFile(file);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("读取 ClickHouse 落盘文件失败，改名为 {} 后跳过: file={}, error={}", BAD_SUFFIX, file, e.getMessage(), e);
+                    quarantine(file);
+                    continue;
+                }
+                try {
+                    send(batch);
+                } catch (IOException e) {
+                    failedAttempts.incrementAndGet();
+                    logger.warn("ClickHouse 落盘数据补写失败，稍后重试: file={}, error={}", file, e.getMessage());
+                    return;
+                }
+                Files.deleteIfExists(file);
+                replayedBatches.incrementAndGet();
+                logger.info("ClickHouse 落盘数据补写完成: file={}, target={}, rows={}", file.getFileName(), batch.target(), batch.rows());
+            }
+        } catch (IOException e) {
+            logger.error("删除 ClickHouse 落盘文件失败: {}", e.getMessage(), e);
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    private void send(Batch batch) throws IOException {
+        if (endpoint == null) {
+            throw new IOException("ClickHouse HTTP endpoint is not configured");
+        }
+        StringBuilder url = new StringBuilder(endpoint).append("/?");
+        if (database != null) {
+            url.append("database=").append(URLEncoder.encode(database, StandardCharsets.UTF_8)).append('&');
+        }
+        url.append("insert_deduplication_token=").append(URLEncoder.encode(batch.id(), StandardCharsets.UTF_8)).append('&');
+        url.append("query=").append(URLEncoder.encode("INSERT INTO " + batch.target() + " FORMAT RowBinary", StandardCharsets.UTF_8));
+        Request.Builder request = new Request.Builder()
+                .url(url.toString())
+                .post(RequestBody.create(batch.body(), OCTET_STREAM));
+        String username = dataSourceProperties.getUsername();
+        if (username != null && !username.isEmpty()) {
+            request.header("X-ClickHouse-User", username);
+            String password = dataSourceProperties.getPassword();
+            request.header("X-ClickHouse-Key", password != null ? password : "");
+        }
+        long start = System.nanoTime();
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (!response.isSuccessful()) {
+                ResponseBody body = response.body();
+                throw new IOException("ClickHouse HTTP " + response.code() + ": " + (body != null ? body.string() : ""));
+            }
+        }
+        long latency = System.nanoTime() - start;
+        lastLatencyNanos = latency;
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        insertedBatches.incrementAndGet();
+        insertedRows.addAndGet(batch.rows());
+    }
+
+    /**
+     * 文件格式：第一行为 target，第二行为行数和批次 id（空格分隔），之后为 RowBinary 数据；
+     * 先写临时文件再改名，补写时不会读到写了一半的文件
+     */
+    private void spool(Batch batch) {
+        String name = SPOOL_PREFIX + System.currentTimeMillis() + "-" + System.nanoTime();
+        Path tmp = spoolPath.resolve(name + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                out.write((batch.target() + '\n' + batch.rows() + ' ' + batch.id() + '\n').getBytes(StandardCharsets.UTF_8));
+                out.write(batch.body());
+            }
+            Files.move(tmp, spoolPath.resolve(name + SPOOL_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            spooledBatches.incrementAndGet();
+        } catch (IOException e) {
+            logger.error("ClickHouse 批次写入磁盘失败，丢弃: target={}, rows={}, error={}", batch.target(), batch.rows(), e.getMessage(), e);
+        }
+    }
+
+    private static void quarantine(Path file) {
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + BAD_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("ClickHouse 落盘文件改名失败: file={}, error={}", file, e.getMessage(), e);
+        }
+    }
+
+    private static Batch readSpoolFile(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int first = indexOf(bytes, 0);
+        int second = first < 0 ? -1 : indexOf(bytes, first + 1);
+        if (second < 0) {
+            throw new IOException("Malformed spool file header");
+        }
+        String target = new String(bytes, 0, first, StandardCharsets.UTF_8);
+        String[] header = new String(bytes, first + 1, second - first - 1, StandardCharsets.UTF_8).split(" ", 2);
+        int rows = Integer.parseInt(header[0]);
+        // 旧格式的文件没有 id，用文件名代替，多次补写时保持不变
+        String id = header.length > 1 ? header[1] : file.getFileName().toString();
+        return new Batch(id, target, rows, Arrays.copyOfRange(bytes, second + 1, bytes.length));
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<Path> listSpoolFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spoolPath, SPOOL_PREFIX + "*" + SPOOL_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.error("列出 ClickHouse 落盘文件失败: dir={}, error={}", spoolPath, e.getMessage(), e);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private void resolveEndpoint() {
+        String jdbcUrl = dataSourceProperties.getUrl();
+        if (jdbcUrl != null && !jdbcUrl.isEmpty()) {
+            // jdbc:clickhouse://host:port/db、jdbc:ch://host:port/db、jdbc:clickhouse:http://host:port/db
+            String url = jdbcUrl.startsWith("jdbc:") ? jdbcUrl.substring(5) : jdbcUrl;
+            if (url.startsWith("clickhouse:")) {
+                url = url.substring("clickhouse:".length());
+            } else if (url.startsWith("ch:")) {
+                url = url.substring("ch:".length());
+            }
+            if (url.startsWith("//")) {
+                url = "http:" + url;
+            }
+            try {
+                URI uri = URI.create(url);
+                String path = uri.getPath();
+                database = path != null && path.length() > 1 ? path.substring(1) : null;
+                String scheme = "https".equals(uri.getScheme()) ? "https" : "http";
+                endpoint = scheme + "://" + uri.getHost() + ":" + (uri.getPort() > 0 ? uri.getPort() : DEFAULT_HTTP_PORT);
+            } catch (IllegalArgumentException e) {
+                logger.warn("无法从 ClickHouse JDBC URL 推导 HTTP 地址: url={}, error={}", jdbcUrl, e.getMessage());
+            }
+        }
+        if (httpUrl != null && !httpUrl.isEmpty()) {
+            endpoint = httpUrl.endsWith("/") ? httpUrl.substring(0, httpUrl.length() - 1) : httpUrl;
+        }
+        if (endpoint == null) {
+            logger.warn("未配置 ClickHouse HTTP 地址，写入将失败并落盘");
+        }
+    }
+
+    private record Batch(String id, String target, int rows, byte[] body) {
+        static Batch of(String target, RowBinaryEncoder rows) {
+            return new Batch(UUID.randomUUID().toString(), target, rows.rows(), rows.toByteArray());
+        }
+    }
+
+    /**
+     * 一个批次的写入，失败时按指数退避重试，重试用尽或线程被中断时落盘
+     */
+    private final class InsertTask implements Runnable {
+        private final Batch batch;
+
+        private InsertTask(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            long backoff = retryBackoffMs;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    send(batch);
+                    return;
+                } catch (IOException e) {
+                    failedAttempts.incrementAndGet();
+                    if (attempt >= maxAttempts) {
+                        logger.error("ClickHouse 写入失败 {} 次，批次写入磁盘: target={}, rows={}, error={}",
+                                attempt, batch.target(), batch.rows(), e.getMessage());
+                        spool(batch);
+                        return;
+                    }
+                    logger.warn("ClickHouse 写入失败，{}ms 后重试（第 {} 次）: target={}, rows={}, error={}",
+                            backoff, attempt, batch.target(), batch.rows(), e.getMessage());
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    spool(batch);
+                    return;
+                }
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.crypto.service.clickhouse;
+
+/**
+ * ClickHouse 写入队列的运行统计（自启动以来的累计值）
+ * failedAttempts 为单次 HTTP 写入失败的次数（含之后重试成功的），spooledBatches 为重试用尽或队列满后写入磁盘的批次数，
+ * rowsPerSecond 为最近一个采样周期的写入速率
+ */
+public record ClickHouseSinkMetrics(
+        int queueDepth,
+        int queueCapacity,
+        long submittedBatches,
+        long insertedBatches,
+        long insertedRows,
+        long failedAttempts,
+        long spooledBatches,
+        long replayedBatches,
+        int spoolFiles,
+        double lastInsertLatencyMs,
+        double avgInsertLatencyMs,
+        double maxInsertLatencyMs,
+        double rowsPerSecond
+) {
+}
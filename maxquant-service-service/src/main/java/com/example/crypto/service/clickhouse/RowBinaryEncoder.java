@@ -0,0 +1,92 @@
+package com.example.crypto.service.clickhouse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ClickHouse RowBinary 格式编码
+ * 按建表时的列顺序逐列写入，不带列名和类型；整数、浮点数为小端序，
+ * String / LowCardinality(String) 为 LEB128 长度 + UTF-8 字节，Array 为 LEB128 元素个数 + 逐个元素。
+ * 非线程安全，每个批次一个实例。
+ */
+public class RowBinaryEncoder {
+    private byte[] buffer;
+    private int size;
+    private int rows;
+
+    public RowBinaryEncoder(int initialCapacity) {
+        this.buffer = new byte[Math.max(64, initialCapacity)];
+    }
+
+    /**
+     * 一行的所有列写完后调用，用于统计行数
+     */
+    public RowBinaryEncoder endRow() {
+        rows++;
+        return this;
+    }
+
+    public RowBinaryEncoder writeString(String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        writeVarUInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    public RowBinaryEncoder writeUInt64(long value) {
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[size++] = (byte) (value >>> (8 * i));
+        }
+        return this;
+    }
+
+    public RowBinaryEncoder writeFloat64(double value) {
+        return writeUInt64(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Array(Float64)；null 按空数组写入
+     */
+    public RowBinaryEncoder writeFloat64Array(double[] values) {
+        if (values == null) {
+            writeVarUInt(0);
+            return this;
+        }
+        writeVarUInt(values.length);
+        ensureCapacity(values.length * 8);
+        for (double value : values) {
+            writeFloat64(value);
+        }
+        return this;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeVarUInt(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.crypto.service.depth;
+
+/**
+ * 无损深度采集的运行统计
+ * pending 为内存中待提交的条数，submittedRows 为已交给 ClickHouseSink 的累计条数，
+ * 写入重试、落盘和补写的情况见 ClickHouseSinkMetrics
+ */
+public record DepthCaptureMetrics(
+        int losslessSymbols,
+        int pending,
+        long submittedRows,
+        long failedRows
+) {
+}
@@ -0,0 +1,165 @@
+package com.example.crypto.service.depth;
+
+import com.example.crypto.entity.DepthData;
+import com.example.crypto.enums.DepthCaptureMode;
+import com.example.crypto.service.ClickHouseService;
+import com.example.crypto.service.SubscriptionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 无损深度采集
+ * 订阅时选择 LOSSLESS 的合约，每一次深度推送都追加到该合约的缓冲区，由单独线程按 batch-size 分批交给
+ * {@link ClickHouseService#saveDepthData}；其他合约仍走各交易所服务中每 2 秒一次的最新快照写入。
+ * 每张目标表（DUAL 时 depth_data、depth_book 各一批）由 ClickHouseSink 单独重试、落盘和补写，
+ * 一张表失败不会让另一张表重复写入。
+ * 内存中的待写入条数超过 max-buffered 时，追加的线程直接执行一次刷新。
+ */
+@Component
+public class DepthCaptureWriter {
+    private static final Logger logger = LoggerFactory.getLogger(DepthCaptureWriter.class);
+
+    private final ClickHouseService clickHouseService;
+    private final SubscriptionService subscriptionService;
+
+    @Value("${depth.capture.batch-size:20000}")
+    private int batchSize;
+
+    @Value("${depth.capture.max-buffered:200000}")
+    private int maxBuffered;
+
+    // "exchange:symbol"，订阅变更时整体替换
+    private volatile Set<String> losslessKeys = Set.of();
+    private final Map<String, List<DepthData>> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final AtomicLong submittedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final Object flushLock = new Object();
+    private ExecutorService flushExecutor;
+
+    public DepthCaptureWriter(ClickHouseService clickHouseService, SubscriptionService subscriptionService) {
+        this.clickHouseService = clickHouseService;
+        this.subscriptionService = subscriptionService;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "depth-capture-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshModes();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * 按 depth 订阅重新计算无损采集的合约集合；订阅变更时由交易所服务调用，另外每分钟刷新一次
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void refreshModes() {
+        try {
+            losslessKeys = subscriptionService.getSubscriptionsByDataType("depth").stream()
+                    .filter(s -> s.getDepthCaptureMode() == DepthCaptureMode.LOSSLESS && s.getExchange() != null)
+                    .map(s -> key(s.getExchange(), s.getSymbol()))
+                    .collect(Collectors.toUnmodifiableSet());
+        } catch (Exception e) {
+            logger.error("刷新深度采集模式失败: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isLossless(String exchange, String symbol) {
+        return losslessKeys.contains(key(exchange, symbol));
+    }
+
+    /**
+     * 追加一次深度推送；只在内存中追加，不阻塞调用线程访问 ClickHouse
+     * 超过 max-buffered（刷新线程跟不上）时在调用线程上刷新，由上游的接入队列承接背压
+     */
+    public void append(DepthData snapshot) {
+        List<DepthData> buffer = buffers.computeIfAbsent(key(snapshot.getExchange(), snapshot.getSymbol()), k -> new ArrayList<>());
+        synchronized (buffer) {
+            buffer.add(snapshot);
+        }
+        int buffered = pending.incrementAndGet();
+        if (buffered >= maxBuffered) {
+            flush();
+        } else if (buffered >= batchSize && flushQueued.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    public DepthCaptureMetrics metrics() {
+        return new DepthCaptureMetrics(losslessKeys.size(), pending.get(), submittedRows.get(), failedRows.get());
+    }
+
+    @Scheduled(fixedDelayString = "${depth.capture.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (pending.get() > 0) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 把所有缓冲区按 batch-size 分批提交给 ClickHouseSink；写入失败的重试和落盘由 ClickHouseSink 负责
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<DepthData> rows = new ArrayList<>(Math.max(16, pending.get()));
+            for (List<DepthData> buffer : buffers.values()) {
+                synchronized (buffer) {
+                    rows.addAll(buffer);
+                    buffer.clear();
+                }
+            }
+            pending.addAndGet(-rows.size());
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<DepthData> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+                try {
+                    clickHouseService.saveDepthData(batch);
+                    submittedRows.addAndGet(batch.size());
+                } catch (Exception e) {
+                    // 提交只做编码和入队，这里失败说明数据本身有问题，重试也不会成功
+                    failedRows.addAndGet(batch.size());
+                    logger.error("无损深度数据提交失败，丢弃: rows={}, error={}", batch.size(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static String key(String exchange, String symbol) {
+        return exchange + ":" + symbol;
+    }
+}
@@ -1,8 +1,15 @@
 package com.example.crypto.service.impl;
 
+import com.example.crypto.dto.BacktestLogChunk;
+import com.example.crypto.dto.BacktestLogPage;
 import com.example.crypto.dto.BacktestReportDto;
+import com.example.crypto.dto.BacktestReportSummary;
+import com.example.crypto.dto.ReportTablePage;
+import com.example.crypto.enums.BacktestReportTable;
 import com.example.crypto.exception.ResourceNotFoundException;
 import com.example.crypto.service.BacktestReportService;
+import com.example.crypto.service.report.BacktestLogStore;
+import com.example.crypto.service.report.BacktestReportStore;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,6 +17,7 @@ import org.springframework.stereotype.Service;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
@@ -24,6 +32,17 @@ public class BacktestReportServiceImpl implements BacktestReportService {
     @Value("${backtest.results.path}")
     private String backtestResultsPath;
 
+    @Value("${backtest.log.max-inline-bytes:16777216}")
+    private long maxInlineLogBytes;
+
+    private final BacktestReportStore reportStore;
+    private final BacktestLogStore logStore;
+
+    public BacktestReportServiceImpl(BacktestReportStore reportStore, BacktestLogStore logStore) {
+        this.reportStore = reportStore;
+        this.logStore = logStore;
+    }
+
     @Override
     public BacktestReportDto getBacktestReport(String strategyName, String timestamp) throws IOException {
         BacktestReportDto reportDto = new BacktestReportDto();
@@ -44,12 +63,80 @@ public class BacktestReportServiceImpl implements BacktestReportService {
         return reportDto;
     }
 
+    @Override
+    public List<Map<String, String>> getPerformance(String strategyName, String timestamp) throws IOException {
+        Path performancePath = Paths.get(backtestResultsPath, strategyName, timestamp, "all_performance.csv");
+        if (!Files.exists(performancePath)) {
+            throw new ResourceNotFoundException("Performance report not found: " + strategyName + "/" + timestamp);
+        }
+        try {
+            return readCsvToMap(performancePath.toString());
+        } catch (CsvException e) {
+            throw new IOException("Error parsing CSV file", e);
+        }
+    }
+
+    @Override
+    public BacktestReportSummary getReportSummary(String strategyName, String timestamp) throws IOException {
+        return reportStore.summary(strategyName, timestamp);
+    }
+
+    @Override
+    public ReportTablePage getReportTable(String strategyName, String timestamp, BacktestReportTable table, int offset,
+                                          int limit, List<String> columns, String sort, boolean descending) throws IOException {
+        return reportStore.page(strategyName, timestamp, table, offset, limit, columns, sort, descending);
+    }
+
+    @Override
+    public void indexReport(String strategyName, String timestamp) throws IOException {
+        reportStore.ingest(strategyName, timestamp);
+        if (Files.exists(Paths.get(backtestResultsPath, strategyName, timestamp, "backtest_slog.log"))) {
+            logStore.index(strategyName, timestamp);
+        }
+    }
+
     @Override
     public String getBacktestLog(String strategyName, String timestamp) throws IOException {
         String logFilePath = Paths.get(backtestResultsPath, strategyName, timestamp, "backtest_slog.log").toString();
+        long size = Files.size(Paths.get(logFilePath));
+        if (size > maxInlineLogBytes) {
+            throw new IOException("Log file is too large (" + size + " bytes); use the paged log endpoints instead");
+        }
         return new String(java.nio.file.Files.readAllBytes(Paths.get(logFilePath)));
     }
 
+    @Override
+    public long getBacktestLogSize(String strategyName, String timestamp) throws IOException {
+        return logStore.size(strategyName, timestamp);
+    }
+
+    @Override
+    public BacktestLogPage getBacktestLogLines(String strategyName, String timestamp, long from, int limit) throws IOException {
+        return logStore.lines(strategyName, timestamp, from, limit);
+    }
+
+    @Override
+    public BacktestLogPage tailBacktestLog(String strategyName, String timestamp, int lines) throws IOException {
+        return logStore.tail(strategyName, timestamp, lines);
+    }
+
+    @Override
+    public BacktestLogPage grepBacktestLog(String strategyName, String timestamp, String pattern, boolean regex,
+                                           boolean ignoreCase, long from, int limit) throws IOException {
+        return logStore.grep(strategyName, timestamp, pattern, regex, ignoreCase, from, limit);
+    }
+
+    @Override
+    public BacktestLogChunk getBacktestLogBytes(String strategyName, String timestamp, long offset, int length) throws IOException {
+        return logStore.bytes(strategyName, timestamp, offset, length);
+    }
+
+    @Override
+    public void streamBacktestLog(String strategyName, String timestamp, String pattern, boolean regex, boolean ignoreCase,
+                                  OutputStream out) throws IOException {
+        logStore.stream(strategyName, timestamp, pattern, regex, ignoreCase, out);
+    }
+
     @Override
     public List<String> getAvailableTimestamps(String strategyName) throws IOException {
         Path strategyPath = Paths.get(backtestResultsPath, strategyName);
@@ -80,6 +167,7 @@ public class BacktestReportServiceImpl implements BacktestReportService {
         
         // 递归删除目录及其所有内容
         deleteDirectoryRecursively(reportPath);
+        reportStore.invalidate(strategyName, timestamp);
     }
     
     @Override
@@ -96,6 +184,7 @@ public class BacktestReportServiceImpl implements BacktestReportService {
         }
 
         deleteDirectoryRecursively(strategyPath);
+        reportStore.invalidate(strategyName, null);
     }
 
     private void deleteDirectoryRecursively(Path path) throws IOException {
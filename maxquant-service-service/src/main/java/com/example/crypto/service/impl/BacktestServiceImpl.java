@@ -2,21 +2,23 @@ package com.example.crypto.service.impl;
 
 import com.example.crypto.dto.BacktestRequest;
 import com.example.crypto.dto.BacktestRunRequest;
+import com.example.crypto.enums.BacktestPriority;
+import com.example.crypto.service.BacktestReportService;
 import com.example.crypto.service.BacktestService;
+import com.example.crypto.service.JwtService;
+import com.example.crypto.service.backtest.BacktestDatasetCache;
+import com.example.crypto.service.backtest.BacktestScheduler;
+import com.example.crypto.service.backtest.BacktestTask;
+import com.example.crypto.service.backtest.PythonWorkerPool;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -29,7 +31,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Optional;
@@ -43,25 +45,30 @@ public class BacktestServiceImpl implements BacktestService {
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
     private final ApplicationEventPublisher eventPublisher;
-
-    @Value("${backtest.python.executable:python3}")
-    private String pythonExecutable;
-
-    @Value("${backtest.python.runner-script-path:quantlib/backtest_runner.py}")
-    private String runnerScriptPath;
-
-    public BacktestServiceImpl(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher) {
+    private final PythonWorkerPool workerPool;
+    private final BacktestScheduler backtestScheduler;
+    private final JwtService jwtService;
+    private final BacktestDatasetCache datasetCache;
+    private final BacktestReportService backtestReportService;
+
+    public BacktestServiceImpl(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                               PythonWorkerPool workerPool, BacktestScheduler backtestScheduler, JwtService jwtService,
+                               BacktestDatasetCache datasetCache, BacktestReportService backtestReportService) {
         this.messagingTemplate = messagingTemplate;
         this.objectMapper = objectMapper;
         this.eventPublisher = eventPublisher;
+        this.workerPool = workerPool;
+        this.backtestScheduler = backtestScheduler;
+        this.jwtService = jwtService;
+        this.datasetCache = datasetCache;
+        this.backtestReportService = backtestReportService;
     }
 
-    @Async
     @Override
-    public void runBacktest(String backtestId, BacktestRequest request, String token) {
+    public void runBacktest(String backtestId, BacktestRequest request, String token, BacktestPriority priority) {
         String destination = "/topic/backtest/" + backtestId;
         Path tempScript = null;
-        Path tempConfig = null;
+        boolean queued = false;
         try {
             // 1. 参数校验
             if (request.getStrategyCode() == null || request.getStrategyCode().isEmpty()) {
@@ -78,14 +85,7 @@ public class BacktestServiceImpl implements BacktestService {
             Files.writeString(tempScript, request.getStrategyCode());
             logger.info("Strategy code saved to temporary file: {}", tempScript.toAbsolutePath());
 
-            // 3. 定位Python启动脚本
-            File launcherFile = new File(runnerScriptPath);
-            if (!launcherFile.exists() || !launcherFile.isFile()) {
-                throw new IOException("Could not find backtest runner script at the configured path: " + runnerScriptPath);
-            }
-            String launcherPath = launcherFile.getAbsolutePath();
-
-            // 4. 严格按照模板构建JSON配置
+            // 3. 严格按照模板构建JSON配置
             Map<String, Object> config = new HashMap<>();
             
             // --- Root Level ---
@@ -144,72 +144,26 @@ public class BacktestServiceImpl implements BacktestService {
             symbolsList.add(symbolGroup);
             config.put("SYMBOLS", symbolsList);
             
-            // 5. 将配置写入临时JSON文件
-            tempConfig = Files.createTempFile("config-" + backtestId, ".json");
-            Files.writeString(tempConfig, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(config));
-            logger.info("Backtest config saved to temporary file: {}", tempConfig.toAbsolutePath());
-            
-            // 6. 执行新的命令格式 (使用--config)
-            List<String> command = new ArrayList<>();
-            command.add(pythonExecutable);
-            command.add("-u");
-            command.add(launcherPath);
-            command.add("--config");
-            command.add(tempConfig.toAbsolutePath().toString());
-
-            logger.info("Executing backtest command for ID {}: {}", backtestId, String.join(" ", command));
-            sendMessage(destination, "log", "Backtest starting with launcher script...");
-
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    logger.info("[Python Output] {}: {}", backtestId, line);
-                    if (line.startsWith("RESULT:")) {
-                        String jsonOutput = line.substring("RESULT:".length());
-                        sendMessage(destination, "result", jsonOutput);
-                    } else {
-                        // All other non-result lines are considered logs
-                        sendMessage(destination, "log", line);
-                    }
-                }
-            }
+            // 4. 进入回测队列，轮到时交给常驻Python进程执行
+            enqueue(backtestId, token, priority, destination, config, tempScript, false);
+            queued = true;
 
-            boolean finished = process.waitFor(10, TimeUnit.MINUTES);
-            if (!finished) {
-                process.destroyForcibly();
-                sendMessage(destination, "error", "Backtest process timed out after 10 minutes.");
-                return;
-            }
-             int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                 logger.error("Backtest script for ID {} failed with exit code {}.", backtestId, exitCode);
-                 sendMessage(destination, "error", "Backtest script failed with exit code " + exitCode + ".");
-                 eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            } else {
-                sendMessage(destination, "log", "Backtest finished successfully.");
-                eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.COMPLETED));
-            }
-
-        } catch (IOException | InterruptedException e) {
-            logger.error("Failed to execute backtest script for ID {}", backtestId, e);
+        } catch (IOException e) {
+            logger.error("Failed to prepare backtest for ID {}", backtestId, e);
             sendMessage(destination, "error", "Failed to run backtest: " + e.getMessage());
             eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            Thread.currentThread().interrupt();
         } finally {
-            cleanupTemporaryFiles(tempScript, tempConfig);
+            if (!queued) {
+                cleanupTemporaryFile(tempScript);
+            }
         }
     }
 
-    @Async
     @Override
-    public void runBacktest(String backtestId, BacktestRunRequest req, String token) {
+    public void runBacktest(String backtestId, BacktestRunRequest req, String token, BacktestPriority priority) {
         String destination = "/topic/backtest/" + backtestId;
         Path tempScript = null;
-        Path tempConfig = null;
+        boolean queued = false;
         try {
             if (req.strategyCode() == null || req.strategyCode().isEmpty()) {
                 throw new IllegalArgumentException("strategyCode missing");
@@ -220,9 +174,6 @@ public class BacktestServiceImpl implements BacktestService {
             tempScript = Files.createTempFile(tempDir, "strategy-" + backtestId, ".py");
             Files.writeString(tempScript, req.strategyCode());
 
-            File launcherFile = new File(runnerScriptPath);
-            if (!launcherFile.exists()) throw new IOException("runner script not found");
-
             Map<String,Object> cfg = new HashMap<>();
             cfg.put("STRATEGY_FILE", tempScript.toString());
             cfg.put("STRATEGY_NAME", "MyStrategy");
@@ -305,91 +256,31 @@ public class BacktestServiceImpl implements BacktestService {
             }
             cfg.put("PARAMS", paramsList);
             
-            // 5. 将配置写入临时JSON文件
-            tempConfig = Files.createTempFile("config-" + backtestId, ".json");
-            Files.writeString(tempConfig, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(cfg));
-            logger.info("Backtest config for ID {} saved to: {}", backtestId, tempConfig.toAbsolutePath());
-
-            // 6. 执行命令
-            List<String> command = List.of(pythonExecutable, "-u", launcherFile.getAbsolutePath(), "--config", tempConfig.toString());
-            logger.info("Executing backtest command for ID {}: {}", backtestId, String.join(" ", command));
-            sendMessage(destination, "log", "Backtest starting with runner script...");
-
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    logger.info("[Python Output] {}: {}", backtestId, line);
-                    if (line.startsWith("RESULT:")) {
-                        sendMessage(destination, "result", line.substring("RESULT:".length()));
-                    } else {
-                        sendMessage(destination, "log", line);
-                    }
-                }
-            }
-
-            boolean finished = process.waitFor(10, TimeUnit.MINUTES);
-            if (!finished) {
-                process.destroyForcibly();
-                sendMessage(destination, "error", "Backtest process timed out after 10 minutes.");
-                return;
-            }
+            enqueue(backtestId, token, priority, destination, cfg, tempScript, true);
+            queued = true;
 
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                logger.error("Backtest script for ID {} failed with exit code {}.", backtestId, exitCode);
-                sendMessage(destination, "error", "Backtest script failed with exit code " + exitCode + ".");
-                eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            } else {
-                sendMessage(destination, "log", "Backtest finished successfully.");
-                eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.COMPLETED));
-            }
-
-        } catch (IOException | InterruptedException e) {
-            logger.error("Failed to execute backtest script for ID {}", backtestId, e);
+        } catch (IOException e) {
+            logger.error("Failed to prepare backtest for ID {}", backtestId, e);
             sendMessage(destination, "error", "Failed to run backtest: " + e.getMessage());
             eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            Thread.currentThread().interrupt();
         } finally {
-            if (tempScript != null) {
-                try {
-                    Files.delete(tempScript);
-                } catch (IOException e) {
-                    logger.error("Failed to delete temp script: {}", tempScript.getFileName(), e);
-                }
+            if (!queued) {
+                cleanupTemporaryFile(tempScript);
+                sendMessage(destination, "finished", "Backtest execution completed.");
             }
-            if (tempConfig != null) {
-                try {
-                    Files.delete(tempConfig);
-                } catch (IOException e) {
-                    logger.error("Failed to delete temp config: {}", tempConfig.getFileName(), e);
-                }
-            }
-            sendMessage(destination, "finished", "Backtest execution completed.");
         }
     }
 
-    @Async
     @Override
-    public void runBacktest(String backtestId, String paramsJson, String token) {
+    public void runBacktest(String backtestId, String paramsJson, String token, BacktestPriority priority) {
         String destination = "/topic/backtest/" + backtestId;
-        Path tempConfig = null;
         Path tempScript = null;
+        boolean queued = false;
         try {
-            // 1. 定位Python启动脚本
-            File launcherFile = new File(runnerScriptPath);
-            if (!launcherFile.exists() || !launcherFile.isFile()) {
-                throw new IOException("Could not find backtest runner script at the configured path: " + runnerScriptPath);
-            }
-            String launcherPath = launcherFile.getAbsolutePath();
-
-            // 2. Parse the incoming JSON
+            // 1. Parse the incoming JSON
             Map<String, Object> configMap = objectMapper.readValue(paramsJson, new TypeReference<>() {});
 
-            // 3. If strategy code is provided, save it to a temporary file and update the config
+            // 2. If strategy code is provided, save it to a temporary file and update the config
             if (configMap.containsKey("STRATEGY_CODE")) {
                 String strategyCode = (String) configMap.get("STRATEGY_CODE");
                 if (strategyCode != null && !strategyCode.isEmpty()) {
@@ -405,67 +296,140 @@ public class BacktestServiceImpl implements BacktestService {
                 }
             }
             
-            // 4. Add/overwrite the token and result ID
+            // 3. Add/overwrite the token and result ID
             configMap.put("USER_TOKEN", token);
             configMap.put("RESULT_ID", backtestId);
 
-            // 5. Write the final config to a temporary file
-            tempConfig = Files.createTempFile("config-" + backtestId, ".json");
-            Files.writeString(tempConfig, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(configMap));
-            logger.info("Backtest config (with token and result_id) saved to temporary file: {}", tempConfig.toAbsolutePath());
-
-            // 6. 执行命令
-            List<String> command = new ArrayList<>();
-            command.add(pythonExecutable);
-            command.add("-u");
-            command.add(launcherPath);
-            command.add("--config");
-            command.add(tempConfig.toAbsolutePath().toString());
-
-            logger.info("Executing backtest command for ID {}: {}", backtestId, String.join(" ", command));
-            sendMessage(destination, "log", "Backtest starting with launcher script...");
-
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    logger.info("[Python Output] {}: {}", backtestId, line);
-                    if (line.startsWith("RESULT:")) {
-                        String jsonOutput = line.substring("RESULT:".length());
-                        sendMessage(destination, "result", jsonOutput);
-                    } else {
-                        sendMessage(destination, "log", line);
+            // 4. Queue the backtest; a warm Python worker runs it when a slot frees up
+            enqueue(backtestId, token, priority, destination, configMap, tempScript, false);
+            queued = true;
+
+        } catch (IOException e) {
+            logger.error("Failed to prepare backtest for ID {}", backtestId, e);
+            sendMessage(destination, "error", "Failed to run backtest: " + e.getMessage());
+            eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
+        } finally {
+            if (!queued) {
+                cleanupTemporaryFile(tempScript);
+            }
+        }
+    }
+
+    @Override
+    public boolean cancelBacktest(String backtestId) {
+        return backtestScheduler.cancel(backtestId);
+    }
+
+    /**
+     * 提交到回测队列；执行结束或取消时删除临时策略文件
+     * @param notifyFinished 结束（含取消）后推送 finished 消息
+     */
+    private void enqueue(String backtestId, String token, BacktestPriority priority, String destination,
+                         Map<String, Object> config, Path tempScript, boolean notifyFinished) {
+        backtestScheduler.submit(backtestId, resolveUser(token), priority, new BacktestTask() {
+            @Override
+            public void run() {
+                try {
+                    executeBacktest(backtestId, destination, config);
+                } catch (InterruptedException e) {
+                    // 执行中被取消：进程池已结束对应的 Python 进程
+                    logger.info("Backtest {} was cancelled while running", backtestId);
+                    notifyCancelled(backtestId, destination);
+                } catch (IOException e) {
+                    logger.error("Failed to execute backtest script for ID {}", backtestId, e);
+                    sendMessage(destination, "error", "Failed to run backtest: " + e.getMessage());
+                    eventPublisher.publishEvent(new BacktestCompletionEvent(BacktestServiceImpl.this, backtestId, BacktestStatus.FAILED));
+                } finally {
+                    cleanupTemporaryFile(tempScript);
+                    if (notifyFinished) {
+                        sendMessage(destination, "finished", "Backtest execution completed.");
                     }
                 }
             }
 
-            boolean finished = process.waitFor(10, TimeUnit.MINUTES);
-            if (!finished) {
-                process.destroyForcibly();
-                sendMessage(destination, "error", "Backtest process timed out after 10 minutes.");
-                return;
+            @Override
+            public void cancelled() {
+                cleanupTemporaryFile(tempScript);
+                notifyCancelled(backtestId, destination);
+                if (notifyFinished) {
+                    sendMessage(destination, "finished", "Backtest execution completed.");
+                }
             }
+        });
+    }
 
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                logger.error("Backtest script for ID {} failed with exit code {}.", backtestId, exitCode);
-                sendMessage(destination, "error", "Backtest script failed with exit code " + exitCode + ".");
-                eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            } else {
-                sendMessage(destination, "log", "Backtest finished successfully.");
-                eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.COMPLETED));
+    private void notifyCancelled(String backtestId, String destination) {
+        sendMessage(destination, "cancelled", "Backtest was cancelled.");
+        eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.CANCELLED));
+    }
+
+    /**
+     * 用于按用户公平排队；token 无法解析时归入 anonymous
+     */
+    private String resolveUser(String token) {
+        try {
+            String username = jwtService.getUsernameFromToken(token);
+            return username != null ? username : "anonymous";
+        } catch (RuntimeException e) {
+            return "anonymous";
+        }
+    }
+
+    /**
+     * 将回测配置交给常驻Python进程池执行，输出转发到WebSocket，结束后发布完成事件
+     * 行情数据集文件可用时通过 DATASET_FILE 传给 runner，回测结束前不会被淘汰
+     */
+    private void executeBacktest(String backtestId, String destination, Map<String, Object> config)
+            throws IOException, InterruptedException {
+        logger.info("Dispatching backtest {} to the Python worker pool", backtestId);
+        sendMessage(destination, "log", "Backtest starting on a warm Python worker...");
+
+        int exitCode;
+        try (BacktestDatasetCache.DatasetLease dataset = datasetCache.acquire(config)) {
+            if (dataset != null) {
+                config.put("DATASET_FILE", dataset.path().toString());
+                config.put("DATASET_FORMAT", dataset.format());
             }
+            exitCode = workerPool.run(backtestId, config, line -> {
+                logger.info("[Python Output] {}: {}", backtestId, line);
+                if (line.startsWith("RESULT:")) {
+                    sendMessage(destination, "result", line.substring("RESULT:".length()));
+                } else {
+                    // All other non-result lines are considered logs
+                    sendMessage(destination, "log", line);
+                }
+            });
+        } catch (TimeoutException e) {
+            logger.error("Backtest for ID {} timed out: {}", backtestId, e.getMessage());
+            sendMessage(destination, "error", "Backtest process timed out.");
+            return;
+        }
 
-        } catch (IOException | InterruptedException e) {
-            logger.error("Failed to execute backtest script for ID {}", backtestId, e);
-            sendMessage(destination, "error", "Failed to run backtest: " + e.getMessage());
+        if (exitCode != 0) {
+            logger.error("Backtest script for ID {} failed with exit code {}.", backtestId, exitCode);
+            sendMessage(destination, "error", "Backtest script failed with exit code " + exitCode + ".");
             eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.FAILED));
-            Thread.currentThread().interrupt();
-        } finally {
-            cleanupTemporaryFiles(tempScript, tempConfig);
+        } else {
+            indexReport(backtestId, config.get("STRATEGY_NAME"));
+            sendMessage(destination, "log", "Backtest finished successfully.");
+            eventPublisher.publishEvent(new BacktestCompletionEvent(this, backtestId, BacktestStatus.COMPLETED));
+        }
+    }
+
+    /**
+     * 完成通知之前把最新的报告转换为列式存储，失败时查询报告时再转换
+     */
+    private void indexReport(String backtestId, Object strategyName) {
+        if (!(strategyName instanceof String name)) {
+            return;
+        }
+        try {
+            List<String> timestamps = backtestReportService.getAvailableTimestamps(name);
+            if (!timestamps.isEmpty()) {
+                backtestReportService.indexReport(name, timestamps.get(0));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to index backtest report for ID {}: {}", backtestId, e.getMessage());
         }
     }
 
@@ -528,7 +492,7 @@ public class BacktestServiceImpl implements BacktestService {
         }
     }
 
-    private void cleanupTemporaryFiles(Path scriptFile, Path configFile) {
+    private void cleanupTemporaryFile(Path scriptFile) {
         if (scriptFile != null) {
             try {
                 Files.deleteIfExists(scriptFile);
@@ -537,13 +501,5 @@ public class BacktestServiceImpl implements BacktestService {
                 logger.error("Failed to delete temporary script: {}", scriptFile.getFileName(), e);
             }
         }
-        if (configFile != null) {
-            try {
-                Files.deleteIfExists(configFile);
-                logger.info("Deleted temporary config file: {}", configFile.getFileName());
-            } catch (IOException e) {
-                logger.error("Failed to delete temporary config file: {}", configFile.getFileName(), e);
-            }
-        }
     }
 } 
\ No newline at end of file
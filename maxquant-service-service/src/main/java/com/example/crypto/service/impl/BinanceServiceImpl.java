@@ -1,16 +1,25 @@
 package com.example.crypto.service.impl;
 
 import com.example.crypto.dao.CryptoMetadataRepository;
+import com.example.crypto.dao.KlineDataBulkWriter;
 import com.example.crypto.dao.KlineDataRepository;
-import com.example.crypto.dao.RealtimeDataRepository;
 import com.example.crypto.dao.DepthDataRepository;
 import com.example.crypto.entity.*;
 import com.example.crypto.service.BinanceService;
 import com.example.crypto.service.ClickHouseService;
 import com.example.crypto.service.SubscriptionService;
 import com.example.crypto.service.WebSocketMessageService;
+import com.example.crypto.service.book.BookLevels;
+import com.example.crypto.service.book.OrderBookEngine;
+import com.example.crypto.service.book.OrderBookSnapshot;
+import com.example.crypto.service.depth.DepthCaptureWriter;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.realtime.LatestQuoteStore;
+import com.example.crypto.service.realtime.RealtimeTickWriter;
+import com.example.crypto.service.statarb.RollingPairStatsEngine;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.WebSocket;
@@ -22,11 +31,15 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import com.example.crypto.config.ProxyConfig;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,12 +56,18 @@ public class BinanceServiceImpl implements BinanceService {
     private final ObjectMapper mapper = new ObjectMapper();
     private final CryptoMetadataRepository metadataRepository;
     private final KlineDataRepository klineDataRepository;
-    private final RealtimeDataRepository realtimeDataRepository;
     private final DepthDataRepository depthDataRepository;
     private final WebSocketMessageService webSocketMessageService;
     private final SubscriptionService subscriptionService;
     private final ProxyConfig proxyConfig;
     private final ClickHouseService clickHouseService;
+    private final KlineColumnCache klineColumnCache;
+    private final KlineDataBulkWriter klineDataBulkWriter;
+    private final RollingPairStatsEngine rollingPairStatsEngine;
+    private final RealtimeTickWriter realtimeTickWriter;
+    private final LatestQuoteStore latestQuoteStore;
+    private final DepthCaptureWriter depthCaptureWriter;
+    private final OrderBookEngine orderBookEngine;
     private static final String PROXY_HOST = "127.0.0.1";
     private static final int PROXY_PORT = 9098;
 
@@ -58,6 +77,10 @@ public class BinanceServiceImpl implements BinanceService {
     @Value("${binance.ws-url}")
     private String wsUrl;
 
+    // 订单簿同步时 REST 深度快照的档数（现货最多 5000）
+    @Value("${binance.depth-snapshot-limit:1000}")
+    private int depthSnapshotLimit;
+
     @Value("${proxy.enabled}")
     private boolean proxyEnabled;
 
@@ -71,24 +94,44 @@ public class BinanceServiceImpl implements BinanceService {
     private final Set<String> subscribedDepthSymbols = ConcurrentHashMap.newKeySet();
     private final Map<String, Long> lastTimestamps = new ConcurrentHashMap<>();
     private final Map<String, DepthData> latestDepthDataCache = new ConcurrentHashMap<>();
+    // 上次落库后有更新的订单簿，落库时从订单簿引擎读取最新快照
+    private final Set<String> updatedBooks = ConcurrentHashMap.newKeySet();
+    // 拉取 REST 深度快照，不占用 WebSocket 监听线程
+    private final ScheduledExecutorService bookSyncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "binance-book-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Autowired
     public BinanceServiceImpl(CryptoMetadataRepository metadataRepository,
                               KlineDataRepository klineDataRepository,
-                              RealtimeDataRepository realtimeDataRepository,
                               DepthDataRepository depthDataRepository,
                               WebSocketMessageService webSocketMessageService,
                               SubscriptionService subscriptionService,
                               ProxyConfig proxyConfig,
-                              ClickHouseService clickHouseService) {
+                              ClickHouseService clickHouseService,
+                              KlineColumnCache klineColumnCache,
+                              KlineDataBulkWriter klineDataBulkWriter,
+                              RollingPairStatsEngine rollingPairStatsEngine,
+                              RealtimeTickWriter realtimeTickWriter,
+                              LatestQuoteStore latestQuoteStore,
+                              DepthCaptureWriter depthCaptureWriter,
+                              OrderBookEngine orderBookEngine) {
         this.metadataRepository = metadataRepository;
         this.klineDataRepository = klineDataRepository;
-        this.realtimeDataRepository = realtimeDataRepository;
         this.depthDataRepository = depthDataRepository;
         this.webSocketMessageService = webSocketMessageService;
         this.subscriptionService = subscriptionService;
         this.proxyConfig = proxyConfig;
         this.clickHouseService = clickHouseService;
+        this.klineColumnCache = klineColumnCache;
+        this.klineDataBulkWriter = klineDataBulkWriter;
+        this.rollingPairStatsEngine = rollingPairStatsEngine;
+        this.realtimeTickWriter = realtimeTickWriter;
+        this.latestQuoteStore = latestQuoteStore;
+        this.depthCaptureWriter = depthCaptureWriter;
+        this.orderBookEngine = orderBookEngine;
         this.client = createHttpClient();
     }
 
@@ -174,37 +217,17 @@ public class BinanceServiceImpl implements BinanceService {
 
             List<KlineData> klineList = new ArrayList<>();
             long latestTimestamp = lastTimestamp != null ? lastTimestamp : 0;
+            LocalDateTime now = LocalDateTime.now();
             for (JsonNode node : data) {
-                long timestamp = node.get(0).asLong();
-
-                Optional<KlineData> existingKline = klineDataRepository.findBySymbolAndTimeframeAndTimestampAndExchange(symbol, timeframe, timestamp, "binance");
-
-                KlineData kline;
-                if (existingKline.isPresent()) {
-                    // 更新现有记录
-                    kline = existingKline.get();
-                    logger.debug("K线数据已存在，将进行更新: symbol={}, timeframe={}, timestamp={}", symbol, timeframe, timestamp);
-                } else {
-                    // 创建新记录
-                    kline = new KlineData();
-                    kline.setSymbol(symbol);
-                    kline.setTimeframe(timeframe);
-                    kline.setTimestamp(timestamp);
-                    kline.setExchange("binance");
-                    kline.setCreatedAt(LocalDateTime.now());
-                }
-
-                kline.setOpenPrice(node.get(1).asDouble());
-                kline.setHighPrice(node.get(2).asDouble());
-                kline.setLowPrice(node.get(3).asDouble());
-                kline.setClosePrice(node.get(4).asDouble());
-                kline.setVolume(node.get(5).asDouble());
-
+                KlineData kline = toKlineData(node, symbol, timeframe, now);
                 klineList.add(kline);
-                latestTimestamp = Math.max(latestTimestamp, timestamp);
+                latestTimestamp = Math.max(latestTimestamp, kline.getTimestamp());
             }
-            klineDataRepository.saveAll(klineList);
-            logger.info("K线数据保存到数据库: {} 件", klineList.size());
+            // 一条多行 upsert 语句写入，不再逐条查询是否已存在
+            KlineDataBulkWriter.UpsertResult result = klineDataBulkWriter.upsert(symbol, timeframe, "binance", klineList);
+            klineColumnCache.apply("binance", symbol, timeframe, klineList);
+            rollingPairStatsEngine.onBars("binance", symbol, timeframe, klineList);
+            logger.info("K线数据保存到数据库: {} 件 (新增={}, 更新={})", klineList.size(), result.inserted(), result.updated());
             if (latestTimestamp > (lastTimestamp != null ? lastTimestamp : 0)) {
                 String key = symbol + "-" + timeframe;
                 lastTimestamps.put(key, latestTimestamp);
@@ -222,24 +245,59 @@ public class BinanceServiceImpl implements BinanceService {
     }
 
     @Override
-    public void saveRealtimeData(String symbol, double price, long timestamp) {
-        logger.debug("保存Binance实时数据: symbol={}, price={}, timestamp={}", symbol, price, timestamp);
-        try {
-            RealtimeData data = new RealtimeData();
-            data.setId(UUID.randomUUID().toString());
-            data.setSymbol(symbol);
-            data.setPrice(price);
-            data.setTimestamp(timestamp);
-            data.setExchange("binance");
-            data.setCreatedAt(LocalDateTime.now());
-            realtimeDataRepository.save(data);
-            logger.info("实时数据保存到数据库: symbol={}", symbol);
-        } catch (Exception e) {
-            logger.error("保存Binance实时数据失败: symbol={}, error={}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Failed to save realtime data to Binance", e);
+    public Long getLastSyncedTimestamp(String symbol, String timeframe) {
+        return lastTimestamps.get(symbol + "-" + timeframe);
+    }
+
+    @Override
+    public List<KlineData> fetchHistoricalKlines(String symbol, String timeframe, Long before, int limit) {
+        // endTime 包含在内，所以用 before - 1；单页最多 1000 条
+        StringBuilder url = new StringBuilder(apiUrl + "/api/v3/klines?symbol=" + symbol + "&interval=" + timeframe
+                + "&limit=" + Math.min(limit, 1000));
+        if (before != null) {
+            url.append("&endTime=").append(before - 1);
+        }
+        Request request = new Request.Builder().url(url.toString()).build();
+        try (okhttp3.Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new RuntimeException("Binance klines request failed: HTTP " + response.code());
+            }
+            JsonNode data = mapper.readTree(response.body().string());
+            List<KlineData> klineList = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (JsonNode node : data) {
+                klineList.add(toKlineData(node, symbol, timeframe, now));
+            }
+            return klineList;
+        } catch (IOException e) {
+            logger.error("获取Binance历史K线失败: symbol={}, timeframe={}, before={}, error={}", symbol, timeframe, before, e.getMessage());
+            throw new RuntimeException("Failed to fetch historical kline data from Binance", e);
         }
     }
 
+    private KlineData toKlineData(JsonNode node, String symbol, String timeframe, LocalDateTime createdAt) {
+        KlineData kline = new KlineData();
+        kline.setSymbol(symbol);
+        kline.setTimeframe(timeframe);
+        kline.setTimestamp(node.get(0).asLong());
+        kline.setExchange("binance");
+        kline.setCreatedAt(createdAt);
+        kline.setOpenPrice(node.get(1).asDouble());
+        kline.setHighPrice(node.get(2).asDouble());
+        kline.setLowPrice(node.get(3).asDouble());
+        kline.setClosePrice(node.get(4).asDouble());
+        kline.setVolume(node.get(5).asDouble());
+        return kline;
+    }
+
+    @Override
+    public void saveRealtimeData(String symbol, double price, long timestamp) {
+        logger.trace("保存Binance实时数据: symbol={}, price={}, timestamp={}", symbol, price, timestamp);
+        // 更新最新价并写入内存缓冲区，由 RealtimeTickWriter 批量写入 ClickHouse
+        latestQuoteStore.update("binance", symbol, price, timestamp);
+        realtimeTickWriter.record("binance", symbol, price, timestamp);
+    }
+
     @Override
     public void saveDepthData(String symbol, String bids, String asks, long timestamp) {
         logger.debug("保存Binance深度数据到缓存: symbol={}, timestamp={}", symbol, timestamp);
@@ -251,7 +309,12 @@ public class BinanceServiceImpl implements BinanceService {
             data.setTimestamp(timestamp);
             data.setExchange("binance");
             data.setCreatedAt(LocalDateTime.now());
-            latestDepthDataCache.put(symbol, data);
+            if (depthCaptureWriter.isLossless("binance", symbol)) {
+                // 无损模式：每次推送都写入
+                depthCaptureWriter.append(data);
+            } else {
+                latestDepthDataCache.put(symbol, data);
+            }
         } catch (Exception e) {
             logger.error("保存Binance深度数据到缓存失败: symbol={}, error={}", symbol, e.getMessage(), e);
         }
@@ -259,12 +322,23 @@ public class BinanceServiceImpl implements BinanceService {
 
     @Scheduled(fixedRate = 2000)
     public void persistCachedData() {
-        if (latestDepthDataCache.isEmpty()) {
+        if (latestDepthDataCache.isEmpty() && updatedBooks.isEmpty()) {
             return;
         }
-        
+
         List<DepthData> batchToSave = new ArrayList<>(latestDepthDataCache.values());
         latestDepthDataCache.clear();
+        // 订单簿只保存间隔内的最后状态
+        LocalDateTime now = LocalDateTime.now();
+        for (String symbol : new HashSet<>(updatedBooks)) {
+            updatedBooks.remove(symbol);
+            OrderBookSnapshot snapshot = orderBookEngine.snapshot("binance", symbol);
+            if (snapshot != null) {
+                DepthData data = orderBookEngine.toDepthData(snapshot);
+                data.setCreatedAt(now);
+                batchToSave.add(data);
+            }
+        }
 
         try {
             clickHouseService.saveDepthData(batchToSave);
@@ -282,6 +356,9 @@ public class BinanceServiceImpl implements BinanceService {
             @Override
             public void onOpen(WebSocket ws, okhttp3.Response response) {
                 logger.info("Binance WebSocket连接已打开");
+                // 新连接需要重新订阅，订单簿在收到增量后重新同步
+                subscribedDepthSymbols.clear();
+                orderBookEngine.clear("binance");
                 updateDepthSubscriptions();
             }
 
@@ -295,10 +372,17 @@ public class BinanceServiceImpl implements BinanceService {
                         String symbol = stream.split("@")[0].toUpperCase();
                         JsonNode data = node.get("data");
 
-                        if (stream.endsWith("@depth")) {
-                            webSocketMessageService.broadcastDepthUpdate(symbol, data);
+                        // 订阅的是 <symbol>@depth@100ms，不能只匹配结尾
+                        if (stream.contains("@depth")) {
+                            onDepthUpdate(symbol, data);
                         } else if (stream.endsWith("@trade")) {
                             webSocketMessageService.broadcastRealtimeUpdate(symbol, data);
+                            if (data.has("p") && data.has("T")) {
+                                double price = data.get("p").asDouble();
+                                long tradeTime = data.get("T").asLong();
+                                saveRealtimeData(symbol, price, tradeTime);
+                                rollingPairStatsEngine.onTicker("binance", symbol, price, tradeTime);
+                            }
                         }
                     }
                 } catch (Exception e) {
@@ -324,9 +408,73 @@ public class BinanceServiceImpl implements BinanceService {
         });
     }
 
+    /**
+     * 把 diff 深度推送应用到订单簿，更新后从订单簿推送和落库
+     */
+    private void onDepthUpdate(String symbol, JsonNode data) {
+        if (!data.has("U") || !data.has("u")) {
+            return;
+        }
+        long timestamp = data.has("E") ? data.get("E").asLong() : System.currentTimeMillis();
+        OrderBookEngine.Result result = orderBookEngine.applyBinanceDiff(symbol, data.get("U").asLong(), data.get("u").asLong(),
+                BookLevels.fromJson(data.get("b")), BookLevels.fromJson(data.get("a")), timestamp);
+        if (result == OrderBookEngine.Result.APPLIED) {
+            publishBook(symbol);
+        } else if (result == OrderBookEngine.Result.RESYNC) {
+            scheduleBookSync(symbol, 0);
+        }
+    }
+
+    private void publishBook(String symbol) {
+        OrderBookSnapshot snapshot = orderBookEngine.snapshot("binance", symbol);
+        if (snapshot == null) {
+            return;
+        }
+        webSocketMessageService.broadcastDepthUpdate(symbol, new RawValue(orderBookEngine.broadcastPayload(snapshot)));
+        if (depthCaptureWriter.isLossless("binance", symbol)) {
+            // 无损模式：每次更新后的订单簿都写入
+            depthCaptureWriter.append(orderBookEngine.toDepthData(snapshot));
+        } else {
+            updatedBooks.add(symbol);
+        }
+    }
+
+    private void scheduleBookSync(String symbol, long delayMs) {
+        bookSyncScheduler.schedule(() -> syncBook(symbol), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 拉取 REST 深度快照建立订单簿；与缓存的增量衔接不上或请求失败时稍后重试
+     */
+    private void syncBook(String symbol) {
+        if (!subscribedDepthSymbols.contains(symbol)) {
+            return;
+        }
+        Request request = new Request.Builder()
+                .url(apiUrl + "/api/v3/depth?symbol=" + symbol + "&limit=" + depthSnapshotLimit)
+                .build();
+        try (okhttp3.Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            JsonNode root = mapper.readTree(response.body().string());
+            boolean synced = orderBookEngine.applyBinanceSnapshot(symbol, root.get("lastUpdateId").asLong(),
+                    BookLevels.fromJson(root.get("bids")), BookLevels.fromJson(root.get("asks")), System.currentTimeMillis());
+            if (synced) {
+                publishBook(symbol);
+            } else {
+                scheduleBookSync(symbol, 1000);
+            }
+        } catch (Exception e) {
+            logger.error("获取Binance深度快照失败，稍后重试: symbol={}, error={}", symbol, e.getMessage());
+            scheduleBookSync(symbol, 5000);
+        }
+    }
+
     @Override
     public void updateDepthSubscriptions() {
         logger.info("更新Binance深度订阅");
+        depthCaptureWriter.refreshModes();
         try {
             List<Subscription> activeSubscriptions = subscriptionService.getSubscriptionsByDataTypeAndExchange("depth", "binance");
             Set<String> newSymbols = activeSubscriptions.stream()
@@ -346,6 +494,7 @@ public class BinanceServiceImpl implements BinanceService {
                 if (webSocket != null) {
                     webSocket.send(unsubscribeMessage);
                     subscribedDepthSymbols.removeAll(symbolsToUnsubscribe);
+                    symbolsToUnsubscribe.forEach(s -> orderBookEngine.remove("binance", s));
                     logger.info("已发送Binance深度取消订阅请求: {}", symbolsToUnsubscribe);
                 }
             }
@@ -369,7 +518,7 @@ public class BinanceServiceImpl implements BinanceService {
         Map<String, Object> message = new HashMap<>();
         message.put("method", method);
         List<String> params = symbols.stream()
-                .map(s -> s.toLowerCase() + "@depth10@100ms")
+                .map(s -> s.toLowerCase() + "@depth@100ms")
                 .collect(Collectors.toList());
         message.put("params", params);
         message.put("id", UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE);
@@ -1,24 +1,52 @@
 package com.example.crypto.service.impl;
 
 import com.example.crypto.entity.DepthData;
+import com.example.crypto.entity.RealtimeData;
+import com.example.crypto.enums.DepthStorageMode;
 import com.example.crypto.service.ClickHouseService;
+import com.example.crypto.service.clickhouse.ClickHouseSink;
+import com.example.crypto.service.clickhouse.RowBinaryEncoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class ClickHouseServiceImpl implements ClickHouseService {
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseServiceImpl.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String LEGACY_DEPTH_TARGET = "depth_data (symbol, exchange, timestamp, bids, asks)";
+    private static final String DEPTH_BOOK_TARGET =
+            "depth_book (symbol, exchange, timestamp, bid_prices, bid_sizes, ask_prices, ask_sizes)";
+    private static final String REALTIME_TARGET = "realtime_data (symbol, exchange, timestamp, price)";
 
     private final JdbcTemplate clickhouseJdbcTemplate;
+    private final ClickHouseSink clickHouseSink;
+
+    @Value("${clickhouse.depth.storage-mode:STRUCTURED}")
+    private DepthStorageMode depthStorageMode;
+
+    // 非复制 MergeTree 记住的最近插入块数；ClickHouseSink 重试、补写同一批次时带相同的 insert_deduplication_token，窗口内的重复块会被丢弃
+    @Value("${clickhouse.deduplication-window:10000}")
+    private int deduplicationWindow;
 
     @Autowired
-    public ClickHouseServiceImpl(@Qualifier("clickhouseJdbcTemplate") JdbcTemplate clickhouseJdbcTemplate) {
+    public ClickHouseServiceImpl(@Qualifier("clickhouseJdbcTemplate") JdbcTemplate clickhouseJdbcTemplate,
+                                 ClickHouseSink clickHouseSink) {
         this.clickhouseJdbcTemplate = clickhouseJdbcTemplate;
+        this.clickHouseSink = clickHouseSink;
     }
 
     @PostConstruct
@@ -33,8 +61,52 @@ public class ClickHouseServiceImpl implements ClickHouseService {
                 "    timestamp UInt64," +
                 "    bids String," +
                 "    asks String" +
-                ") ENGINE = MergeTree() ORDER BY (symbol, exchange, timestamp)";
+                ") ENGINE = MergeTree() ORDER BY (symbol, exchange, timestamp)" +
+                deduplicationSettings();
         clickhouseJdbcTemplate.execute(sql);
+        // 逐笔实时价格，按天分区，写入由 RealtimeTickWriter 批量完成
+        String realtimeSql = "CREATE TABLE IF NOT EXISTS realtime_data (" +
+                "    symbol String," +
+                "    exchange String," +
+                "    timestamp UInt64," +
+                "    price Float64" +
+                ") ENGINE = MergeTree()" +
+                " PARTITION BY toYYYYMMDD(toDateTime(intDiv(timestamp, 1000)))" +
+                " ORDER BY (exchange, symbol, timestamp)" +
+                deduplicationSettings();
+        clickhouseJdbcTemplate.execute(realtimeSql);
+        // 结构化深度表：每侧价格、数量各一个数组列，按天分区
+        // 时间戳单调递增，DoubleDelta 后几乎不占空间；symbol / exchange 取值很少，用 LowCardinality 字典编码
+        String depthBookSql = "CREATE TABLE IF NOT EXISTS depth_book (" +
+                "    symbol LowCardinality(String)," +
+                "    exchange LowCardinality(String)," +
+                "    timestamp UInt64 CODEC(DoubleDelta, ZSTD(1))," +
+                "    bid_prices Array(Float64) CODEC(ZSTD(3))," +
+                "    bid_sizes Array(Float64) CODEC(ZSTD(3))," +
+                "    ask_prices Array(Float64) CODEC(ZSTD(3))," +
+                "    ask_sizes Array(Float64) CODEC(ZSTD(3))" +
+                ") ENGINE = MergeTree()" +
+                " PARTITION BY toYYYYMMDD(toDateTime(intDiv(timestamp, 1000)))" +
+                " ORDER BY (symbol, exchange, timestamp)" +
+                deduplicationSettings();
+        clickhouseJdbcTemplate.execute(depthBookSql);
+        // 已存在的表补上去重窗口
+        for (String table : List.of("depth_data", "realtime_data", "depth_book")) {
+            try {
+                clickhouseJdbcTemplate.execute("ALTER TABLE " + table + " MODIFY SETTING non_replicated_deduplication_window = " + deduplicationWindow);
+            } catch (RuntimeException e) {
+                logger.warn("设置 ClickHouse 去重窗口失败，重试写入可能产生重复数据: table={}, error={}", table, e.getMessage());
+            }
+        }
+    }
+
+    private String deduplicationSettings() {
+        return " SETTINGS non_replicated_deduplication_window = " + deduplicationWindow;
+    }
+
+    @Override
+    public DepthStorageMode getDepthStorageMode() {
+        return depthStorageMode;
     }
 
     @Override
@@ -42,23 +114,130 @@ public class ClickHouseServiceImpl implements ClickHouseService {
         if (depthDataList == null || depthDataList.isEmpty()) {
             return;
         }
-        try {
-            String sql = "INSERT INTO depth_data (symbol, exchange, timestamp, bids, asks) VALUES (?, ?, ?, ?, ?)";
-
-            List<Object[]> batchArgs = depthDataList.stream()
-                    .map(data -> new Object[]{
-                            data.getSymbol(),
-                            data.getExchange(),
-                            data.getTimestamp(),
-                            data.getBids(),
-                            data.getAsks()
-                    })
-                    .collect(Collectors.toList());
-
-            clickhouseJdbcTemplate.batchUpdate(sql, batchArgs);
-        } catch (Exception e) {
-            // Add proper logging here
-            e.printStackTrace();
+        // 异步写入，失败由 ClickHouseSink 重试并落盘，不阻塞定时任务线程
+        if (depthStorageMode != DepthStorageMode.STRUCTURED) {
+            clickHouseSink.submit(LEGACY_DEPTH_TARGET, encodeLegacyDepthData(depthDataList));
+        }
+        if (depthStorageMode != DepthStorageMode.LEGACY) {
+            clickHouseSink.submit(DEPTH_BOOK_TARGET, encodeStructuredDepthData(depthDataList));
+        }
+    }
+
+    private static RowBinaryEncoder encodeLegacyDepthData(List<DepthData> depthDataList) {
+        RowBinaryEncoder rows = new RowBinaryEncoder(depthDataList.size() * 512);
+        for (DepthData data : depthDataList) {
+            rows.writeString(data.getSymbol())
+                    .writeString(data.getExchange())
+                    .writeUInt64(data.getTimestamp())
+                    .writeString(data.getBids())
+                    .writeString(data.getAsks())
+                    .endRow();
+        }
+        return rows;
+    }
+
+    private static RowBinaryEncoder encodeStructuredDepthData(List<DepthData> depthDataList) {
+        RowBinaryEncoder rows = new RowBinaryEncoder(depthDataList.size() * 512);
+        for (DepthData data : depthDataList) {
+            if (data.getBidPrices() == null || data.getAskPrices() == null) {
+                // 由 JSON 字符串写入的快照，在这里解析一次，之后的读取不再解析 JSON
+                try {
+                    double[][] bids = parseLevels(data.getBids());
+                    double[][] asks = parseLevels(data.getAsks());
+                    data.setBidLevels(bids[0], bids[1]);
+                    data.setAskLevels(asks[0], asks[1]);
+                } catch (IOException | NumberFormatException e) {
+                    logger.warn("深度快照格式错误，跳过: symbol={}, timestamp={}, error={}", data.getSymbol(), data.getTimestamp(), e.getMessage());
+                    continue;
+                }
+            }
+            rows.writeString(data.getSymbol())
+                    .writeString(data.getExchange())
+                    .writeUInt64(data.getTimestamp())
+                    .writeFloat64Array(data.getBidPrices())
+                    .writeFloat64Array(data.getBidSizes())
+                    .writeFloat64Array(data.getAskPrices())
+                    .writeFloat64Array(data.getAskSizes())
+                    .endRow();
+        }
+        return rows;
+    }
+
+    @Override
+    public long migrateLegacyDepthData(long startTime, long endTime) {
+        // 在 ClickHouse 内部完成 JSON 解析和转换，不经过应用；OKX 档位为 [价格, 数量, 0, 订单数]，Binance 为 [价格, 数量]，都只取前两项
+        // depth_book 中已有的快照（DUAL 双写期间写入的、之前迁移过的）不再写入，同一范围可以重复执行
+        String pending = "FROM depth_data WHERE timestamp >= ? AND timestamp < ? " +
+                "AND (symbol, exchange, timestamp) NOT IN (" +
+                "SELECT toString(symbol), toString(exchange), timestamp FROM depth_book WHERE timestamp >= ? AND timestamp < ?)";
+        String levels = "JSONExtract(%s, 'Array(Array(String))')";
+        String sql = "INSERT INTO depth_book (symbol, exchange, timestamp, bid_prices, bid_sizes, ask_prices, ask_sizes) " +
+                "SELECT symbol, exchange, timestamp, " +
+                "arrayMap(l -> toFloat64OrZero(l[1]), " + levels.formatted("bids") + "), " +
+                "arrayMap(l -> toFloat64OrZero(l[2]), " + levels.formatted("bids") + "), " +
+                "arrayMap(l -> toFloat64OrZero(l[1]), " + levels.formatted("asks") + "), " +
+                "arrayMap(l -> toFloat64OrZero(l[2]), " + levels.formatted("asks") + ") " +
+                pending;
+        String countSql = "SELECT count() " + pending;
+        Long rows = clickhouseJdbcTemplate.queryForObject(countSql, Long.class, startTime, endTime, startTime, endTime);
+        logger.info("开始迁移旧深度数据: startTime={}, endTime={}, rows={}", startTime, endTime, rows);
+        clickhouseJdbcTemplate.update(sql, startTime, endTime, startTime, endTime);
+        logger.info("旧深度数据迁移完成: startTime={}, endTime={}, rows={}", startTime, endTime, rows);
+        return rows != null ? rows : 0L;
+    }
+
+    /**
+     * 解析 [["价格","数量",...], ...] 格式的档位，返回 {价格数组, 数量数组}
+     */
+    static double[][] parseLevels(String json) throws IOException {
+        double[] prices = new double[8];
+        double[] sizes = new double[8];
+        int count = 0;
+        if (json != null && !json.isEmpty()) {
+            try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        double price = Double.NaN;
+                        double size = Double.NaN;
+                        int index = 0;
+                        JsonToken token;
+                        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                            if (index == 0) {
+                                price = Double.parseDouble(parser.getText());
+                            } else if (index == 1) {
+                                size = Double.parseDouble(parser.getText());
+                            } else {
+                                parser.skipChildren();
+                            }
+                            index++;
+                        }
+                        if (count == prices.length) {
+                            prices = Arrays.copyOf(prices, count * 2);
+                            sizes = Arrays.copyOf(sizes, count * 2);
+                        }
+                        prices[count] = price;
+                        sizes[count] = size;
+                        count++;
+                    }
+                }
+            }
+        }
+        return new double[][]{Arrays.copyOf(prices, count), Arrays.copyOf(sizes, count)};
+    }
+
+    @Override
+    public void saveRealtimeData(List<RealtimeData> ticks) {
+        if (ticks == null || ticks.isEmpty()) {
+            return;
+        }
+        RowBinaryEncoder rows = new RowBinaryEncoder(ticks.size() * 40);
+        for (RealtimeData tick : ticks) {
+            rows.writeString(tick.getSymbol())
+                    .writeString(tick.getExchange())
+                    .writeUInt64(tick.getTimestamp())
+                    .writeFloat64(tick.getPrice())
+                    .endRow();
         }
+        clickHouseSink.submit(REALTIME_TARGET, rows);
     }
-} 
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import com.example.crypto.dao.KlineDataRepository;
 import com.example.crypto.dao.projection.KlineIdentifier;
 import com.example.crypto.entity.KlineData;
 import com.example.crypto.service.DataCorrectionService;
+import com.example.crypto.service.kline.KlineColumnCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -17,9 +18,11 @@ public class DataCorrectionServiceImpl implements DataCorrectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(DataCorrectionServiceImpl.class);
     private final KlineDataRepository klineDataRepository;
+    private final KlineColumnCache klineColumnCache;
 
-    public DataCorrectionServiceImpl(KlineDataRepository klineDataRepository) {
+    public DataCorrectionServiceImpl(KlineDataRepository klineDataRepository, KlineColumnCache klineColumnCache) {
         this.klineDataRepository = klineDataRepository;
+        this.klineColumnCache = klineColumnCache;
     }
 
     @Override
@@ -55,6 +58,7 @@ public class DataCorrectionServiceImpl implements DataCorrectionService {
 
             if (correctedCount > 0) {
                 klineDataRepository.saveAll(klines);
+                klineColumnCache.invalidate(id.getExchange(), id.getSymbol(), id.getTimeframe());
                 logger.info("修正了 {} 条K线数据的收盘价。", correctedCount);
                 totalCorrectedCount.addAndGet(correctedCount);
             } else {
@@ -0,0 +1,290 @@
+package com.example.crypto.service.impl;
+
+import com.example.crypto.dao.KlineBackfillCheckpointRepository;
+import com.example.crypto.dao.KlineDataBulkWriter;
+import com.example.crypto.entity.KlineBackfillCheckpoint;
+import com.example.crypto.entity.KlineData;
+import com.example.crypto.enums.BackfillStatus;
+import com.example.crypto.exception.ResourceNotFoundException;
+import com.example.crypto.service.BinanceService;
+import com.example.crypto.service.KlineBackfillService;
+import com.example.crypto.service.OkxService;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.sync.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * K线历史回补服务实现
+ * 每个 (exchange, symbol, timeframe) 一个任务，从检查点向过去逐页拉取并批量写入 kline_data，
+ * 每页写完即更新检查点，进度通过 STOMP 推送到 /topic/backfill/{id}。
+ * 不同品种的任务并行执行，所有任务共享一个全局令牌桶，避免回补挤占实时同步的接口额度。
+ */
+@Service
+public class KlineBackfillServiceImpl implements KlineBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(KlineBackfillServiceImpl.class);
+    private static final Set<BackfillStatus> UNFINISHED = EnumSet.of(BackfillStatus.PENDING, BackfillStatus.RUNNING);
+
+    private final KlineBackfillCheckpointRepository checkpointRepository;
+    private final KlineDataBulkWriter klineDataBulkWriter;
+    private final KlineColumnCache klineColumnCache;
+    private final OkxService okxService;
+    private final BinanceService binanceService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${kline.backfill.max-concurrent-jobs:4}")
+    private int maxConcurrentJobs;
+
+    @Value("${kline.backfill.requests-per-second:8}")
+    private double requestsPerSecond;
+
+    @Value("${kline.backfill.burst:8}")
+    private double burst;
+
+    @Value("${kline.backfill.okx.page-size:100}")
+    private int okxPageSize;
+
+    @Value("${kline.backfill.binance.page-size:1000}")
+    private int binancePageSize;
+
+    private ExecutorService executor;
+    private TokenBucket rateBudget;
+    // 正在执行或排队中的检查点 id
+    private final Set<Long> activeJobs = ConcurrentHashMap.newKeySet();
+    private final Set<Long> cancelRequested = ConcurrentHashMap.newKeySet();
+
+    public KlineBackfillServiceImpl(KlineBackfillCheckpointRepository checkpointRepository,
+                                    KlineDataBulkWriter klineDataBulkWriter,
+                                    KlineColumnCache klineColumnCache,
+                                    OkxService okxService,
+                                    BinanceService binanceService,
+                                    SimpMessagingTemplate messagingTemplate) {
+        this.checkpointRepository = checkpointRepository;
+        this.klineDataBulkWriter = klineDataBulkWriter;
+        this.klineColumnCache = klineColumnCache;
+        this.okxService = okxService;
+        this.binanceService = binanceService;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrentJobs, r -> {
+            Thread thread = new Thread(r, "kline-backfill-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        rateBudget = new TokenBucket(burst, requestsPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public KlineBackfillCheckpoint startBackfill(String exchange, String symbol, String timeframe, long targetStartTime) {
+        if (!"okx".equals(exchange) && !"binance".equals(exchange)) {
+            throw new IllegalArgumentException("Unsupported exchange for backfill: " + exchange);
+        }
+        KlineBackfillCheckpoint checkpoint = checkpointRepository
+                .findByExchangeAndSymbolAndTimeframe(exchange, symbol, timeframe)
+                .orElseGet(() -> {
+                    KlineBackfillCheckpoint created = new KlineBackfillCheckpoint();
+                    created.setExchange(exchange);
+                    created.setSymbol(symbol);
+                    created.setTimeframe(timeframe);
+                    created.setCreatedAt(LocalDateTime.now());
+                    return created;
+                });
+        if (checkpoint.getId() != null && activeJobs.contains(checkpoint.getId())) {
+            logger.info("回补任务已在执行中: id={}, exchange={}, symbol={}, timeframe={}", checkpoint.getId(), exchange, symbol, timeframe);
+            return checkpoint;
+        }
+        // 保留已有游标：目标时间更早时从上次停下的位置继续
+        checkpoint.setTargetStartTime(targetStartTime);
+        checkpoint.setStatus(BackfillStatus.PENDING);
+        checkpoint.setErrorMessage(null);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpoint = checkpointRepository.save(checkpoint);
+        submit(checkpoint.getId());
+        logger.info("回补任务已提交: id={}, exchange={}, symbol={}, timeframe={}, targetStartTime={}, cursor={}",
+                checkpoint.getId(), exchange, symbol, timeframe, targetStartTime, checkpoint.getCursorTimestamp());
+        return checkpoint;
+    }
+
+    @Override
+    public void cancelBackfill(Long id) {
+        KlineBackfillCheckpoint checkpoint = getBackfill(id);
+        if (activeJobs.contains(id)) {
+            // 由执行线程在当前页结束后把状态改为 CANCELLED
+            cancelRequested.add(id);
+        } else if (UNFINISHED.contains(checkpoint.getStatus())) {
+            updateStatus(checkpoint, BackfillStatus.CANCELLED, null);
+        }
+    }
+
+    @Override
+    public KlineBackfillCheckpoint getBackfill(Long id) {
+        return checkpointRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Backfill checkpoint not found with id: " + id));
+    }
+
+    @Override
+    public List<KlineBackfillCheckpoint> getBackfills() {
+        return checkpointRepository.findAll();
+    }
+
+    @Override
+    public void resumeUnfinishedBackfills() {
+        List<KlineBackfillCheckpoint> unfinished = checkpointRepository.findByStatusIn(UNFINISHED);
+        for (KlineBackfillCheckpoint checkpoint : unfinished) {
+            logger.info("继续未完成的回补任务: id={}, exchange={}, symbol={}, timeframe={}, cursor={}",
+                    checkpoint.getId(), checkpoint.getExchange(), checkpoint.getSymbol(), checkpoint.getTimeframe(), checkpoint.getCursorTimestamp());
+            submit(checkpoint.getId());
+        }
+    }
+
+    private void submit(Long id) {
+        if (!activeJobs.add(id)) {
+            return;
+        }
+        cancelRequested.remove(id);
+        executor.submit(() -> {
+            try {
+                runJob(id);
+            } finally {
+                activeJobs.remove(id);
+                cancelRequested.remove(id);
+            }
+        });
+    }
+
+    private void runJob(Long id) {
+        KlineBackfillCheckpoint checkpoint = checkpointRepository.findById(id).orElse(null);
+        if (checkpoint == null) {
+            return;
+        }
+        String exchange = checkpoint.getExchange();
+        String symbol = checkpoint.getSymbol();
+        String timeframe = checkpoint.getTimeframe();
+        long target = checkpoint.getTargetStartTime();
+        int pageSize = "okx".equals(exchange) ? okxPageSize : binancePageSize;
+        if (checkpoint.getCursorTimestamp() != null && checkpoint.getCursorTimestamp() <= target) {
+            updateStatus(checkpoint, BackfillStatus.COMPLETED, null);
+            return;
+        }
+        updateStatus(checkpoint, BackfillStatus.RUNNING, null);
+        try {
+            while (true) {
+                if (cancelRequested.contains(id)) {
+                    updateStatus(checkpoint, BackfillStatus.CANCELLED, null);
+                    logger.info("回补任务已取消: id={}", id);
+                    return;
+                }
+                rateBudget.acquire(1);
+                Long cursor = checkpoint.getCursorTimestamp();
+                List<KlineData> page = "okx".equals(exchange)
+                        ? okxService.fetchHistoricalKlines(symbol, timeframe, cursor, pageSize)
+                        : binanceService.fetchHistoricalKlines(symbol, timeframe, cursor, pageSize);
+                // 只保留目标区间内、且早于游标的K线
+                page.removeIf(k -> k.getTimestamp() < target || (cursor != null && k.getTimestamp() >= cursor));
+                if (page.isEmpty()) {
+                    // 交易所没有更早的数据，或已越过目标起始时间
+                    updateStatus(checkpoint, BackfillStatus.COMPLETED, null);
+                    break;
+                }
+                long oldest = Long.MAX_VALUE;
+                long newest = Long.MIN_VALUE;
+                for (KlineData kline : page) {
+                    oldest = Math.min(oldest, kline.getTimestamp());
+                    newest = Math.max(newest, kline.getTimestamp());
+                }
+                klineDataBulkWriter.upsert(symbol, timeframe, exchange, page);
+                klineColumnCache.apply(exchange, symbol, timeframe, page);
+
+                if (checkpoint.getNewestTimestamp() == null) {
+                    checkpoint.setNewestTimestamp(newest);
+                }
+                checkpoint.setCursorTimestamp(oldest);
+                checkpoint.setBarsWritten(checkpoint.getBarsWritten() + page.size());
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpoint = checkpointRepository.save(checkpoint);
+                publishProgress(checkpoint);
+                if (oldest <= target) {
+                    updateStatus(checkpoint, BackfillStatus.COMPLETED, null);
+                    break;
+                }
+            }
+            logger.info("回补任务完成: id={}, exchange={}, symbol={}, timeframe={}, 写入={}",
+                    id, exchange, symbol, timeframe, checkpoint.getBarsWritten());
+        } catch (InterruptedException e) {
+            // 服务关闭：保持 RUNNING，重启后由 resumeUnfinishedBackfills 继续
+            Thread.currentThread().interrupt();
+            logger.info("回补任务被中断，等待重启后继续: id={}", id);
+        } catch (Exception e) {
+            logger.error("回补任务失败: id={}, exchange={}, symbol={}, timeframe={}, error={}",
+                    id, exchange, symbol, timeframe, e.getMessage(), e);
+            updateStatus(checkpoint, BackfillStatus.FAILED, e.getMessage());
+        }
+    }
+
+    private void updateStatus(KlineBackfillCheckpoint checkpoint, BackfillStatus status, String errorMessage) {
+        checkpoint.setStatus(status);
+        checkpoint.setErrorMessage(errorMessage != null && errorMessage.length() > 1000 ? errorMessage.substring(0, 1000) : errorMessage);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+        publishProgress(checkpoint);
+    }
+
+    private void publishProgress(KlineBackfillCheckpoint checkpoint) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", checkpoint.getId());
+        data.put("exchange", checkpoint.getExchange());
+        data.put("symbol", checkpoint.getSymbol());
+        data.put("timeframe", checkpoint.getTimeframe());
+        data.put("status", checkpoint.getStatus().name());
+        data.put("cursor", checkpoint.getCursorTimestamp());
+        data.put("targetStartTime", checkpoint.getTargetStartTime());
+        data.put("barsWritten", checkpoint.getBarsWritten());
+        data.put("progress", progress(checkpoint));
+        if (checkpoint.getErrorMessage() != null) {
+            data.put("error", checkpoint.getErrorMessage());
+        }
+        try {
+            messagingTemplate.convertAndSend("/topic/backfill/" + checkpoint.getId(), Map.of("type", "progress", "data", data));
+        } catch (Exception e) {
+            logger.warn("推送回补进度失败: id={}, error={}", checkpoint.getId(), e.getMessage());
+        }
+    }
+
+    private static double progress(KlineBackfillCheckpoint checkpoint) {
+        if (checkpoint.getStatus() == BackfillStatus.COMPLETED) {
+            return 1.0;
+        }
+        Long newest = checkpoint.getNewestTimestamp();
+        Long cursor = checkpoint.getCursorTimestamp();
+        if (newest == null || cursor == null || newest <= checkpoint.getTargetStartTime()) {
+            return 0.0;
+        }
+        double done = (double) (newest - cursor) / (newest - checkpoint.getTargetStartTime());
+        return Math.max(0.0, Math.min(1.0, done));
+    }
+}
@@ -10,13 +10,24 @@ import com.example.crypto.entity.KlineData;
 import com.example.crypto.entity.RealtimeData;
 import com.example.crypto.entity.DepthData;
 import com.example.crypto.enums.AssetType;
+import com.example.crypto.enums.DepthStorageMode;
 import com.example.crypto.repository.ForexKlineRepository;
+import com.example.crypto.service.ClickHouseService;
 import com.example.crypto.service.MarketService;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.kline.KlineSlice;
+import com.example.crypto.service.realtime.LatestQuoteStore;
 import com.example.crypto.dto.KlineDataDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +45,9 @@ public class MarketServiceImpl implements MarketService {
     private final CryptoMetadataRepository metadataRepository;
     private final DepthDataRepository depthDataRepository;
     private final ForexKlineRepository forexKlineRepository;
+    private final KlineColumnCache klineColumnCache;
+    private final LatestQuoteStore latestQuoteStore;
+    private final ClickHouseService clickHouseService;
     @Autowired @Qualifier("clickhouseJdbcTemplate")
     private JdbcTemplate ck;
 
@@ -41,12 +55,18 @@ public class MarketServiceImpl implements MarketService {
                              RealtimeDataRepository realtimeDataRepository,
                              CryptoMetadataRepository metadataRepository,
                              DepthDataRepository depthDataRepository,
-                             ForexKlineRepository forexKlineRepository) {
+                             ForexKlineRepository forexKlineRepository,
+                             KlineColumnCache klineColumnCache,
+                             LatestQuoteStore latestQuoteStore,
+                             ClickHouseService clickHouseService) {
         this.klineDataRepository = klineDataRepository;
         this.realtimeDataRepository = realtimeDataRepository;
         this.metadataRepository = metadataRepository;
         this.depthDataRepository = depthDataRepository;
         this.forexKlineRepository = forexKlineRepository;
+        this.klineColumnCache = klineColumnCache;
+        this.latestQuoteStore = latestQuoteStore;
+        this.clickHouseService = clickHouseService;
     }
 
     @Override
@@ -60,7 +80,18 @@ public class MarketServiceImpl implements MarketService {
                         .collect(Collectors.toList());
             } else {
                 logger.info("獲取 K 線數據: symbol={}, timeframe={}, startTime={}, endTime={}, exchange={}", symbol, timeframe, startTime, endTime, exchange);
+                KlineSlice cached = klineColumnCache.find(exchange, symbol, timeframe, startTime, endTime);
+                if (cached != null) {
+                    logger.debug("K 線緩存命中: symbol={}, timeframe={}, exchange={}, size={}", symbol, timeframe, exchange, cached.size());
+                    return cached.toDtos();
+                }
+                long version = klineColumnCache.beginLoad(exchange, symbol, timeframe);
                 List<KlineData> data = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol, timeframe, startTime, endTime, exchange);
+                klineColumnCache.load(version, exchange, symbol, timeframe, startTime, endTime, data);
+                KlineSlice loaded = klineColumnCache.find(exchange, symbol, timeframe, startTime, endTime);
+                if (loaded != null) {
+                    return loaded.toDtos();
+                }
                 return data.stream()
                         .map(k -> new KlineDataDTO(k.getId(), k.getSymbol(), k.getTimeframe(), k.getTimestamp(), k.getOpenPrice(), k.getHighPrice(), k.getLowPrice(), k.getClosePrice(), k.getVolume(), k.getCreatedAt()))
                         .collect(Collectors.toList());
@@ -73,17 +104,76 @@ public class MarketServiceImpl implements MarketService {
 
     @Override
     public RealtimeData getRealtimeData(String symbol, String exchange) {
-        logger.info("リアルタイムデータの取得: symbol={}, exchange={}", symbol, exchange);
+        LatestQuoteStore.Quote quote = latestQuoteStore.get(exchange, symbol);
+        if (quote != null) {
+            return quote.toRealtimeData();
+        }
+        logger.info("リアルタイムデータがメモリに無いためデータベースから取得: symbol={}, exchange={}", symbol, exchange);
         try {
-            RealtimeData data = realtimeDataRepository.findTopBySymbolAndExchangeOrderByTimestampDesc(symbol, exchange).orElse(null);
+            quote = loadLatestQuotes(List.of(symbol), exchange).get(symbol);
             logger.debug("リアルタイムデータ取得成功: symbol={}, exchange={}", symbol, exchange);
-            return data;
+            return quote != null ? quote.toRealtimeData() : null;
         } catch (Exception e) {
             logger.error("リアルタイムデータの取得に失敗: symbol={}, exchange={}, error={}", symbol, exchange, e.getMessage(), e);
             throw new RuntimeException("Failed to get realtime data", e);
         }
     }
 
+    @Override
+    public List<RealtimeData> getRealtimeData(List<String> symbols, String exchange) {
+        Map<String, LatestQuoteStore.Quote> cached = latestQuoteStore.getAll(exchange, symbols);
+        Map<String, LatestQuoteStore.Quote> loaded = Collections.emptyMap();
+        if (cached.size() < symbols.size()) {
+            List<String> missing = symbols.stream().filter(symbol -> !cached.containsKey(symbol)).distinct().toList();
+            logger.info("リアルタイムデータがメモリに無い契約をデータベースから取得: exchange={}, symbols={}", exchange, missing);
+            try {
+                loaded = loadLatestQuotes(missing, exchange);
+            } catch (Exception e) {
+                logger.error("リアルタイムデータの一括取得に失敗: exchange={}, error={}", exchange, e.getMessage(), e);
+                throw new RuntimeException("Failed to get realtime data", e);
+            }
+        }
+        List<RealtimeData> result = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            LatestQuoteStore.Quote quote = cached.containsKey(symbol) ? cached.get(symbol) : loaded.get(symbol);
+            if (quote != null) {
+                result.add(quote.toRealtimeData());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * メモリに無い契約の最新価格を ClickHouse realtime_data から一括取得し、無ければ旧 PostgreSQL テーブルを参照する
+     * 取得結果はメモリに格納するため、同じ契約の2回目以降はデータベースにアクセスしない
+     */
+    private Map<String, LatestQuoteStore.Quote> loadLatestQuotes(List<String> symbols, String exchange) {
+        Map<String, LatestQuoteStore.Quote> result = new HashMap<>();
+        if (symbols.isEmpty()) {
+            return result;
+        }
+        String placeholders = String.join(",", Collections.nCopies(symbols.size(), "?"));
+        String sql = "SELECT symbol, argMax(price, timestamp), max(timestamp) FROM realtime_data " +
+                "WHERE exchange = ? AND symbol IN (" + placeholders + ") GROUP BY symbol";
+        List<Object> args = new ArrayList<>(symbols.size() + 1);
+        args.add(exchange);
+        args.addAll(symbols);
+        ck.query(sql, rs -> {
+            LatestQuoteStore.Quote quote = new LatestQuoteStore.Quote(exchange, rs.getString(1), rs.getDouble(2), rs.getLong(3));
+            result.put(quote.symbol(), latestQuoteStore.putIfAbsent(quote));
+        }, args.toArray());
+        for (String symbol : symbols) {
+            if (result.containsKey(symbol)) {
+                continue;
+            }
+            realtimeDataRepository.findTopBySymbolAndExchangeOrderByTimestampDesc(symbol, exchange)
+                    .filter(data -> data.getPrice() != null && data.getTimestamp() != null)
+                    .ifPresent(data -> result.put(symbol, latestQuoteStore.putIfAbsent(
+                            new LatestQuoteStore.Quote(exchange, symbol, data.getPrice(), data.getTimestamp()))));
+        }
+        return result;
+    }
+
     @Override
     public List<CryptoMetadata> getInstruments(String instType, String exchange) {
         logger.info("契約情報の取得: instType={}, exchange={}", instType, exchange);
@@ -121,6 +211,43 @@ public class MarketServiceImpl implements MarketService {
                                             Long startTime,Long endTime,int pageSize){
         long end = endTime==null?System.currentTimeMillis():endTime;
         int limit = pageSize>0? pageSize:100000;
+        DepthStorageMode mode = clickHouseService.getDepthStorageMode();
+        if (mode == DepthStorageMode.LEGACY) {
+            return getLegacyDepthDataPage(symbol, exchange, startTime, end, limit);
+        }
+        // depth_book の最初のスナップショットより前（未移行の期間）は旧テーブルから読み、その後は depth_book から続けて読む
+        Long firstBook = ck.queryForObject(
+                "SELECT minOrNull(timestamp) FROM depth_book WHERE symbol=? AND exchange=? AND timestamp>=? AND timestamp<?",
+                Long.class, symbol, exchange, startTime, end);
+        long boundary = firstBook != null ? firstBook : end;
+        List<DepthData> page = new ArrayList<>();
+        if (startTime < boundary) {
+            page.addAll(getLegacyDepthDataPage(symbol, exchange, startTime, boundary, limit));
+            if (page.size() >= limit || boundary >= end) {
+                return page;
+            }
+        }
+        // 型付きの配列カラムをそのまま読み込み、JSON の解析は行わない
+        String sql = """
+            SELECT symbol,exchange,timestamp,bid_prices,bid_sizes,ask_prices,ask_sizes
+            FROM   depth_book
+            WHERE  symbol=? AND exchange=? AND timestamp>=? AND timestamp<?
+            ORDER  BY timestamp ASC
+            LIMIT  ?
+        """;
+        page.addAll(ck.query(sql,(rs, i)->{
+            DepthData d = new DepthData();
+            d.setSymbol(rs.getString(1));
+            d.setExchange(rs.getString(2));
+            d.setTimestamp(rs.getLong(3));
+            d.setBidLevels(toDoubleArray(rs.getArray(4)), toDoubleArray(rs.getArray(5)));
+            d.setAskLevels(toDoubleArray(rs.getArray(6)), toDoubleArray(rs.getArray(7)));
+            return d;
+        },symbol,exchange,boundary,end,limit - page.size()));
+        return page;
+    }
+
+    private List<DepthData> getLegacyDepthDataPage(String symbol, String exchange, Long startTime, long end, int limit) {
         String sql = """
             SELECT symbol,exchange,timestamp,bids,asks
             FROM   depth_data
@@ -139,6 +266,22 @@ public class MarketServiceImpl implements MarketService {
         },symbol,exchange,startTime,end,limit);
     }
 
+    /**
+     * ClickHouse JDBC の Array(Float64) は double[] で返るが、ドライバのバージョンによっては Double[] などになるため両方に対応する
+     */
+    private static double[] toDoubleArray(Array array) throws SQLException {
+        Object value = array.getArray();
+        if (value instanceof double[] doubles) {
+            return doubles;
+        }
+        Object[] values = (Object[]) value;
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = ((Number) values[i]).doubleValue();
+        }
+        return result;
+    }
+
     @Override
     public List<DepthData> getDepthData(String symbol, String exchange, Long startTime, Long endTime) {
         return getDepthDataPage(symbol, exchange, startTime, endTime, 100000);
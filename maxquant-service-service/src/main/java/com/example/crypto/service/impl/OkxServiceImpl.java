@@ -3,20 +3,33 @@ package com.example.crypto.service.impl;
 import com.example.crypto.config.ProxyConfig;
 import com.example.crypto.dao.CryptoMetadataRepository;
 import com.example.crypto.dao.DepthDataRepository;
+import com.example.crypto.dao.KlineDataBulkWriter;
 import com.example.crypto.dao.KlineDataRepository;
-import com.example.crypto.dao.RealtimeDataRepository;
 import com.example.crypto.entity.CryptoMetadata;
 import com.example.crypto.entity.DepthData;
 import com.example.crypto.entity.KlineData;
-import com.example.crypto.entity.RealtimeData;
 import com.example.crypto.entity.Subscription;
 import com.example.crypto.service.ClickHouseService;
 import com.example.crypto.service.OkxService;
 import com.example.crypto.service.SubscriptionService;
 import com.example.crypto.service.WebSocketMessageService;
+import com.example.crypto.service.book.OrderBookEngine;
+import com.example.crypto.service.book.OrderBookSnapshot;
+import com.example.crypto.service.depth.DepthCaptureWriter;
+import com.example.crypto.service.ingest.IngestPipeline;
+import com.example.crypto.service.ingest.IngestQueueMetrics;
+import com.example.crypto.service.ingest.OverflowPolicy;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.realtime.LatestQuoteStore;
+import com.example.crypto.service.realtime.RealtimeTickWriter;
+import com.example.crypto.service.okx.OkxMessageDecoder;
+import com.example.crypto.service.statarb.RollingPairStatsEngine;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.time.LocalDateTime;
@@ -53,12 +66,18 @@ public class OkxServiceImpl implements OkxService {
     private final ObjectMapper mapper = new ObjectMapper();
     private final CryptoMetadataRepository metadataRepository;
     private final KlineDataRepository klineDataRepository;
-    private final RealtimeDataRepository realtimeDataRepository;
     private final DepthDataRepository depthDataRepository;
     private final WebSocketMessageService webSocketMessageService;
     private final SubscriptionService subscriptionService;
     private final ProxyConfig proxyConfig;
     private final ClickHouseService clickHouseService;
+    private final KlineColumnCache klineColumnCache;
+    private final KlineDataBulkWriter klineDataBulkWriter;
+    private final RollingPairStatsEngine rollingPairStatsEngine;
+    private final RealtimeTickWriter realtimeTickWriter;
+    private final LatestQuoteStore latestQuoteStore;
+    private final DepthCaptureWriter depthCaptureWriter;
+    private final OrderBookEngine orderBookEngine;
 
     @Value("${okx.api-url}")
     private String apiUrl;
@@ -66,6 +85,24 @@ public class OkxServiceImpl implements OkxService {
     @Value("${okx.ws-url}")
     private String wsUrl;
 
+    // 深度频道：books（400 档增量，100ms）、books-l2-tbt（逐笔增量，需要权限）等增量频道进入订单簿引擎；books5 也可用，按快照处理
+    @Value("${okx.depth-channel:books}")
+    private String depthChannel;
+
+    // WebSocket 接入队列：监听线程只入队，解析、落库、推送在消费线程上执行
+    @Value("${okx.ingest.capacity:8192}")
+    private int ingestCapacity;
+
+    @Value("${okx.ingest.consumers:2}")
+    private int ingestConsumers;
+
+    @Value("${okx.ingest.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy ingestOverflowPolicy;
+
+    private IngestPipeline ingestPipeline;
+    // 每个消费线程一个解码器实例
+    private final ThreadLocal<OkxMessageDecoder> decoders = ThreadLocal.withInitial(OkxMessageDecoder::new);
+
     private WebSocket webSocket;
     private final Set<String> subscribedDepthSymbols = ConcurrentHashMap.newKeySet();
     private final Map<String, Long> lastTimestamps = new ConcurrentHashMap<>();
@@ -77,11 +114,10 @@ public class OkxServiceImpl implements OkxService {
     private static final long INITIAL_RECONNECT_DELAY = 5; // seconds
     private static final long MAX_RECONNECT_DELAY = 300;   // cap delay to 5 min
 
-    // Cache for the latest depth data for each symbol
-    private final Map<String, DepthDataHolder> latestDepthDataCache = new ConcurrentHashMap<>();
-
-    // Private record to hold data in the cache
-    private record DepthDataHolder(String symbol, String bids, String asks, long timestamp) {}
+    // Cache for depth data saved explicitly through saveDepthData
+    private final Map<String, DepthData> latestDepthDataCache = new ConcurrentHashMap<>();
+    // Symbols whose order book changed since the last persist; the snapshot itself is read from the engine
+    private final Set<String> updatedBooks = ConcurrentHashMap.newKeySet();
 
     private static final List<String> INST_TYPES = Arrays.asList("SPOT", "FUTURES", "SWAP", "OPTION", "MARGIN");
 
@@ -89,21 +125,33 @@ public class OkxServiceImpl implements OkxService {
     public OkxServiceImpl(
         CryptoMetadataRepository metadataRepository,
         KlineDataRepository klineDataRepository,
-        RealtimeDataRepository realtimeDataRepository,
         DepthDataRepository depthDataRepository,
         WebSocketMessageService webSocketMessageService,
         SubscriptionService subscriptionService,
         ProxyConfig proxyConfig,
-        ClickHouseService clickHouseService
+        ClickHouseService clickHouseService,
+        KlineColumnCache klineColumnCache,
+        KlineDataBulkWriter klineDataBulkWriter,
+        RollingPairStatsEngine rollingPairStatsEngine,
+        RealtimeTickWriter realtimeTickWriter,
+        LatestQuoteStore latestQuoteStore,
+        DepthCaptureWriter depthCaptureWriter,
+        OrderBookEngine orderBookEngine
     ) {
         this.metadataRepository = metadataRepository;
         this.klineDataRepository = klineDataRepository;
-        this.realtimeDataRepository = realtimeDataRepository;
         this.depthDataRepository = depthDataRepository;
         this.webSocketMessageService = webSocketMessageService;
         this.subscriptionService = subscriptionService;
         this.proxyConfig = proxyConfig;
         this.clickHouseService = clickHouseService;
+        this.klineColumnCache = klineColumnCache;
+        this.klineDataBulkWriter = klineDataBulkWriter;
+        this.rollingPairStatsEngine = rollingPairStatsEngine;
+        this.realtimeTickWriter = realtimeTickWriter;
+        this.latestQuoteStore = latestQuoteStore;
+        this.depthCaptureWriter = depthCaptureWriter;
+        this.orderBookEngine = orderBookEngine;
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
         if (proxyConfig.isEnabled() && proxyConfig.getHost() != null && proxyConfig.getPort() > 0) {
             Proxy.Type type = "socks".equalsIgnoreCase(proxyConfig.getType()) ? Proxy.Type.SOCKS : Proxy.Type.HTTP;
@@ -114,6 +162,9 @@ public class OkxServiceImpl implements OkxService {
 
     @PostConstruct
     public void init() {
+        ingestPipeline = new IngestPipeline("okx", ingestCapacity, ingestConsumers, ingestOverflowPolicy,
+                OkxMessageDecoder::streamKey, this::handleWebSocketMessage);
+        ingestPipeline.start();
         logger.info("開始初始化 WebSocket 接続");
         startWebSocket();
         try {
@@ -124,13 +175,24 @@ public class OkxServiceImpl implements OkxService {
         updateDepthSubscriptions();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        ingestPipeline.stop();
+    }
+
+    @Override
+    public IngestQueueMetrics getIngestMetrics() {
+        return ingestPipeline.metrics();
+    }
+
     @Override
     public void syncKlineData(String symbol, String timeframe, Long lastTimestamp) {
         logger.info("K線データの同期を開始: symbol={}, timeframe={}, lastTimestamp={}", symbol, timeframe, lastTimestamp);
         try {
             StringBuilder url = new StringBuilder(apiUrl + "/api/v5/market/candles?instId=" + symbol + "&bar=" + timeframe);
             if (lastTimestamp != null) {
-                url.append("&after=").append(lastTimestamp + 1);
+                // before: 指定時間戳より新しいデータを返す（after は古いデータ方向）
+                url.append("&before=").append(lastTimestamp);
             }
             Request request = new Request.Builder()
                     .url(url.toString())
@@ -142,35 +204,16 @@ public class OkxServiceImpl implements OkxService {
 
             List<KlineData> klineList = new ArrayList<>();
             long latestTimestamp = lastTimestamp != null ? lastTimestamp : 0;
+            LocalDateTime now = LocalDateTime.now();
             for (JsonNode node : data) {
-                long timestamp = node.get(0).asLong();
-
-                Optional<KlineData> existingKline = klineDataRepository.findBySymbolAndTimeframeAndTimestampAndExchange(symbol, timeframe, timestamp, "okx");
-
-                KlineData kline;
-                if (existingKline.isPresent()) {
-                    kline = existingKline.get();
-                    logger.debug("K線數據已存在，將進行更新: symbol={}, timeframe={}, timestamp={}", symbol, timeframe, timestamp);
-                } else {
-                    kline = new KlineData();
-                    kline.setSymbol(symbol);
-                    kline.setTimeframe(timeframe);
-                    kline.setTimestamp(timestamp);
-                    kline.setExchange("okx");
-                    kline.setCreatedAt(LocalDateTime.now());
-                }
-
-                kline.setOpenPrice(node.get(1).asDouble());
-                kline.setHighPrice(node.get(2).asDouble());
-                kline.setLowPrice(node.get(3).asDouble());
-                kline.setClosePrice(node.get(4).asDouble());
-                kline.setVolume(node.get(5).asDouble());
-
+                KlineData kline = toKlineData(node, symbol, timeframe, now);
                 klineList.add(kline);
-                latestTimestamp = Math.max(latestTimestamp, timestamp);
+                latestTimestamp = Math.max(latestTimestamp, kline.getTimestamp());
             }
-            klineDataRepository.saveAll(klineList);
-            logger.info("K線データをデータベースに保存: {} 件", klineList.size());
+            KlineDataBulkWriter.UpsertResult result = klineDataBulkWriter.upsert(symbol, timeframe, "okx", klineList);
+            klineColumnCache.apply("okx", symbol, timeframe, klineList);
+            rollingPairStatsEngine.onBars("okx", symbol, timeframe, klineList);
+            logger.info("K線データをデータベースに保存: {} 件 (新規={}, 更新={})", klineList.size(), result.inserted(), result.updated());
             if (latestTimestamp > (lastTimestamp != null ? lastTimestamp : 0)) {
                 String key = symbol + "-" + timeframe;
                 lastTimestamps.put(key, latestTimestamp);
@@ -187,6 +230,54 @@ public class OkxServiceImpl implements OkxService {
         syncKlineData(symbol, timeframe, null);
     }
 
+    @Override
+    public Long getLastSyncedTimestamp(String symbol, String timeframe) {
+        return lastTimestamps.get(symbol + "-" + timeframe);
+    }
+
+    @Override
+    public List<KlineData> fetchHistoricalKlines(String symbol, String timeframe, Long before, int limit) {
+        // history-candles は古いデータまで遡れる。after: 指定時間戳より古いデータを返す、1ページ最大100件
+        StringBuilder url = new StringBuilder(apiUrl + "/api/v5/market/history-candles?instId=" + symbol + "&bar=" + timeframe
+                + "&limit=" + Math.min(limit, 100));
+        if (before != null) {
+            url.append("&after=").append(before);
+        }
+        Request request = new Request.Builder().url(url.toString()).build();
+        try (okhttp3.Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new RuntimeException("OKX history-candles request failed: HTTP " + response.code());
+            }
+            JsonNode data = mapper.readTree(response.body().string()).get("data");
+            List<KlineData> klineList = new ArrayList<>();
+            if (data != null) {
+                LocalDateTime now = LocalDateTime.now();
+                for (JsonNode node : data) {
+                    klineList.add(toKlineData(node, symbol, timeframe, now));
+                }
+            }
+            return klineList;
+        } catch (IOException e) {
+            logger.error("K線履歴データの取得に失敗: symbol={}, timeframe={}, before={}, error={}", symbol, timeframe, before, e.getMessage());
+            throw new RuntimeException("Failed to fetch historical kline data from OKX", e);
+        }
+    }
+
+    private KlineData toKlineData(JsonNode node, String symbol, String timeframe, LocalDateTime createdAt) {
+        KlineData kline = new KlineData();
+        kline.setSymbol(symbol);
+        kline.setTimeframe(timeframe);
+        kline.setTimestamp(node.get(0).asLong());
+        kline.setExchange("okx");
+        kline.setCreatedAt(createdAt);
+        kline.setOpenPrice(node.get(1).asDouble());
+        kline.setHighPrice(node.get(2).asDouble());
+        kline.setLowPrice(node.get(3).asDouble());
+        kline.setClosePrice(node.get(4).asDouble());
+        kline.setVolume(node.get(5).asDouble());
+        return kline;
+    }
+
     @Override
     public void syncInstruments() {
         for (String instType : INST_TYPES) {
@@ -261,53 +352,61 @@ public class OkxServiceImpl implements OkxService {
 
     @Override
     public void saveRealtimeData(String symbol, double price, long timestamp) {
-        logger.debug("リアルタイムデータを保存: symbol={}, price={}, timestamp={}", symbol, price, timestamp);
-        try {
-            RealtimeData data = new RealtimeData();
-            data.setId(UUID.randomUUID().toString());
-            data.setSymbol(symbol);
-            data.setPrice(price);
-            data.setTimestamp(timestamp);
-            data.setExchange("okx");
-            data.setCreatedAt(LocalDateTime.now());
-            realtimeDataRepository.save(data);
-            logger.info("リアルタイムデータをデータベースに保存: symbol={}", symbol);
-        } catch (Exception e) {
-            logger.error("リアルタイムデータの保存に失敗: symbol={}, error={}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Failed to save realtime data", e);
-        }
+        logger.trace("リアルタイムデータを保存: symbol={}, price={}, timestamp={}", symbol, price, timestamp);
+        // 最新価格を更新し、メモリ上のバッファに追加するだけで、ClickHouse への書き込みは RealtimeTickWriter がまとめて行う
+        latestQuoteStore.update("okx", symbol, price, timestamp);
+        realtimeTickWriter.record("okx", symbol, price, timestamp);
     }
 
     @Override
     public void saveDepthData(String symbol, String bids, String asks, long timestamp) {
         // This method is called from the WebSocket listener, so it should be very fast.
-        // It just updates the cache with the latest data for the symbol.
-        latestDepthDataCache.put(symbol, new DepthDataHolder(symbol, bids, asks, timestamp));
+        // It just updates the cache with the latest data for the symbol, or appends to the lossless buffer.
+        if (depthCaptureWriter.isLossless("okx", symbol)) {
+            DepthData data = new DepthData();
+            data.setSymbol(symbol);
+            data.setExchange("okx");
+            data.setBids(bids);
+            data.setAsks(asks);
+            data.setTimestamp(timestamp);
+            depthCaptureWriter.append(data);
+            return;
+        }
+        DepthData data = new DepthData();
+        data.setSymbol(symbol);
+        data.setExchange("okx");
+        data.setBids(bids);
+        data.setAsks(asks);
+        data.setTimestamp(timestamp);
+        latestDepthDataCache.put(symbol, data);
         logger.trace("深度數據已緩存: symbol={}", symbol);
     }
 
     @Scheduled(fixedRate = 2000)
     public void persistCachedData() {
-        Set<String> symbolsToPersist = new HashSet<>(latestDepthDataCache.keySet());
-        if (symbolsToPersist.isEmpty()) {
+        if (latestDepthDataCache.isEmpty() && updatedBooks.isEmpty()) {
             return;
         }
-        logger.debug("Persisting {} depth data records from cache.", symbolsToPersist.size());
-
         List<DepthData> batchToSave = new ArrayList<>();
-        for (String symbol : symbolsToPersist) {
-            DepthDataHolder holder = latestDepthDataCache.remove(symbol);
-            if (holder != null) {
-                DepthData data = new DepthData();
-                data.setSymbol(holder.symbol());
-                data.setBids(holder.bids());
-                data.setAsks(holder.asks());
-                data.setTimestamp(holder.timestamp());
-                data.setExchange("okx");
-                data.setCreatedAt(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        for (String symbol : new HashSet<>(latestDepthDataCache.keySet())) {
+            DepthData data = latestDepthDataCache.remove(symbol);
+            if (data != null) {
+                data.setCreatedAt(now);
                 batchToSave.add(data);
             }
         }
+        // 板情報は間隔内の最後の状態だけを保存する
+        for (String symbol : new HashSet<>(updatedBooks)) {
+            updatedBooks.remove(symbol);
+            OrderBookSnapshot snapshot = orderBookEngine.snapshot("okx", symbol);
+            if (snapshot != null) {
+                DepthData data = orderBookEngine.toDepthData(snapshot);
+                data.setCreatedAt(now);
+                batchToSave.add(data);
+            }
+        }
+        logger.debug("Persisting {} depth data records from cache.", batchToSave.size());
 
         if (!batchToSave.isEmpty()) {
             clickHouseService.saveDepthData(batchToSave);
@@ -360,6 +459,8 @@ public class OkxServiceImpl implements OkxService {
                     webSocket = ws;
                     reconnectAttempts = 0; // Reset counter on successful connection
                     subscribedDepthSymbols.clear();
+                    // Books are rebuilt from the snapshots pushed after resubscribing
+                    orderBookEngine.clear("okx");
                     updateDepthSubscriptions(); 
                 }
 
@@ -369,36 +470,8 @@ public class OkxServiceImpl implements OkxService {
                         logger.trace("Received WebSocket pong from OKX.");
                         return;
                     }
-                    try {
-                        JsonNode root = mapper.readTree(text);
-                        JsonNode argNode = root.get("arg");
-
-                        if (argNode != null && argNode.has("channel")) {
-                            String channel = argNode.get("channel").asText();
-                            JsonNode dataNode = root.get("data");
-
-                            if (dataNode != null && dataNode.isArray() && dataNode.size() > 0) {
-                                if (channel.equals("tickers")) {
-                                    JsonNode tickerData = dataNode.get(0);
-                                    String symbol = tickerData.get("instId").asText();
-                                    double price = tickerData.get("last").asDouble();
-                                    long timestamp = tickerData.get("ts").asLong();
-                                    saveRealtimeData(symbol, price, timestamp);
-                                    webSocketMessageService.broadcastRealtimeUpdate(symbol, tickerData);
-                                } else if (channel.equals("books5")) {
-                                    JsonNode bookData = dataNode.get(0);
-                                    String symbol = argNode.get("instId").asText();
-                                    String bids = bookData.get("bids").toString();
-                                    String asks = bookData.get("asks").toString();
-                                    long timestamp = bookData.get("ts").asLong();
-                                    latestDepthDataCache.put(symbol, new DepthDataHolder(symbol, bids, asks, timestamp));
-                                    webSocketMessageService.broadcastDepthUpdate(symbol, bookData);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        logger.error("WebSocketメッセージの処理に失敗: {}", e.getMessage(), e);
-                    }
+                    // The OkHttp reader thread only enqueues; parsing, persistence and fan-out run on ingest consumers
+                    ingestPipeline.publish(text);
                 }
 
                 @Override
@@ -421,6 +494,73 @@ public class OkxServiceImpl implements OkxService {
         }
     }
 
+    /**
+     * 接入队列の消費スレッドで WebSocket メッセージを処理する
+     */
+    private void handleWebSocketMessage(String text) {
+        OkxMessageDecoder decoder = decoders.get();
+        try {
+            switch (decoder.decode(text)) {
+                case TICKER -> {
+                    String symbol = decoder.instId();
+                    double price = decoder.lastPrice();
+                    long timestamp = decoder.timestamp();
+                    saveRealtimeData(symbol, price, timestamp);
+                    rollingPairStatsEngine.onTicker("okx", symbol, price, timestamp);
+                    webSocketMessageService.broadcastRealtimeUpdate(symbol, new RawValue(decoder.rawData()));
+                }
+                case BOOK -> onBookMessage(decoder);
+                default -> {
+                }
+            }
+        } catch (IOException e) {
+            // 失敗件数とログは接入队列側で記録する
+            throw new RuntimeException("Failed to decode OKX WebSocket message", e);
+        }
+    }
+
+    /**
+     * 深度メッセージを板情報エンジンに適用し、更新された板から配信・保存する
+     */
+    private void onBookMessage(OkxMessageDecoder decoder) {
+        String symbol = decoder.instId();
+        if (!depthChannel.equals(decoder.channel()) || symbol == null) {
+            return;
+        }
+        switch (orderBookEngine.applyOkx(decoder)) {
+            case APPLIED -> {
+                OrderBookSnapshot snapshot = orderBookEngine.snapshot("okx", symbol);
+                if (snapshot == null) {
+                    return;
+                }
+                webSocketMessageService.broadcastDepthUpdate(symbol, new RawValue(orderBookEngine.broadcastPayload(snapshot)));
+                if (depthCaptureWriter.isLossless("okx", symbol)) {
+                    // 無損モード：全ての更新後の板を追加する
+                    depthCaptureWriter.append(orderBookEngine.toDepthData(snapshot));
+                } else {
+                    updatedBooks.add(symbol);
+                }
+            }
+            case RESYNC -> resubscribeDepth(symbol);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 購読し直して新しいスナップショットを受け取る（チェックサム不一致・シーケンス欠落時）
+     */
+    private void resubscribeDepth(String symbol) {
+        WebSocket ws = webSocket;
+        if (ws == null || !subscribedDepthSymbols.contains(symbol)) {
+            return;
+        }
+        String arg = String.format("{\"channel\": \"%s\", \"instId\": \"%s\"}", depthChannel, symbol);
+        ws.send(String.format("{\"op\": \"unsubscribe\", \"args\": [%s]}", arg));
+        ws.send(String.format("{\"op\": \"subscribe\", \"args\": [%s]}", arg));
+        logger.info("板情報を再同期するため再購読: channel={}, instId={}", depthChannel, symbol);
+    }
+
     private void scheduleReconnect() {
         if (isReconnecting.get()) {
             logger.debug("Reconnection attempt is already in progress.");
@@ -457,6 +597,7 @@ public class OkxServiceImpl implements OkxService {
             return;
         }
         logger.info("更新 WebSocket 深度數據訂閱");
+        depthCaptureWriter.refreshModes();
         try {
             List<Subscription> activeSubscriptions = subscriptionService.getSubscriptionsByDataTypeAndExchange("depth", "okx");
             Set<String> newSymbols = activeSubscriptions.stream()
@@ -471,17 +612,18 @@ public class OkxServiceImpl implements OkxService {
 
             if (!symbolsToUnsubscribe.isEmpty()) {
                 List<String> args = symbolsToUnsubscribe.stream()
-                    .map(s -> String.format("{\"channel\": \"books5\", \"instId\": \"%s\"}", s))
+                    .map(s -> String.format("{\"channel\": \"%s\", \"instId\": \"%s\"}", depthChannel, s))
                     .collect(Collectors.toList());
                 String unsubscribeMessage = String.format("{\"op\": \"unsubscribe\", \"args\": [%s]}", String.join(",", args));
                 webSocket.send(unsubscribeMessage);
                 subscribedDepthSymbols.removeAll(symbolsToUnsubscribe);
+                symbolsToUnsubscribe.forEach(s -> orderBookEngine.remove("okx", s));
                 logger.info("Unsubscribed from: {}", symbolsToUnsubscribe);
             }
 
             if (!symbolsToSubscribe.isEmpty()) {
                 List<String> args = symbolsToSubscribe.stream()
-                    .map(s -> String.format("{\"channel\": \"books5\", \"instId\": \"%s\"}", s))
+                    .map(s -> String.format("{\"channel\": \"%s\", \"instId\": \"%s\"}", depthChannel, s))
                     .collect(Collectors.toList());
                 String subscribeMessage = String.format("{\"op\": \"subscribe\", \"args\": [%s]}", String.join(",", args));
                 webSocket.send(subscribeMessage);
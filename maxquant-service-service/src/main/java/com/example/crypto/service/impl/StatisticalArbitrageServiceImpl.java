@@ -1,492 +1,446 @@
 package com.example.crypto.service.impl;
 
 import com.example.crypto.dao.CryptoMetadataRepository;
-import com.example.crypto.dao.KlineDataRepository;
+import com.example.crypto.dao.StatisticalIndexBulkWriter;
 import com.example.crypto.dao.StatisticalIndexRepository;
-import com.example.crypto.entity.CryptoMetadata;
-import com.example.crypto.entity.KlineData;
+import com.example.crypto.dto.PairScreenResultDto;
 import com.example.crypto.entity.StatisticalIndex;
+import com.example.crypto.exception.ResourceNotFoundException;
+import com.example.crypto.exception.StatisticsPendingException;
 import com.example.crypto.service.StatisticalArbitrageService;
 import com.example.crypto.service.SubscriptionService;
-import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
-import org.apache.commons.math3.stat.StatUtils;
+import com.example.crypto.service.statarb.HurstMethod;
+import com.example.crypto.service.statarb.PairScreenCriteria;
+import com.example.crypto.service.statarb.PairScreeningEngine;
+import com.example.crypto.service.statarb.PairStatResult;
+import com.example.crypto.service.statarb.RecalculationJob;
+import com.example.crypto.service.statarb.RollingPairStatsEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * 统计套利研究平台服务实现类
  * 实现ADF检验、KPSS检验和Hurst指数计算功能
+ * 合约对的统计量由 PairScreeningEngine 并行计算，一次得到三项指标；
+ * 查询优先读取 RollingPairStatsEngine 中随K线实时更新的滚动窗口，不支持时退回最近一次完整入库的结果；
+ * 同一 (timeframe, exchange) 的并发查询共用一次计算。
+ * 重新计算以异步任务执行：重复提交的请求挂到进行中的任务上，进度推送到 /topic/statarb/recalculate/{id}，
+ * 结果按批次写入暂存行，全部写完后一次切换，计算期间查询接口读取切换前的完整数据。
  */
 @Service
 public class StatisticalArbitrageServiceImpl implements StatisticalArbitrageService {
     private static final Logger logger = LoggerFactory.getLogger(StatisticalArbitrageServiceImpl.class);
     private final CryptoMetadataRepository metadataRepository;
-    private final KlineDataRepository klineDataRepository;
     private final SubscriptionService subscriptionService;
     private final StatisticalIndexRepository statisticalIndexRepository;
+    private final StatisticalIndexBulkWriter statisticalIndexBulkWriter;
+    private final PairScreeningEngine pairScreeningEngine;
+    private final RollingPairStatsEngine rollingPairStatsEngine;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${statarb.recalculate.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    // 每个事务写入的合约对数量
+    @Value("${statarb.recalculate.batch-size:500}")
+    private int batchSize;
+
+    // 已结束的任务保留多久以供查询
+    @Value("${statarb.recalculate.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private ExecutorService recalculationExecutor;
+
+    private record JobKey(String timeframe, String exchange) {}
+
+    private final Map<JobKey, RecalculationJob> activeJobs = new ConcurrentHashMap<>();
+    private final Map<String, RecalculationJob> jobsById = new ConcurrentHashMap<>();
+
+    private record StatsKey(String timeframe, String exchange, boolean withHurst) {}
+
+    // 正在进行的计算，相同参数的并发请求等待同一个结果
+    private final Map<StatsKey, CompletableFuture<List<PairStatResult>>> inFlight = new ConcurrentHashMap<>();
 
     public StatisticalArbitrageServiceImpl(CryptoMetadataRepository metadataRepository,
-                                           KlineDataRepository klineDataRepository,
                                            SubscriptionService subscriptionService,
-                                           StatisticalIndexRepository statisticalIndexRepository) {
+                                           StatisticalIndexRepository statisticalIndexRepository,
+                                           StatisticalIndexBulkWriter statisticalIndexBulkWriter,
+                                           PairScreeningEngine pairScreeningEngine,
+                                           RollingPairStatsEngine rollingPairStatsEngine,
+                                           SimpMessagingTemplate messagingTemplate) {
         this.metadataRepository = metadataRepository;
-        this.klineDataRepository = klineDataRepository;
         this.subscriptionService = subscriptionService;
         this.statisticalIndexRepository = statisticalIndexRepository;
+        this.statisticalIndexBulkWriter = statisticalIndexBulkWriter;
+        this.pairScreeningEngine = pairScreeningEngine;
+        this.rollingPairStatsEngine = rollingPairStatsEngine;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        recalculationExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, r -> {
+            Thread thread = new Thread(r, "statarb-recalc-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        recalculationExecutor.shutdownNow();
     }
 
     @Override
     public List<Map<String, Object>> performAdfTest(String timeframe, String exchange) {
         logger.info("执行ADF检验: timeframe={}, exchange={}", timeframe, exchange);
-        List<Map<String, Object>> results = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-        List<StatisticalIndex> indices = statisticalIndexRepository.findByTimeframeAndExchangeAndCalculationDate(timeframe, exchange, today);
-        if (!indices.isEmpty()) {
-            for (StatisticalIndex index : indices) {
-                if (index.getAdfValue() != null) {
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("pair", index.getSymbolPair());
-                    result.put("test", "ADF");
-                    result.put("value", index.getAdfValue());
-                    results.add(result);
-                }
-            }
-            return results;
-        }
-        // 如果数据库中没有数据，则进行计算
-        List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
-        if (symbols.size() < 2) {
-            logger.warn("订阅合约数量不足，无法执行ADF检验: symbols={}", symbols.size());
-            return results;
-        }
-        for (int i = 0; i < symbols.size(); i++) {
-            for (int j = i + 1; j < symbols.size(); j++) {
-                String symbol1 = symbols.get(i);
-                String symbol2 = symbols.get(j);
-                String pair = symbol1 + " - " + symbol2;
-                Map<String, Object> result = new HashMap<>();
-                result.put("pair", pair);
-                result.put("test", "ADF");
-                double adfValue = calculateAdfValue(symbol1, symbol2, timeframe, exchange);
-                result.put("value", adfValue);
-                results.add(result);
-                // 存储到数据库
-                saveStatisticalIndex(pair, timeframe, exchange, adfValue, null, null);
-            }
-        }
-        return results;
+        return toResults(pairStats(timeframe, exchange, false), "ADF", PairStatResult::adfValue);
     }
 
     @Override
     public List<Map<String, Object>> performKpssTest(String timeframe, String exchange) {
         logger.info("执行KPSS检验: timeframe={}, exchange={}", timeframe, exchange);
-        List<Map<String, Object>> results = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-        List<StatisticalIndex> indices = statisticalIndexRepository.findByTimeframeAndExchangeAndCalculationDate(timeframe, exchange, today);
-        if (!indices.isEmpty()) {
-            for (StatisticalIndex index : indices) {
-                if (index.getKpssValue() != null) {
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("pair", index.getSymbolPair());
-                    result.put("test", "KPSS");
-                    result.put("value", index.getKpssValue());
-                    results.add(result);
-                }
-            }
-            return results;
-        }
-        // 如果数据库中没有数据，则进行计算
-        List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
-        if (symbols.size() < 2) {
-            logger.warn("订阅合约数量不足，无法执行KPSS检验: symbols={}", symbols.size());
-            return results;
-        }
-        for (int i = 0; i < symbols.size(); i++) {
-            for (int j = i + 1; j < symbols.size(); j++) {
-                String symbol1 = symbols.get(i);
-                String symbol2 = symbols.get(j);
-                String pair = symbol1 + " - " + symbol2;
-                Map<String, Object> result = new HashMap<>();
-                result.put("pair", pair);
-                result.put("test", "KPSS");
-                double kpssValue = calculateKpssValue(symbol1, symbol2, timeframe, exchange);
-                result.put("value", kpssValue);
-                results.add(result);
-                // 存储到数据库
-                saveStatisticalIndex(pair, timeframe, exchange, null, kpssValue, null);
-            }
-        }
-        return results;
+        return toResults(pairStats(timeframe, exchange, false), "KPSS", PairStatResult::kpssValue);
     }
 
     @Override
     public List<Map<String, Object>> performHurstExponentCalculation(String timeframe, String exchange) {
         logger.info("执行Hurst指数计算: timeframe={}, exchange={}", timeframe, exchange);
-        List<Map<String, Object>> results = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-        List<StatisticalIndex> indices = statisticalIndexRepository.findByTimeframeAndExchangeAndCalculationDate(timeframe, exchange, today);
-        if (!indices.isEmpty()) {
-            for (StatisticalIndex index : indices) {
-                if (index.getHurstValue() != null) {
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("pair", index.getSymbolPair());
-                    result.put("test", "Hurst Exponent");
-                    result.put("value", index.getHurstValue());
-                    results.add(result);
-                }
-            }
-            return results;
+        return toResults(pairStats(timeframe, exchange, true), "Hurst Exponent", PairStatResult::hurstValue);
+    }
+
+    @Override
+    public List<Map<String, Object>> performHurstExponentCalculation(String timeframe, String exchange, HurstMethod method) {
+        if (method == null || method == pairScreeningEngine.getDefaultHurstMethod()) {
+            return performHurstExponentCalculation(timeframe, exchange);
         }
-        // 如果数据库中没有数据，则进行计算
+        logger.info("执行Hurst指数计算: timeframe={}, exchange={}, method={}", timeframe, exchange, method);
+        List<Map<String, Object>> results = new ArrayList<>();
         List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
         if (symbols.size() < 2) {
             logger.warn("订阅合约数量不足，无法执行Hurst指数计算: symbols={}", symbols.size());
             return results;
         }
-        for (int i = 0; i < symbols.size(); i++) {
-            for (int j = i + 1; j < symbols.size(); j++) {
-                String symbol1 = symbols.get(i);
-                String symbol2 = symbols.get(j);
-                String pair = symbol1 + " - " + symbol2;
-                Map<String, Object> result = new HashMap<>();
-                result.put("pair", pair);
-                result.put("test", "Hurst Exponent");
-                double hurstValue = calculateHurstExponent(symbol1, symbol2, timeframe, exchange);
-                result.put("value", hurstValue);
-                results.add(result);
-                // 存储到数据库
-                saveStatisticalIndex(pair, timeframe, exchange, null, null, hurstValue);
-            }
+        for (PairStatResult pairResult : pairScreeningEngine.screenHurst(symbols, timeframe, exchange, method)) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("pair", pairResult.pair());
+            result.put("test", "Hurst Exponent");
+            result.put("method", method.name());
+            result.put("value", pairResult.hurstValue());
+            results.add(result);
         }
         return results;
     }
 
-    private double calculateAdfValue(String symbol1, String symbol2, String timeframe, String exchange) {
-        // 设置时间范围为过去一个月
-        long endTime = System.currentTimeMillis();
-        long startTime = endTime - (30L * 24 * 60 * 60 * 1000); // 过去30天
-
-        // 获取两个合约的收盘价数据
-        List<KlineData> data1 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol1, timeframe, startTime, endTime, exchange);
-        List<KlineData> data2 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol2, timeframe, startTime, endTime, exchange);
-        if (data1.isEmpty() || data2.isEmpty()) {
-            logger.warn("数据不足，无法计算ADF值: symbol1={}, symbol2={}", symbol1, symbol2);
-            return 0.0;
-        }
-
-        // 按照时间对齐数据
-        List<KlineData> alignedData1 = new ArrayList<>();
-        List<KlineData> alignedData2 = new ArrayList<>();
-        alignDataByTimestamp(data1, data2, alignedData1, alignedData2);
-
-        if (alignedData1.isEmpty() || alignedData2.isEmpty()) {
-            logger.warn("数据时间不相交，无法计算ADF值: symbol1={}, symbol2={}", symbol1, symbol2);
-            return 0.0;
-        }
-
-        // 提取收盘价
-        double[] prices1 = alignedData1.stream().mapToDouble(KlineData::getClosePrice).toArray();
-        double[] prices2 = alignedData2.stream().mapToDouble(KlineData::getClosePrice).toArray();
-
-        // 确保数据长度一致
-        int length = Math.min(prices1.length, prices2.length);
-        if (length < 2) {
-            logger.warn("数据长度不足，无法计算ADF值: length={}", length);
-            return 0.0;
-        }
-
-        // 回归分析
-        OLSMultipleLinearRegression regression = new OLSMultipleLinearRegression();
-        double[][] x = new double[length][1];
-        for (int i = 0; i < length; i++) {
-            x[i][0] = prices2[i];
-        }
-        regression.newSampleData(prices1, x);
-        double[] coefficients = regression.estimateRegressionParameters();
-        double[] residuals = new double[length];
-        for (int i = 0; i < length; i++) {
-            residuals[i] = prices1[i] - coefficients[0] - coefficients[1] * prices2[i];
+    @Override
+    public Page<PairScreenResultDto> screen(String timeframe, String exchange, PairScreenCriteria criteria, Pageable pageable) {
+        logger.info("合约对筛选: timeframe={}, exchange={}, criteria={}, pageable={}", timeframe, exchange, criteria, pageable);
+        Comparator<PairStatResult> comparator = comparator(pageable.getSort());
+        List<PairStatResult> matched = new ArrayList<>();
+        for (PairStatResult result : pairStats(timeframe, exchange, criteria.includes(PairScreenCriteria.Stat.HURST))) {
+            if (criteria.matches(result)) {
+                matched.add(result);
+            }
         }
-
-        // 计算残差的一阶差分
-        double[] diffResiduals = new double[length - 1];
-        for (int i = 1; i < length; i++) {
-            diffResiduals[i - 1] = residuals[i] - residuals[i - 1];
+        if (comparator != null) {
+            matched.sort(comparator);
         }
-
-        // 对残差进行回归分析以计算ADF统计量
-        OLSMultipleLinearRegression adfRegression = new OLSMultipleLinearRegression();
-        double[][] adfX = new double[length - 1][1];
-        for (int i = 0; i < length - 1; i++) {
-            adfX[i][0] = residuals[i];
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), matched.size()) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), matched.size()) : matched.size();
+        List<PairScreenResultDto> content = new ArrayList<>(to - from);
+        for (PairStatResult result : matched.subList(from, to)) {
+            content.add(new PairScreenResultDto(result.pair(), result.symbol1(), result.symbol2(), result.length(),
+                    criteria.includes(PairScreenCriteria.Stat.ADF) ? result.adfValue() : null,
+                    criteria.includes(PairScreenCriteria.Stat.KPSS) ? result.kpssValue() : null,
+                    criteria.includes(PairScreenCriteria.Stat.HURST) ? result.hurstValue() : null));
         }
-        adfRegression.newSampleData(diffResiduals, adfX);
-        double[] adfCoefficients = adfRegression.estimateRegressionParameters();
-        double adfStatistic = adfCoefficients[1] / adfRegression.estimateRegressionParametersStandardErrors()[1];
-
-        return adfStatistic;
+        return new PageImpl<>(content, pageable, matched.size());
     }
 
-    private double calculateKpssValue(String symbol1, String symbol2, String timeframe, String exchange) {
-        // 设置时间范围为过去一个月
-        long endTime = System.currentTimeMillis();
-        long startTime = endTime - (30L * 24 * 60 * 60 * 1000); // 过去30天
-
-        // 获取两个合约的收盘价数据
-        List<KlineData> data1 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol1, timeframe, startTime, endTime, exchange);
-        List<KlineData> data2 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol2, timeframe, startTime, endTime, exchange);
-        if (data1.isEmpty() || data2.isEmpty()) {
-            logger.warn("数据不足，无法计算KPSS值: symbol1={}, symbol2={}", symbol1, symbol2);
-            return Double.NaN;
-        }
-
-        // 按照时间对齐数据
-        List<KlineData> alignedData1 = new ArrayList<>();
-        List<KlineData> alignedData2 = new ArrayList<>();
-        alignDataByTimestamp(data1, data2, alignedData1, alignedData2);
-
-        if (alignedData1.size() < 20) { // 需要足够的数据点
-            logger.warn("对齐后的数据点过少，无法计算KPSS值: size={}", alignedData1.size());
-            return Double.NaN;
-        }
-
-        // 1. 计算价比价差序列 (P_A / P_B - 1)
-        double[] spread = new double[alignedData1.size()];
-        for (int i = 0; i < alignedData1.size(); i++) {
-            double price1 = alignedData1.get(i).getClosePrice();
-            double price2 = alignedData2.get(i).getClosePrice();
-            if (price2 == 0) {
-                logger.warn("除数为零，无法计算价差: symbol2={}, timestamp={}", symbol2, alignedData2.get(i).getTimestamp());
-                return Double.NaN; // 或者其他错误处理
+    /**
+     * 全部合约对的三项统计量：优先取滚动窗口，其次取最近一次完整入库的结果
+     * 相同参数的并发调用只计算一次
+     * @throws StatisticsPendingException 还没有任何入库结果时，提交计算任务后抛出，不在请求线程中等待
+     * @param withHurst 为 false 时滚动窗口不估计 Hurst（结果中为 NaN）
+     */
+    private List<PairStatResult> pairStats(String timeframe, String exchange, boolean withHurst) {
+        StatsKey key = new StatsKey(timeframe, exchange, withHurst);
+        CompletableFuture<List<PairStatResult>> mine = new CompletableFuture<>();
+        CompletableFuture<List<PairStatResult>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            logger.debug("合并到正在进行的计算: {}", key);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
             }
-            spread[i] = price1 / price2 - 1;
         }
-
-        int n = spread.length;
-
-        // 2. 去均值: e_t = Spread_t - mean(Spread)
-        double meanSpread = StatUtils.mean(spread);
-        double[] residuals = new double[n];
-        for (int i = 0; i < n; i++) {
-            residuals[i] = spread[i] - meanSpread;
+        try {
+            List<PairStatResult> results = loadPairStats(timeframe, exchange, withHurst);
+            mine.complete(results);
+            return results;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
         }
+    }
 
-        // 3. 计算累积和: S_t = Sum of e_i from 1 to t
-        double[] cumulativeSum = new double[n];
-        cumulativeSum[0] = residuals[0];
-        for (int i = 1; i < n; i++) {
-            cumulativeSum[i] = cumulativeSum[i - 1] + residuals[i];
+    private List<PairStatResult> loadPairStats(String timeframe, String exchange, boolean withHurst) {
+        List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
+        if (symbols.size() < 2) {
+            logger.warn("订阅合约数量不足，无法计算统计套利指标: symbols={}", symbols.size());
+            return Collections.emptyList();
         }
-
-        // 4. 计算 KPSS 统计量的分子部分
-        double sumOfSquares = 0.0;
-        for (double cs : cumulativeSum) {
-            sumOfSquares += cs * cs;
+        List<PairStatResult> live = rollingPairStatsEngine.snapshot(symbols, timeframe, exchange, withHurst);
+        if (live != null) {
+            return live;
         }
-
-        // 5. 估计长期方差 (Newey-West)
-        double longRunVariance = calculateNeweyWestVariance(residuals);
-        if (longRunVariance <= 0) {
-             logger.warn("长期方差计算结果非正，无法计算KPSS统计量. 使用普通方差作为备用。");
-             longRunVariance = StatUtils.variance(residuals); // Fallback
-             if(longRunVariance <= 0) return Double.NaN;
+        LocalDate today = LocalDate.now();
+        // 入库结果在任务结束时整体切换，库中最新的计算日就是最近一次完整的结果
+        StatisticalIndex latest = statisticalIndexRepository
+                .findFirstByTimeframeAndExchangeAndCalculationDateLessThanEqualOrderByCalculationDateDesc(timeframe, exchange, today);
+        if (latest == null) {
+            RecalculationJob job = submitRecalculation(timeframe, exchange);
+            throw new StatisticsPendingException(job.getId(), "Statistics are being calculated, job id: " + job.getId());
+        }
+        if (latest.getCalculationDate().isBefore(today) && !activeJobs.containsKey(new JobKey(timeframe, exchange))) {
+            // 当天的结果还没有算出，先返回之前的结果，同时在后台计算当天的结果
+            submitRecalculation(timeframe, exchange);
+        }
+        List<StatisticalIndex> indices = statisticalIndexRepository.findByTimeframeAndExchangeAndCalculationDate(
+                timeframe, exchange, latest.getCalculationDate());
+        List<PairStatResult> results = new ArrayList<>(indices.size());
+        for (StatisticalIndex index : indices) {
+            String pair = index.getSymbolPair();
+            int separator = pair.indexOf(" - ");
+            String symbol1 = separator >= 0 ? pair.substring(0, separator) : pair;
+            String symbol2 = separator >= 0 ? pair.substring(separator + 3) : "";
+            results.add(new PairStatResult(symbol1, symbol2, 0,
+                    valueOrNaN(index.getAdfValue()), valueOrNaN(index.getKpssValue()), valueOrNaN(index.getHurstValue())));
         }
+        return results;
+    }
 
-
-        // 6. 计算最终的 KPSS 统计量
-        double kpssStatistic = (sumOfSquares / (n * n)) / longRunVariance;
-
-        return kpssStatistic;
+    private List<Map<String, Object>> toResults(List<PairStatResult> pairResults, String testName,
+                                                Function<PairStatResult, Double> valueGetter) {
+        List<Map<String, Object>> results = new ArrayList<>(pairResults.size());
+        for (PairStatResult pairResult : pairResults) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("pair", pairResult.pair());
+            result.put("test", testName);
+            result.put("value", valueGetter.apply(pairResult));
+            results.add(result);
+        }
+        return results;
     }
 
     /**
-     * 使用 Newey-West 估计器计算长期方差.
-     * @param series 输入序列 (已经去均值)
-     * @return 长期方差
+     * 由分页参数中的排序生成比较器，未指定排序时返回 null（保持合约对原有顺序）
      */
-    private double calculateNeweyWestVariance(double[] series) {
-        int n = series.length;
-        // 自动选择滞后阶数 l, floor(4 * (T/100)^(2/9)) 是常用选择
-        int lag = (int) Math.floor(4 * Math.pow((double) n / 100.0, 2.0 / 9.0));
-
-        // gamma_0: 0阶自协方差 (即方差)
-        double longRunVariance = autocovariance(series, 0);
-
-        // 加上加权的 j 阶自协方差 (j from 1 to lag)
-        for (int j = 1; j <= lag; j++) {
-            double bartlettWeight = 1.0 - ((double) j / (lag + 1.0));
-            double cov = autocovariance(series, j);
-            longRunVariance += 2 * bartlettWeight * cov;
+    private static Comparator<PairStatResult> comparator(Sort sort) {
+        Comparator<PairStatResult> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<PairStatResult> next = switch (order.getProperty()) {
+                case "pair" -> Comparator.comparing(PairStatResult::pair);
+                case "length" -> Comparator.comparingInt(PairStatResult::length);
+                case "adf" -> numeric(PairStatResult::adfValue, order.isAscending());
+                case "kpss" -> numeric(PairStatResult::kpssValue, order.isAscending());
+                case "hurst" -> numeric(PairStatResult::hurstValue, order.isAscending());
+                default -> throw new IllegalArgumentException("不支持的排序字段: " + order.getProperty());
+            };
+            if (!order.isAscending() && !isNumeric(order.getProperty())) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
         }
-        return longRunVariance;
+        return comparator;
+    }
+
+    private static boolean isNumeric(String property) {
+        return "adf".equals(property) || "kpss".equals(property) || "hurst".equals(property);
     }
 
     /**
-     * 计算序列在给定滞后阶数下的自协方差.
-     * @param series 输入序列 (已经去均值)
-     * @param lag 滞后阶数
-     * @return 自协方差
+     * 数值字段比较，NaN 无论升序降序都排在最后
      */
-    private double autocovariance(double[] series, int lag) {
-        double sum = 0;
-        int n = series.length;
-        if (lag < 0 || lag >= n) {
-            throw new IllegalArgumentException("Lag must be non-negative and less than series length.");
-        }
-        // 因为序列已经去均值, E[X_t] = 0.
-        // Cov(X_t, X_{t-k}) = E[X_t * X_{t-k}]
-        for (int t = lag; t < n; t++) {
-            sum += series[t] * series[t - lag];
-        }
-        return sum / n;
+    private static Comparator<PairStatResult> numeric(ToDoubleFunction<PairStatResult> getter, boolean ascending) {
+        return (a, b) -> {
+            double x = getter.applyAsDouble(a);
+            double y = getter.applyAsDouble(b);
+            boolean xNaN = Double.isNaN(x);
+            boolean yNaN = Double.isNaN(y);
+            if (xNaN || yNaN) {
+                return Boolean.compare(xNaN, yNaN);
+            }
+            return ascending ? Double.compare(x, y) : Double.compare(y, x);
+        };
     }
 
-    private double calculateHurstExponent(String symbol1, String symbol2, String timeframe, String exchange) {
-        // 设置时间范围为过去一个月
-        long endTime = System.currentTimeMillis();
-        long startTime = endTime - (30L * 24 * 60 * 60 * 1000); // 过去30天
-
-        // 获取两个合约的收盘价数据
-        List<KlineData> data1 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol1, timeframe, startTime, endTime, exchange);
-        List<KlineData> data2 = klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(symbol2, timeframe, startTime, endTime, exchange);
-        if (data1.isEmpty() || data2.isEmpty()) {
-            logger.warn("数据不足，无法计算Hurst指数: symbol1={}, symbol2={}", symbol1, symbol2);
-            return 0.0;
-        }
-
-        // 按照时间对齐数据
-        List<KlineData> alignedData1 = new ArrayList<>();
-        List<KlineData> alignedData2 = new ArrayList<>();
-        alignDataByTimestamp(data1, data2, alignedData1, alignedData2);
+    private static double valueOrNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
 
-        if (alignedData1.isEmpty() || alignedData2.isEmpty()) {
-            logger.warn("数据时间不相交，无法计算Hurst指数: symbol1={}, symbol2={}", symbol1, symbol2);
-            return 0.0;
-        }
+    @Override
+    public void recalculateIndices(String timeframe, String exchange) {
+        await(submitRecalculation(timeframe, exchange));
+    }
 
-        // 提取收盘价
-        double[] prices1 = alignedData1.stream().mapToDouble(KlineData::getClosePrice).toArray();
-        double[] prices2 = alignedData2.stream().mapToDouble(KlineData::getClosePrice).toArray();
+    @Override
+    public RecalculationJob submitRecalculation(String timeframe, String exchange) {
+        removeExpiredJobs();
+        JobKey key = new JobKey(timeframe, exchange);
+        RecalculationJob created = new RecalculationJob(timeframe, exchange);
+        RecalculationJob running = activeJobs.putIfAbsent(key, created);
+        if (running != null) {
+            running.attach();
+            logger.info("重新计算任务已在执行中，合并请求: id={}, timeframe={}, exchange={}", running.getId(), timeframe, exchange);
+            return running;
+        }
+        jobsById.put(created.getId(), created);
+        logger.info("重新计算任务已提交: id={}, timeframe={}, exchange={}", created.getId(), timeframe, exchange);
+        publishProgress(created);
+        try {
+            recalculationExecutor.execute(() -> runRecalculation(key, created));
+        } catch (RuntimeException e) {
+            activeJobs.remove(key, created);
+            created.fail(e);
+            throw e;
+        }
+        return created;
+    }
 
-        // 确保数据长度一致
-        int length = Math.min(prices1.length, prices2.length);
-        if (length < 2) {
-            logger.warn("数据长度不足，无法计算Hurst指数: length={}", length);
-            return 0.0;
+    @Override
+    public RecalculationJob getRecalculationJob(String id) {
+        RecalculationJob job = jobsById.get(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Recalculation job not found with id: " + id);
         }
+        return job;
+    }
 
-        // 计算价差
-        double[] spread = new double[length];
-        for (int i = 0; i < length; i++) {
-            spread[i] = prices1[i] - prices2[i];
+    private void runRecalculation(JobKey key, RecalculationJob job) {
+        String timeframe = key.timeframe();
+        String exchange = key.exchange();
+        try {
+            logger.info("重新计算统计套利指标: id={}, timeframe={}, exchange={}", job.getId(), timeframe, exchange);
+            job.start();
+            publishProgress(job);
+            List<PairStatResult> results = calculateAndStore(job, timeframe, exchange, LocalDate.now());
+            job.complete(results);
+            logger.info("统计套利指标重新计算完成: id={}, timeframe={}, exchange={}, 合约对数={}",
+                    job.getId(), timeframe, exchange, results.size());
+        } catch (Exception e) {
+            logger.error("统计套利指标重新计算失败: id={}, timeframe={}, exchange={}, error={}",
+                    job.getId(), timeframe, exchange, e.getMessage(), e);
+            job.fail(e);
+        } finally {
+            activeJobs.remove(key, job);
+            publishProgress(job);
         }
+    }
 
-        // 计算Hurst指数
-        int maxLag = length / 2;
-        double[] rsValues = new double[maxLag];
-        double[] logLags = new double[maxLag];
-        for (int lag = 1; lag <= maxLag; lag++) {
-            double[] subSeries = new double[length - lag];
-            for (int i = 0; i < length - lag; i++) {
-                subSeries[i] = spread[i + lag] - spread[i];
-            }
-            double mean = StatUtils.mean(subSeries);
-            double[] deviations = new double[subSeries.length];
-            for (int i = 0; i < subSeries.length; i++) {
-                deviations[i] = subSeries[i] - mean;
-            }
-            double[] cumulativeDeviations = new double[subSeries.length];
-            cumulativeDeviations[0] = deviations[0];
-            for (int i = 1; i < subSeries.length; i++) {
-                cumulativeDeviations[i] = cumulativeDeviations[i - 1] + deviations[i];
+    /**
+     * 计算全部合约对的指标，按批次写入暂存表，每批一个事务；全部写完后在一个事务中替换该计算日的数据
+     * 中途失败时删除本任务的暂存行
+     */
+    private List<PairStatResult> calculateAndStore(RecalculationJob job, String timeframe, String exchange, LocalDate calculationDate) {
+        List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
+        if (symbols.size() < 2) {
+            logger.warn("订阅合约数量不足，无法计算统计套利指标: symbols={}", symbols.size());
+            return Collections.emptyList();
+        }
+        List<PairStatResult> pairResults = pairScreeningEngine.screen(symbols, timeframe, exchange);
+        statisticalIndexBulkWriter.clearStaged(job.getId(), timeframe, exchange);
+        try {
+            return stageAndPublish(job, timeframe, exchange, calculationDate, pairResults);
+        } catch (RuntimeException e) {
+            try {
+                statisticalIndexBulkWriter.discardStaged(job.getId());
+            } catch (RuntimeException cleanup) {
+                // 残留的暂存行在下一次同一 (timeframe, exchange) 的任务开始时清除
+                e.addSuppressed(cleanup);
             }
-            double range = StatUtils.max(cumulativeDeviations) - StatUtils.min(cumulativeDeviations);
-            double stdDev = Math.sqrt(StatUtils.variance(subSeries));
-            rsValues[lag - 1] = range / stdDev;
-            logLags[lag - 1] = Math.log(lag);
+            throw e;
         }
-
-        // 使用对数变换后的R/S值进行回归分析
-        double[] logRsValues = new double[rsValues.length];
-        for (int i = 0; i < rsValues.length; i++) {
-            logRsValues[i] = Math.log(rsValues[i]);
-        }
-
-        OLSMultipleLinearRegression hurstRegression = new OLSMultipleLinearRegression();
-        double[][] hurstX = new double[logLags.length][1];
-        for (int i = 0; i < logLags.length; i++) {
-            hurstX[i][0] = logLags[i];
-        }
-        hurstRegression.newSampleData(logRsValues, hurstX);
-        double hurstExponent = hurstRegression.estimateRegressionParameters()[1];
-
-        // 确保Hurst指数在合理范围内
-        hurstExponent = Math.max(0.0, Math.min(1.0, hurstExponent));
-
-        return hurstExponent;
     }
 
-    // 添加辅助方法以按照时间对齐数据
-    private void alignDataByTimestamp(List<KlineData> data1, List<KlineData> data2, List<KlineData> alignedData1, List<KlineData> alignedData2) {
-        Map<Long, KlineData> data1Map = new HashMap<>();
-        Map<Long, KlineData> data2Map = new HashMap<>();
-
-        for (KlineData kline : data1) {
-            data1Map.put(kline.getTimestamp(), kline);
-        }
-
-        for (KlineData kline : data2) {
-            data2Map.put(kline.getTimestamp(), kline);
-        }
-
-        Set<Long> commonTimestamps = new HashSet<>(data1Map.keySet());
-        commonTimestamps.retainAll(data2Map.keySet());
+    private List<PairStatResult> stageAndPublish(RecalculationJob job, String timeframe, String exchange,
+                                                 LocalDate calculationDate, List<PairStatResult> pairResults) {
+        job.writing(pairResults.size());
+        publishProgress(job);
+        int size = Math.max(1, batchSize);
+        int written = 0;
+        for (int from = 0; from < pairResults.size(); from += size) {
+            List<PairStatResult> chunk = pairResults.subList(from, Math.min(from + size, pairResults.size()));
+            List<StatisticalIndex> batch = new ArrayList<>(chunk.size());
+            for (PairStatResult result : chunk) {
+                StatisticalIndex index = new StatisticalIndex();
+                index.setSymbolPair(result.pair());
+                index.setTimeframe(timeframe);
+                index.setExchange(exchange);
+                index.setCalculationDate(calculationDate);
+                index.setAdfValue(result.adfValue());
+                index.setKpssValue(result.kpssValue());
+                index.setHurstValue(result.hurstValue());
+                batch.add(index);
+            }
+            written += statisticalIndexBulkWriter.stageBatch(job.getId(), batch);
+            job.written(written);
+            publishProgress(job);
+        }
+        int published = statisticalIndexBulkWriter.publish(job.getId(), timeframe, exchange, calculationDate);
+        logger.info("统计套利指标已切换: timeframe={}, exchange={}, calculationDate={}, 行数={}",
+                timeframe, exchange, calculationDate, published);
+        return pairResults;
+    }
 
-        for (Long timestamp : commonTimestamps) {
-            alignedData1.add(data1Map.get(timestamp));
-            alignedData2.add(data2Map.get(timestamp));
+    /**
+     * 等待任务结束并返回结果，任务失败时抛出原异常
+     */
+    private static List<PairStatResult> await(RecalculationJob job) {
+        try {
+            return job.result().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException("Failed to recalculate indices", e.getCause());
         }
+    }
 
-        // 按时间戳排序
-        alignedData1.sort(Comparator.comparingLong(KlineData::getTimestamp));
-        alignedData2.sort(Comparator.comparingLong(KlineData::getTimestamp));
+    private void removeExpiredJobs() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobsById.values().removeIf(job -> job.isFinished() && job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiry));
     }
 
-    @Override
-    @Transactional
-    public void recalculateIndices(String timeframe, String exchange) {
-        logger.info("重新计算统计套利指标: timeframe={}, exchange={}", timeframe, exchange);
-        // 清空当前时间框架和交易所的旧数据
-        LocalDate today = LocalDate.now();
-        statisticalIndexRepository.deleteByTimeframeAndExchangeAndCalculationDate(timeframe, exchange, today);
-        
-        // 重新计算并存储新的指标数据
-        List<String> symbols = subscriptionService.getActiveSubscriptions(exchange);
-        if (symbols.size() < 2) {
-            logger.warn("订阅合约数量不足，无法重新计算统计套利指标: symbols={}", symbols.size());
-            return;
+    private void publishProgress(RecalculationJob job) {
+        try {
+            messagingTemplate.convertAndSend("/topic/statarb/recalculate/" + job.getId(), Map.of("type", "progress", "data", job));
+        } catch (Exception e) {
+            logger.warn("推送重新计算进度失败: id={}, error={}", job.getId(), e.getMessage());
         }
-        for (int i = 0; i < symbols.size(); i++) {
-            for (int j = i + 1; j < symbols.size(); j++) {
-                String symbol1 = symbols.get(i);
-                String symbol2 = symbols.get(j);
-                String pair = symbol1 + " - " + symbol2;
-                
-                double adfValue = calculateAdfValue(symbol1, symbol2, timeframe, exchange);
-                double kpssValue = calculateKpssValue(symbol1, symbol2, timeframe, exchange);
-                double hurstValue = calculateHurstExponent(symbol1, symbol2, timeframe, exchange);
-                
-                // 存储到数据库
-                saveStatisticalIndex(pair, timeframe, exchange, adfValue, kpssValue, hurstValue);
-            }
-        }
-        logger.info("统计套利指标重新计算完成: timeframe={}, exchange={}", timeframe, exchange);
     }
 
     // 定时任务，每天凌晨更新指数数据
@@ -502,26 +456,4 @@ public class StatisticalArbitrageServiceImpl implements StatisticalArbitrageServ
         }
         logger.info("每日统计指数更新任务完成");
     }
-
-    // 保存指数数据到数据库
-    private void saveStatisticalIndex(String symbolPair, String timeframe, String exchange, Double adfValue, Double kpssValue, Double hurstValue) {
-        StatisticalIndex index = statisticalIndexRepository.findBySymbolPairAndTimeframeAndExchangeAndCalculationDate(symbolPair, timeframe, exchange, LocalDate.now());
-        if (index == null) {
-            index = new StatisticalIndex();
-            index.setSymbolPair(symbolPair);
-            index.setTimeframe(timeframe);
-            index.setExchange(exchange);
-            index.setCalculationDate(LocalDate.now());
-        }
-        if (adfValue != null) {
-            index.setAdfValue(adfValue);
-        }
-        if (kpssValue != null) {
-            index.setKpssValue(kpssValue);
-        }
-        if (hurstValue != null) {
-            index.setHurstValue(hurstValue);
-        }
-        statisticalIndexRepository.save(index);
-    }
-} 
\ No newline at end of file
+}
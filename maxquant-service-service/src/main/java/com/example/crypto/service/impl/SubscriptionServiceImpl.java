@@ -3,6 +3,7 @@ package com.example.crypto.service.impl;
 import com.example.crypto.dao.SubscriptionRepository;
 import com.example.crypto.entity.Subscription;
 import com.example.crypto.enums.AssetType;
+import com.example.crypto.enums.DepthCaptureMode;
 import com.example.crypto.service.SubscriptionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +23,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     }
 
     @Override
-    public Subscription subscribe(String username, String symbol, String dataType, String instType, String timeframe, String exchange, AssetType assetType) {
+    public Subscription subscribe(String username, String symbol, String dataType, String instType, String timeframe, String exchange, AssetType assetType, DepthCaptureMode depthCaptureMode) {
         logger.info("訂閱処理: username={}, symbol={}, dataType={}, instType={}, timeframe={}, exchange={}, assetType={}", username, symbol, dataType, instType, timeframe, exchange, assetType);
         try {
             Subscription subscription = new Subscription();
@@ -34,6 +35,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
             subscription.setExchange(exchange);
             subscription.setCreatedAt(LocalDateTime.now());
             subscription.setAssetType(assetType);
+            subscription.setDepthCaptureMode("depth".equals(dataType) ? depthCaptureMode : null);
             Subscription saved = subscriptionRepository.save(subscription);
             logger.debug("訂閱成功: subscriptionId={}", saved.getId());
             return saved;
@@ -0,0 +1,164 @@
+package com.example.crypto.service.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * WebSocket 接入流水线
+ * 监听线程只调用 {@link #publish(String)} 把原始帧放进有界环形缓冲区，
+ * 解析、落库、推送由固定数量的消费线程完成，慢速下游不会阻塞交易所连接。
+ * 多个消费线程并行处理时同一个流的相邻帧可能乱序完成，下游按时间戳保留最新值。
+ */
+public class IngestPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(IngestPipeline.class);
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+    private static final int PARK_TRIES = 10;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 队列元素；CONFLATE 模式下 text 为 null，消费时从 latest 中取该流的最新帧
+     */
+    private record Frame(String key, String text) {}
+
+    private final String name;
+    private final OverflowPolicy policy;
+    private final int consumers;
+    private final Function<String, String> keyExtractor;
+    private final Consumer<String> handler;
+    private final IngestRingBuffer<Frame> ring;
+    private final Map<String, String> latest = new ConcurrentHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    /**
+     * @param keyExtractor 从原始帧中取出流标识（CONFLATE 模式使用），无法识别时返回 null
+     * @param handler      消费线程上执行的处理逻辑，异常会被记录并计入 failed
+     */
+    public IngestPipeline(String name, int capacity, int consumers, OverflowPolicy policy,
+                          Function<String, String> keyExtractor, Consumer<String> handler) {
+        if (consumers < 1) {
+            throw new IllegalArgumentException("consumers must be at least 1: " + consumers);
+        }
+        this.name = name;
+        this.policy = policy;
+        this.consumers = consumers;
+        this.keyExtractor = keyExtractor;
+        this.handler = handler;
+        this.ring = new IngestRingBuffer<>(capacity);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            Thread thread = new Thread(this::consumeLoop, name + "-ingest-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        logger.info("接入队列已启动: name={}, capacity={}, consumers={}, policy={}", name, ring.capacity(), consumers, policy);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        threads.forEach(LockSupport::unpark);
+        threads.clear();
+    }
+
+    /**
+     * 放入一帧原始消息；可由多个 WebSocket 监听线程同时调用，不会阻塞
+     */
+    public void publish(String text) {
+        Frame frame;
+        String key = policy == OverflowPolicy.CONFLATE ? keyExtractor.apply(text) : null;
+        if (key != null) {
+            if (latest.put(key, text) != null) {
+                // 该流已有一帧在排队，消费时会直接取到这一帧
+                conflated.increment();
+                return;
+            }
+            frame = new Frame(key, null);
+        } else {
+            frame = new Frame(null, text);
+        }
+        while (!ring.offer(frame)) {
+            Frame evicted = ring.poll();
+            if (evicted != null) {
+                if (evicted.text() == null) {
+                    latest.remove(evicted.key());
+                }
+                dropped.increment();
+            }
+        }
+        enqueued.increment();
+        int depth = ring.size();
+        if (depth > maxDepth.get()) {
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    public IngestQueueMetrics metrics() {
+        return new IngestQueueMetrics(name, policy, ring.capacity(), consumers, ring.size(), maxDepth.get(),
+                enqueued.sum(), processed.sum(), dropped.sum(), conflated.sum(), failed.sum());
+    }
+
+    private void consumeLoop() {
+        int idle = 0;
+        while (running) {
+            Frame frame = ring.poll();
+            if (frame == null) {
+                idle = backoff(idle);
+                continue;
+            }
+            idle = 0;
+            String text = frame.text() != null ? frame.text() : latest.remove(frame.key());
+            if (text == null) {
+                continue;
+            }
+            try {
+                handler.accept(text);
+                processed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                logger.error("接入队列消息处理失败: name={}, error={}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 空闲等待：先自旋，再让出 CPU，最后逐步加长休眠（不超过 1ms），空闲时几乎不占 CPU
+     */
+    private static int backoff(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            long parkNanos = Math.min(MAX_PARK_NANOS, 1000L << Math.min(PARK_TRIES, idle - SPIN_TRIES - YIELD_TRIES));
+            LockSupport.parkNanos(parkNanos);
+        }
+        return Math.min(idle + 1, SPIN_TRIES + YIELD_TRIES + PARK_TRIES);
+    }
+}
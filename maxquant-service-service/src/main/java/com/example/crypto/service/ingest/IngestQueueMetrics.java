@@ -0,0 +1,20 @@
+package com.example.crypto.service.ingest;
+
+/**
+ * 接入队列的运行统计（自启动以来的累计值）
+ * maxDepth 为观测到的最大队列深度，dropped 为因队列满被丢弃的帧数，conflated 为被同一流的新帧覆盖的帧数
+ */
+public record IngestQueueMetrics(
+        String name,
+        OverflowPolicy policy,
+        int capacity,
+        int consumers,
+        int depth,
+        int maxDepth,
+        long enqueued,
+        long processed,
+        long dropped,
+        long conflated,
+        long failed
+) {
+}
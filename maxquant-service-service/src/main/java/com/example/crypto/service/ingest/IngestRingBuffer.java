@@ -0,0 +1,90 @@
+package com.example.crypto.service.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形缓冲区：多生产者、多消费者
+ * 每个槽位带序号（Vyukov 有界队列），生产者通过 CAS 竞争 tail，消费者通过 CAS 竞争 head，
+ * 出入队都不加锁也不分配对象。
+ * offer、poll 都可以被任意线程调用（重连期间新旧两个 WebSocket 的读线程可能同时投递）。
+ */
+public class IngestRingBuffer<T> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整到 2 的幂
+     */
+    public IngestRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 入队；队列已满时返回 false
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long t = tail.get();
+            int index = (int) (t & mask);
+            long sequence = sequences.get(index);
+            if (sequence < t) {
+                return false;
+            }
+            if (sequence == t && tail.compareAndSet(t, t + 1)) {
+                slots.lazySet(index, item);
+                // 序号的 volatile 写保证消费者看到序号时元素已经可见
+                sequences.set(index, t + 1);
+                return true;
+            }
+            // 其他生产者已占用该槽位，重新读取 tail
+        }
+    }
+
+    /**
+     * 出队；队列为空时返回 null
+     */
+    public T poll() {
+        while (true) {
+            long h = head.get();
+            int index = (int) (h & mask);
+            long sequence = sequences.get(index);
+            if (sequence < h + 1) {
+                return null;
+            }
+            if (sequence == h + 1 && head.compareAndSet(h, h + 1)) {
+                T item = slots.get(index);
+                slots.lazySet(index, null);
+                sequences.set(index, h + capacity);
+                return item;
+            }
+            // 其他消费者已取走该槽位，重新读取 head
+        }
+    }
+
+    /**
+     * 当前深度的近似值（并发读取 head / tail）
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.crypto.service.ingest;
+
+/**
+ * 接入队列的溢出策略
+ */
+public enum OverflowPolicy {
+    /**
+     * 队列满时丢弃最旧的一帧，保留最新数据
+     */
+    DROP_OLDEST,
+    /**
+     * 同一个流（频道 + 合约）在队列中最多保留一帧，未被消费前到达的新帧直接覆盖旧帧；
+     * 无法识别流的帧以及队列仍然满时按 DROP_OLDEST 处理
+     */
+    CONFLATE
+}
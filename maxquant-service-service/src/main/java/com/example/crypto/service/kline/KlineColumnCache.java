@@ -0,0 +1,184 @@
+package com.example.crypto.service.kline;
+
+import com.example.crypto.entity.KlineData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * K线列式内存缓存
+ * 按 (exchange, symbol, timeframe) 缓存原始类型数组形式的K线，区间查询用二分查找，
+ * 按总K线条数做容量限制，超出时淘汰最久未访问的序列。
+ * 同步任务写库后通过 {@link #apply} 把新K线合并进来，热点区间的查询因此不再访问 Postgres。
+ */
+@Component
+public class KlineColumnCache {
+    private static final Logger logger = LoggerFactory.getLogger(KlineColumnCache.class);
+
+    private record SeriesKey(String exchange, String symbol, String timeframe) {}
+
+    private static final class CachedSeries {
+        volatile KlineSeries series;
+        volatile long lastAccess;
+
+        CachedSeries(KlineSeries series) {
+            this.series = series;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    private record EvictionCandidate(SeriesKey key, CachedSeries holder, long lastAccess) {}
+
+    private final Map<SeriesKey, CachedSeries> cache = new ConcurrentHashMap<>();
+    // 每个序列的写入版本号，用于丢弃与写入并发的过期加载结果
+    private final Map<SeriesKey, Long> writeVersions = new ConcurrentHashMap<>();
+    private final AtomicLong totalBars = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Value("${kline.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kline.cache.max-bars:2000000}")
+    private long maxBars;
+
+    /**
+     * 查询缓存，区间 [start, end]（两端包含）未被完整覆盖时返回 null
+     */
+    public KlineSlice find(String exchange, String symbol, String timeframe, long start, long end) {
+        if (!enabled || exchange == null) {
+            return null;
+        }
+        CachedSeries cached = cache.get(new SeriesKey(exchange, symbol, timeframe));
+        KlineSeries series = cached != null ? cached.series : null;
+        if (series == null || !series.covers(start, end)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        cached.lastAccess = System.nanoTime();
+        hits.incrementAndGet();
+        return new KlineSlice(series, symbol, timeframe, series.lowerBound(start), series.upperBound(end));
+    }
+
+    /**
+     * 在查询数据库之前调用，返回的版本号交给 {@link #load}
+     */
+    public long beginLoad(String exchange, String symbol, String timeframe) {
+        return writeVersions.getOrDefault(new SeriesKey(exchange, symbol, timeframe), 0L);
+    }
+
+    /**
+     * 把数据库查询结果放入缓存
+     * 结束时间不早于当前时间时视为开放区间，之后的新K线由写入路径补充
+     */
+    public void load(long version, String exchange, String symbol, String timeframe, long start, long end, List<KlineData> bars) {
+        if (!enabled || exchange == null || bars.size() > maxBars) {
+            return;
+        }
+        SeriesKey key = new SeriesKey(exchange, symbol, timeframe);
+        long coveredTo = end >= System.currentTimeMillis() ? KlineSeries.OPEN_ENDED : end;
+        KlineSeries incoming = KlineSeries.fromEntities(bars, start, coveredTo);
+        cache.compute(key, (k, cached) -> {
+            if (writeVersions.getOrDefault(k, 0L) != version) {
+                // 加载期间有新的写入，结果可能已过期
+                logger.debug("K线缓存加载被并发写入取代: key={}", k);
+                return cached;
+            }
+            KlineSeries current = cached != null ? cached.series : null;
+            KlineSeries next;
+            if (current != null && start <= saturatedIncrement(current.coveredTo)
+                    && coveredTo >= current.coveredFrom - 1) {
+                // 与已缓存区间重叠或相邻，合并成一个连续区间
+                next = KlineSeries.merge(current, incoming,
+                        Math.min(current.coveredFrom, start), Math.max(current.coveredTo, coveredTo));
+            } else {
+                next = incoming;
+            }
+            totalBars.addAndGet(next.size - (current != null ? current.size : 0));
+            if (cached == null) {
+                return new CachedSeries(next);
+            }
+            cached.series = next;
+            cached.lastAccess = System.nanoTime();
+            return cached;
+        });
+        evictIfNecessary();
+    }
+
+    /**
+     * 写入路径：同步任务保存K线后调用，把新K线合并到已缓存的序列中
+     */
+    public void apply(String exchange, String symbol, String timeframe, List<KlineData> bars) {
+        if (!enabled || bars.isEmpty()) {
+            return;
+        }
+        SeriesKey key = new SeriesKey(exchange, symbol, timeframe);
+        writeVersions.merge(key, 1L, Long::sum);
+        cache.computeIfPresent(key, (k, cached) -> {
+            KlineSeries current = cached.series;
+            KlineSeries next = current.upsert(bars);
+            totalBars.addAndGet(next.size - current.size);
+            cached.series = next;
+            return cached;
+        });
+        evictIfNecessary();
+    }
+
+    /**
+     * 绕过写入路径修改数据库后调用（例如数据修正任务）
+     */
+    public void invalidate(String exchange, String symbol, String timeframe) {
+        SeriesKey key = new SeriesKey(exchange, symbol, timeframe);
+        writeVersions.merge(key, 1L, Long::sum);
+        cache.computeIfPresent(key, (k, cached) -> {
+            totalBars.addAndGet(-cached.series.size);
+            return null;
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("series", cache.size());
+        stats.put("bars", totalBars.get());
+        stats.put("maxBars", maxBars);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private synchronized void evictIfNecessary() {
+        if (totalBars.get() <= maxBars) {
+            return;
+        }
+        // 先对访问时间做快照再排序，避免排序过程中 lastAccess 被并发修改
+        List<EvictionCandidate> candidates = new ArrayList<>(cache.size());
+        cache.forEach((key, cached) -> candidates.add(new EvictionCandidate(key, cached, cached.lastAccess)));
+        candidates.sort(Comparator.comparingLong(EvictionCandidate::lastAccess));
+        for (EvictionCandidate candidate : candidates) {
+            if (totalBars.get() <= maxBars) {
+                break;
+            }
+            cache.computeIfPresent(candidate.key(), (k, cached) -> {
+                if (cached != candidate.holder()) {
+                    return cached;
+                }
+                totalBars.addAndGet(-cached.series.size);
+                logger.debug("K线缓存淘汰: key={}, bars={}", k, cached.series.size);
+                return null;
+            });
+        }
+    }
+
+    private static long saturatedIncrement(long value) {
+        return value == Long.MAX_VALUE ? value : value + 1;
+    }
+}
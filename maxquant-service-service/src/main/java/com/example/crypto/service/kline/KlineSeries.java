@@ -0,0 +1,218 @@
+package com.example.crypto.service.kline;
+
+import com.example.crypto.entity.KlineData;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 单个 (exchange, symbol, timeframe) 的列式K线序列
+ * 按时间戳升序存放在原始类型数组中，实例不可变（写入时复制），读取无需加锁
+ * [coveredFrom, coveredTo] 表示该区间内的数据与数据库完全一致
+ */
+final class KlineSeries {
+    static final long OPEN_ENDED = Long.MAX_VALUE;
+    private static final long NO_CREATED_AT = Long.MIN_VALUE;
+
+    final long[] timestamps;
+    final long[] ids;
+    final double[] open;
+    final double[] high;
+    final double[] low;
+    final double[] close;
+    final double[] volume;
+    final long[] createdAtMicros;
+    final int size;
+    final long coveredFrom;
+    final long coveredTo;
+
+    private KlineSeries(int capacity, long coveredFrom, long coveredTo) {
+        this.timestamps = new long[capacity];
+        this.ids = new long[capacity];
+        this.open = new double[capacity];
+        this.high = new double[capacity];
+        this.low = new double[capacity];
+        this.close = new double[capacity];
+        this.volume = new double[capacity];
+        this.createdAtMicros = new long[capacity];
+        this.size = capacity;
+        this.coveredFrom = coveredFrom;
+        this.coveredTo = coveredTo;
+    }
+
+    /**
+     * 从数据库查询结果构建序列（查询结果不保证有序）
+     */
+    static KlineSeries fromEntities(List<KlineData> bars, long coveredFrom, long coveredTo) {
+        KlineData[] sorted = bars.toArray(new KlineData[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(KlineData::getTimestamp));
+        KlineSeries series = new KlineSeries(sorted.length, coveredFrom, coveredTo);
+        for (int i = 0; i < sorted.length; i++) {
+            series.set(i, sorted[i]);
+        }
+        return series;
+    }
+
+    /**
+     * 合并两个序列：incoming 覆盖区间内以 incoming 为准，区间外保留 base 的数据
+     */
+    static KlineSeries merge(KlineSeries base, KlineSeries incoming, long coveredFrom, long coveredTo) {
+        KlineSeries merged = new KlineSeries(base.size + incoming.size, coveredFrom, coveredTo);
+        int i = 0, j = 0, k = 0;
+        while (i < base.size || j < incoming.size) {
+            if (i < base.size && incoming.covers(base.timestamps[i])) {
+                i++; // 被 incoming 的覆盖区间取代
+                continue;
+            }
+            if (j >= incoming.size || (i < base.size && base.timestamps[i] < incoming.timestamps[j])) {
+                merged.copyFrom(k++, base, i++);
+            } else {
+                merged.copyFrom(k++, incoming, j++);
+            }
+        }
+        return merged.truncate(k);
+    }
+
+    /**
+     * 写入路径：把新同步的K线按时间戳合并进来（同一时间戳以新数据为准），覆盖区间不变
+     * 早于覆盖区间的K线不缓存，否则会让区间内出现空洞
+     */
+    KlineSeries upsert(List<KlineData> bars) {
+        KlineData[] sorted = bars.stream()
+                .filter(b -> b.getTimestamp() != null && covers(b.getTimestamp()))
+                .sorted(Comparator.comparingLong(KlineData::getTimestamp))
+                .toArray(KlineData[]::new);
+        // 同一批次内重复的时间戳只保留最后一条
+        int n = 0;
+        for (int j = 0; j < sorted.length; j++) {
+            if (n > 0 && sorted[n - 1].getTimestamp().equals(sorted[j].getTimestamp())) {
+                sorted[n - 1] = sorted[j];
+            } else {
+                sorted[n++] = sorted[j];
+            }
+        }
+        if (n == 0) {
+            return this;
+        }
+        KlineSeries merged = new KlineSeries(size + n, coveredFrom, coveredTo);
+        int i = 0, j = 0, k = 0;
+        while (i < size || j < n) {
+            if (j >= n || (i < size && timestamps[i] < sorted[j].getTimestamp())) {
+                merged.copyFrom(k++, this, i++);
+            } else if (i < size && timestamps[i] == sorted[j].getTimestamp()) {
+                // 已存在的K线：保留原 createdAt，更新价格
+                merged.copyFrom(k, this, i++);
+                merged.setPrices(k, sorted[j]);
+                if (sorted[j].getId() != null) {
+                    merged.ids[k] = sorted[j].getId();
+                }
+                k++;
+                j++;
+            } else {
+                merged.set(k++, sorted[j++]);
+            }
+        }
+        return merged.truncate(k);
+    }
+
+    boolean covers(long timestamp) {
+        return timestamp >= coveredFrom && timestamp <= coveredTo;
+    }
+
+    boolean covers(long start, long end) {
+        return start >= coveredFrom && end <= coveredTo;
+    }
+
+    /**
+     * 第一个 timestamp >= key 的下标
+     */
+    int lowerBound(long key) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 第一个 timestamp > key 的下标
+     */
+    int upperBound(long key) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    LocalDateTime createdAt(int index) {
+        long micros = createdAtMicros[index];
+        if (micros == NO_CREATED_AT) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private void set(int index, KlineData bar) {
+        timestamps[index] = bar.getTimestamp();
+        ids[index] = bar.getId() != null ? bar.getId() : 0L;
+        setPrices(index, bar);
+        LocalDateTime created = bar.getCreatedAt();
+        createdAtMicros[index] = created == null ? NO_CREATED_AT
+                : created.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + created.getNano() / 1000;
+    }
+
+    private void setPrices(int index, KlineData bar) {
+        open[index] = toDouble(bar.getOpenPrice());
+        high[index] = toDouble(bar.getHighPrice());
+        low[index] = toDouble(bar.getLowPrice());
+        close[index] = toDouble(bar.getClosePrice());
+        volume[index] = toDouble(bar.getVolume());
+    }
+
+    private void copyFrom(int index, KlineSeries src, int srcIndex) {
+        timestamps[index] = src.timestamps[srcIndex];
+        ids[index] = src.ids[srcIndex];
+        open[index] = src.open[srcIndex];
+        high[index] = src.high[srcIndex];
+        low[index] = src.low[srcIndex];
+        close[index] = src.close[srcIndex];
+        volume[index] = src.volume[srcIndex];
+        createdAtMicros[index] = src.createdAtMicros[srcIndex];
+    }
+
+    private KlineSeries truncate(int newSize) {
+        if (newSize == size) {
+            return this;
+        }
+        KlineSeries copy = new KlineSeries(newSize, coveredFrom, coveredTo);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, newSize);
+        System.arraycopy(ids, 0, copy.ids, 0, newSize);
+        System.arraycopy(open, 0, copy.open, 0, newSize);
+        System.arraycopy(high, 0, copy.high, 0, newSize);
+        System.arraycopy(low, 0, copy.low, 0, newSize);
+        System.arraycopy(close, 0, copy.close, 0, newSize);
+        System.arraycopy(volume, 0, copy.volume, 0, newSize);
+        System.arraycopy(createdAtMicros, 0, copy.createdAtMicros, 0, newSize);
+        return copy;
+    }
+
+    // null 用 NaN 表示，读取时再还原
+    private static double toDouble(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.crypto.service.kline;
+
+import com.example.crypto.dto.KlineDataDTO;
+import com.example.crypto.entity.KlineData;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存序列上 [from, to) 区间的只读视图，直接引用底层列数组，不做拷贝
+ */
+public final class KlineSlice {
+    private final KlineSeries series;
+    private final String symbol;
+    private final String timeframe;
+    private final int from;
+    private final int to;
+
+    KlineSlice(KlineSeries series, String symbol, String timeframe, int from, int to) {
+        this.series = series;
+        this.symbol = symbol;
+        this.timeframe = timeframe;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * 不经过缓存，直接由数据库查询结果构建（缓存关闭或区间超出缓存容量时使用）
+     */
+    public static KlineSlice of(List<KlineData> bars, String symbol, String timeframe) {
+        KlineSeries series = KlineSeries.fromEntities(bars, Long.MIN_VALUE, KlineSeries.OPEN_ENDED);
+        return new KlineSlice(series, symbol, timeframe, 0, series.size);
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return to <= from;
+    }
+
+    public long timestamp(int i) {
+        return series.timestamps[from + i];
+    }
+
+    public double open(int i) {
+        return series.open[from + i];
+    }
+
+    public double high(int i) {
+        return series.high[from + i];
+    }
+
+    public double low(int i) {
+        return series.low[from + i];
+    }
+
+    public double close(int i) {
+        return series.close[from + i];
+    }
+
+    public double volume(int i) {
+        return series.volume[from + i];
+    }
+
+    /**
+     * 把时间戳列拷贝到调用方提供的缓冲区
+     */
+    public void copyTimestamps(long[] dest, int destPos) {
+        System.arraycopy(series.timestamps, from, dest, destPos, size());
+    }
+
+    /**
+     * 把收盘价列拷贝到调用方提供的缓冲区
+     */
+    public void copyCloses(double[] dest, int destPos) {
+        System.arraycopy(series.close, from, dest, destPos, size());
+    }
+
+    public List<KlineDataDTO> toDtos() {
+        List<KlineDataDTO> result = new ArrayList<>(size());
+        for (int i = from; i < to; i++) {
+            long id = series.ids[i];
+            LocalDateTime createdAt = series.createdAt(i);
+            result.add(new KlineDataDTO(id != 0L ? id : null, symbol, timeframe, series.timestamps[i],
+                    nullable(series.open[i]), nullable(series.high[i]), nullable(series.low[i]),
+                    nullable(series.close[i]), nullable(series.volume[i]), createdAt));
+        }
+        return result;
+    }
+
+    private static Double nullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
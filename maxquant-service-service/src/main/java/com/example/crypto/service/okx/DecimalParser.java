@@ -0,0 +1,89 @@
+package com.example.crypto.service.okx;
+
+/**
+ * 直接从字符区间解析十进制数，避免为每个价格 / 数量创建 String
+ * 尾数不超过 2^53 且小数位不超过 22 时，一次除以精确的 10 的幂即得到正确舍入的结果；
+ * 其他情况（科学计数法、超长尾数等）退回 Double.parseDouble。
+ */
+final class DecimalParser {
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private DecimalParser() {
+    }
+
+    static double parseDouble(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return Double.NaN;
+        }
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+                    return fallback(chars, offset, length);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                seenDigit = true;
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return fallback(chars, offset, length);
+            }
+        }
+        if (!seenDigit || fractionDigits >= POWERS_OF_TEN.length) {
+            return fallback(chars, offset, length);
+        }
+        double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    static long parseLong(char[] chars, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = length > 0 && chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException("Invalid long: " + new String(chars, offset, length));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid long: " + new String(chars, offset, length));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static double fallback(char[] chars, int offset, int length) {
+        try {
+            return Double.parseDouble(new String(chars, offset, length));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
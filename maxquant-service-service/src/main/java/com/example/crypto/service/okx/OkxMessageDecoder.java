@@ -0,0 +1,415 @@
+package com.example.crypto.service.okx;
+
+import com.example.crypto.service.book.PackedDecimal;
+import com.example.crypto.service.book.PriceLevels;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * OKX WebSocket 推送消息的流式解码器
+ * 用 Jackson JsonParser 顺序读取 arg.channel、instId、ts、last 以及 bids / asks 档位，
+ * 价格与数量直接解析进可复用的原始类型数组（同时保留可还原原始字符串的压缩十进制值，供校验和使用），不构建 JsonNode 树。
+ * data[0]、bids、asks 只记录在原始消息中的字符区间，需要时（推送给前端、落库）才截取成字符串。
+ * 解码结果保存在解码器自身，下一次 decode 时被覆盖；非线程安全，每个 WebSocket 监听器持有一个实例。
+ */
+public class OkxMessageDecoder {
+
+    public enum Kind {
+        TICKER, // tickers 频道
+        BOOK,   // books5 / books / bbo-tbt 等深度频道
+        OTHER   // 订阅回执、错误、pong 等
+    }
+
+    public static final long NO_SEQUENCE = Long.MIN_VALUE;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int INITIAL_LEVELS = 32;
+
+    private final StringCanonicalizer canonicalizer = new StringCanonicalizer();
+
+    private String text;
+    private String channel;
+    private String action;
+    private String argInstId;
+    private String dataInstId;
+    private long timestamp;
+    private double lastPrice;
+    private long seqId;
+    private long prevSeqId;
+    private boolean hasChecksum;
+    private int checksum;
+    private int dataStart;
+    private int dataEnd;
+    private final Levels bids = new Levels();
+    private final Levels asks = new Levels();
+
+    /**
+     * 解码一条消息；无法识别的 JSON 返回 OTHER
+     */
+    public Kind decode(String message) throws IOException {
+        reset(message);
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Kind.OTHER;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("arg".equals(field) && token == JsonToken.START_OBJECT) {
+                    readArg(parser);
+                } else if ("action".equals(field) && token == JsonToken.VALUE_STRING) {
+                    action = canonicalString(parser);
+                } else if ("data".equals(field) && token == JsonToken.START_ARRAY) {
+                    readData(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (channel == null || dataStart < 0) {
+            return Kind.OTHER;
+        }
+        if ("tickers".equals(channel)) {
+            return Double.isNaN(lastPrice) ? Kind.OTHER : Kind.TICKER;
+        }
+        if (channel.startsWith("books") || channel.startsWith("bbo")) {
+            return Kind.BOOK;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * 不做完整解析，只在 arg 对象中查找 channel 和 instId，返回 "channel:instId" 作为流标识（接入队列合并同一流的帧时使用）
+     * 找不到时，以及增量深度频道（合并会丢失增量）返回 null
+     */
+    public static String streamKey(String message) {
+        int arg = message.indexOf("\"arg\"");
+        if (arg < 0) {
+            return null;
+        }
+        int argEnd = message.indexOf('}', arg);
+        if (argEnd < 0) {
+            return null;
+        }
+        String channel = stringField(message, "\"channel\":\"", arg, argEnd);
+        String instId = stringField(message, "\"instId\":\"", arg, argEnd);
+        if (channel == null || instId == null || isIncrementalBookChannel(channel)) {
+            return null;
+        }
+        return channel + ':' + instId;
+    }
+
+    private static String stringField(String message, String prefix, int from, int to) {
+        int start = message.indexOf(prefix, from);
+        if (start < 0 || start >= to) {
+            return null;
+        }
+        start += prefix.length();
+        int end = message.indexOf('"', start);
+        return end < 0 || end > to ? null : message.substring(start, end);
+    }
+
+    /**
+     * books、books-l2-tbt、books50-l2-tbt 等频道推送 snapshot + update 增量；books5、bbo-tbt 每条都是完整快照
+     */
+    public static boolean isIncrementalBookChannel(String channel) {
+        return channel.startsWith("books") && !"books5".equals(channel);
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    /**
+     * 增量深度频道的 "snapshot" / "update"，其他频道为 null
+     */
+    public String action() {
+        return action;
+    }
+
+    /**
+     * 深度频道的序号，没有时为 {@link #NO_SEQUENCE}
+     */
+    public long seqId() {
+        return seqId;
+    }
+
+    public long prevSeqId() {
+        return prevSeqId;
+    }
+
+    public boolean hasChecksum() {
+        return hasChecksum;
+    }
+
+    public int checksum() {
+        return checksum;
+    }
+
+    /**
+     * 合约 ID，优先取 arg.instId（深度频道的 data 中可能没有 instId）
+     */
+    public String instId() {
+        return argInstId != null ? argInstId : dataInstId;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * tickers 频道的最新成交价，其他频道为 NaN
+     */
+    public double lastPrice() {
+        return lastPrice;
+    }
+
+    public Levels bids() {
+        return bids;
+    }
+
+    public Levels asks() {
+        return asks;
+    }
+
+    /**
+     * data[0] 的原始 JSON
+     */
+    public String rawData() {
+        return text.substring(dataStart, dataEnd);
+    }
+
+    /**
+     * bids 数组的原始 JSON，与原先 JsonNode.toString() 的内容一致（OKX 推送本身不含多余空白）
+     */
+    public String rawBids() {
+        return bids.raw(text);
+    }
+
+    public String rawAsks() {
+        return asks.raw(text);
+    }
+
+    /**
+     * 当前消息的原始文本，配合 {@link Levels#rawStart()} / {@link Levels#rawEnd()} 延后截取
+     */
+    public String text() {
+        return text;
+    }
+
+    private void reset(String message) {
+        text = message;
+        channel = null;
+        action = null;
+        argInstId = null;
+        dataInstId = null;
+        timestamp = 0L;
+        lastPrice = Double.NaN;
+        seqId = NO_SEQUENCE;
+        prevSeqId = NO_SEQUENCE;
+        hasChecksum = false;
+        checksum = 0;
+        dataStart = -1;
+        dataEnd = -1;
+        bids.clear();
+        asks.clear();
+    }
+
+    private void readArg(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("channel".equals(field) && token == JsonToken.VALUE_STRING) {
+                channel = canonicalString(parser);
+            } else if ("instId".equals(field) && token == JsonToken.VALUE_STRING) {
+                argInstId = canonicalString(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * 只解析 data[0]，其余元素跳过（与原先 dataNode.get(0) 的处理一致）
+     */
+    private void readData(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            dataStart = (int) parser.currentTokenLocation().getCharOffset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                token = parser.nextToken();
+                switch (field) {
+                    case "instId" -> dataInstId = token == JsonToken.VALUE_STRING ? canonicalString(parser) : null;
+                    case "ts" -> timestamp = readLong(parser, token);
+                    case "last" -> lastPrice = readDouble(parser, token);
+                    case "seqId" -> seqId = readLong(parser, token);
+                    case "prevSeqId" -> prevSeqId = readLong(parser, token);
+                    case "checksum" -> {
+                        hasChecksum = token == JsonToken.VALUE_NUMBER_INT;
+                        checksum = hasChecksum ? parser.getIntValue() : 0;
+                        if (!hasChecksum) {
+                            parser.skipChildren();
+                        }
+                    }
+                    case "bids" -> readLevels(parser, token, bids);
+                    case "asks" -> readLevels(parser, token, asks);
+                    default -> parser.skipChildren();
+                }
+            }
+            dataEnd = (int) parser.currentLocation().getCharOffset();
+            token = parser.nextToken();
+        }
+        while (token != null && token != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            token = parser.nextToken();
+        }
+    }
+
+    /**
+     * 档位格式为 [价格, 数量, 已废弃字段, 订单数]，只取前两项
+     */
+    private void readLevels(JsonParser parser, JsonToken token, Levels levels) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        levels.rawStart = (int) parser.currentTokenLocation().getCharOffset();
+        while ((token = parser.nextToken()) == JsonToken.START_ARRAY) {
+            long rawPrice = PackedDecimal.INVALID;
+            long rawSize = PackedDecimal.INVALID;
+            double price = Double.NaN;
+            double size = Double.NaN;
+            int index = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (index == 0) {
+                    rawPrice = readPacked(parser, token);
+                    price = rawPrice != PackedDecimal.INVALID ? PackedDecimal.toDouble(rawPrice) : readDouble(parser, token);
+                } else if (index == 1) {
+                    rawSize = readPacked(parser, token);
+                    size = rawSize != PackedDecimal.INVALID ? PackedDecimal.toDouble(rawSize) : readDouble(parser, token);
+                } else {
+                    parser.skipChildren();
+                }
+                index++;
+            }
+            levels.add(price, size, rawPrice, rawSize);
+        }
+        levels.rawEnd = (int) parser.currentLocation().getCharOffset();
+    }
+
+    private String canonicalString(JsonParser parser) throws IOException {
+        return canonicalizer.canonicalize(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static long readLong(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return DecimalParser.parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        parser.skipChildren();
+        return 0L;
+    }
+
+    private static long readPacked(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            return PackedDecimal.INVALID;
+        }
+        return PackedDecimal.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static double readDouble(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return DecimalParser.parseDouble(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        parser.skipChildren();
+        return Double.NaN;
+    }
+
+    /**
+     * 一侧的深度档位，数组按需扩容后复用
+     */
+    public static final class Levels implements PriceLevels {
+        private double[] prices = new double[INITIAL_LEVELS];
+        private double[] sizes = new double[INITIAL_LEVELS];
+        private long[] rawPrices = new long[INITIAL_LEVELS];
+        private long[] rawSizes = new long[INITIAL_LEVELS];
+        private int count;
+        private int rawStart = -1;
+        private int rawEnd = -1;
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public double price(int i) {
+            return prices[i];
+        }
+
+        @Override
+        public double size(int i) {
+            return sizes[i];
+        }
+
+        @Override
+        public long rawPrice(int i) {
+            return rawPrices[i];
+        }
+
+        @Override
+        public long rawSize(int i) {
+            return rawSizes[i];
+        }
+
+        public double[] copyPrices() {
+            return Arrays.copyOf(prices, count);
+        }
+
+        public double[] copySizes() {
+            return Arrays.copyOf(sizes, count);
+        }
+
+        public int rawStart() {
+            return rawStart;
+        }
+
+        public int rawEnd() {
+            return rawEnd;
+        }
+
+        String raw(String text) {
+            return rawStart >= 0 ? text.substring(rawStart, rawEnd) : null;
+        }
+
+        void add(double price, double size, long rawPrice, long rawSize) {
+            if (count == prices.length) {
+                prices = Arrays.copyOf(prices, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+                rawPrices = Arrays.copyOf(rawPrices, count * 2);
+                rawSizes = Arrays.copyOf(rawSizes, count * 2);
+            }
+            prices[count] = price;
+            sizes[count] = size;
+            rawPrices[count] = rawPrice;
+            rawSizes[count] = rawSize;
+            count++;
+        }
+
+        void clear() {
+            count = 0;
+            rawStart = -1;
+            rawEnd = -1;
+        }
+    }
+}
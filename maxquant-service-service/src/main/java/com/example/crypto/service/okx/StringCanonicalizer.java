@@ -0,0 +1,37 @@
+package com.example.crypto.service.okx;
+
+/**
+ * 把字符区间映射为共享的 String 实例（合约 ID、频道名等取值有限的字段）
+ * 直接映射的小型缓存：命中时不分配内存，冲突时覆盖旧值
+ */
+final class StringCanonicalizer {
+    private static final int SIZE = 1024;
+    private final String[] slots = new String[SIZE];
+
+    String canonicalize(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[offset + i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+        String cached = slots[slot];
+        if (cached != null && matches(cached, chars, offset, length)) {
+            return cached;
+        }
+        String value = new String(chars, offset, length);
+        slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
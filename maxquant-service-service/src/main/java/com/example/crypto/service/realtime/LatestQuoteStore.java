@@ -0,0 +1,92 @@
+package com.example.crypto.service.realtime;
+
+import com.example.crypto.entity.RealtimeData;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各合约最新成交价的内存存储，按 (exchange, symbol) 只保留时间戳最新的一笔
+ * 由两个交易所的 WebSocket 监听直接更新，实时行情查询、策略和统计套利组件从这里取当前价格，不访问数据库。
+ */
+@Component
+public class LatestQuoteStore {
+
+    /**
+     * 不可变的报价快照，更新时整体替换，读取无需加锁
+     */
+    public record Quote(String exchange, String symbol, double price, long timestamp) {
+        public RealtimeData toRealtimeData() {
+            RealtimeData data = new RealtimeData();
+            data.setSymbol(symbol);
+            data.setExchange(exchange);
+            data.setPrice(price);
+            data.setTimestamp(timestamp);
+            data.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+            return data;
+        }
+    }
+
+    // exchange -> symbol -> 最新报价；按交易所分层，查询时不需要构造组合键
+    private final Map<String, Map<String, Quote>> quotes = new ConcurrentHashMap<>();
+
+    /**
+     * 更新报价；时间戳早于已有报价的数据（多线程处理时的乱序）被忽略
+     */
+    public void update(String exchange, String symbol, double price, long timestamp) {
+        symbols(exchange).merge(symbol, new Quote(exchange, symbol, price, timestamp), LatestQuoteStore::newer);
+    }
+
+    /**
+     * 从数据库加载的冷数据只在没有实时报价时放入，避免覆盖更新的值
+     */
+    public Quote putIfAbsent(Quote quote) {
+        Quote existing = symbols(quote.exchange()).putIfAbsent(quote.symbol(), quote);
+        return existing != null ? existing : quote;
+    }
+
+    public Quote get(String exchange, String symbol) {
+        Map<String, Quote> bySymbol = quotes.get(exchange);
+        return bySymbol != null ? bySymbol.get(symbol) : null;
+    }
+
+    /**
+     * 当前价格，没有报价时返回 NaN
+     */
+    public double price(String exchange, String symbol) {
+        Quote quote = get(exchange, symbol);
+        return quote != null ? quote.price() : Double.NaN;
+    }
+
+    /**
+     * 批量查询，结果保持 symbols 的顺序，没有报价的合约不出现在结果中
+     */
+    public Map<String, Quote> getAll(String exchange, Collection<String> symbols) {
+        Map<String, Quote> result = new LinkedHashMap<>();
+        Map<String, Quote> bySymbol = quotes.get(exchange);
+        if (bySymbol == null) {
+            return result;
+        }
+        for (String symbol : symbols) {
+            Quote quote = bySymbol.get(symbol);
+            if (quote != null) {
+                result.put(symbol, quote);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Quote> symbols(String exchange) {
+        return quotes.computeIfAbsent(exchange, e -> new ConcurrentHashMap<>());
+    }
+
+    private static Quote newer(Quote existing, Quote candidate) {
+        return candidate.timestamp() >= existing.timestamp() ? candidate : existing;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.crypto.service.realtime;
+
+import com.example.crypto.entity.RealtimeData;
+import com.example.crypto.service.ClickHouseService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实时价格的异步批量写入（write-behind）
+ * 每个 (exchange, symbol) 一个缓冲区，record 只追加到内存，不访问数据库（最新价由 {@link LatestQuoteStore} 维护）；
+ * 累计条数达到 batch-size 或到达 flush-interval 时，由单独的线程一次性写入 ClickHouse realtime_data。
+ * 批次交给 ClickHouseSink 异步写入（失败重试并落盘）；提交本身失败时在不超过 max-buffered 的前提下放回缓冲区，下次刷新时重试。
+ */
+@Component
+public class RealtimeTickWriter {
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeTickWriter.class);
+    private static final int INITIAL_BUFFER = 16;
+
+    private record Key(String exchange, String symbol) {}
+
+    private final ClickHouseService clickHouseService;
+
+    @Value("${realtime.write-behind.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${realtime.write-behind.max-buffered:200000}")
+    private int maxBuffered;
+
+    private final Map<Key, TickBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object flushLock = new Object();
+    private ExecutorService flushExecutor;
+
+    public RealtimeTickWriter(ClickHouseService clickHouseService) {
+        this.clickHouseService = clickHouseService;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "realtime-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * 记录一笔实时价格；只在内存中追加，不阻塞调用线程
+     */
+    public void record(String exchange, String symbol, double price, long timestamp) {
+        if (pending.get() >= maxBuffered) {
+            // 下游长时间不可用时丢弃新数据，避免内存无限增长
+            dropped.incrementAndGet();
+            return;
+        }
+        buffers.computeIfAbsent(new Key(exchange, symbol), TickBuffer::new).append(price, timestamp);
+        if (pending.incrementAndGet() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.write-behind.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (pending.get() > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * 取出所有缓冲区的数据写入 ClickHouse；同一时间只有一个刷新在执行
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<RealtimeData> batch = new ArrayList<>(Math.max(16, pending.get()));
+            for (TickBuffer buffer : buffers.values()) {
+                buffer.drainTo(batch);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending.addAndGet(-batch.size());
+            long start = System.nanoTime();
+            try {
+                clickHouseService.saveRealtimeData(batch);
+                logger.debug("实时数据批量写入完成: rows={}, elapsedMs={}", batch.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception e) {
+                requeue(batch);
+            }
+        }
+    }
+
+    private void requeue(List<RealtimeData> batch) {
+        int room = maxBuffered - pending.get();
+        if (room < batch.size()) {
+            logger.warn("实时数据写入失败且缓冲区已满，丢弃本批数据: rows={}", batch.size());
+            dropped.addAndGet(batch.size());
+            return;
+        }
+        for (RealtimeData tick : batch) {
+            buffers.computeIfAbsent(new Key(tick.getExchange(), tick.getSymbol()), TickBuffer::new)
+                    .append(tick.getPrice(), tick.getTimestamp());
+        }
+        pending.addAndGet(batch.size());
+        logger.warn("实时数据写入失败，已放回缓冲区等待下次刷新: rows={}", batch.size());
+    }
+
+    /**
+     * 单个合约的待写入数据（原始类型数组）
+     */
+    private static final class TickBuffer {
+        private final Key key;
+        private double[] prices = new double[INITIAL_BUFFER];
+        private long[] timestamps = new long[INITIAL_BUFFER];
+        private int size;
+
+        TickBuffer(Key key) {
+            this.key = key;
+        }
+
+        synchronized void append(double price, long timestamp) {
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            prices[size] = price;
+            timestamps[size] = timestamp;
+            size++;
+        }
+
+        void drainTo(List<RealtimeData> batch) {
+            double[] drainedPrices;
+            long[] drainedTimestamps;
+            int count;
+            synchronized (this) {
+                if (size == 0) {
+                    return;
+                }
+                drainedPrices = prices;
+                drainedTimestamps = timestamps;
+                count = size;
+                // 按上一轮的数量预留容量，活跃合约不必每次从头扩容
+                int capacity = Math.max(INITIAL_BUFFER, Integer.highestOneBit(count));
+                prices = new double[capacity];
+                timestamps = new long[capacity];
+                size = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                batch.add(toEntity(drainedPrices[i], drainedTimestamps[i]));
+            }
+        }
+
+        private RealtimeData toEntity(double price, long timestamp) {
+            RealtimeData data = new RealtimeData();
+            data.setSymbol(key.symbol());
+            data.setExchange(key.exchange());
+            data.setPrice(price);
+            data.setTimestamp(timestamp);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.crypto.service.report;
+
+import com.example.crypto.dto.BacktestLogChunk;
+import com.example.crypto.dto.BacktestLogLine;
+import com.example.crypto.dto.BacktestLogPage;
+import com.example.crypto.exception.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 回测日志（backtest_slog.log）的分段读取
+ * 不把整个日志读入内存：按行号分页（借助 {@link LogLineIndex}）、按字节范围读取、从文件末尾反向扫描取最后 N 行、
+ * 在服务端按关键字或正则过滤，以及流式输出整个日志。
+ * 行索引在回测结束时建立（报告目录下的 .columnar/backtest_slog.idx），日志之后又有增长时只补扫新增部分。
+ */
+@Component
+public class BacktestLogStore {
+    private static final Logger logger = LoggerFactory.getLogger(BacktestLogStore.class);
+    private static final String LOG_FILE = "backtest_slog.log";
+    private static final String INDEX_FILE = ".columnar/backtest_slog.idx";
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    @Value("${backtest.results.path}")
+    private String backtestResultsPath;
+
+    // 行索引每隔多少行记录一次位置
+    @Value("${backtest.log.index-stride:256}")
+    private int indexStride;
+
+    @Value("${backtest.log.max-page-lines:5000}")
+    private int maxPageLines;
+
+    @Value("${backtest.log.max-chunk-bytes:1048576}")
+    private int maxChunkBytes;
+
+    // 超过该长度的行截断后返回
+    @Value("${backtest.log.max-line-bytes:65536}")
+    private int maxLineBytes;
+
+    /**
+     * 建立（或补充）行索引，回测结束时调用
+     */
+    public void index(String strategyName, String timestamp) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        long startNanos = System.nanoTime();
+        LogLineIndex index = ensureIndex(log);
+        logger.info("回测日志行索引已建立: report={}/{}, lines={}, bytes={}, elapsedMs={}",
+                strategyName, timestamp, index.totalLines(), index.scannedSize, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    public long size(String strategyName, String timestamp) throws IOException {
+        return Files.size(logFile(strategyName, timestamp));
+    }
+
+    /**
+     * 从第 from 行（从 0 开始）起读取最多 limit 行
+     */
+    public BacktestLogPage lines(String strategyName, String timestamp, long from, int limit) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        LogLineIndex index = ensureIndex(log);
+        int max = Math.max(0, Math.min(limit, maxPageLines));
+        long start = Math.max(0, from);
+        List<BacktestLogLine> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LineCursor cursor = new LineCursor(channel, index.checkpointOffset(start), index.checkpointLine(start));
+            while (cursor.line < start && cursor.skip()) {
+                // 跳到起始行
+            }
+            String text;
+            while (lines.size() < max && (text = cursor.next()) != null) {
+                lines.add(new BacktestLogLine(cursor.line - 1, text));
+            }
+        }
+        long next = start + lines.size();
+        return new BacktestLogPage(index.totalLines(), index.scannedSize, lines, next < index.totalLines() ? next : null);
+    }
+
+    /**
+     * 最后 count 行：从文件末尾按块反向查找换行符，不需要扫描整个文件
+     */
+    public BacktestLogPage tail(String strategyName, String timestamp, int count) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        LogLineIndex index = ensureIndex(log);
+        int max = Math.max(0, Math.min(count, maxPageLines));
+        List<BacktestLogLine> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = index.scannedSize;
+            long start = size;
+            int found = 0;
+            // 以换行符结尾时，最后一个换行符不开始新的一行
+            long position = size > 0 && byteAt(channel, size - 1) == '\n' ? size - 1 : size;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            search:
+            while (position > 0 && max > 0) {
+                int length = (int) Math.min(BUFFER_BYTES, position);
+                buffer.clear().limit(length);
+                long blockStart = position - length;
+                while (buffer.hasRemaining() && channel.read(buffer, blockStart + buffer.position()) > 0) {
+                    // 读满该块
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        start = blockStart + i + 1;
+                        if (++found == max) {
+                            break search;
+                        }
+                    }
+                }
+                position = blockStart;
+            }
+            if (found < max) {
+                start = 0;
+            }
+            long total = index.totalLines();
+            long first = Math.max(0, total - max);
+            LineCursor cursor = new LineCursor(channel, max > 0 ? start : size, first);
+            String text;
+            while (cursor.position < size && (text = cursor.next()) != null) {
+                lines.add(new BacktestLogLine(cursor.line - 1, text));
+            }
+        }
+        return new BacktestLogPage(index.totalLines(), index.scannedSize, lines, null);
+    }
+
+    /**
+     * 从第 from 行起查找包含 pattern 的行，找到 limit 行后停止
+     * @param regex pattern 按正则表达式匹配，否则按关键字匹配
+     * @throws IllegalArgumentException 正则表达式不合法
+     */
+    public BacktestLogPage grep(String strategyName, String timestamp, String pattern, boolean regex, boolean ignoreCase,
+                                long from, int limit) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        LogLineIndex index = ensureIndex(log);
+        Predicate<String> matcher = matcher(pattern, regex, ignoreCase);
+        int max = Math.max(0, Math.min(limit, maxPageLines));
+        long start = Math.max(0, from);
+        List<BacktestLogLine> lines = new ArrayList<>();
+        Long next = null;
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LineCursor cursor = new LineCursor(channel, index.checkpointOffset(start), index.checkpointLine(start));
+            while (cursor.line < start && cursor.skip()) {
+                // 跳到起始行
+            }
+            String text;
+            while (lines.size() < max && (text = cursor.next()) != null) {
+                if (matcher.test(text)) {
+                    lines.add(new BacktestLogLine(cursor.line - 1, text));
+                }
+            }
+            if (lines.size() == max && cursor.line < index.totalLines()) {
+                next = cursor.line;
+            }
+        }
+        return new BacktestLogPage(index.totalLines(), index.scannedSize, lines, next);
+    }
+
+    /**
+     * 读取 [offset, offset + length) 字节，两端收缩到 UTF-8 字符边界
+     */
+    public BacktestLogChunk bytes(String strategyName, String timestamp, long offset, int length) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(Math.max(0, offset), size);
+            int max = (int) Math.min(Math.max(0, Math.min(length, maxChunkBytes)), size - start);
+            ByteBuffer buffer = ByteBuffer.allocate(max);
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // 读满
+            }
+            byte[] bytes = buffer.array();
+            int begin = 0;
+            while (begin < max && begin < 3 && isContinuation(bytes[begin]) && start + begin > 0) {
+                begin++;
+            }
+            int end = start + max < size ? utf8Boundary(bytes, begin, max) : max;
+            String content = new String(bytes, begin, end - begin, StandardCharsets.UTF_8);
+            return new BacktestLogChunk(start + begin, end - begin, size, start + end, content);
+        }
+    }
+
+    /**
+     * 把日志写到 out；pattern 不为空时只输出匹配的行
+     */
+    public void stream(String strategyName, String timestamp, String pattern, boolean regex, boolean ignoreCase,
+                       OutputStream out) throws IOException {
+        Path log = logFile(strategyName, timestamp);
+        if (pattern == null || pattern.isEmpty()) {
+            Files.copy(log, out);
+            return;
+        }
+        Predicate<String> matcher = matcher(pattern, regex, ignoreCase);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LineCursor cursor = new LineCursor(channel, 0, 0);
+            String text;
+            while ((text = cursor.next()) != null) {
+                if (matcher.test(text)) {
+                    out.write(text.getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    private Path logFile(String strategyName, String timestamp) {
+        Path log = Paths.get(backtestResultsPath, strategyName, timestamp, LOG_FILE);
+        if (!Files.isRegularFile(log)) {
+            throw new ResourceNotFoundException("Backtest log not found: " + strategyName + "/" + timestamp);
+        }
+        return log;
+    }
+
+    /**
+     * 读取已保存的索引，日志比索引新时补扫并保存
+     */
+    private LogLineIndex ensureIndex(Path log) throws IOException {
+        Path indexFile = log.resolveSibling(INDEX_FILE);
+        LogLineIndex index = LogLineIndex.load(indexFile);
+        if (index != null && index.stride == indexStride && index.scannedSize == Files.size(log)) {
+            return index;
+        }
+        index = LogLineIndex.build(log, index, indexStride);
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            logger.warn("回测日志行索引保存失败: file={}, error={}", indexFile, e.getMessage());
+        }
+        return index;
+    }
+
+    private static Predicate<String> matcher(String pattern, boolean regex, boolean ignoreCase) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("pattern is required");
+        }
+        try {
+            int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            Pattern compiled = Pattern.compile(regex ? pattern : Pattern.quote(pattern), flags);
+            return text -> compiled.matcher(text).find();
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid pattern: " + e.getDescription());
+        }
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * 去掉末尾不完整的 UTF-8 字符后的结束位置
+     */
+    private static int utf8Boundary(byte[] bytes, int begin, int end) {
+        int lead = end - 1;
+        while (lead >= begin && end - lead < 4 && isContinuation(bytes[lead])) {
+            lead--;
+        }
+        if (lead < begin) {
+            return end;
+        }
+        int b = bytes[lead] & 0xFF;
+        int expected = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return end - lead < expected ? lead : end;
+    }
+
+    /**
+     * 从指定位置按行顺序读取，记录当前行号
+     */
+    private final class LineCursor {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+        // 下一次读取的文件位置（缓冲区之后）
+        private long filePosition;
+        // 下一行的起始位置
+        long position;
+        // 下一行的行号
+        long line;
+
+        LineCursor(FileChannel channel, long position, long line) {
+            this.channel = channel;
+            this.filePosition = position;
+            this.position = position;
+            this.line = line;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return 已到文件末尾时返回 null
+         */
+        String next() throws IOException {
+            lineBytes.reset();
+            if (!readLine(true)) {
+                return null;
+            }
+            int length = lineBytes.size();
+            byte[] bytes = lineBytes.toByteArray();
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        boolean skip() throws IOException {
+            return readLine(false);
+        }
+
+        private boolean readLine(boolean keep) throws IOException {
+            boolean any = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer, filePosition);
+                    buffer.flip();
+                    if (read <= 0) {
+                        if (any) {
+                            line++;
+                        }
+                        return any;
+                    }
+                    filePosition += read;
+                }
+                any = true;
+                byte b = buffer.get();
+                position++;
+                if (b == '\n') {
+                    line++;
+                    return true;
+                }
+                if (keep && lineBytes.size() < maxLineBytes) {
+                    lineBytes.write(b);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.crypto.service.report;
+
+import com.example.crypto.dto.BacktestReportSummary;
+import com.example.crypto.dto.ReportColumn;
+import com.example.crypto.dto.ReportTableInfo;
+import com.example.crypto.dto.ReportTablePage;
+import com.example.crypto.enums.BacktestReportTable;
+import com.example.crypto.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回测报告的列式存储
+ * 回测结束时把报告目录中的各 CSV 转换为列式二进制表（报告目录下的 .columnar/），
+ * 之后的查询直接 mmap 该文件，按页、按列、按排序返回，不再每次解析全部 CSV。
+ * 在此之前生成的报告在第一次查询时转换；CSV 比列式文件新时重新转换。
+ * 汇总部分（汇总指标、分期指标、各表的列定义）放在 LRU 缓存中。
+ */
+@Component
+public class BacktestReportStore {
+    private static final Logger logger = LoggerFactory.getLogger(BacktestReportStore.class);
+    private static final String STORE_DIR = ".columnar";
+    private static final String TABLE_SUFFIX = ".mqrt";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${backtest.results.path}")
+    private String backtestResultsPath;
+
+    @Value("${backtest.report.summary-cache-size:200}")
+    private int summaryCacheSize;
+
+    // 同时保持 mmap 的表文件数
+    @Value("${backtest.report.max-open-tables:64}")
+    private int maxOpenTables;
+
+    @Value("${backtest.report.max-page-size:5000}")
+    private int maxPageSize;
+
+    private final Map<String, BacktestReportSummary> summaries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, ReportTable> openTables = new LinkedHashMap<>(16, 0.75f, true);
+
+    public BacktestReportStore(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 转换报告中的全部表；已是最新的表跳过
+     */
+    public void ingest(String strategyName, String timestamp) throws IOException {
+        Path reportDir = reportDir(strategyName, timestamp);
+        long startNanos = System.nanoTime();
+        int tables = 0;
+        for (BacktestReportTable table : BacktestReportTable.values()) {
+            if (ensureTable(reportDir, table) != null) {
+                tables++;
+            }
+        }
+        logger.info("回测报告已转换为列式存储: report={}/{}, tables={}, elapsedMs={}",
+                strategyName, timestamp, tables, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    public BacktestReportSummary summary(String strategyName, String timestamp) throws IOException {
+        String key = strategyName + "/" + timestamp;
+        synchronized (summaries) {
+            BacktestReportSummary cached = summaries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Path reportDir = reportDir(strategyName, timestamp);
+        List<Map<String, Object>> performance = List.of();
+        List<Map<String, Object>> periodicPerformance = List.of();
+        List<ReportTableInfo> tables = new ArrayList<>();
+        for (BacktestReportTable table : BacktestReportTable.values()) {
+            ReportTable data = table(reportDir, table);
+            if (data == null) {
+                continue;
+            }
+            tables.add(new ReportTableInfo(table.getPath(), data.rows(), data.columns()));
+            if (table == BacktestReportTable.PERFORMANCE) {
+                performance = toMaps(data);
+            } else if (table == BacktestReportTable.PERIODIC_PERFORMANCE) {
+                periodicPerformance = toMaps(data);
+            }
+        }
+        BacktestReportSummary summary = new BacktestReportSummary(strategyName, timestamp, performance,
+                periodicPerformance, tables);
+        synchronized (summaries) {
+            summaries.put(key, summary);
+            Iterator<String> iterator = summaries.keySet().iterator();
+            while (summaries.size() > summaryCacheSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @param columns 返回的列，为空时返回全部列
+     * @param sort 排序列，为空时按原始顺序
+     * @throws IllegalArgumentException 列名不存在
+     */
+    public ReportTablePage page(String strategyName, String timestamp, BacktestReportTable table, int offset, int limit,
+                                List<String> columns, String sort, boolean descending) throws IOException {
+        ReportTable data = table(reportDir(strategyName, timestamp), table);
+        if (data == null) {
+            throw new ResourceNotFoundException("Backtest report table not found: " + strategyName + "/" + timestamp
+                    + "/" + table.getPath());
+        }
+        int[] projection;
+        if (columns == null || columns.isEmpty()) {
+            projection = new int[data.columns().size()];
+            for (int i = 0; i < projection.length; i++) {
+                projection[i] = i;
+            }
+        } else {
+            projection = new int[columns.size()];
+            for (int i = 0; i < projection.length; i++) {
+                projection[i] = columnIndex(data, columns.get(i));
+            }
+        }
+        int[] order = sort == null || sort.isBlank() ? null : data.order(columnIndex(data, sort), descending);
+
+        int from = Math.min(Math.max(0, offset), data.rows());
+        int to = Math.min(data.rows(), from + Math.max(0, Math.min(limit, maxPageSize)));
+        List<List<Object>> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int row = order != null ? order[i] : i;
+            List<Object> values = new ArrayList<>(projection.length);
+            for (int column : projection) {
+                values.add(data.value(column, row));
+            }
+            rows.add(values);
+        }
+        List<ReportColumn> projected = new ArrayList<>(projection.length);
+        for (int column : projection) {
+            projected.add(data.columns().get(column));
+        }
+        return new ReportTablePage(table.getPath(), data.rows(), from, to - from, order != null ? sort : null,
+                order != null && descending, projected, rows);
+    }
+
+    /**
+     * 报告被删除时清除缓存（timestamp 为 null 时清除该策略的全部报告）
+     */
+    public void invalidate(String strategyName, String timestamp) {
+        String prefix = strategyName + "/" + (timestamp != null ? timestamp : "");
+        synchronized (summaries) {
+            summaries.keySet().removeIf(key -> timestamp != null ? key.equals(prefix) : key.startsWith(prefix));
+        }
+        Path dir = timestamp != null ? Paths.get(backtestResultsPath, strategyName, timestamp)
+                : Paths.get(backtestResultsPath, strategyName);
+        synchronized (openTables) {
+            openTables.keySet().removeIf(path -> path.startsWith(dir));
+        }
+    }
+
+    private static int columnIndex(ReportTable data, String name) {
+        int index = data.columnIndex(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        return index;
+    }
+
+    private static List<Map<String, Object>> toMaps(ReportTable data) {
+        List<Map<String, Object>> rows = new ArrayList<>(data.rows());
+        for (int row = 0; row < data.rows(); row++) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int column = 0; column < data.columns().size(); column++) {
+                values.put(data.columns().get(column).name(), data.value(column, row));
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    private Path reportDir(String strategyName, String timestamp) {
+        Path reportDir = Paths.get(backtestResultsPath, strategyName, timestamp);
+        if (!Files.isDirectory(reportDir)) {
+            throw new ResourceNotFoundException("Backtest report not found: " + strategyName + "/" + timestamp);
+        }
+        return reportDir;
+    }
+
+    /**
+     * 取得已打开的表，需要时先转换
+     * @return 报告中没有该 CSV 时返回 null
+     */
+    private ReportTable table(Path reportDir, BacktestReportTable table) throws IOException {
+        Path file = ensureTable(reportDir, table);
+        if (file == null) {
+            return null;
+        }
+        synchronized (openTables) {
+            ReportTable data = openTables.get(file);
+            if (data != null) {
+                return data;
+            }
+        }
+        ReportTable data = ReportTable.open(file, objectMapper);
+        synchronized (openTables) {
+            openTables.put(file, data);
+            Iterator<Path> iterator = openTables.keySet().iterator();
+            while (openTables.size() > maxOpenTables && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * CSV 不存在时返回 null；列式文件不存在或比 CSV 旧时重新转换（先写临时文件再原子替换）
+     */
+    private Path ensureTable(Path reportDir, BacktestReportTable table) throws IOException {
+        Path csv = reportDir.resolve(table.getFileName());
+        if (!Files.exists(csv)) {
+            return null;
+        }
+        Path file = reportDir.resolve(STORE_DIR).resolve(table.getPath() + TABLE_SUFFIX);
+        if (Files.exists(file) && Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(csv)) >= 0) {
+            return file;
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), table.getPath(), ".tmp");
+        try {
+            ReportTableWriter.write(csv, temp, objectMapper);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        synchronized (openTables) {
+            openTables.remove(file);
+        }
+        synchronized (summaries) {
+            summaries.remove(reportDir.getParent().getFileName() + "/" + reportDir.getFileName());
+        }
+        return file;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.crypto.service.report;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 日志文件的稀疏行索引：每 stride 行记录一次行首位置
+ * 读取第 n 行时从第 n / stride 个记录点开始，最多跳过 stride - 1 行。
+ * 文件布局（小端）：magic "MQLIDX1\n"、int32 stride、int64 已扫描字节数、int64 完整行数、
+ * int64 最后一个换行符之后的位置、int32 记录点个数、int64[] 记录点
+ * 日志增长（回测仍在运行）时从上次扫描结束的位置继续。
+ */
+final class LogLineIndex {
+    private static final byte[] MAGIC = "MQLIDX1\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int FIXED_BYTES = 8 + 4 + 8 + 8 + 8 + 4;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    final int stride;
+    // 已扫描的字节数（建索引时的文件大小）
+    final long scannedSize;
+    // 以换行符结束的行数
+    final long completeLines;
+    // 最后一个换行符之后的位置，之后为未结束的最后一行
+    final long completeEnd;
+    private final long[] checkpoints;
+    private final int checkpointCount;
+
+    private LogLineIndex(int stride, long scannedSize, long completeLines, long completeEnd, long[] checkpoints,
+                         int checkpointCount) {
+        this.stride = stride;
+        this.scannedSize = scannedSize;
+        this.completeLines = completeLines;
+        this.completeEnd = completeEnd;
+        this.checkpoints = checkpoints;
+        this.checkpointCount = checkpointCount;
+    }
+
+    long totalLines() {
+        return completeLines + (scannedSize > completeEnd ? 1 : 0);
+    }
+
+    /**
+     * 不晚于 line 的最近记录点的行号
+     */
+    long checkpointLine(long line) {
+        long index = Math.min(line / stride, checkpointCount - 1);
+        return index * stride;
+    }
+
+    long checkpointOffset(long line) {
+        return checkpoints[(int) Math.min(line / stride, checkpointCount - 1)];
+    }
+
+    /**
+     * 扫描日志建立索引；previous 不为 null 且仍然有效时只扫描新增部分
+     */
+    static LogLineIndex build(Path log, LogLineIndex previous, int stride) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] checkpoints;
+            int count;
+            long lines;
+            long position;
+            if (previous != null && previous.stride == stride && previous.scannedSize <= size) {
+                checkpoints = Arrays.copyOf(previous.checkpoints, Math.max(16, previous.checkpointCount));
+                count = previous.checkpointCount;
+                lines = previous.completeLines;
+                position = previous.completeEnd;
+            } else {
+                checkpoints = new long[16];
+                count = 1;
+                lines = 0;
+                position = 0;
+            }
+            long completeEnd = position;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lines++;
+                        completeEnd = position + i + 1;
+                        if (lines % stride == 0) {
+                            if (count == checkpoints.length) {
+                                checkpoints = Arrays.copyOf(checkpoints, count * 2);
+                            }
+                            checkpoints[count++] = completeEnd;
+                        }
+                    }
+                }
+                position += read;
+            }
+            return new LogLineIndex(stride, position, lines, completeEnd, checkpoints, count);
+        }
+    }
+
+    /**
+     * @return 文件不存在或格式不符时返回 null
+     */
+    static LogLineIndex load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                return null;
+            }
+            int stride = buffer.getInt();
+            long scannedSize = buffer.getLong();
+            long completeLines = buffer.getLong();
+            long completeEnd = buffer.getLong();
+            int count = buffer.getInt();
+            long[] checkpoints = new long[count];
+            for (int i = 0; i < count; i++) {
+                checkpoints[i] = buffer.getLong();
+            }
+            return new LogLineIndex(stride, scannedSize, completeLines, completeEnd, checkpoints, count);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    void save(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_BYTES + 8 * checkpointCount).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).putInt(stride).putLong(scannedSize).putLong(completeLines).putLong(completeEnd)
+                .putInt(checkpointCount);
+        for (int i = 0; i < checkpointCount; i++) {
+            buffer.putLong(checkpoints[i]);
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.crypto.service.report;
+
+import com.example.crypto.dto.ReportColumn;
+import com.example.crypto.enums.ReportColumnType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 以 mmap 只读打开的报告表文件（格式见 {@link ReportTableWriter}）
+ * 只按需解码请求的行和列；排序顺序按 (列, 方向) 计算一次后缓存。
+ */
+final class ReportTable {
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final List<ReportColumn> columns;
+    private final long[] offsets;
+    // STRING 列：字典大小、字典结束位置表、字典字节、编号的起始位置
+    private final int[] dictionarySizes;
+    private final long[] dictionaryEnds;
+    private final long[] dictionaryBytes;
+    private final long[] codeOffsets;
+    private final Map<String, int[]> orders = new ConcurrentHashMap<>();
+
+    private ReportTable(MappedByteBuffer buffer, int rows, List<ReportColumn> columns, long[] offsets) {
+        this.buffer = buffer;
+        this.rows = rows;
+        this.columns = columns;
+        this.offsets = offsets;
+        int n = columns.size();
+        this.dictionarySizes = new int[n];
+        this.dictionaryEnds = new long[n];
+        this.dictionaryBytes = new long[n];
+        this.codeOffsets = new long[n];
+        for (int i = 0; i < n; i++) {
+            if (columns.get(i).type() == ReportColumnType.STRING) {
+                int size = buffer.getInt(Math.toIntExact(offsets[i]));
+                dictionarySizes[i] = size;
+                dictionaryEnds[i] = offsets[i] + 4;
+                dictionaryBytes[i] = dictionaryEnds[i] + 4L * (size + 1);
+                int byteLength = buffer.getInt(Math.toIntExact(dictionaryEnds[i] + 4L * size));
+                codeOffsets[i] = offsets[i] + ReportTableWriter.align(dictionaryBytes[i] + byteLength - offsets[i]);
+            }
+        }
+    }
+
+    static ReportTable open(Path file, ObjectMapper objectMapper) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Report table too large: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[ReportTableWriter.MAGIC.length];
+            buffer.get(0, magic);
+            if (!Arrays.equals(magic, ReportTableWriter.MAGIC)) {
+                throw new IOException("Not a report table file: " + file);
+            }
+            int headerLength = Math.toIntExact(buffer.getLong(8));
+            long dataOffset = buffer.getLong(16);
+            byte[] headerBytes = new byte[headerLength];
+            buffer.get(ReportTableWriter.PREAMBLE_BYTES, headerBytes);
+            JsonNode header = objectMapper.readTree(headerBytes);
+            if (!ReportTableWriter.FORMAT.equals(header.path("format").asText())) {
+                throw new IOException("Unsupported report table format: " + header.path("format").asText());
+            }
+            List<ReportColumn> columns = new ArrayList<>();
+            long[] offsets = new long[header.path("columns").size()];
+            int i = 0;
+            for (JsonNode column : header.path("columns")) {
+                columns.add(new ReportColumn(column.path("name").asText(),
+                        ReportColumnType.valueOf(column.path("type").asText())));
+                offsets[i++] = dataOffset + column.path("offset").asLong();
+            }
+            return new ReportTable(buffer, header.path("rows").asInt(), List.copyOf(columns), offsets);
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    List<ReportColumn> columns() {
+        return columns;
+    }
+
+    /**
+     * @return 没有该列时返回 -1
+     */
+    int columnIndex(String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * FLOAT64 的空值（NaN）返回 null
+     */
+    Object value(int column, int row) {
+        return switch (columns.get(column).type()) {
+            case INT64 -> buffer.getLong(Math.toIntExact(offsets[column] + 8L * row));
+            case FLOAT64 -> {
+                double value = doubleAt(column, row);
+                yield Double.isNaN(value) ? null : value;
+            }
+            case STRING -> dictionaryValue(column, code(column, row));
+        };
+    }
+
+    /**
+     * 第 i 个位置对应的行号（未指定排序列时为原始顺序）
+     * 排序稳定；空值（NaN、空字符串）无论升序降序都排在最后
+     */
+    int[] order(int column, boolean descending) {
+        return orders.computeIfAbsent(column + (descending ? ":desc" : ":asc"), key -> sort(column, descending));
+    }
+
+    private int[] sort(int column, boolean descending) {
+        Integer[] index = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            index[i] = i;
+        }
+        Comparator<Integer> comparator = switch (columns.get(column).type()) {
+            case INT64 -> Comparator.comparingLong(row -> buffer.getLong(Math.toIntExact(offsets[column] + 8L * row)));
+            case FLOAT64 -> Comparator.comparingDouble(row -> doubleAt(column, row));
+            case STRING -> {
+                int[] ranks = dictionaryRanks(column);
+                yield Comparator.comparingInt(row -> ranks[code(column, row)]);
+            }
+        };
+        if (descending) {
+            comparator = comparator.reversed();
+        }
+        Comparator<Integer> ordered = comparator;
+        Arrays.sort(index, (a, b) -> {
+            boolean aEmpty = isEmpty(column, a);
+            boolean bEmpty = isEmpty(column, b);
+            if (aEmpty || bEmpty) {
+                return Boolean.compare(aEmpty, bEmpty);
+            }
+            return ordered.compare(a, b);
+        });
+        int[] result = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            result[i] = index[i];
+        }
+        return result;
+    }
+
+    private boolean isEmpty(int column, int row) {
+        return switch (columns.get(column).type()) {
+            case INT64 -> false;
+            case FLOAT64 -> Double.isNaN(doubleAt(column, row));
+            case STRING -> dictionaryLength(column, code(column, row)) == 0;
+        };
+    }
+
+    /**
+     * 字典按字符串排序后每个编号的名次，排序时只比较名次
+     */
+    private int[] dictionaryRanks(int column) {
+        int size = dictionarySizes[column];
+        String[] values = new String[size];
+        Integer[] codes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = dictionaryValue(column, i);
+            codes[i] = i;
+        }
+        Arrays.sort(codes, Comparator.comparing(code -> values[code]));
+        int[] ranks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            ranks[codes[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    private double doubleAt(int column, int row) {
+        return buffer.getDouble(Math.toIntExact(offsets[column] + 8L * row));
+    }
+
+    private int code(int column, int row) {
+        return buffer.getInt(Math.toIntExact(codeOffsets[column] + 4L * row));
+    }
+
+    private int dictionaryLength(int column, int code) {
+        int start = buffer.getInt(Math.toIntExact(dictionaryEnds[column] + 4L * code));
+        int end = buffer.getInt(Math.toIntExact(dictionaryEnds[column] + 4L * (code + 1)));
+        return end - start;
+    }
+
+    private String dictionaryValue(int column, int code) {
+        int start = buffer.getInt(Math.toIntExact(dictionaryEnds[column] + 4L * code));
+        int end = buffer.getInt(Math.toIntExact(dictionaryEnds[column] + 4L * (code + 1)));
+        byte[] bytes = new byte[end - start];
+        buffer.get(Math.toIntExact(dictionaryBytes[column] + start), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
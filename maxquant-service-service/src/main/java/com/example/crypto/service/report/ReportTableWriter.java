@@ -0,0 +1,310 @@
+package com.example.crypto.service.report;
+
+import com.example.crypto.enums.ReportColumnType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 把 runner 输出的报告 CSV 转换为列式二进制表文件（只在回测结束时执行一次）
+ * 文件布局（小端）：
+ * <pre>
+ *   0  magic "MQRTBL1\n"
+ *   8  int64 头部 JSON 长度
+ *   16 int64 数据区起始位置（8 字节对齐）
+ *   24 头部 JSON：rows 以及每列的 name、type、相对数据区的 offset
+ *   数据区：
+ *     INT64   int64[rows]
+ *     FLOAT64 float64[rows]，空值为 NaN
+ *     STRING  int32 字典大小 n、int32[n + 1] 字符串结束位置、UTF-8 字节、（对齐后）int32[rows] 字典编号
+ * </pre>
+ * 第一遍扫描确定各列类型，第二遍写入。
+ */
+final class ReportTableWriter {
+    static final byte[] MAGIC = "MQRTBL1\n".getBytes(StandardCharsets.US_ASCII);
+    static final String FORMAT = "mqrt-v1";
+    static final int PREAMBLE_BYTES = 24;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final Pattern INTEGER = Pattern.compile("-?(0|[1-9][0-9]{0,17})");
+    private static final Pattern DECIMAL = Pattern.compile("[-+]?([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][-+]?[0-9]+)?");
+    // "007" 之类的编号按字符串保存，避免丢失前导零
+    private static final Pattern LEADING_ZERO = Pattern.compile("[-+]?0[0-9].*");
+
+    private ReportTableWriter() {
+    }
+
+    static void write(Path csv, Path target, ObjectMapper objectMapper) throws IOException {
+        String[] headers;
+        ReportColumnType[] types;
+        int rows = 0;
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(csv, StandardCharsets.UTF_8))) {
+            headers = reader.readNext();
+            if (headers == null) {
+                headers = new String[0];
+            } else if (headers.length > 0 && headers[0].startsWith("\uFEFF")) {
+                headers[0] = headers[0].substring(1);
+            }
+            boolean[] integer = new boolean[headers.length];
+            boolean[] numeric = new boolean[headers.length];
+            boolean[] present = new boolean[headers.length];
+            Arrays.fill(integer, true);
+            Arrays.fill(numeric, true);
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                rows++;
+                for (int i = 0; i < headers.length; i++) {
+                    String value = i < row.length ? row[i] : "";
+                    if (value.isEmpty()) {
+                        integer[i] = false;
+                        continue;
+                    }
+                    present[i] = true;
+                    if (integer[i] && !INTEGER.matcher(value).matches()) {
+                        integer[i] = false;
+                    }
+                    if (numeric[i] && !integer[i] && !isDecimal(value)) {
+                        numeric[i] = false;
+                    }
+                }
+            }
+            types = new ReportColumnType[headers.length];
+            for (int i = 0; i < headers.length; i++) {
+                types[i] = !present[i] || !numeric[i] ? ReportColumnType.STRING
+                        : integer[i] ? ReportColumnType.INT64 : ReportColumnType.FLOAT64;
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Error parsing CSV file", e);
+        }
+
+        List<ColumnData> columns = new ArrayList<>();
+        for (int i = 0; i < headers.length; i++) {
+            columns.add(new ColumnData(headers[i], types[i], rows));
+        }
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(csv, StandardCharsets.UTF_8))) {
+            reader.readNext();
+            String[] row;
+            int index = 0;
+            while (index < rows && (row = reader.readNext()) != null) {
+                for (int i = 0; i < headers.length; i++) {
+                    columns.get(i).set(index, i < row.length ? row[i] : "");
+                }
+                index++;
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Error parsing CSV file", e);
+        }
+
+        List<Map<String, Object>> columnHeaders = new ArrayList<>();
+        long offset = 0;
+        for (ColumnData column : columns) {
+            offset = align(offset);
+            column.offset = offset;
+            offset += column.bytes();
+            Map<String, Object> columnHeader = new LinkedHashMap<>();
+            columnHeader.put("name", column.name);
+            columnHeader.put("type", column.type);
+            columnHeader.put("offset", column.offset);
+            columnHeaders.add(columnHeader);
+        }
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("format", FORMAT);
+        header.put("rows", rows);
+        header.put("columns", columnHeaders);
+        byte[] headerBytes = objectMapper.writeValueAsBytes(header);
+        long dataOffset = align(PREAMBLE_BYTES + headerBytes.length);
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putLong(headerBytes.length).putLong(dataOffset);
+            Sink sink = new Sink(out, buffer);
+            sink.put(headerBytes);
+            for (ColumnData column : columns) {
+                sink.padTo(dataOffset + column.offset);
+                column.writeTo(sink);
+            }
+            sink.flush();
+        }
+    }
+
+    /**
+     * 数值列允许 inf / nan（pandas 输出），其余按十进制格式判断
+     */
+    private static boolean isDecimal(String value) {
+        String lower = value.toLowerCase();
+        if (LEADING_ZERO.matcher(value).matches()) {
+            return false;
+        }
+        return DECIMAL.matcher(value).matches() || "nan".equals(lower) || "inf".equals(lower) || "-inf".equals(lower);
+    }
+
+    private static double parseDecimal(String value) {
+        if (value.isEmpty()) {
+            return Double.NaN;
+        }
+        return switch (value.toLowerCase()) {
+            case "nan" -> Double.NaN;
+            case "inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(value);
+        };
+    }
+
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static final class ColumnData {
+        final String name;
+        final ReportColumnType type;
+        final long[] longs;
+        final double[] doubles;
+        final int[] codes;
+        final Map<String, Integer> dictionary;
+        final List<byte[]> values;
+        long valueBytes;
+        long offset;
+
+        ColumnData(String name, ReportColumnType type, int rows) {
+            this.name = name;
+            this.type = type;
+            this.longs = type == ReportColumnType.INT64 ? new long[rows] : null;
+            this.doubles = type == ReportColumnType.FLOAT64 ? new double[rows] : null;
+            this.codes = type == ReportColumnType.STRING ? new int[rows] : null;
+            this.dictionary = type == ReportColumnType.STRING ? new HashMap<>() : null;
+            this.values = type == ReportColumnType.STRING ? new ArrayList<>() : null;
+        }
+
+        void set(int row, String value) {
+            switch (type) {
+                case INT64 -> longs[row] = Long.parseLong(value);
+                case FLOAT64 -> doubles[row] = parseDecimal(value);
+                case STRING -> codes[row] = dictionary.computeIfAbsent(value, v -> {
+                    byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                    values.add(bytes);
+                    valueBytes += bytes.length;
+                    return values.size() - 1;
+                });
+            }
+        }
+
+        long bytes() {
+            if (type != ReportColumnType.STRING) {
+                return 8L * (longs != null ? longs.length : doubles.length);
+            }
+            return align(4L + 4L * (values.size() + 1) + valueBytes) + 4L * codes.length;
+        }
+
+        void writeTo(Sink sink) throws IOException {
+            switch (type) {
+                case INT64 -> {
+                    for (long value : longs) {
+                        sink.putLong(value);
+                    }
+                }
+                case FLOAT64 -> {
+                    for (double value : doubles) {
+                        sink.putDouble(value);
+                    }
+                }
+                case STRING -> {
+                    long start = sink.position();
+                    sink.putInt(values.size());
+                    int end = 0;
+                    sink.putInt(0);
+                    for (byte[] value : values) {
+                        end += value.length;
+                        sink.putInt(end);
+                    }
+                    for (byte[] value : values) {
+                        sink.put(value);
+                    }
+                    sink.padTo(align(sink.position() - start) + start);
+                    for (int code : codes) {
+                        sink.putInt(code);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 带缓冲的顺序写入
+     */
+    private static final class Sink {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        Sink(FileChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        long position() {
+            return written + buffer.position();
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        void padTo(long position) throws IOException {
+            while (position() < position) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 聚合方差法
+ * 把价差增量按块长 m 求块均值，块均值的方差与 m^(2H-2) 成正比，
+ * 由 log Var 对 log m 的斜率 β 得到 H = 1 + β / 2。每个块长 O(n)。
+ */
+final class AggregatedVarianceHurstEstimator implements HurstEstimator {
+    private static final int MIN_BLOCK = 2;
+    // 每个块长至少要有这么多块，方差估计才有意义
+    private static final int MIN_BLOCKS = 10;
+
+    @Override
+    public double estimate(double[] spread, int n, double[] scratch) {
+        int len = n - 1;
+        if (len < MIN_BLOCK * MIN_BLOCKS * 4) {
+            return Double.NaN;
+        }
+        double[] increments = scratch;
+        for (int i = 0; i < len; i++) {
+            increments[i] = spread[i + 1] - spread[i];
+        }
+        LogLogRegression regression = new LogLogRegression();
+        for (int m = MIN_BLOCK; m <= len / MIN_BLOCKS; m = LogLogRegression.nextScale(m)) {
+            int blocks = len / m;
+            // 只统计完整的块，均值用这些块自身的均值
+            double blockTotal = 0;
+            double sumSquares = 0;
+            for (int b = 0; b < blocks; b++) {
+                int offset = b * m;
+                double sum = 0;
+                for (int i = 0; i < m; i++) {
+                    sum += increments[offset + i];
+                }
+                double blockMean = sum / m;
+                blockTotal += blockMean;
+                sumSquares += blockMean * blockMean;
+            }
+            double mean = blockTotal / blocks;
+            double variance = (sumSquares - blocks * mean * mean) / (blocks - 1);
+            regression.add(m, variance);
+        }
+        double beta = regression.slope();
+        return LogLogRegression.clamp(1.0 + beta / 2.0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.crypto.service.statarb;
+
+import java.util.Arrays;
+
+/**
+ * 单个合约在滚动窗口内的收盘价环形缓冲区，同一 (exchange, timeframe) 下每个合约只保存一份，
+ * 所有包含该合约的合约对都按时间槽（timestamp / timeframe）读取这里的数据。
+ * 槽位 slot 存放在 slot mod capacity 处；写入新槽位之前，调用方必须先把将被覆盖的点移出相关的合约对窗口。
+ * 非线程安全，由调用方加锁。
+ */
+final class CloseRing {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long timeframeMs;
+    private final long[] timestamps;
+    private final double[] closes;
+    private long latest = EMPTY;
+
+    CloseRing(int capacity, long timeframeMs) {
+        this.timeframeMs = timeframeMs;
+        this.timestamps = new long[capacity];
+        this.closes = new double[capacity];
+        Arrays.fill(timestamps, EMPTY);
+    }
+
+    int capacity() {
+        return timestamps.length;
+    }
+
+    long slot(long timestamp) {
+        return Math.floorDiv(timestamp, timeframeMs);
+    }
+
+    /**
+     * 最新K线的时间戳，没有数据时为 Long.MIN_VALUE
+     */
+    long latest() {
+        return latest;
+    }
+
+    /**
+     * 槽位当前保存的时间戳；该位置为空或保存的是其他槽位（更旧或更新）时返回 Long.MIN_VALUE
+     */
+    long timestampAt(long slot) {
+        long timestamp = timestamps[position(slot)];
+        return timestamp != EMPTY && slot(timestamp) == slot ? timestamp : EMPTY;
+    }
+
+    double closeAt(long slot) {
+        return closes[position(slot)];
+    }
+
+    void put(long timestamp, double close) {
+        int position = position(slot(timestamp));
+        timestamps[position] = timestamp;
+        closes[position] = close;
+        latest = Math.max(latest, timestamp);
+    }
+
+    /**
+     * 加载历史数据：该位置已有相同或更新的K线（加载期间推送来的）时保留已有数据
+     */
+    void seed(long timestamp, double close) {
+        int position = position(slot(timestamp));
+        if (timestamps[position] != EMPTY && timestamps[position] >= timestamp) {
+            return;
+        }
+        timestamps[position] = timestamp;
+        closes[position] = close;
+        latest = Math.max(latest, timestamp);
+    }
+
+    private int position(long slot) {
+        return (int) Math.floorMod(slot, (long) timestamps.length);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 单个合约的收盘价序列，按时间戳升序存放在原始类型数组中
+ */
+public final class CloseSeries {
+    private final String symbol;
+    private final long[] timestamps;
+    private final double[] closes;
+    private final int length;
+
+    public CloseSeries(String symbol, long[] timestamps, double[] closes, int length) {
+        this.symbol = symbol;
+        this.timestamps = timestamps;
+        this.closes = closes;
+        this.length = length;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getCloses() {
+        return closes;
+    }
+
+    public int length() {
+        return length;
+    }
+}
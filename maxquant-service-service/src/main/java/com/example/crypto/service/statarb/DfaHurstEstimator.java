@@ -0,0 +1,44 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 去趋势波动分析（DFA-1）
+ * 价差水平序列本身就是增量的累积和（profile），按窗口长度 s 切成不重叠的窗口，
+ * 每个窗口减去最小二乘直线后求均方残差，F(s) = sqrt(平均均方残差)，log F(s) 对 log s 的斜率即 Hurst 指数。
+ * 窗口内的横坐标固定为 0..s-1，其和与平方和用闭式计算，每个尺度 O(n)。
+ */
+final class DfaHurstEstimator implements HurstEstimator {
+    private static final int MIN_WINDOW = 8;
+
+    @Override
+    public double estimate(double[] spread, int n, double[] scratch) {
+        if (n < MIN_WINDOW * 4) {
+            return Double.NaN;
+        }
+        LogLogRegression regression = new LogLogRegression();
+        for (int s = MIN_WINDOW; s <= n / 4; s = LogLogRegression.nextScale(s)) {
+            int windows = n / s;
+            // x = 0..s-1 的均值与离差平方和
+            double meanX = (s - 1) / 2.0;
+            double sxx = s * ((double) s * s - 1) / 12.0;
+            double fluctuation = 0;
+            for (int w = 0; w < windows; w++) {
+                int offset = w * s;
+                double sumY = 0, sumXY = 0, sumYY = 0;
+                for (int i = 0; i < s; i++) {
+                    double y = spread[offset + i];
+                    sumY += y;
+                    sumXY += i * y;
+                    sumYY += y * y;
+                }
+                double meanY = sumY / s;
+                double syy = sumYY - s * meanY * meanY;
+                double sxy = sumXY - s * meanX * meanY;
+                // 线性拟合后的残差平方和 = Syy - Sxy² / Sxx
+                double residual = Math.max(0.0, syy - sxy * sxy / sxx);
+                fluctuation += residual / s;
+            }
+            regression.add(s, Math.sqrt(fluctuation / windows));
+        }
+        return LogLogRegression.clamp(regression.slope());
+    }
+}
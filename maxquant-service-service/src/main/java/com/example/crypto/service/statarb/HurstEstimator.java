@@ -0,0 +1,15 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * Hurst 指数估计器
+ * 输入为价差水平序列（前 n 个元素有效），估计其增量过程的 Hurst 指数：
+ * 随机游走约为 0.5，均值回复小于 0.5，趋势性大于 0.5。
+ * 实现必须无状态、线程安全，中间结果只能写入 scratch。
+ */
+public interface HurstEstimator {
+    /**
+     * @param scratch 长度至少为 n 的缓冲区
+     * @return Hurst 指数，截断到 [0, 1]；数据不足时返回 NaN
+     */
+    double estimate(double[] spread, int n, double[] scratch);
+}
@@ -0,0 +1,29 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 可选的 Hurst 指数估计方法（可通过 /hurst-exponent?method= 和 statarb.hurst.method 选择）
+ */
+public enum HurstMethod {
+    /**
+     * 对数间隔窗口上的经典 R/S 分析，O(n log n)
+     */
+    RS(new RescaledRangeHurstEstimator()),
+    /**
+     * 去趋势波动分析（DFA-1），O(n log n)
+     */
+    DFA(new DfaHurstEstimator()),
+    /**
+     * 聚合方差法，O(n log n)
+     */
+    AGGREGATED_VARIANCE(new AggregatedVarianceHurstEstimator());
+
+    private final HurstEstimator estimator;
+
+    HurstMethod(HurstEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    public HurstEstimator estimator() {
+        return estimator;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 双对数坐标下的一元最小二乘，逐点累加，不保存样本
+ */
+final class LogLogRegression {
+    // 对数间隔的尺度：每个倍频程取 4 个
+    private static final double SCALE_FACTOR = Math.pow(2.0, 0.25);
+
+    private int count;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+
+    /**
+     * 加入点 (log(scale), log(value))，value 非正或非有限时忽略
+     */
+    void add(double scale, double value) {
+        if (!(value > 0) || Double.isInfinite(value)) {
+            return;
+        }
+        double x = Math.log(scale);
+        double y = Math.log(value);
+        count++;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+    }
+
+    /**
+     * 斜率，有效点少于 3 个时返回 NaN
+     */
+    double slope() {
+        double denominator = count * sumXX - sumX * sumX;
+        if (count < 3 || denominator == 0) {
+            return Double.NaN;
+        }
+        return (count * sumXY - sumX * sumY) / denominator;
+    }
+
+    /**
+     * 对数间隔的下一个尺度，至少比当前大 1
+     */
+    static int nextScale(int scale) {
+        return Math.max(scale + 1, (int) Math.floor(scale * SCALE_FACTOR));
+    }
+
+    static double clamp(double hurst) {
+        return Double.isNaN(hurst) ? hurst : Math.max(0.0, Math.min(1.0, hurst));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.crypto.service.statarb;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 合约对筛选条件：需要返回的统计量，以及各统计量的取值范围（开区间，null 表示不限制）
+ * 设置了范围的统计量即使未在 stats 中列出也会参与计算；值为 NaN 的合约对不满足任何范围条件
+ */
+public record PairScreenCriteria(Set<Stat> stats,
+                                 Double adfMin, Double adfMax,
+                                 Double kpssMin, Double kpssMax,
+                                 Double hurstMin, Double hurstMax) {
+
+    public enum Stat {
+        ADF, KPSS, HURST
+    }
+
+    /**
+     * @param statNames 统计量名称（不区分大小写），为空时返回全部统计量
+     * @throws IllegalArgumentException 名称不支持时
+     */
+    public static PairScreenCriteria of(List<String> statNames,
+                                        Double adfMin, Double adfMax,
+                                        Double kpssMin, Double kpssMax,
+                                        Double hurstMin, Double hurstMax) {
+        Set<Stat> stats = EnumSet.noneOf(Stat.class);
+        if (statNames != null) {
+            for (String name : statNames) {
+                if (name != null && !name.trim().isEmpty()) {
+                    stats.add(Stat.valueOf(name.trim().toUpperCase()));
+                }
+            }
+        }
+        if (stats.isEmpty()) {
+            stats = EnumSet.allOf(Stat.class);
+        }
+        if (adfMin != null || adfMax != null) {
+            stats.add(Stat.ADF);
+        }
+        if (kpssMin != null || kpssMax != null) {
+            stats.add(Stat.KPSS);
+        }
+        if (hurstMin != null || hurstMax != null) {
+            stats.add(Stat.HURST);
+        }
+        return new PairScreenCriteria(stats, adfMin, adfMax, kpssMin, kpssMax, hurstMin, hurstMax);
+    }
+
+    public boolean includes(Stat stat) {
+        return stats.contains(stat);
+    }
+
+    public boolean matches(PairStatResult result) {
+        return within(result.adfValue(), adfMin, adfMax)
+                && within(result.kpssValue(), kpssMin, kpssMax)
+                && within(result.hurstValue(), hurstMin, hurstMax);
+    }
+
+    private static boolean within(double value, Double min, Double max) {
+        if (min != null && !(value > min)) {
+            return false;
+        }
+        return max == null || value < max;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.crypto.service.statarb;
+
+import com.example.crypto.dao.KlineDataRepository;
+import com.example.crypto.entity.KlineData;
+import com.example.crypto.service.kline.KlineColumnCache;
+import com.example.crypto.service.kline.KlineSlice;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 合约对统计量并行计算引擎
+ * 每个合约的收盘价只加载一次，合约对网格切分后交给 ForkJoinPool 并行计算；
+ * 每个工作线程持有一组可复用的对齐缓冲区（SeriesAligner 写入），ADF / KPSS / Hurst 共用同一份对齐结果。
+ */
+@Component
+public class PairScreeningEngine {
+    private static final Logger logger = LoggerFactory.getLogger(PairScreeningEngine.class);
+    // 每个叶子任务处理的合约对数量
+    private static final int PAIRS_PER_TASK = 16;
+
+    private final KlineDataRepository klineDataRepository;
+    private final KlineColumnCache klineColumnCache;
+
+    @Value("${statarb.parallelism:0}")
+    private int parallelism;
+
+    @Value("${statarb.lookback-days:30}")
+    private int lookbackDays;
+
+    // 默认按时间戳精确内连接；FORWARD_FILL 适用于成交稀疏、K线不连续的合约
+    @Value("${statarb.align.mode:INNER}")
+    private SeriesAligner.JoinMode alignMode;
+
+    @Value("${statarb.align.gap-tolerance-ms:0}")
+    private long alignGapToleranceMs;
+
+    @Value("${statarb.hurst.method:RS}")
+    private HurstMethod defaultHurstMethod;
+
+    private ForkJoinPool pool;
+    private final ThreadLocal<PairWorkspace> workspaces = ThreadLocal.withInitial(PairWorkspace::new);
+
+    public PairScreeningEngine(KlineDataRepository klineDataRepository, KlineColumnCache klineColumnCache) {
+        this.klineDataRepository = klineDataRepository;
+        this.klineColumnCache = klineColumnCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public HurstMethod getDefaultHurstMethod() {
+        return defaultHurstMethod;
+    }
+
+    long lookbackMillis() {
+        return lookbackDays * 24L * 60 * 60 * 1000;
+    }
+
+    /**
+     * 滚动窗口只支持按时间戳精确内连接
+     */
+    boolean isExactInnerJoin() {
+        return alignMode == SeriesAligner.JoinMode.INNER && alignGapToleranceMs == 0;
+    }
+
+    /**
+     * 计算全部合约对 (i < j) 的 ADF、KPSS、Hurst，时间范围为最近 lookbackDays 天
+     * 结果顺序与原先的双重循环一致
+     */
+    public List<PairStatResult> screen(List<String> symbols, String timeframe, String exchange) {
+        return screen(symbols, timeframe, exchange, defaultHurstMethod, false);
+    }
+
+    /**
+     * 只用指定方法计算 Hurst 指数，结果中的 ADF / KPSS 为 NaN
+     */
+    public List<PairStatResult> screenHurst(List<String> symbols, String timeframe, String exchange, HurstMethod hurstMethod) {
+        return screen(symbols, timeframe, exchange, hurstMethod, true);
+    }
+
+    private List<PairStatResult> screen(List<String> symbols, String timeframe, String exchange,
+                                        HurstMethod hurstMethod, boolean hurstOnly) {
+        long endTime = System.currentTimeMillis();
+        long startTime = endTime - lookbackMillis();
+        long start = System.nanoTime();
+
+        CloseSeries[] series = new CloseSeries[symbols.size()];
+        int maxLength = 0;
+        for (int i = 0; i < series.length; i++) {
+            series[i] = loadCloseSeries(symbols.get(i), timeframe, exchange, startTime, endTime);
+            maxLength = Math.max(maxLength, series[i].length());
+        }
+        long loadedAt = System.nanoTime();
+
+        int pairCount = series.length * (series.length - 1) / 2;
+        int[] firsts = new int[pairCount];
+        int[] seconds = new int[pairCount];
+        int k = 0;
+        for (int i = 0; i < series.length; i++) {
+            for (int j = i + 1; j < series.length; j++) {
+                firsts[k] = i;
+                seconds[k] = j;
+                k++;
+            }
+        }
+        PairStatResult[] results = new PairStatResult[pairCount];
+        int capacity = SeriesAligner.requiredCapacity(alignMode, maxLength, maxLength);
+        if (pairCount > 0) {
+            PairJob job = new PairJob(series, firsts, seconds, results, capacity, hurstMethod.estimator(), hurstOnly);
+            pool.invoke(new PairRangeTask(job, 0, pairCount));
+        }
+
+        logger.info("合约对统计量计算完成: timeframe={}, exchange={}, hurst={}, 合约数={}, 合约对数={}, 加载耗时={}ms, 计算耗时={}ms",
+                timeframe, exchange, hurstMethod, series.length, pairCount,
+                (loadedAt - start) / 1_000_000, (System.nanoTime() - loadedAt) / 1_000_000);
+        return List.of(results);
+    }
+
+    /**
+     * 加载单个合约的收盘价序列，优先读K线缓存
+     */
+    CloseSeries loadCloseSeries(String symbol, String timeframe, String exchange, long startTime, long endTime) {
+        KlineSlice slice = klineColumnCache.find(exchange, symbol, timeframe, startTime, endTime);
+        if (slice != null) {
+            long[] timestamps = new long[slice.size()];
+            double[] closes = new double[slice.size()];
+            int n = 0;
+            for (int i = 0; i < slice.size(); i++) {
+                if (!Double.isNaN(slice.close(i))) {
+                    timestamps[n] = slice.timestamp(i);
+                    closes[n] = slice.close(i);
+                    n++;
+                }
+            }
+            return new CloseSeries(symbol, timestamps, closes, n);
+        }
+        List<KlineData> bars = new ArrayList<>(klineDataRepository.findBySymbolAndTimeframeAndTimestampBetweenAndExchange(
+                symbol, timeframe, startTime, endTime, exchange));
+        bars.sort(Comparator.comparingLong(KlineData::getTimestamp));
+        long[] timestamps = new long[bars.size()];
+        double[] closes = new double[bars.size()];
+        int n = 0;
+        for (KlineData bar : bars) {
+            if (bar.getClosePrice() != null) {
+                timestamps[n] = bar.getTimestamp();
+                closes[n] = bar.getClosePrice();
+                n++;
+            }
+        }
+        if (n == 0) {
+            logger.warn("数据不足，跳过该合约的统计量计算: symbol={}, timeframe={}, exchange={}", symbol, timeframe, exchange);
+        }
+        return new CloseSeries(symbol, timestamps, closes, n);
+    }
+
+    private PairStatResult computePair(CloseSeries s1, CloseSeries s2, PairJob job, PairWorkspace ws) {
+        if (s1.length() == 0 || s2.length() == 0) {
+            return new PairStatResult(s1.getSymbol(), s2.getSymbol(), 0, 0.0, Double.NaN, 0.0);
+        }
+        int n = SeriesAligner.align(s1.getTimestamps(), s1.getCloses(), s1.length(),
+                s2.getTimestamps(), s2.getCloses(), s2.length(),
+                alignMode, alignGapToleranceMs, null, ws.p1, ws.p2);
+        double hurst = PairStatistics.hurst(ws.p1, ws.p2, n, job.hurstEstimator(), ws.spread, ws.scratch);
+        if (job.hurstOnly()) {
+            return new PairStatResult(s1.getSymbol(), s2.getSymbol(), n, Double.NaN, Double.NaN, hurst);
+        }
+        double adf = PairStatistics.adf(ws.p1, ws.p2, n, ws.scratch);
+        double kpss = PairStatistics.kpss(ws.p1, ws.p2, n, ws.scratch);
+        return new PairStatResult(s1.getSymbol(), s2.getSymbol(), n, adf, kpss, hurst);
+    }
+
+    /**
+     * 线程私有的对齐缓冲区，按需扩容后反复使用
+     */
+    private static final class PairWorkspace {
+        double[] p1 = new double[0];
+        double[] p2 = new double[0];
+        double[] spread = new double[0];
+        double[] scratch = new double[0];
+
+        void ensureCapacity(int capacity) {
+            if (p1.length < capacity) {
+                p1 = new double[capacity];
+                p2 = new double[capacity];
+                spread = new double[capacity];
+                scratch = new double[capacity];
+            }
+        }
+    }
+
+    /**
+     * 一次计算任务的共享输入与输出
+     */
+    private record PairJob(CloseSeries[] series, int[] firsts, int[] seconds, PairStatResult[] results,
+                           int capacity, HurstEstimator hurstEstimator, boolean hurstOnly) {}
+
+    private final class PairRangeTask extends RecursiveAction {
+        private final PairJob job;
+        private final int from;
+        private final int to;
+
+        PairRangeTask(PairJob job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAIRS_PER_TASK) {
+                PairWorkspace ws = workspaces.get();
+                ws.ensureCapacity(job.capacity());
+                for (int k = from; k < to; k++) {
+                    CloseSeries s1 = job.series()[job.firsts()[k]];
+                    CloseSeries s2 = job.series()[job.seconds()[k]];
+                    try {
+                        job.results()[k] = computePair(s1, s2, job, ws);
+                    } catch (RuntimeException e) {
+                        logger.error("合约对统计量计算失败: pair={} - {}, error={}", s1.getSymbol(), s2.getSymbol(), e.getMessage());
+                        job.results()[k] = new PairStatResult(s1.getSymbol(), s2.getSymbol(), 0, Double.NaN, Double.NaN, Double.NaN);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PairRangeTask(job, from, mid), new PairRangeTask(job, mid, to));
+        }
+    }
+}
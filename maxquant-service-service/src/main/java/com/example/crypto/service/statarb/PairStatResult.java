@@ -0,0 +1,10 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 一个合约对的统计结果，length 为时间对齐后的样本数
+ */
+public record PairStatResult(String symbol1, String symbol2, int length, double adfValue, double kpssValue, double hurstValue) {
+    public String pair() {
+        return symbol1 + " - " + symbol2;
+    }
+}
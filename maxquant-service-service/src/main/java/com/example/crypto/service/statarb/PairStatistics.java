@@ -0,0 +1,169 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 合约对统计量计算
+ * 输入为已按时间对齐的两条价格序列（前 n 个元素有效），中间结果写入调用方提供的缓冲区，不产生额外分配。
+ * 回归统一使用带截距的一元最小二乘闭式解，与原先 OLSMultipleLinearRegression 的结果一致。
+ */
+public final class PairStatistics {
+
+    private PairStatistics() {
+    }
+
+    /**
+     * Engle-Granger 两步法 ADF 统计量
+     * 先用 p1 对 p2 回归得到残差，再用残差一阶差分对滞后残差回归，返回斜率的 t 值
+     * @param residuals 长度至少为 n 的缓冲区
+     */
+    public static double adf(double[] p1, double[] p2, int n, double[] residuals) {
+        if (n < 2) {
+            return 0.0;
+        }
+        // 第一步：p1 = a + b * p2
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanX += p2[i];
+            meanY += p1[i];
+        }
+        meanX /= n;
+        meanY /= n;
+        double sxx = 0, sxy = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = p2[i] - meanX;
+            sxx += dx * dx;
+            sxy += dx * (p1[i] - meanY);
+        }
+        if (sxx == 0) {
+            return Double.NaN;
+        }
+        double beta = sxy / sxx;
+        double alpha = meanY - beta * meanX;
+        for (int i = 0; i < n; i++) {
+            residuals[i] = p1[i] - alpha - beta * p2[i];
+        }
+
+        // 第二步：Δe_t = c + γ * e_{t-1}，m = n - 1 个样本
+        int m = n - 1;
+        if (m <= 2) {
+            return Double.NaN;
+        }
+        double meanLag = 0, meanDiff = 0;
+        for (int t = 1; t < n; t++) {
+            meanLag += residuals[t - 1];
+            meanDiff += residuals[t] - residuals[t - 1];
+        }
+        meanLag /= m;
+        meanDiff /= m;
+        double sLL = 0, sLD = 0;
+        for (int t = 1; t < n; t++) {
+            double dl = residuals[t - 1] - meanLag;
+            sLL += dl * dl;
+            sLD += dl * (residuals[t] - residuals[t - 1] - meanDiff);
+        }
+        if (sLL == 0) {
+            return Double.NaN;
+        }
+        double gamma = sLD / sLL;
+        double c = meanDiff - gamma * meanLag;
+        double ssr = 0;
+        for (int t = 1; t < n; t++) {
+            double e = residuals[t] - residuals[t - 1] - c - gamma * residuals[t - 1];
+            ssr += e * e;
+        }
+        double standardError = Math.sqrt(ssr / (m - 2) / sLL);
+        return gamma / standardError;
+    }
+
+    /**
+     * 价比价差 (p1 / p2 - 1) 的 KPSS 统计量，长期方差用 Newey-West 估计
+     * @param residuals 长度至少为 n 的缓冲区
+     */
+    public static double kpss(double[] p1, double[] p2, int n, double[] residuals) {
+        if (n < 20) { // 需要足够的数据点
+            return Double.NaN;
+        }
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            if (p2[i] == 0) {
+                return Double.NaN;
+            }
+            residuals[i] = p1[i] / p2[i] - 1;
+            mean += residuals[i];
+        }
+        mean /= n;
+        // 去均值后累加，分子为累积和的平方和
+        double cumulative = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < n; i++) {
+            residuals[i] -= mean;
+            cumulative += residuals[i];
+            sumOfSquares += cumulative * cumulative;
+        }
+        double longRunVariance = neweyWestVariance(residuals, n);
+        if (longRunVariance <= 0) {
+            // 退化为普通样本方差
+            longRunVariance = sampleVariance(residuals, n);
+            if (longRunVariance <= 0) {
+                return Double.NaN;
+            }
+        }
+        return (sumOfSquares / ((double) n * n)) / longRunVariance;
+    }
+
+    /**
+     * 价差 (p1 - p2) 的 Hurst 指数
+     * @param spread 长度至少为 n 的缓冲区，计算后保存价差序列
+     * @param scratch 长度至少为 n 的缓冲区
+     */
+    public static double hurst(double[] p1, double[] p2, int n, HurstEstimator estimator, double[] spread, double[] scratch) {
+        if (n < 2) {
+            return Double.NaN;
+        }
+        for (int i = 0; i < n; i++) {
+            spread[i] = p1[i] - p2[i];
+        }
+        return estimator.estimate(spread, n, scratch);
+    }
+
+    /**
+     * Newey-West 长期方差，序列需已去均值
+     * 滞后阶数取 floor(4 * (n/100)^(2/9))，Bartlett 权重
+     */
+    static double neweyWestVariance(double[] series, int n) {
+        int lag = (int) Math.floor(4 * Math.pow((double) n / 100.0, 2.0 / 9.0));
+        double longRunVariance = autocovariance(series, n, 0);
+        for (int j = 1; j <= lag && j < n; j++) {
+            double bartlettWeight = 1.0 - ((double) j / (lag + 1.0));
+            longRunVariance += 2 * bartlettWeight * autocovariance(series, n, j);
+        }
+        return longRunVariance;
+    }
+
+    /**
+     * 已去均值序列在给定滞后阶数下的自协方差
+     */
+    static double autocovariance(double[] series, int n, int lag) {
+        double sum = 0;
+        for (int t = lag; t < n; t++) {
+            sum += series[t] * series[t - lag];
+        }
+        return sum / n;
+    }
+
+    private static double sampleVariance(double[] series, int n) {
+        if (n < 2) {
+            return 0.0;
+        }
+        double mean = 0;
+        for (int i = 0; i < n; i++) {
+            mean += series[i];
+        }
+        mean /= n;
+        double ss = 0;
+        for (int i = 0; i < n; i++) {
+            double d = series[i] - mean;
+            ss += d * d;
+        }
+        return ss / (n - 1);
+    }
+}
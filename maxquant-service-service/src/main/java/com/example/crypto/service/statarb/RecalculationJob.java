@@ -0,0 +1,133 @@
+package com.example.crypto.service.statarb;
+
+import com.example.crypto.enums.RecalculationStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 统计套利指标重新计算任务
+ * 同一 (timeframe, exchange) 同时只有一个任务，重复提交的请求拿到的是同一个实例
+ */
+public class RecalculationJob {
+    private final String id = UUID.randomUUID().toString();
+    private final String timeframe;
+    private final String exchange;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final CompletableFuture<List<PairStatResult>> result = new CompletableFuture<>();
+    private volatile RecalculationStatus status = RecalculationStatus.PENDING;
+    private volatile String phase;
+    private volatile int pairsTotal;
+    private volatile int pairsWritten;
+    private volatile int attachedRequests;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String errorMessage;
+
+    public RecalculationJob(String timeframe, String exchange) {
+        this.timeframe = timeframe;
+        this.exchange = exchange;
+    }
+
+    /**
+     * 任务结束时完成；失败时以异常结束
+     */
+    public CompletableFuture<List<PairStatResult>> result() {
+        return result;
+    }
+
+    public boolean isFinished() {
+        return status == RecalculationStatus.COMPLETED || status == RecalculationStatus.FAILED;
+    }
+
+    public void start() {
+        startedAt = LocalDateTime.now();
+        status = RecalculationStatus.RUNNING;
+        phase = "computing";
+    }
+
+    public void writing(int total) {
+        pairsTotal = total;
+        phase = "writing";
+    }
+
+    public void written(int count) {
+        pairsWritten = count;
+    }
+
+    public void complete(List<PairStatResult> results) {
+        finishedAt = LocalDateTime.now();
+        phase = null;
+        status = RecalculationStatus.COMPLETED;
+        result.complete(results);
+    }
+
+    public void fail(Throwable e) {
+        finishedAt = LocalDateTime.now();
+        errorMessage = e.getMessage();
+        status = RecalculationStatus.FAILED;
+        result.completeExceptionally(e);
+    }
+
+    public synchronized void attach() {
+        attachedRequests++;
+    }
+
+    public double getProgress() {
+        if (status == RecalculationStatus.COMPLETED) {
+            return 1.0;
+        }
+        int total = pairsTotal;
+        return total > 0 ? (double) pairsWritten / total : 0.0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTimeframe() {
+        return timeframe;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public RecalculationStatus getStatus() {
+        return status;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public int getPairsTotal() {
+        return pairsTotal;
+    }
+
+    public int getPairsWritten() {
+        return pairsWritten;
+    }
+
+    public int getAttachedRequests() {
+        return attachedRequests;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
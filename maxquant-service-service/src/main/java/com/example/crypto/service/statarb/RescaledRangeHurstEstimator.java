@@ -0,0 +1,53 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 经典 R/S 分析
+ * 对价差增量按对数间隔的窗口长度 s 切成不重叠的窗口，取各窗口 R/S 的平均值，
+ * log(R/S) 对 log(s) 回归的斜率即 Hurst 指数。每个尺度扫描一遍数据，总计 O(n log n)。
+ */
+final class RescaledRangeHurstEstimator implements HurstEstimator {
+    private static final int MIN_WINDOW = 8;
+
+    @Override
+    public double estimate(double[] spread, int n, double[] scratch) {
+        int m = n - 1;
+        if (m < MIN_WINDOW * 4) {
+            return Double.NaN;
+        }
+        double[] increments = scratch;
+        for (int i = 0; i < m; i++) {
+            increments[i] = spread[i + 1] - spread[i];
+        }
+        LogLogRegression regression = new LogLogRegression();
+        for (int s = MIN_WINDOW; s <= m / 2; s = LogLogRegression.nextScale(s)) {
+            int windows = m / s;
+            double rsSum = 0;
+            int valid = 0;
+            for (int w = 0; w < windows; w++) {
+                int offset = w * s;
+                double mean = 0;
+                for (int i = 0; i < s; i++) {
+                    mean += increments[offset + i];
+                }
+                mean /= s;
+                double cumulative = 0, max = 0, min = 0, ss = 0;
+                for (int i = 0; i < s; i++) {
+                    double deviation = increments[offset + i] - mean;
+                    cumulative += deviation;
+                    max = Math.max(max, cumulative);
+                    min = Math.min(min, cumulative);
+                    ss += deviation * deviation;
+                }
+                double stdDev = Math.sqrt(ss / s);
+                if (stdDev > 0) {
+                    rsSum += (max - min) / stdDev;
+                    valid++;
+                }
+            }
+            if (valid > 0) {
+                regression.add(s, rsSum / valid);
+            }
+        }
+        return LogLogRegression.clamp(regression.slope());
+    }
+}
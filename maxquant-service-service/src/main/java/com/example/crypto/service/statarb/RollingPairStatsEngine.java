@@ -0,0 +1,394 @@
+package com.example.crypto.service.statarb;
+
+import com.example.crypto.entity.KlineData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合约对统计量的滚动窗口引擎
+ * 每个 (exchange, timeframe) 第一次被查询时，从K线缓存 / 数据库加载最近 lookbackDays 天的收盘价建立窗口，
+ * 之后由K线同步（{@link #onBars}）和行情推送（{@link #onTicker}）逐根更新，每根K线对每个合约对是 O(1)。
+ * 收盘价按合约保存在 {@link CloseRing} 中（每个合约一份），合约对窗口只保存充分统计量，按时间槽读取两个合约的缓冲区。
+ * ADF / KPSS 直接由充分统计量得出；Hurst 没有有限维的充分统计量，窗口变化后在查询时用默认估计方法重算并缓存。
+ */
+@Component
+public class RollingPairStatsEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RollingPairStatsEngine.class);
+    private static final long NONE = Long.MIN_VALUE;
+    // 缓冲区在回看窗口之外多保留的K线数，合约之间K线到达的先后相差不超过该数量时合约对窗口不受影响
+    private static final int RING_SLACK = 64;
+    // onBar 中对每个合约对窗口的处理：统计量有变化、需要按缓冲区重建
+    private static final byte CHANGED = 1;
+    private static final byte REBUILD = 2;
+
+    private record UniverseKey(String exchange, String timeframe) {}
+
+    private final PairScreeningEngine pairScreeningEngine;
+    private final Map<UniverseKey, Universe> universes = new ConcurrentHashMap<>();
+
+    @Value("${statarb.streaming.enabled:true}")
+    private boolean enabled;
+
+    // 行情推送更新当前未收盘K线的收盘价
+    @Value("${statarb.streaming.ticker-updates:true}")
+    private boolean tickerUpdates;
+
+    // 合约对数 × 窗口点数的上限（建立窗口和重算 Hurst 的开销与之成正比），超过时该周期不走滚动窗口，仍按原方式批量计算
+    @Value("${statarb.streaming.max-pair-points:500000000}")
+    private long maxPairPoints;
+
+    // 超过该时间没有被查询的窗口会被释放
+    @Value("${statarb.streaming.idle-minutes:1440}")
+    private long idleMinutes;
+
+    public RollingPairStatsEngine(PairScreeningEngine pairScreeningEngine) {
+        this.pairScreeningEngine = pairScreeningEngine;
+    }
+
+    /**
+     * 当前窗口内全部合约对 (i < j) 的 ADF、KPSS、Hurst，顺序与 {@link PairScreeningEngine#screen} 一致
+     * @param withHurst 为 false 时 Hurst 为 NaN，省去估计开销
+     * @return 不支持该周期或未启用时返回 null，调用方退回批量计算
+     */
+    public List<PairStatResult> snapshot(List<String> symbols, String timeframe, String exchange, boolean withHurst) {
+        if (!enabled || !pairScreeningEngine.isExactInnerJoin()) {
+            return null;
+        }
+        long timeframeMs = timeframeMillis(timeframe);
+        if (timeframeMs <= 0) {
+            return null;
+        }
+        long capacity = pairScreeningEngine.lookbackMillis() / timeframeMs + 2 + RING_SLACK;
+        long pairCount = (long) symbols.size() * (symbols.size() - 1) / 2;
+        if (capacity > Integer.MAX_VALUE || pairCount * capacity > maxPairPoints) {
+            logger.debug("合约对数 × 窗口点数超过上限，按批量方式计算: timeframe={}, 合约对数={}, 窗口点数={}",
+                    timeframe, pairCount, capacity);
+            return null;
+        }
+        evictIdle();
+        Universe universe = obtain(new UniverseKey(exchange, timeframe), symbols, timeframeMs, (int) capacity);
+        return universe.snapshot(withHurst ? pairScreeningEngine.getDefaultHurstMethod().estimator() : null);
+    }
+
+    /**
+     * K线同步写库后调用
+     */
+    public void onBars(String exchange, String symbol, String timeframe, List<KlineData> bars) {
+        if (!enabled || bars.isEmpty()) {
+            return;
+        }
+        Universe universe = universes.get(new UniverseKey(exchange, timeframe));
+        if (universe == null) {
+            return;
+        }
+        KlineData[] sorted = bars.stream()
+                .filter(b -> b.getTimestamp() != null && b.getClosePrice() != null)
+                .sorted(Comparator.comparingLong(KlineData::getTimestamp))
+                .toArray(KlineData[]::new);
+        for (KlineData bar : sorted) {
+            universe.onBar(symbol, bar.getTimestamp(), bar.getClosePrice());
+        }
+    }
+
+    /**
+     * 行情推送：把最新成交价作为该合约当前K线的收盘价
+     */
+    public void onTicker(String exchange, String symbol, double price, long timestamp) {
+        if (!enabled || !tickerUpdates || !(price > 0)) {
+            return;
+        }
+        universes.forEach((key, universe) -> {
+            if (key.exchange().equals(exchange)) {
+                universe.onTick(symbol, price, timestamp);
+            }
+        });
+    }
+
+    private Universe obtain(UniverseKey key, List<String> symbols, long timeframeMs, int capacity) {
+        Universe current = universes.get(key);
+        if (current != null && current.seeded && current.symbols.equals(symbols)) {
+            current.lastAccess = System.nanoTime();
+            return current;
+        }
+        // 建立窗口的次数很少，全部串行执行；同一窗口的并发查询在这里等待第一次加载完成
+        synchronized (this) {
+            current = universes.get(key);
+            if (current != null && current.seeded && current.symbols.equals(symbols)) {
+                current.lastAccess = System.nanoTime();
+                return current;
+            }
+            long start = System.nanoTime();
+            Universe universe = new Universe(symbols, timeframeMs, pairScreeningEngine.lookbackMillis(),
+                    capacity, RollingPairWindow.neweyWestLag(capacity));
+            // 先登记再加载，加载期间到达的K线先写入各合约的缓冲区，加载完成后与加载结果合并
+            universes.put(key, universe);
+            try {
+                long endTime = System.currentTimeMillis();
+                long startTime = endTime - pairScreeningEngine.lookbackMillis();
+                CloseSeries[] series = new CloseSeries[symbols.size()];
+                for (int i = 0; i < series.length; i++) {
+                    series[i] = pairScreeningEngine.loadCloseSeries(symbols.get(i), key.timeframe(), key.exchange(), startTime, endTime);
+                }
+                universe.seed(series);
+            } catch (RuntimeException e) {
+                universes.remove(key, universe);
+                throw e;
+            }
+            logger.info("滚动窗口已建立: exchange={}, timeframe={}, 合约数={}, 合约对数={}, 耗时={}ms",
+                    key.exchange(), key.timeframe(), symbols.size(), universe.windows.length,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return universe;
+        }
+    }
+
+    private void evictIdle() {
+        long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        long now = System.nanoTime();
+        universes.forEach((key, universe) -> {
+            if (universe.seeded && now - universe.lastAccess > idleNanos && universes.remove(key, universe)) {
+                logger.info("释放长时间未查询的滚动窗口: exchange={}, timeframe={}", key.exchange(), key.timeframe());
+            }
+        });
+    }
+
+    /**
+     * K线周期对应的毫秒数，如 1m、15m、1h、4H、1d、1w；不支持的周期（如月线）返回 -1
+     */
+    static long timeframeMillis(String timeframe) {
+        if (timeframe == null || timeframe.length() < 2) {
+            return -1;
+        }
+        long count;
+        try {
+            count = Long.parseLong(timeframe.substring(0, timeframe.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        long unit = switch (timeframe.charAt(timeframe.length() - 1)) {
+            case 's' -> 1000L;
+            case 'm' -> 60_000L;
+            case 'h', 'H' -> 3_600_000L;
+            case 'd', 'D' -> 86_400_000L;
+            case 'w', 'W' -> 7 * 86_400_000L;
+            default -> -1L;
+        };
+        return count > 0 && unit > 0 ? count * unit : -1;
+    }
+
+    /**
+     * 一个 (exchange, timeframe) 下全部合约的收盘价缓冲区和全部合约对的窗口，写入与读取统计量都在该对象上加锁
+     */
+    private static final class Universe {
+        final List<String> symbols;
+        final Map<String, Integer> indexOf = new HashMap<>();
+        final long timeframeMs;
+        final long lookbackMs;
+        final CloseRing[] rings;
+        final RollingPairWindow[] windows;
+        // 每个合约对窗口的版本号，Hurst 缓存据此判断是否需要重算
+        final long[] versions;
+        final double[] hurstValues;
+        final long[] hurstVersions;
+        // onBar 中各合约对窗口的处理标记，按另一合约的下标
+        private final byte[] actions;
+        volatile boolean seeded;
+        volatile long lastAccess = System.nanoTime();
+
+        Universe(List<String> symbols, long timeframeMs, long lookbackMs, int capacity, int maxLag) {
+            this.symbols = List.copyOf(symbols);
+            this.timeframeMs = timeframeMs;
+            this.lookbackMs = lookbackMs;
+            int n = symbols.size();
+            this.rings = new CloseRing[n];
+            for (int i = 0; i < n; i++) {
+                indexOf.put(symbols.get(i), i);
+                rings[i] = new CloseRing(capacity, timeframeMs);
+            }
+            int pairCount = n * (n - 1) / 2;
+            this.windows = new RollingPairWindow[pairCount];
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    windows[pairIndex(i, j)] = new RollingPairWindow(rings[i], rings[j], maxLag);
+                }
+            }
+            this.versions = new long[pairCount];
+            this.hurstValues = new double[pairCount];
+            this.hurstVersions = new long[pairCount];
+            Arrays.fill(hurstVersions, -1L);
+            this.actions = new byte[n];
+        }
+
+        /**
+         * 合约对 (i < j) 的下标，与双重循环的顺序一致
+         */
+        int pairIndex(int i, int j) {
+            int n = symbols.size();
+            return i * (2 * n - i - 1) / 2 + (j - i - 1);
+        }
+
+        synchronized void seed(CloseSeries[] series) {
+            // 加载期间推送来的K线比数据库中的更新，保留在加载结果之上
+            for (int i = 0; i < series.length; i++) {
+                long[] timestamps = series[i].getTimestamps();
+                double[] closes = series[i].getCloses();
+                for (int t = 0; t < series[i].length(); t++) {
+                    rings[i].seed(timestamps[t], closes[t]);
+                }
+            }
+            for (int i = 0; i < rings.length; i++) {
+                for (int j = i + 1; j < rings.length; j++) {
+                    if (rings[i].latest() == NONE || rings[j].latest() == NONE) {
+                        continue;
+                    }
+                    int k = pairIndex(i, j);
+                    RollingPairWindow window = windows[k];
+                    long latestI = rings[i].slot(rings[i].latest());
+                    long latestJ = rings[j].slot(rings[j].latest());
+                    long to = Math.min(latestI, latestJ);
+                    for (long slot = Math.max(latestI, latestJ) - rings[i].capacity() + 1; slot <= to; slot++) {
+                        if (window.matched(slot)) {
+                            window.append(slot);
+                        }
+                    }
+                    if (window.size() > 0) {
+                        window.evictBefore(rings[i].timestampAt(window.lastSlot()) - lookbackMs, NONE);
+                    }
+                    versions[k]++;
+                }
+            }
+            seeded = true;
+        }
+
+        /**
+         * 写入一根K线（新K线或已有K线收盘价的更新）并更新包含该合约的全部合约对窗口
+         * 窗口内的点被修改或覆盖之前先从统计量中移出，写入后再追加或按缓冲区重建；
+         * 合约对窗口只覆盖两个合约各自最近 capacity 个槽位，写入新槽位时先移出更早的点
+         */
+        synchronized void onBar(String symbol, long timestamp, double close) {
+            Integer index = indexOf.get(symbol);
+            if (index == null) {
+                return;
+            }
+            CloseRing ring = rings[index];
+            long slot = ring.slot(timestamp);
+            if (ring.latest() != NONE && slot <= ring.slot(ring.latest()) - ring.capacity()) {
+                return; // 比缓冲区保留的最旧K线还旧
+            }
+            if (ring.timestampAt(slot) == timestamp && ring.closeAt(slot) == close) {
+                return;
+            }
+            if (!seeded) {
+                ring.put(timestamp, close);
+                return;
+            }
+            long minSlot = slot - ring.capacity() + 1;
+            for (int other = 0; other < rings.length; other++) {
+                if (other == index) {
+                    continue;
+                }
+                RollingPairWindow window = windows[index < other ? pairIndex(index, other) : pairIndex(other, index)];
+                byte action = 0;
+                if (window.size() > 0 && window.firstSlot() < minSlot) {
+                    window.evictBefore(Long.MIN_VALUE, minSlot);
+                    action = CHANGED;
+                }
+                if (window.size() > 0 && window.lastSlot() == slot) {
+                    window.removeLast();
+                    action = CHANGED;
+                } else if (window.size() > 0 && window.firstSlot() <= slot && slot < window.lastSlot()) {
+                    action = REBUILD;
+                }
+                actions[other] = action;
+            }
+            ring.put(timestamp, close);
+            for (int other = 0; other < rings.length; other++) {
+                if (other == index) {
+                    continue;
+                }
+                int k = index < other ? pairIndex(index, other) : pairIndex(other, index);
+                RollingPairWindow window = windows[k];
+                byte action = actions[other];
+                if (action == REBUILD) {
+                    window.rebuild();
+                } else if ((window.size() == 0 || slot > window.lastSlot()) && window.matched(slot)) {
+                    window.append(slot);
+                    window.evictBefore(timestamp - lookbackMs, NONE);
+                    action = CHANGED;
+                }
+                if (action != 0) {
+                    versions[k]++;
+                }
+            }
+        }
+
+        /**
+         * 成交时间落在最新K线之后的周期里时视为新K线的开始，否则更新最新K线的收盘价
+         */
+        synchronized void onTick(String symbol, double price, long timestamp) {
+            Integer index = indexOf.get(symbol);
+            if (index == null) {
+                return;
+            }
+            long last = rings[index].latest();
+            if (last == NONE || timestamp < last) {
+                return;
+            }
+            onBar(symbol, last + (timestamp - last) / timeframeMs * timeframeMs, price);
+        }
+
+        List<PairStatResult> snapshot(HurstEstimator hurstEstimator) {
+            List<PairStatResult> results = new ArrayList<>(windows.length);
+            double[] spread = new double[0];
+            double[] scratch = new double[0];
+            for (int i = 0; i < symbols.size(); i++) {
+                for (int j = i + 1; j < symbols.size(); j++) {
+                    int k = pairIndex(i, j);
+                    int n;
+                    double adf;
+                    double kpss;
+                    double hurst = Double.NaN;
+                    long version = -1;
+                    synchronized (this) {
+                        RollingPairWindow window = windows[k];
+                        n = window.size();
+                        adf = window.adf();
+                        kpss = window.kpss();
+                        if (hurstEstimator != null) {
+                            if (hurstVersions[k] == versions[k]) {
+                                hurst = hurstValues[k];
+                            } else {
+                                if (spread.length < n) {
+                                    spread = new double[n];
+                                    scratch = new double[n];
+                                }
+                                window.copySpread(spread);
+                                version = versions[k];
+                            }
+                        }
+                    }
+                    if (version >= 0) {
+                        // 估计在锁外进行，不阻塞K线写入
+                        hurst = n < 2 ? Double.NaN : hurstEstimator.estimate(spread, n, scratch);
+                        synchronized (this) {
+                            hurstValues[k] = hurst;
+                            hurstVersions[k] = version;
+                        }
+                    }
+                    results.add(new PairStatResult(symbols.get(i), symbols.get(j), n, adf, kpss, hurst));
+                }
+            }
+            return results;
+        }
+    }
+}
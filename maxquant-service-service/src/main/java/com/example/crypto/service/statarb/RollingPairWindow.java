@@ -0,0 +1,419 @@
+package com.example.crypto.service.statarb;
+
+import java.util.Arrays;
+
+/**
+ * 单个合约对的滚动窗口充分统计量
+ * 收盘价本身不在这里保存：y（第一个合约）、x（第二个合约）按时间槽从两个合约共享的 {@link CloseRing} 读取，
+ * 两边在同一槽位有时间戳相同的K线时该槽位是窗口内的一个点（内连接）。这里只维护：
+ * <ul>
+ *     <li>窗口的首末槽位和点数</li>
+ *     <li>第一步回归 y = a + b·x 所需的 Σx、Σy、Σx²、Σxy</li>
+ *     <li>第二步回归 Δe_t = c + γ·e_{t-1} 所需的滞后项与差分项的交叉和（残差展开成 x、y 的二次型，b 变化时无需重算）</li>
+ *     <li>价比价差 r = y / x - 1 的累积和的平方和，以及 Newey-West 各阶自协方差的滞后乘积和</li>
+ * </ul>
+ * 追加、删除最新点、删除最旧点都是 O(maxLag)（两合约之间有缺失K线时加上跳过的槽位数），与窗口长度无关；读取 ADF / KPSS 同样是 O(maxLag)。
+ * 窗口内的点被环形缓冲区覆盖或修改之前，调用方必须先调用 {@link #evictBefore}、{@link #removeLast} 或 {@link #rebuild}。
+ * 为避免加减累积误差，所有和都以窗口均值为原点保存，每追加 capacity 次按当前窗口重建一次。
+ * 非线程安全，由调用方加锁。
+ */
+final class RollingPairWindow {
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final CloseRing yRing;
+    private final CloseRing xRing;
+    private final int maxLag;
+    private long firstSlot = NONE;
+    private long lastSlot = NONE;
+    private int size;
+    private int updatesSinceRebuild;
+
+    // 原点：x、y、r 都减去该值后再累加
+    private double originX;
+    private double originY;
+    private double originR;
+
+    // 第一步回归（窗口内全部点）
+    private double sumX, sumY, sumXX, sumXY;
+    // 第二步回归（相邻点对，x'、y' 为前一个点，dx、dy 为差分）
+    private double sumXl, sumYl, sumXlXl, sumYlYl, sumXlYl;
+    private double sumDx, sumDy, sumDxDx, sumDyDy, sumDxDy;
+    private double sumYlDy, sumYlDx, sumXlDy, sumXlDx;
+
+    // KPSS：Q_j 为 r 的前缀和，j 为点的序号（最旧点序号为 firstIndex）
+    private long firstIndex;
+    private double prefixBase;
+    private double lastPrefix;
+    private double sumQ, sumQQ, sumJQ;
+    private final double[] lagProducts;
+    private int zeroCount;
+
+    RollingPairWindow(CloseRing yRing, CloseRing xRing, int maxLag) {
+        this.yRing = yRing;
+        this.xRing = xRing;
+        this.maxLag = maxLag;
+        this.lagProducts = new double[maxLag + 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 最新点的槽位，窗口为空时为 Long.MIN_VALUE
+     */
+    long lastSlot() {
+        return lastSlot;
+    }
+
+    /**
+     * 最旧点的槽位，窗口为空时为 Long.MIN_VALUE
+     */
+    long firstSlot() {
+        return firstSlot;
+    }
+
+    /**
+     * 两个合约在该槽位都有K线且时间戳相同
+     */
+    boolean matched(long slot) {
+        long timestamp = yRing.timestampAt(slot);
+        return timestamp != NONE && timestamp == xRing.timestampAt(slot);
+    }
+
+    /**
+     * 把槽位作为最新点追加；调用方保证该槽位已配对且晚于当前最新点
+     */
+    void append(long slot) {
+        if (size == 0) {
+            firstSlot = slot;
+            originX = xRing.closeAt(slot);
+            originY = yRing.closeAt(slot);
+            originR = originX != 0 ? originY / originX - 1 : 0.0;
+            resetSums();
+        }
+        lastSlot = slot;
+        size++;
+        accumulateNewest(1.0);
+        if (++updatesSinceRebuild >= yRing.capacity()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 删除最新点（同一根K线的收盘价更新前调用，此时缓冲区中仍是旧值）
+     */
+    void removeLast() {
+        accumulateNewest(-1.0);
+        size--;
+        if (size == 0) {
+            firstSlot = lastSlot = NONE;
+        } else {
+            lastSlot = previous(lastSlot);
+        }
+    }
+
+    /**
+     * 删除槽位早于 minSlot 或时间戳早于 cutoff 的点
+     */
+    void evictBefore(long cutoff, long minSlot) {
+        while (size > 0 && (firstSlot < minSlot || yRing.timestampAt(firstSlot) < cutoff)) {
+            removeFirst();
+        }
+    }
+
+    /**
+     * 以当前窗口均值为原点重新累加全部统计量，消除长期加减带来的误差
+     * 窗口中间的K线被修改（迟到的K线、收盘价修正）后也调用此方法，按缓冲区的当前内容重新确定窗口内的点
+     */
+    void rebuild() {
+        updatesSinceRebuild = 0;
+        if (size == 0) {
+            return;
+        }
+        long from = firstSlot;
+        long to = lastSlot;
+        int n = 0;
+        double meanX = 0, meanY = 0, meanR = 0;
+        for (long slot = from; slot <= to; slot++) {
+            if (matched(slot)) {
+                double x = xRing.closeAt(slot);
+                double y = yRing.closeAt(slot);
+                meanX += x;
+                meanY += y;
+                meanR += x != 0 ? y / x - 1 : 0.0;
+                n++;
+            }
+        }
+        size = 0;
+        firstSlot = lastSlot = NONE;
+        resetSums();
+        if (n == 0) {
+            return;
+        }
+        originX = meanX / n;
+        originY = meanY / n;
+        originR = meanR / n;
+        // 按时间顺序逐个作为最新点重新累加
+        for (long slot = from; slot <= to; slot++) {
+            if (matched(slot)) {
+                if (size == 0) {
+                    firstSlot = slot;
+                }
+                lastSlot = slot;
+                size++;
+                accumulateNewest(1.0);
+            }
+        }
+    }
+
+    /**
+     * Engle-Granger 两步法 ADF 统计量，与 {@link PairStatistics#adf} 的批量结果一致
+     */
+    double adf() {
+        int n = size;
+        if (n < 2) {
+            return 0.0;
+        }
+        double sxx = sumXX - sumX * sumX / n;
+        double sxy = sumXY - sumX * sumY / n;
+        if (sxx <= 0) {
+            return Double.NaN;
+        }
+        double b = sxy / sxx;
+        int m = n - 1;
+        if (m <= 2) {
+            return Double.NaN;
+        }
+        // L = y' - b·x'（滞后残差去掉截距 a，不影响中心化后的结果），D = dy - b·dx
+        double sumL = sumYl - b * sumXl;
+        double sumLL = sumYlYl - 2 * b * sumXlYl + b * b * sumXlXl;
+        double sumD = sumDy - b * sumDx;
+        double sumDD = sumDyDy - 2 * b * sumDxDy + b * b * sumDxDx;
+        double sumLD = sumYlDy - b * sumYlDx - b * sumXlDy + b * b * sumXlDx;
+        double sLL = sumLL - sumL * sumL / m;
+        double sLD = sumLD - sumL * sumD / m;
+        double sDD = sumDD - sumD * sumD / m;
+        if (sLL <= 0) {
+            return Double.NaN;
+        }
+        double gamma = sLD / sLL;
+        double ssr = Math.max(0.0, sDD - gamma * sLD);
+        double standardError = Math.sqrt(ssr / (m - 2) / sLL);
+        return gamma / standardError;
+    }
+
+    /**
+     * 价比价差 (y / x - 1) 的 KPSS 统计量，与 {@link PairStatistics#kpss} 的批量结果一致
+     */
+    double kpss() {
+        int n = size;
+        if (n < 20 || zeroCount > 0) {
+            return Double.NaN;
+        }
+        double total = lastPrefix - prefixBase;
+        double mean = total / n;
+        // 窗口内累积和 C_k = Q_{s+k-1} - base，S_k = C_k - k·mean
+        double sumCC = sumQQ - 2 * prefixBase * sumQ + n * prefixBase * prefixBase;
+        double sumKC = sumJQ - (firstIndex - 1) * sumQ - prefixBase * (n * (n + 1.0) / 2);
+        double sumKK = n * (n + 1.0) * (2.0 * n + 1) / 6;
+        double sumOfSquares = sumCC - 2 * mean * sumKC + mean * mean * sumKK;
+
+        double longRunVariance = neweyWestVariance(n, mean, total);
+        if (longRunVariance <= 0) {
+            double ss = lagProducts[0] - n * mean * mean;
+            longRunVariance = n > 1 ? ss / (n - 1) : 0.0;
+            if (longRunVariance <= 0) {
+                return Double.NaN;
+            }
+        }
+        return (Math.max(0.0, sumOfSquares) / ((double) n * n)) / longRunVariance;
+    }
+
+    /**
+     * 把窗口内的价差 (y - x) 写入缓冲区，返回长度
+     */
+    int copySpread(double[] out) {
+        int n = 0;
+        for (long slot = firstSlot; n < size && slot <= lastSlot; slot++) {
+            if (matched(slot)) {
+                out[n++] = yRing.closeAt(slot) - xRing.closeAt(slot);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 批量计算时使用的 Newey-West 滞后阶数
+     */
+    static int neweyWestLag(int n) {
+        return (int) Math.floor(4 * Math.pow((double) n / 100.0, 2.0 / 9.0));
+    }
+
+    private double neweyWestVariance(int n, double mean, double total) {
+        int lag = Math.min(neweyWestLag(n), maxLag);
+        double variance = (lagProducts[0] - 2 * mean * total + n * mean * mean) / n;
+        double leading = 0, trailing = 0;
+        long leadingSlot = firstSlot;
+        long trailingSlot = lastSlot;
+        for (int j = 1; j <= lag && j < n; j++) {
+            leading += ratio(leadingSlot);
+            trailing += ratio(trailingSlot);
+            leadingSlot = next(leadingSlot);
+            trailingSlot = previous(trailingSlot);
+            // Σ_{t>=j} r_t = total - leading, Σ_{t<n-j} r_t = total - trailing
+            double cov = (lagProducts[j] - mean * (2 * total - leading - trailing) + (n - j) * mean * mean) / n;
+            double bartlettWeight = 1.0 - ((double) j / (lag + 1.0));
+            variance += 2 * bartlettWeight * cov;
+        }
+        return variance;
+    }
+
+    private void removeFirst() {
+        accumulateOldest();
+        size--;
+        if (size == 0) {
+            firstSlot = lastSlot = NONE;
+        } else {
+            firstSlot = next(firstSlot);
+        }
+        firstIndex++;
+    }
+
+    /**
+     * 把最新点（lastSlot）的贡献加入（sign = 1）或移出（sign = -1）统计量
+     */
+    private void accumulateNewest(double sign) {
+        long slot = lastSlot;
+        long lagged = size > 1 ? previous(slot) : NONE;
+        accumulatePoint(slot, sign);
+        if (lagged != NONE) {
+            accumulatePair(lagged, slot, sign);
+        }
+
+        double r = ratio(slot);
+        int i = size - 1;
+        long j = firstIndex + i;
+        double q = sign > 0 ? lastPrefix + r : lastPrefix;
+        sumQ += sign * q;
+        sumQQ += sign * q * q;
+        sumJQ += sign * j * q;
+        lastPrefix += sign * r;
+        long other = slot;
+        for (int lag = 0; lag <= maxLag && lag <= i; lag++) {
+            lagProducts[lag] += sign * r * ratio(other);
+            if (lag < i) {
+                other = previous(other);
+            }
+        }
+    }
+
+    /**
+     * 把最旧点（firstSlot）的贡献移出统计量
+     */
+    private void accumulateOldest() {
+        long slot = firstSlot;
+        accumulatePoint(slot, -1.0);
+        if (size > 1) {
+            accumulatePair(slot, next(slot), -1.0);
+        }
+
+        double r = ratio(slot);
+        double q = prefixBase + r;
+        sumQ -= q;
+        sumQQ -= q * q;
+        sumJQ -= firstIndex * q;
+        prefixBase = q;
+        long other = slot;
+        for (int lag = 0; lag <= maxLag && lag < size; lag++) {
+            lagProducts[lag] -= r * ratio(other);
+            if (lag + 1 < size) {
+                other = next(other);
+            }
+        }
+    }
+
+    private void accumulatePoint(long slot, double sign) {
+        double rawX = xRing.closeAt(slot);
+        double x = rawX - originX;
+        double y = yRing.closeAt(slot) - originY;
+        sumX += sign * x;
+        sumY += sign * y;
+        sumXX += sign * x * x;
+        sumXY += sign * x * y;
+        if (rawX == 0) {
+            zeroCount += sign > 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * 相邻点对：lagged 为前一个点，current 为后一个点
+     */
+    private void accumulatePair(long lagged, long current, double sign) {
+        double laggedX = xRing.closeAt(lagged);
+        double laggedY = yRing.closeAt(lagged);
+        double xl = laggedX - originX;
+        double yl = laggedY - originY;
+        double dx = xRing.closeAt(current) - laggedX;
+        double dy = yRing.closeAt(current) - laggedY;
+        sumXl += sign * xl;
+        sumYl += sign * yl;
+        sumXlXl += sign * xl * xl;
+        sumYlYl += sign * yl * yl;
+        sumXlYl += sign * xl * yl;
+        sumDx += sign * dx;
+        sumDy += sign * dy;
+        sumDxDx += sign * dx * dx;
+        sumDyDy += sign * dy * dy;
+        sumDxDy += sign * dx * dy;
+        sumYlDy += sign * yl * dy;
+        sumYlDx += sign * yl * dx;
+        sumXlDy += sign * xl * dy;
+        sumXlDx += sign * xl * dx;
+    }
+
+    /**
+     * 槽位上的点减去原点后的价比价差；x 为 0 时记为 0（窗口内存在 0 价格时 KPSS 返回 NaN）
+     */
+    private double ratio(long slot) {
+        double x = xRing.closeAt(slot);
+        return x != 0 ? yRing.closeAt(slot) / x - 1 - originR : 0.0;
+    }
+
+    /**
+     * 窗口内早于 slot 的最近一个点的槽位
+     */
+    private long previous(long slot) {
+        for (long s = slot - 1; s >= firstSlot; s--) {
+            if (matched(s)) {
+                return s;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 窗口内晚于 slot 的最近一个点的槽位
+     */
+    private long next(long slot) {
+        for (long s = slot + 1; s <= lastSlot; s++) {
+            if (matched(s)) {
+                return s;
+            }
+        }
+        return NONE;
+    }
+
+    private void resetSums() {
+        sumX = sumY = sumXX = sumXY = 0;
+        sumXl = sumYl = sumXlXl = sumYlYl = sumXlYl = 0;
+        sumDx = sumDy = sumDxDx = sumDyDy = sumDxDy = 0;
+        sumYlDy = sumYlDx = sumXlDy = sumXlDx = 0;
+        firstIndex = 0;
+        prefixBase = 0;
+        lastPrefix = 0;
+        sumQ = sumQQ = sumJQ = 0;
+        zeroCount = 0;
+        Arrays.fill(lagProducts, 0.0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.crypto.service.statarb;
+
+/**
+ * 两条时间序列的时间戳对齐
+ * 输入为按时间戳升序的原始类型列（前 n 个元素有效），双指针一次扫描，结果写入调用方提供的缓冲区，不产生任何分配。
+ */
+public final class SeriesAligner {
+
+    public enum JoinMode {
+        /**
+         * 只保留两边都有数据的时间点；gapTolerance 内的时间戳视为同一根K线
+         */
+        INNER,
+        /**
+         * 取两边时间戳的并集，缺失的一边沿用最近一次的值；
+         * 沿用值的时间距当前超过 gapTolerance 时丢弃该点
+         */
+        FORWARD_FILL
+    }
+
+    private SeriesAligner() {
+    }
+
+    /**
+     * 对齐结果所需的最小缓冲区长度
+     */
+    public static int requiredCapacity(JoinMode mode, int n1, int n2) {
+        return mode == JoinMode.INNER ? Math.min(n1, n2) : n1 + n2;
+    }
+
+    /**
+     * 对齐两条序列
+     * @param gapTolerance 毫秒，含义见 {@link JoinMode}；小于 0 表示不限制
+     * @param outTimestamps 对齐后的时间戳，可为 null
+     * @return 对齐后的长度
+     */
+    public static int align(long[] t1, double[] v1, int n1,
+                            long[] t2, double[] v2, int n2,
+                            JoinMode mode, long gapTolerance,
+                            long[] outTimestamps, double[] out1, double[] out2) {
+        long tolerance = gapTolerance < 0 ? Long.MAX_VALUE : gapTolerance;
+        return mode == JoinMode.INNER
+                ? innerJoin(t1, v1, n1, t2, v2, n2, tolerance, outTimestamps, out1, out2)
+                : forwardFill(t1, v1, n1, t2, v2, n2, tolerance, outTimestamps, out1, out2);
+    }
+
+    private static int innerJoin(long[] t1, double[] v1, int n1,
+                                 long[] t2, double[] v2, int n2, long tolerance,
+                                 long[] outTimestamps, double[] out1, double[] out2) {
+        int i = 0, j = 0, n = 0;
+        while (i < n1 && j < n2) {
+            long a = t1[i];
+            long b = t2[j];
+            if (Math.abs(a - b) <= tolerance) {
+                if (outTimestamps != null) {
+                    outTimestamps[n] = Math.max(a, b);
+                }
+                out1[n] = v1[i++];
+                out2[n] = v2[j++];
+                n++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private static int forwardFill(long[] t1, double[] v1, int n1,
+                                   long[] t2, double[] v2, int n2, long tolerance,
+                                   long[] outTimestamps, double[] out1, double[] out2) {
+        int i = 0, j = 0, n = 0;
+        // 两边各自最近一次出现的下标，-1 表示尚未开始
+        int last1 = -1, last2 = -1;
+        while (i < n1 || j < n2) {
+            long now;
+            if (j >= n2 || (i < n1 && t1[i] < t2[j])) {
+                now = t1[i];
+                last1 = i++;
+            } else if (i >= n1 || t2[j] < t1[i]) {
+                now = t2[j];
+                last2 = j++;
+            } else {
+                now = t1[i];
+                last1 = i++;
+                last2 = j++;
+            }
+            if (last1 < 0 || last2 < 0) {
+                continue;
+            }
+            if (now - t1[last1] > tolerance || now - t2[last2] > tolerance) {
+                continue;
+            }
+            if (outTimestamps != null) {
+                outTimestamps[n] = now;
+            }
+            out1[n] = v1[last1];
+            out2[n] = v2[last2];
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.crypto.service.sync;
+
+import com.example.crypto.dao.KlineDataRepository;
+import com.example.crypto.entity.Subscription;
+import com.example.crypto.service.BinanceService;
+import com.example.crypto.service.OkxService;
+import com.example.crypto.service.SubscriptionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * K线并行同步引擎
+ * 把 OKX / Binance 的 ohlc 订阅分发到有界线程池并行拉取，
+ * 每个交易所各用一个令牌桶控制 REST 请求速率，续传游标优先取服务内存中的最新时间戳，没有时取数据库最大时间戳。
+ */
+@Component
+public class KlineSyncEngine {
+    private static final Logger logger = LoggerFactory.getLogger(KlineSyncEngine.class);
+
+    private record SyncTask(String exchange, String symbol, String timeframe) {
+        String key() {
+            return exchange + ":" + symbol + "-" + timeframe;
+        }
+    }
+
+    private record TaskResult(SyncTask task, boolean success, long waitNanos, Long latestTimestamp) {}
+
+    private final SubscriptionService subscriptionService;
+    private final OkxService okxService;
+    private final BinanceService binanceService;
+    private final KlineDataRepository klineDataRepository;
+
+    @Value("${kline.sync.pool-size:16}")
+    private int poolSize;
+
+    // OKX candles 接口限制为 40 次 / 2 秒
+    @Value("${kline.sync.okx.requests-per-second:18}")
+    private double okxRequestsPerSecond;
+
+    @Value("${kline.sync.okx.burst:20}")
+    private double okxBurst;
+
+    // Binance 按权重限流（1200 / 分钟），klines 默认 limit 下每次权重为 2
+    @Value("${kline.sync.binance.weight-per-second:15}")
+    private double binanceWeightPerSecond;
+
+    @Value("${kline.sync.binance.burst:40}")
+    private double binanceBurst;
+
+    @Value("${kline.sync.binance.kline-weight:2}")
+    private double binanceKlineWeight;
+
+    private ExecutorService executor;
+    private TokenBucket okxBucket;
+    private TokenBucket binanceBucket;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile KlineSyncRunMetrics lastRunMetrics;
+
+    public KlineSyncEngine(SubscriptionService subscriptionService,
+                           OkxService okxService,
+                           BinanceService binanceService,
+                           KlineDataRepository klineDataRepository) {
+        this.subscriptionService = subscriptionService;
+        this.okxService = okxService;
+        this.binanceService = binanceService;
+        this.klineDataRepository = klineDataRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Java 17 没有虚拟线程，同步任务以网络 IO 为主，使用固定大小的平台线程池
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "kline-sync-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(poolSize, threadFactory);
+        okxBucket = new TokenBucket(okxBurst, okxRequestsPerSecond);
+        binanceBucket = new TokenBucket(binanceBurst, binanceWeightPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 同步全部 ohlc 订阅，上一次运行尚未结束时直接跳过
+     * @return 本次运行的统计，跳过时返回 null
+     */
+    public KlineSyncRunMetrics runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("上一次K线同步尚未结束，跳过本次运行");
+            return null;
+        }
+        try {
+            return doRun();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public KlineSyncRunMetrics getLastRunMetrics() {
+        return lastRunMetrics;
+    }
+
+    private KlineSyncRunMetrics doRun() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        List<SyncTask> tasks = collectTasks();
+        logger.info("K线同步开始: 任务数={}, 线程数={}", tasks.size(), poolSize);
+
+        List<CompletableFuture<TaskResult>> futures = new ArrayList<>(tasks.size());
+        for (SyncTask task : tasks) {
+            futures.add(CompletableFuture.supplyAsync(() -> execute(task), executor));
+        }
+
+        int succeeded = 0;
+        int failed = 0;
+        long totalWaitNanos = 0;
+        long lagSum = 0;
+        int lagCount = 0;
+        long maxLag = 0;
+        String maxLagKey = null;
+        long now = System.currentTimeMillis();
+        for (CompletableFuture<TaskResult> future : futures) {
+            TaskResult result = future.join();
+            totalWaitNanos += result.waitNanos();
+            if (result.success()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+            if (result.latestTimestamp() != null) {
+                long lag = Math.max(0L, now - result.latestTimestamp());
+                lagSum += lag;
+                lagCount++;
+                if (maxLagKey == null || lag > maxLag) {
+                    maxLag = lag;
+                    maxLagKey = result.task().key();
+                }
+            }
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        double tasksPerSecond = durationMs > 0 ? tasks.size() * 1000.0 / durationMs : tasks.size();
+        KlineSyncRunMetrics metrics = new KlineSyncRunMetrics(startedAt, durationMs, tasks.size(), succeeded, failed,
+                tasksPerSecond, TimeUnit.NANOSECONDS.toMillis(totalWaitNanos),
+                lagCount > 0 ? lagSum / lagCount : 0L, maxLag, maxLagKey);
+        lastRunMetrics = metrics;
+        logger.info("K线同步完成: 任务数={}, 成功={}, 失败={}, 耗时={}ms, 吞吐={}/s, 限流等待={}ms, 平均延迟={}ms, 最大延迟={}ms ({})",
+                metrics.tasks(), succeeded, failed, durationMs, String.format("%.1f", tasksPerSecond),
+                metrics.rateLimitWaitMs(), metrics.avgLagMs(), maxLag, maxLagKey);
+        return metrics;
+    }
+
+    /**
+     * 收集 OKX 与 Binance 的 ohlc 订阅，多个用户订阅同一品种时只同步一次
+     */
+    private List<SyncTask> collectTasks() {
+        Map<String, SyncTask> tasks = new LinkedHashMap<>();
+        for (String exchange : List.of("okx", "binance")) {
+            for (Subscription sub : subscriptionService.getSubscriptionsByDataTypeAndExchange("ohlc", exchange)) {
+                String timeframe = sub.getTimeframe() != null ? sub.getTimeframe() : "1h";
+                SyncTask task = new SyncTask(exchange, sub.getSymbol(), timeframe);
+                tasks.putIfAbsent(task.key(), task);
+            }
+        }
+        return new ArrayList<>(tasks.values());
+    }
+
+    private TaskResult execute(SyncTask task) {
+        long waitNanos = 0;
+        try {
+            Long cursor = resolveCursor(task);
+            if ("okx".equals(task.exchange())) {
+                waitNanos = okxBucket.acquire(1);
+                // 游标减一：最新一根K线可能尚未收盘，重新拉取并覆盖
+                okxService.syncKlineData(task.symbol(), task.timeframe(), cursor != null ? cursor - 1 : null);
+            } else {
+                waitNanos = binanceBucket.acquire(binanceKlineWeight);
+                binanceService.syncKlineData(task.symbol(), task.timeframe(), cursor != null ? cursor - 1 : null);
+            }
+            return new TaskResult(task, true, waitNanos, latestTimestamp(task));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TaskResult(task, false, waitNanos, null);
+        } catch (Exception e) {
+            logger.error("K线同步失败: key={}, error={}", task.key(), e.getMessage());
+            return new TaskResult(task, false, waitNanos, latestTimestamp(task));
+        }
+    }
+
+    private Long resolveCursor(SyncTask task) {
+        Long cursor = latestTimestamp(task);
+        if (cursor == null) {
+            cursor = klineDataRepository.findMaxTimestamp(task.symbol(), task.timeframe(), task.exchange());
+            logger.debug("内存中没有续传游标，使用数据库最大时间戳: key={}, cursor={}", task.key(), cursor);
+        }
+        return cursor;
+    }
+
+    private Long latestTimestamp(SyncTask task) {
+        return "okx".equals(task.exchange())
+                ? okxService.getLastSyncedTimestamp(task.symbol(), task.timeframe())
+                : binanceService.getLastSyncedTimestamp(task.symbol(), task.timeframe());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.crypto.service.sync;
+
+import java.time.LocalDateTime;
+
+/**
+ * 单次K线同步运行的统计
+ * lag 指同步完成后最新一根K线的时间戳距当前时间的差值（毫秒）
+ */
+public record KlineSyncRunMetrics(
+        LocalDateTime startedAt,
+        long durationMs,
+        int tasks,
+        int succeeded,
+        int failed,
+        double tasksPerSecond,
+        long rateLimitWaitMs,
+        long avgLagMs,
+        long maxLagMs,
+        String maxLagKey
+) {
+}
@@ -0,0 +1,50 @@
+package com.example.crypto.service.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器
+ * 按固定速率补充令牌，桶容量决定允许的突发量。
+ * 采用预约方式：令牌不足时先记账再在锁外等待，多个线程按调用顺序排队，互不饿死。
+ */
+public final class TokenBucket {
+    private final double capacity;
+    private final double permitsPerNano;
+    private double available;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double permitsPerSecond) {
+        if (capacity <= 0 || permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and permitsPerSecond must be positive");
+        }
+        this.capacity = capacity;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.available = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取令牌，必要时阻塞等待
+     * @return 实际等待的纳秒数
+     */
+    public long acquire(double permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill(System.nanoTime());
+            available -= permits;
+            waitNanos = available >= 0 ? 0L : (long) Math.ceil(-available / permitsPerNano);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            available = Math.min(capacity, available + elapsed * permitsPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
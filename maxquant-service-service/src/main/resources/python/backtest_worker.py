@@ -0,0 +1,123 @@
+"""
+常驻回测 worker，由 PythonWorkerPool 启动并复用。
+
+启动后通过 stdin 逐行接收 JSON 指令，在同一个解释器中执行 backtest_runner.py，
+已导入的回测库模块在多次回测之间保持缓存，省去每次启动解释器和导入的开销。
+
+指令：
+  {"op": "run", "id": "<backtestId>", "config": {...}}  以该配置执行一次回测
+  {"op": "ping"}                                       健康检查
+  {"op": "exit"}                                       退出
+
+回测本身的输出（RESULT: 行和日志）原样写到 stdout；控制消息以 CONTROL_PREFIX 开头：
+  ready / pong / done，均附带当前常驻内存 rss_kb，done 另带 id 和 exit_code。
+"""
+import argparse
+import importlib
+import json
+import os
+import runpy
+import sys
+import tempfile
+import traceback
+
+CONTROL_PREFIX = "@@WORKER@@ "
+
+
+def rss_kb():
+    try:
+        with open("/proc/self/statm") as f:
+            pages = int(f.read().split()[1])
+        return pages * os.sysconf("SC_PAGE_SIZE") // 1024
+    except (OSError, ValueError, IndexError):
+        import resource
+        peak = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        # macOS 上 ru_maxrss 的单位是字节
+        return peak // 1024 if sys.platform == "darwin" else peak
+
+
+def control(event, **fields):
+    fields["event"] = event
+    fields["rss_kb"] = rss_kb()
+    sys.stdout.write(CONTROL_PREFIX + json.dumps(fields) + "\n")
+    sys.stdout.flush()
+
+
+def run_job(runner, strategy_dir, job):
+    fd, config_path = tempfile.mkstemp(prefix="config-%s-" % job.get("id", "job"), suffix=".json")
+    with os.fdopen(fd, "w") as f:
+        json.dump(job.get("config", {}), f)
+    saved_argv = sys.argv
+    saved_modules = set(sys.modules)
+    sys.argv = [runner, "--config", config_path]
+    exit_code = 0
+    try:
+        runpy.run_path(runner, run_name="__main__")
+    except SystemExit as e:
+        if e.code is None:
+            exit_code = 0
+        elif isinstance(e.code, int):
+            exit_code = e.code
+        else:
+            print(e.code)
+            exit_code = 1
+    except BaseException:
+        traceback.print_exc(file=sys.stdout)
+        exit_code = 1
+    finally:
+        sys.argv = saved_argv
+        sys.stdout.flush()
+        try:
+            os.unlink(config_path)
+        except OSError:
+            pass
+        # 卸载本次加载的策略模块，回测库模块保留
+        for name in set(sys.modules) - saved_modules:
+            module_file = getattr(sys.modules.get(name), "__file__", None) or ""
+            if module_file.startswith(strategy_dir):
+                del sys.modules[name]
+    return exit_code
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--runner", required=True)
+    parser.add_argument("--preload", default="")
+    args = parser.parse_args()
+
+    runner = os.path.abspath(args.runner)
+    strategy_dir = os.path.join(tempfile.gettempdir(), "strategies")
+    # 与直接执行 runner 脚本时一致：脚本所在目录优先
+    sys.path.insert(0, os.path.dirname(runner))
+    # stderr 合并到 stdout，保证控制消息始终是完整的一行
+    sys.stderr = sys.stdout
+
+    for name in filter(None, (m.strip() for m in args.preload.split(","))):
+        try:
+            importlib.import_module(name)
+        except Exception:
+            print("Failed to preload module %s" % name)
+            traceback.print_exc(file=sys.stdout)
+
+    control("ready", pid=os.getpid())
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        try:
+            job = json.loads(line)
+        except ValueError:
+            print("Ignoring malformed worker command: %s" % line[:200])
+            continue
+        op = job.get("op")
+        if op == "ping":
+            control("pong")
+        elif op == "run":
+            exit_code = run_job(runner, strategy_dir, job)
+            control("done", id=job.get("id"), exit_code=exit_code)
+        elif op == "exit":
+            break
+
+
+if __name__ == "__main__":
+    main()
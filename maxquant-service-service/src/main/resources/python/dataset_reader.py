@@ -0,0 +1,104 @@
+"""
+回测数据集文件（mqds-v1，由 BacktestDatasetCache 生成）的只读访问。
+
+回测配置中带有 DATASET_FILE 时，runner 可以直接从该文件读取行情，不必再通过 RATES_URL 拉取：
+
+    from dataset_reader import open_dataset
+    ds = open_dataset(config["DATASET_FILE"])
+    bars = ds.klines("BTC-USDT", "1m")      # {"timestamp": ..., "open": ..., ...}
+    book = ds.depth("BTC-USDT")             # bid_price 等为 [rows, levels]
+
+文件以 mmap 只读打开，各列直接映射为 numpy 数组（没有 numpy 时为 memoryview），不做任何拷贝；
+同一台机器上并发的回测进程打开同一文件时共享操作系统页缓存。
+同一进程内按路径缓存已打开的文件，常驻 worker 连续执行的回测可以直接复用。
+"""
+import json
+import mmap
+import struct
+
+try:
+    import numpy as np
+except ImportError:  # pragma: no cover
+    np = None
+
+MAGIC = b"MQDSET1\n"
+FORMAT = "mqds-v1"
+PREAMBLE = struct.Struct("<8sqq")
+MAX_OPEN = 8
+
+_open = {}
+
+
+class Dataset(object):
+    def __init__(self, path):
+        self.path = path
+        with open(path, "rb") as f:
+            self._mmap = mmap.mmap(f.fileno(), 0, access=mmap.ACCESS_READ)
+        magic, header_len, data_offset = PREAMBLE.unpack_from(self._mmap, 0)
+        if magic != MAGIC:
+            raise ValueError("Not a dataset file: %s" % path)
+        self.header = json.loads(self._mmap[PREAMBLE.size:PREAMBLE.size + header_len].decode("utf-8"))
+        if self.header.get("format") != FORMAT:
+            raise ValueError("Unsupported dataset format: %s" % self.header.get("format"))
+        self._data_offset = data_offset
+        self._series = {}
+        for series in self.header["series"]:
+            key = (series["kind"], series["symbol"], series.get("timeframe"))
+            self._series[key] = series
+
+    @property
+    def start(self):
+        return self.header["start"]
+
+    @property
+    def end(self):
+        return self.header["end"]
+
+    def series(self):
+        """文件中的全部序列：[(kind, symbol, timeframe, rows), ...]"""
+        return [(s["kind"], s["symbol"], s.get("timeframe"), s["rows"]) for s in self.header["series"]]
+
+    def klines(self, symbol, timeframe):
+        return self._columns(("kline", symbol, timeframe))
+
+    def depth(self, symbol):
+        return self._columns(("depth", symbol, None))
+
+    def _columns(self, key):
+        series = self._series.get(key)
+        if series is None:
+            raise KeyError("Series not in dataset: %s %s %s" % key)
+        return dict((name, self._column(meta)) for name, meta in series["columns"].items())
+
+    def _column(self, meta):
+        shape = tuple(meta["shape"])
+        count = 1
+        for n in shape:
+            count *= n
+        offset = self._data_offset + meta["offset"]
+        if np is not None:
+            array = np.frombuffer(self._mmap, dtype=np.dtype(meta["dtype"]), count=count, offset=offset)
+            return array.reshape(shape)
+        # 没有 numpy 时返回 memoryview（本机字节序需为小端）
+        view = memoryview(self._mmap)[offset:offset + count * 8]
+        return view.cast("q" if meta["dtype"] == "<i8" else "d", shape) if count else view.cast("B")
+
+    def close(self):
+        _open.pop(self.path, None)
+        try:
+            self._mmap.close()
+        except BufferError:
+            # 仍有数组引用该映射，随进程结束释放
+            pass
+
+
+def open_dataset(path):
+    """打开数据集文件；同一路径在进程内只映射一次（缓存文件名含构建时间，内容不会变化）"""
+    dataset = _open.get(path)
+    if dataset is not None:
+        return dataset
+    dataset = Dataset(path)
+    if len(_open) >= MAX_OPEN:
+        _open.pop(next(iter(_open))).close()
+    _open[path] = dataset
+    return dataset